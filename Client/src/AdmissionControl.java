@@ -0,0 +1,129 @@
+// AdmissionControl.java
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Decides whether a request is let in. Work that is admitted is bounded by the
+// handler executors (see ServerExecutors); this class adds token-bucket limits
+// per connection and per user on the commands that are expensive or worth
+// abusing, and builds the "server busy" answers. Refusing early with a retry
+// hint keeps latency flat under overload instead of letting queues grow.
+public class AdmissionControl {
+    public static final String BUSY_PREFIX = "Error: Server busy, retry after ";
+    private static final int MAX_TRACKED_USERS = 10_000;   // Sweep full buckets beyond this
+
+    // Which field of each limited command names the user (-1: per connection only).
+    // The same index works for frames (n-th string field) and text (token n + 1).
+    private static final int[] USER_FIELD = new int[Opcode.values().length];
+    static {
+        Arrays.fill(USER_FIELD, Integer.MIN_VALUE);   // Not limited
+        USER_FIELD[Opcode.LOGIN.ordinal()] = 0;          // username
+        USER_FIELD[Opcode.REGISTER.ordinal()] = 2;       // username
+        USER_FIELD[Opcode.JOB_SUBMIT.ordinal()] = 0;     // clientId
+        USER_FIELD[Opcode.GET_ALL_JOBS.ordinal()] = -1;
+    }
+
+    private final double connectionRate;    // Requests per second per connection, <= 0 for no limit
+    private final double userRate;          // Requests per second per user, <= 0 for no limit
+    private final long busyRetryMillis;     // Retry hint when the work queue is full
+    private final Map<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder queueRejected = new LongAdder();
+
+    public AdmissionControl(double connectionRate, double userRate, long busyRetryMillis) {
+        this.connectionRate = connectionRate;
+        this.userRate = userRate;
+        this.busyRetryMillis = busyRetryMillis;
+    }
+
+    public static AdmissionControl fromConfig(ServerConfig config) {
+        return new AdmissionControl(config.getConnectionRate(), config.getUserRate(), config.getBusyRetryMillis());
+    }
+
+    // Starts the state for a new connection
+    public ClientSession openSession(String remoteAddress) {
+        return new ClientSession(remoteAddress, connectionRate > 0 ? newBucket(connectionRate) : null);
+    }
+
+    // True for the commands that count against the rate limits
+    public static boolean isLimited(Opcode opcode) {
+        return opcode != null && USER_FIELD[opcode.ordinal()] != Integer.MIN_VALUE;
+    }
+
+    // Index of the field naming the user, or -1 when the command has none
+    public static int userField(Opcode opcode) {
+        return USER_FIELD[opcode.ordinal()];
+    }
+
+    // Charges one request to the connection and, if given, the user. Returns 0 when
+    // admitted, otherwise the milliseconds until the client should retry.
+    public long admit(ClientSession session, Opcode opcode, String user) {
+        if (!isLimited(opcode)) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        TokenBucket connectionBucket = session == null ? null : session.getRequestBucket();
+        if (connectionBucket != null) {
+            long wait = connectionBucket.tryAcquire(now);
+            if (wait > 0) {
+                return refuse(wait);
+            }
+        }
+        if (user != null && userRate > 0) {
+            TokenBucket userBucket = userBuckets.get(user);
+            if (userBucket == null) {
+                if (userBuckets.size() >= MAX_TRACKED_USERS) {
+                    sweepUsers(now);
+                }
+                userBucket = userBuckets.computeIfAbsent(user, key -> newBucket(userRate));
+            }
+            long wait = userBucket.tryAcquire(now);
+            if (wait > 0) {
+                return refuse(wait);
+            }
+        }
+        return 0;
+    }
+
+    // Counts a request or connection turned away because the work queue was full
+    public long rejectFullQueue() {
+        queueRejected.increment();
+        return busyRetryMillis;
+    }
+
+    public static String busyMessage(long retryAfterMillis) {
+        return BUSY_PREFIX + retryAfterMillis + " ms";
+    }
+
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    public long getQueueRejected() {
+        return queueRejected.sum();
+    }
+
+    private long refuse(long waitNanos) {
+        rateLimited.increment();
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+    }
+
+    // A full bucket behaves like a new one, so it can be dropped without changing any limit
+    private void sweepUsers(long now) {
+        Iterator<TokenBucket> buckets = userBuckets.values().iterator();
+        while (buckets.hasNext()) {
+            if (buckets.next().isFull(now)) {
+                buckets.remove();
+            }
+        }
+    }
+
+    // Burst of one second's worth of requests, at least one
+    private static TokenBucket newBucket(double perSecond) {
+        return new TokenBucket(perSecond, (int) Math.max(1, Math.ceil(perSecond)));
+    }
+}
@@ -0,0 +1,310 @@
+// ApprovalPolicy.java
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+// Decides JOB_SUBMIT and CAR_READY requests before they reach the admin. Rules are
+// compiled once into predicates; the first rule of the request's kind that matches
+// wins, and a request no rule matches is escalated to the admin. One rule per line:
+//
+//   reject job when redundancy > 5
+//   approve job when duration <= 24 and redundancy <= 3 and knownOwner
+//   reject car when vinRegistered
+//   approve car when knownOwner
+//
+// Job fields: duration, redundancy (compared with < <= > >= == != and an integer).
+// Facts: knownOwner (jobs and cars), vinRegistered (cars), both negatable with "not".
+// A rule without "when" matches every request of its kind. '#' starts a comment.
+public class ApprovalPolicy {
+    public enum Decision {
+        APPROVE,
+        REJECT,
+        ESCALATE
+    }
+
+    // What the rules can look at. knownOwner/vinRegistered are only asked for when
+    // a rule needs them.
+    public interface Facts {
+        boolean isKnownOwner(String ownerId);
+        boolean isVinRegistered(String vinNumber);
+    }
+
+    // The fields of one request, as seen by the rules
+    public static class Request {
+        final PendingApprovals.Kind kind;
+        final String ownerId;
+        final int duration;
+        final int redundancy;
+        final String vinNumber;
+        final Facts facts;
+
+        private Request(PendingApprovals.Kind kind, String ownerId, int duration, int redundancy,
+                        String vinNumber, Facts facts) {
+            this.kind = kind;
+            this.ownerId = ownerId;
+            this.duration = duration;
+            this.redundancy = redundancy;
+            this.vinNumber = vinNumber;
+            this.facts = facts;
+        }
+
+        public static Request job(String clientId, int duration, int redundancy, Facts facts) {
+            return new Request(PendingApprovals.Kind.JOB_SUBMISSION, clientId, duration, redundancy, null, facts);
+        }
+
+        public static Request car(String ownerId, String vinNumber, Facts facts) {
+            return new Request(PendingApprovals.Kind.CAR_READY, ownerId, 0, 0, vinNumber, facts);
+        }
+
+        public PendingApprovals.Kind getKind() {
+            return kind;
+        }
+    }
+
+    // Result of evaluating a request; rule is the matching rule's source text, or null
+    public static class Verdict {
+        private final Decision decision;
+        private final String rule;
+
+        Verdict(Decision decision, String rule) {
+            this.decision = decision;
+            this.rule = rule;
+        }
+
+        public Decision getDecision() {
+            return decision;
+        }
+
+        public String getRule() {
+            return rule;
+        }
+    }
+
+    private static final Verdict NO_MATCH = new Verdict(Decision.ESCALATE, null);
+
+    // A compiled rule: all conditions must hold
+    private static class Rule {
+        final Predicate<Request>[] conditions;
+        final Verdict verdict;
+
+        Rule(Decision decision, Predicate<Request>[] conditions, String source) {
+            this.conditions = conditions;
+            this.verdict = new Verdict(decision, source);
+        }
+
+        boolean matches(Request request) {
+            for (Predicate<Request> condition : conditions) {
+                if (!condition.test(request)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final Rule[] jobRules;
+    private final Rule[] carRules;
+    private final LongAdder autoApproved = new LongAdder();
+    private final LongAdder autoRejected = new LongAdder();
+    private final LongAdder escalated = new LongAdder();
+
+    private ApprovalPolicy(Rule[] jobRules, Rule[] carRules) {
+        this.jobRules = jobRules;
+        this.carRules = carRules;
+    }
+
+    // Policy without rules: everything goes to the admin
+    public static ApprovalPolicy escalateAll() {
+        return compile(Collections.emptyList());
+    }
+
+    public static ApprovalPolicy load(Path file) throws IOException {
+        return compile(Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    // Parses and compiles the rules; IllegalArgumentException names the bad line
+    public static ApprovalPolicy compile(List<String> lines) {
+        List<Rule> jobRules = new ArrayList<>();
+        List<Rule> carRules = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            int comment = line.indexOf('#');
+            String source = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (source.isEmpty()) {
+                continue;
+            }
+            try {
+                compileRule(source, jobRules, carRules);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Approval policy line " + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        return new ApprovalPolicy(jobRules.toArray(new Rule[0]), carRules.toArray(new Rule[0]));
+    }
+
+    private static void compileRule(String source, List<Rule> jobRules, List<Rule> carRules) {
+        String[] words = source.split("\\s+");
+        if (words.length < 2) {
+            throw new IllegalArgumentException("expected '<approve|reject|escalate> <job|car> [when ...]'");
+        }
+        Decision decision;
+        try {
+            decision = Decision.valueOf(words[0].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown decision '" + words[0] + "'");
+        }
+        boolean job;
+        if (words[1].equalsIgnoreCase("job")) {
+            job = true;
+        } else if (words[1].equalsIgnoreCase("car")) {
+            job = false;
+        } else {
+            throw new IllegalArgumentException("unknown request kind '" + words[1] + "'");
+        }
+
+        List<Predicate<Request>> conditions = new ArrayList<>();
+        if (words.length > 2) {
+            if (!words[2].equalsIgnoreCase("when") || words.length == 3) {
+                throw new IllegalArgumentException("expected 'when <condition>' after the request kind");
+            }
+            int i = 3;
+            while (true) {
+                boolean negate = words[i].equalsIgnoreCase("not");
+                if (negate && ++i == words.length) {
+                    throw new IllegalArgumentException("'not' must be followed by a fact");
+                }
+                Predicate<Request> condition;
+                if (i + 2 < words.length && isOperator(words[i + 1])) {
+                    if (negate) {
+                        throw new IllegalArgumentException("'not' only applies to facts");
+                    }
+                    condition = compileComparison(words[i], words[i + 1], words[i + 2], job);
+                    i += 3;
+                } else {
+                    condition = compileFact(words[i], job);
+                    i += 1;
+                    if (negate) {
+                        condition = condition.negate();
+                    }
+                }
+                conditions.add(condition);
+                if (i == words.length) {
+                    break;
+                }
+                if (!words[i].equalsIgnoreCase("and") || ++i == words.length) {
+                    throw new IllegalArgumentException("conditions must be joined with 'and'");
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")   // Arrays of a parameterized type can only be made by cast
+        Predicate<Request>[] compiled = (Predicate<Request>[]) conditions.toArray(new Predicate<?>[0]);
+        Rule rule = new Rule(decision, compiled, source);
+        (job ? jobRules : carRules).add(rule);
+    }
+
+    private static boolean isOperator(String word) {
+        switch (word) {
+            case "<": case "<=": case ">": case ">=": case "==": case "!=":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Predicate<Request> compileComparison(String field, String operator, String literal, boolean job) {
+        ToIntFunction<Request> value;
+        switch (field) {
+            case "duration":
+                value = request -> request.duration;
+                break;
+            case "redundancy":
+                value = request -> request.redundancy;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown field '" + field + "'");
+        }
+        if (!job) {
+            throw new IllegalArgumentException("'" + field + "' only applies to job rules");
+        }
+        int limit;
+        try {
+            limit = Integer.parseInt(literal);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("expected an integer after '" + operator + "', got '" + literal + "'");
+        }
+        IntPredicate test;
+        switch (operator) {
+            case "<":  test = v -> v < limit; break;
+            case "<=": test = v -> v <= limit; break;
+            case ">":  test = v -> v > limit; break;
+            case ">=": test = v -> v >= limit; break;
+            case "==": test = v -> v == limit; break;
+            default:   test = v -> v != limit; break;
+        }
+        return request -> test.test(value.applyAsInt(request));
+    }
+
+    private static Predicate<Request> compileFact(String fact, boolean job) {
+        switch (fact) {
+            case "knownOwner":
+                return request -> request.ownerId != null && request.facts.isKnownOwner(request.ownerId);
+            case "vinRegistered":
+                if (job) {
+                    throw new IllegalArgumentException("'vinRegistered' only applies to car rules");
+                }
+                return request -> request.vinNumber != null && request.facts.isVinRegistered(request.vinNumber);
+            default:
+                throw new IllegalArgumentException("unknown condition '" + fact + "'");
+        }
+    }
+
+    // Finds the first matching rule and counts the outcome
+    public Verdict evaluate(Request request) {
+        Rule[] rules = request.kind == PendingApprovals.Kind.JOB_SUBMISSION ? jobRules : carRules;
+        Verdict verdict = NO_MATCH;
+        for (Rule rule : rules) {
+            if (rule.matches(request)) {
+                verdict = rule.verdict;
+                break;
+            }
+        }
+        switch (verdict.getDecision()) {
+            case APPROVE:
+                autoApproved.increment();
+                break;
+            case REJECT:
+                autoRejected.increment();
+                break;
+            default:
+                escalated.increment();
+                break;
+        }
+        return verdict;
+    }
+
+    public int getRuleCount() {
+        return jobRules.length + carRules.length;
+    }
+
+    public long getAutoApproved() {
+        return autoApproved.sum();
+    }
+
+    public long getAutoRejected() {
+        return autoRejected.sum();
+    }
+
+    public long getEscalated() {
+        return escalated.sum();
+    }
+}
@@ -1,66 +1,95 @@
-// CarRentals.java
-
-import java.util.ArrayList;
-import java.util.List;
-
-public class CarRentals {
-    private String ownerId;
-    private String model;
-    private String brand;
-    private String plateNumber;
-    private String serialNumber;
-    private String vinNum;
-    private String residencyTime;
-    private List<JobRequest> assignedJobs;
-
-    // Constructor
-    public CarRentals(String ownerId, String model, String brand, String plateNumber, String serialNumber, String vinNum, String residencyTime) {
-        this.ownerId = ownerId;
-        this.model = model;
-        this.brand = brand;
-        this.plateNumber = plateNumber;
-        this.serialNumber = serialNumber;
-        this.vinNum = vinNum;
-        this.residencyTime = residencyTime;
-        this.assignedJobs = new ArrayList<>();
-    }
-
-    // Getter methods
-    public String getOwnerId() {
-        return ownerId;
-    }
-
-    public String getVehicleModel() {
-        return model;
-    }
-
-    public String getVehicleBrand() {
-        return brand;
-    }
-
-    public String getPlateNumber() {
-        return plateNumber;
-    }
-
-    public String getSerialNumber() {
-        return serialNumber;
-    }
-
-    public String getVinNumber() {
-        return vinNum;
-    }
-
-    public String getResidencyTime() {
-        return residencyTime;
-    }
-
-    // Method to assign a job to this vehicle
-    public void assignJob(JobRequest job) {
-        assignedJobs.add(job);
-    }
-
-    // Optional: Method to get all assigned jobs for logging or debugging
-    public List<JobRequest> getAssignedJobs() {
-        return assignedJobs;
-    }
-}
+// CarRentals.java
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// A vehicle ready for rental. Owner, model and brand repeat across many
+// vehicles and are held as StringDictionary codes, the residency date as an
+// epoch day; the getters return the original text.
+public class CarRentals {
+    private volatile long carId = -1;  // Storage row id, set by VehicleStore on insert and load; -1 until then
+    private final int ownerCode;       // StringDictionary.USERS
+    private final int modelCode;       // StringDictionary.MODELS
+    private final int brandCode;       // StringDictionary.BRANDS
+    private final String plateNumber;
+    private final String serialNumber;
+    private final String vinNum;
+    private final int residencyDay;    // Epoch day, or Integer.MIN_VALUE with the text in residencyText
+    private final String residencyText;
+    private List<JobRequest> assignedJobs;  // Created on the first assignment
+
+    // Constructor
+    public CarRentals(String ownerId, String model, String brand, String plateNumber, String serialNumber, String vinNum, String residencyTime) {
+        this.ownerCode = StringDictionary.USERS.encode(ownerId);
+        this.modelCode = StringDictionary.MODELS.encode(model);
+        this.brandCode = StringDictionary.BRANDS.encode(brand);
+        this.plateNumber = plateNumber;
+        this.serialNumber = serialNumber;
+        this.vinNum = vinNum;
+        this.residencyDay = parseDay(residencyTime);
+        this.residencyText = residencyDay == Integer.MIN_VALUE ? residencyTime : null;
+    }
+
+    private static int parseDay(String date) {
+        try {
+            LocalDate day = LocalDate.parse(date);
+            return day.toString().equals(date) ? (int) day.toEpochDay() : Integer.MIN_VALUE;
+        } catch (DateTimeParseException | NullPointerException e) {
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    // Getter methods
+    public String getCarId() {
+        long id = carId;
+        return id < 0 ? null : Long.toString(id);
+    }
+
+    public void setCarId(String carId) {
+        this.carId = carId == null ? -1 : Long.parseLong(carId);
+    }
+
+    public String getOwnerId() {
+        return StringDictionary.USERS.decode(ownerCode);
+    }
+
+    public String getVehicleModel() {
+        return StringDictionary.MODELS.decode(modelCode);
+    }
+
+    public String getVehicleBrand() {
+        return StringDictionary.BRANDS.decode(brandCode);
+    }
+
+    public String getPlateNumber() {
+        return plateNumber;
+    }
+
+    public String getSerialNumber() {
+        return serialNumber;
+    }
+
+    public String getVinNumber() {
+        return vinNum;
+    }
+
+    public String getResidencyTime() {
+        return residencyText != null ? residencyText : LocalDate.ofEpochDay(residencyDay).toString();
+    }
+
+    // Method to assign a job to this vehicle
+    public synchronized void assignJob(JobRequest job) {
+        if (assignedJobs == null) {
+            assignedJobs = new ArrayList<>(2);
+        }
+        assignedJobs.add(job);
+    }
+
+    // Optional: Method to get all assigned jobs for logging or debugging
+    public synchronized List<JobRequest> getAssignedJobs() {
+        return assignedJobs == null ? Collections.emptyList() : assignedJobs;
+    }
+}
@@ -2,29 +2,331 @@
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class Client {
     private static final String SERVER_ADDRESS = "localhost";
     private static final int SERVER_PORT = 12345;
+    private static final Pattern JOB_LINE = Pattern.compile(
+            "Job ID: (.*?), Client ID: (.*?), Description: (.*), Duration: (\\d+) hours, Completion Time: (\\d+) hours");
+    private static final String INVALID_DEADLINE =
+            "Error: Invalid date format for job deadline. Please use 'MMM d, yyyy' (e.g., Nov 5, 2024)";
+    private static final Pattern CAR_LINE = Pattern.compile(
+            "Car ID: (.*?), Model: (.*?), Brand: (.*?), Plate Number: (.*?), Serial Number: (.*?), VIN: (.*?), Residency Time: (.*)");
+    // Text connections send PING after this long without a request, well inside
+    // the server's idle timeout; v2 connections answer the server's PINGs instead
+    private static final long HEARTBEAT_MILLIS = 30_000;
+    // Text clients learn an admin's decision by asking APPROVAL_STATUS this often
+    private static final long APPROVAL_POLL_MILLIS = 2_000;
+    private static final Pattern PENDING_REQUEST_ID = Pattern.compile("pending approval \\(request ID: (\\d+)\\)");
+    private static final ScheduledExecutorService APPROVAL_POLLER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "approval-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final String host;
+    private final int port;
     private Socket socket;
     private PrintWriter out;
     private BufferedReader in;
-
-    // Constructor: Establishes a connection to the server
+    private final boolean binary;          // Speaks protocol v2 instead of text lines
+    private DataInputStream binaryIn;
+    private OutputStream binaryOut;
+    // v2 requests waiting for their reply on the current connection, keyed by correlation ID
+    private volatile Map<Integer, CompletableFuture<Frame>> pendingReplies = new ConcurrentHashMap<>();
+    // Requests that need admin approval also wait for the PENDING acknowledgement
+    private volatile Map<Integer, CompletableFuture<Frame>> pendingAcks = new ConcurrentHashMap<>();
+    // False once the server sent GOAWAY or the connection dropped; the next request reconnects
+    private volatile boolean connected;
+    private final AtomicInteger nextCorrelationId = new AtomicInteger();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock textLock = new ReentrantLock();   // One text request/response at a time
+    private volatile long lastRequestNanos = System.nanoTime();
+
+    // Constructor: Establishes a connection to the server.
+    // -Dvcrts.protocol=v2 switches to the binary protocol.
     public Client() {
+        this("v2".equalsIgnoreCase(System.getProperty("vcrts.protocol", "text")));
+    }
+
+    public Client(boolean binary) {
+        this(binary, SERVER_ADDRESS, SERVER_PORT);
+    }
+
+    // Connects somewhere other than the default server, e.g. one a test started
+    Client(boolean binary, String host, int port) {
+        this.binary = binary;
+        this.host = host;
+        this.port = port;
+        connect();
+    }
+
+    // Opens a new connection. Called under writeLock (v2) or textLock (text) when
+    // reconnecting; a previous v2 connection keeps its reader and its own pending
+    // maps until the server has answered what was sent on it and closed it.
+    private void connect() {
         try {
-            socket = new Socket(SERVER_ADDRESS, SERVER_PORT);
-            out = new PrintWriter(socket.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            System.out.println("Connected to the server.");
+            Socket newSocket = new Socket(host, port);
+            socket = newSocket;
+            if (binary) {
+                binaryOut = new BufferedOutputStream(newSocket.getOutputStream());
+                binaryIn = new DataInputStream(new BufferedInputStream(newSocket.getInputStream()));
+                binaryOut.write(ProtocolV2.MAGIC);
+                binaryOut.flush();
+                DataInputStream from = binaryIn;
+                Map<Integer, CompletableFuture<Frame>> replies = new ConcurrentHashMap<>();
+                Map<Integer, CompletableFuture<Frame>> acks = new ConcurrentHashMap<>();
+                pendingReplies = replies;
+                pendingAcks = acks;
+                OutputStream to = binaryOut;
+                Thread reader = new Thread(() -> readReplies(from, to, replies, acks), "vcrts-client-reader");
+                reader.setDaemon(true);
+                reader.start();
+            } else {
+                out = new PrintWriter(newSocket.getOutputStream(), true);
+                in = new BufferedReader(new InputStreamReader(newSocket.getInputStream()));
+                Thread heartbeat = new Thread(() -> sendHeartbeats(newSocket), "vcrts-client-heartbeat");
+                heartbeat.setDaemon(true);
+                heartbeat.start();
+            }
+            connected = true;
+            System.out.println("Connected to the server" + (binary ? " (protocol v2)." : "."));
         } catch (IOException e) {
             System.err.println("Could not connect to server: " + e.getMessage());
         }
     }
+
+    // Sends a v2 frame without waiting for the reply. Many requests can be in flight
+    // on the socket at once; each future completes when the reply carrying its
+    // correlation ID arrives, in whatever order the server answers.
+    public CompletableFuture<Frame> sendAsync(ByteBuffer request) {
+        return sendAsync(request, null);
+    }
+
+    // ack, if given, completes with the first frame for the request (PENDING for
+    // queued requests); the returned future still waits for the final reply
+    private CompletableFuture<Frame> sendAsync(ByteBuffer request, CompletableFuture<Frame> ack) {
+        CompletableFuture<Frame> reply = new CompletableFuture<>();
+        writeLock.lock();
+        try {
+            if (!connected) {
+                connect(); // The server sent GOAWAY or went away; try again (e.g. a restarted or standby server)
+            }
+            if (!connected) {
+                reply.completeExceptionally(new IOException("Not connected to the server"));
+                if (ack != null) {
+                    ack.completeExceptionally(new IOException("Not connected to the server"));
+                }
+                return reply;
+            }
+            int correlationId = nextCorrelationId.incrementAndGet();
+            if (ack != null) {
+                pendingAcks.put(correlationId, ack);
+            }
+            pendingReplies.put(correlationId, reply);
+            ProtocolV2.withCorrelationId(request, correlationId);
+            try {
+                binaryOut.write(request.array(), request.arrayOffset() + request.position(), request.remaining());
+                binaryOut.flush();
+            } catch (IOException e) {
+                connected = false;
+                pendingReplies.remove(correlationId);
+                reply.completeExceptionally(e);
+                if (ack != null) {
+                    pendingAcks.remove(correlationId);
+                    ack.completeExceptionally(e);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return reply;
+    }
+
+    // Reader thread of one connection: hands every reply frame to the request
+    // waiting for it. After GOAWAY it keeps reading until the server has answered
+    // everything sent on this connection and closed it.
+    private void readReplies(DataInputStream from, OutputStream to, Map<Integer, CompletableFuture<Frame>> replies,
+                             Map<Integer, CompletableFuture<Frame>> acks) {
+        try {
+            while (true) {
+                ByteBuffer body = ProtocolV2.readFrameBody(from);
+                Frame frame = Frame.decode(body);
+                if (frame.getOpcode() == Opcode.PING) {
+                    sendPong(to, frame.getCorrelationId());
+                    continue;
+                }
+                if (frame.getOpcode() == Opcode.GOAWAY && frame.getCorrelationId() == 0) {
+                    if (replies == pendingReplies) {
+                        connected = false; // New requests go to a new connection
+                    }
+                    System.out.println("Server is going away: " + frame.readString());
+                    continue;
+                }
+                CompletableFuture<Frame> ack = acks.remove(frame.getCorrelationId());
+                if (ack != null) {
+                    // Rejections skip PENDING, so the final reply doubles as the ack
+                    ack.complete(frame.getOpcode() == Opcode.PENDING ? frame : Frame.decode(body.duplicate().rewind()));
+                }
+                if (frame.getOpcode() == Opcode.PENDING) {
+                    continue; // The final STATUS follows once the admin decides
+                }
+                CompletableFuture<Frame> reply = replies.remove(frame.getCorrelationId());
+                if (reply != null) {
+                    reply.complete(frame);
+                }
+            }
+        } catch (IOException | Frame.ProtocolException e) {
+            if (replies == pendingReplies) {
+                connected = false;
+            }
+            for (Integer correlationId : acks.keySet()) {
+                CompletableFuture<Frame> ack = acks.remove(correlationId);
+                if (ack != null) {
+                    ack.completeExceptionally(e);
+                }
+            }
+            for (Integer correlationId : replies.keySet()) {
+                CompletableFuture<Frame> reply = replies.remove(correlationId);
+                if (reply != null) {
+                    reply.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    // Answers the server's keepalive PING so it does not drop the connection as dead
+    private void sendPong(OutputStream to, int correlationId) throws IOException {
+        ByteBuffer pong = ProtocolV2.withCorrelationId(new FrameWriter(Opcode.PONG).finish(), correlationId);
+        writeLock.lock();
+        try {
+            to.write(pong.array(), pong.arrayOffset() + pong.position(), pong.remaining());
+            to.flush();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Heartbeat thread for a text connection: sends PING whenever it has been quiet
+    // for HEARTBEAT_MILLIS. A request in progress counts as traffic, so the PING is
+    // skipped rather than waiting for it. Ends when the client reconnects.
+    private void sendHeartbeats(Socket mine) {
+        long interval = TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_MILLIS);
+        while (socket == mine && !mine.isClosed()) {
+            try {
+                Thread.sleep(HEARTBEAT_MILLIS / 3);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (System.nanoTime() - lastRequestNanos < interval || !textLock.tryLock()) {
+                continue;
+            }
+            try {
+                if (socket != mine || !connected) {
+                    return;
+                }
+                lastRequestNanos = System.nanoTime();
+                out.println("PING");
+                String line;
+                while ((line = in.readLine()) != null && !line.isEmpty()) {
+                    // Skip the PONG up to the end-of-response blank line
+                }
+                if (line == null) {
+                    connected = false; // Server closed the connection
+                    return;
+                }
+            } catch (IOException e) {
+                connected = false;
+                return;
+            } finally {
+                textLock.unlock();
+            }
+        }
+    }
+
+    // Sends a v2 frame whose reply is a STATUS frame and completes with its message
+    public CompletableFuture<String> statusAsync(ByteBuffer request) {
+        return sendAsync(request).thenApply(Client::statusMessage);
+    }
+
+    // Sends a request the server queues for admin approval. The returned future is
+    // the acknowledgement message; outcome completes with the admin's decision.
+    private CompletableFuture<String> approvalAsync(ByteBuffer request, CompletableFuture<String> outcome) {
+        CompletableFuture<Frame> ack = new CompletableFuture<>();
+        sendAsync(request, ack).thenApply(Client::statusMessage).whenComplete((message, error) -> {
+            if (error != null) {
+                outcome.completeExceptionally(error);
+            } else {
+                outcome.complete(message);
+            }
+        });
+        return ack.thenApply(response -> {
+            if (response.getOpcode() != Opcode.PENDING) {
+                return statusMessage(response);
+            }
+            try {
+                response.readLong(); // Request ID, repeated in the message
+                return response.readString();
+            } catch (Frame.ProtocolException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    private static String statusMessage(Frame response) {
+        try {
+            if (response.getOpcode() == Opcode.BUSY) {
+                response.readInt(); // Retry hint, repeated in the message
+                return response.readString();
+            }
+            if (response.getOpcode() == Opcode.GOAWAY) {
+                return response.readString(); // Not processed; the next request reconnects
+            }
+            if (response.getOpcode() != Opcode.STATUS) {
+                return "[ERROR] Unexpected response: " + response.getOpcode();
+            }
+            response.readBoolean();
+            return response.readString();
+        } catch (Frame.ProtocolException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    // Waits for a pending reply, turning failures into the usual error text
+    private static String await(CompletableFuture<String> reply) {
+        try {
+            return reply.join();
+        } catch (CompletionException e) {
+            System.err.println("[ERROR] Error communicating with server: " + e.getCause().getMessage());
+            return "[ERROR] Could not complete request.";
+        }
+    }
+
+    private String exchangeStatus(ByteBuffer request) {
+        return await(statusAsync(request));
+    }
+
     public void clearBuffer() {
+        if (binary) {
+            return; // Frames are length-prefixed, nothing can linger
+        }
         try {
             while (in.ready()) {
                 String lingeringOutput = in.readLine();
@@ -39,8 +341,26 @@ public class Client {
     // Sends a request to the server and returns the server's response
  // Client.java: Updated `sendRequest` method
     public String sendRequest(String request) {
-    	clearBuffer();
+        if (binary) {
+            return exchangeStatus(new FrameWriter(Opcode.TEXT_REQUEST).putString(request).finish());
+        }
+        return sendTextRequest(request, true);
+    }
+
+    // retry: a draining server only closes a text connection between requests, so a
+    // close before any byte of the response means the request was never read and
+    // can safely be sent again on a new connection
+    private String sendTextRequest(String request, boolean retry) {
+        textLock.lock();
         try {
+            if (!connected) {
+                connect(); // The server drained or dropped the last connection
+                if (!connected) {
+                    return "[ERROR] Could not complete request.";
+                }
+            }
+            clearBuffer();
+            lastRequestNanos = System.nanoTime();
             System.out.println("[DEBUG] Sending request: " + request);
             out.println(request); // Send the request
             out.flush();          // Ensure the request is sent immediately
@@ -55,6 +375,16 @@ public class Client {
                 }
                 responseBuilder.append(line).append("\n");
             }
+            if (line == null) {
+                connected = false; // Closed by the server, e.g. while draining
+                if (responseBuilder.length() == 0) {
+                    if (retry) {
+                        return sendTextRequest(request, false);
+                    }
+                    System.err.println("[ERROR] Connection closed by server.");
+                    return "[ERROR] Could not complete request.";
+                }
+            }
 
             String response = responseBuilder.toString().trim();
             System.out.println("[DEBUG] Received response: " + response);
@@ -63,6 +393,8 @@ public class Client {
         } catch (IOException e) {
             System.err.println("[ERROR] Error communicating with server: " + e.getMessage());
             return "[ERROR] Could not complete request.";
+        } finally {
+            textLock.unlock();
         }
     }
 
@@ -85,6 +417,18 @@ public class Client {
             return "Error: Invalid date format. Please use 'MMM d, yyyy' (e.g., Nov 5, 2024)";
         }
 
+        if (binary) {
+            return exchangeStatus(new FrameWriter(Opcode.REGISTER)
+                    .putString(firstName.trim())
+                    .putString(lastName.trim())
+                    .putString(username.trim())
+                    .putString(email.trim())
+                    .putString(formattedDob)
+                    .putString(password.trim())
+                    .putString(accountType.trim())
+                    .finish());
+        }
+
         // Format the command with quoted fields to handle spaces in user inputs
         String request = String.format("REGISTER \"%s\" \"%s\" \"%s\" \"%s\" \"%s\" \"%s\" \"%s\"",
                 firstName.trim(),
@@ -101,12 +445,18 @@ public class Client {
 
     //Handles Vehicle Removal 
     public String removeVehicle(String ownerId, String vinNumber) {
+        if (binary) {
+            return exchangeStatus(new FrameWriter(Opcode.REMOVE_VEHICLE).putString(ownerId).putString(vinNumber).finish());
+        }
         String request = "REMOVE_VEHICLE " + ownerId + " " + vinNumber;
         return sendRequest(request);
     }
 
     // Logs in the user and identifies if they are a VCCController
     public String login(String username, String password) {
+        if (binary) {
+            return await(loginAsync(username, password));
+        }
         String request = String.format("LOGIN %s %s", username.trim(), password.trim());
         System.out.println("Sending login command: " + request); // Debugging output
         String response = sendRequest(request);
@@ -117,6 +467,9 @@ public class Client {
     // Requests all jobs for a VCCController to view job information
     public String requestAllJobs() {
         System.out.println("Requesting all jobs for VCC Controller");
+        if (binary) {
+            return formatJobList(fetchJobs());
+        }
         String response = sendRequest("GET_ALL_JOBS"); // Send the request to the server
         System.out.println("Received response: \n" + response); // Debugging
 
@@ -130,8 +483,23 @@ public class Client {
 
 
 
-    // Submits a job with the given details to the server
+    // Submits a job with the given details to the server. The server queues it for
+    // the admin, so the response is the pending notice with its request ID.
     public String submitJob(String clientId, String jobDescription, int duration, int redundancyLevel, String jobDeadline) {
+        return submitJob(clientId, jobDescription, duration, redundancyLevel, jobDeadline, null);
+    }
+
+    // As above; if the job was queued for the admin, onDecision is later called
+    // (on a background thread) with the admin's decision
+    public String submitJob(String clientId, String jobDescription, int duration, int redundancyLevel, String jobDeadline,
+                            Consumer<String> onDecision) {
+        if (binary) {
+            ByteBuffer request = jobSubmitFrame(clientId, jobDescription, duration, redundancyLevel, jobDeadline);
+            if (request == null) {
+                return INVALID_DEADLINE;
+            }
+            return awaitApproval(request, onDecision);
+        }
         String formattedDeadline;
         try {
             // Parse the date assuming the input might be in "MMM d, yyyy" format
@@ -139,26 +507,87 @@ public class Client {
             // Format it to "yyyy-MM-dd" for consistency
             formattedDeadline = parsedDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
         } catch (DateTimeParseException e) {
-            return "Error: Invalid date format for job deadline. Please use 'MMM d, yyyy' (e.g., Nov 5, 2024)";
+            return INVALID_DEADLINE;
         }
 
         // Enclose jobDescription in quotes to handle spaces
         String request = String.format("JOB_SUBMIT %s \"%s\" %d %d %s", clientId, jobDescription, duration, redundancyLevel, formattedDeadline);
-        return sendRequest(request);
+        return watchApproval(sendRequest(request), onDecision);
     }
 
 
 
     // Sends a notification to the server indicating a car is ready
     public String notifyCarReady(String ownerId, String vehicleModel, String vehicleBrand, String plateNumber, String serialNumber, String vinNumber, String residencyTime) {
+        return notifyCarReady(ownerId, vehicleModel, vehicleBrand, plateNumber, serialNumber, vinNumber, residencyTime, null);
+    }
+
+    // As above, with onDecision called later if the car was queued for the admin
+    public String notifyCarReady(String ownerId, String vehicleModel, String vehicleBrand, String plateNumber, String serialNumber,
+                                 String vinNumber, String residencyTime, Consumer<String> onDecision) {
+        if (binary) {
+            return awaitApproval(carReadyFrame(ownerId, vehicleModel, vehicleBrand, plateNumber, serialNumber,
+                    vinNumber, residencyTime), onDecision);
+        }
         String request = String.format("CAR_READY %s %s %s %s %s %s %s", 
             ownerId.trim(), vehicleModel.trim(), vehicleBrand.trim(), plateNumber.trim(), 
             serialNumber.trim(), vinNumber.trim(), residencyTime.trim());
-        return sendRequest(request);
+        return watchApproval(sendRequest(request), onDecision);
+    }
+
+    // v2: the decision arrives as a later STATUS frame on this connection. If the
+    // connection drops first, fall back to polling like a text client.
+    private String awaitApproval(ByteBuffer request, Consumer<String> onDecision) {
+        CompletableFuture<String> outcome = new CompletableFuture<>();
+        String response = await(approvalAsync(request, outcome));
+        long requestId = pendingRequestId(response);
+        if (onDecision != null && requestId > 0) {
+            outcome.whenComplete((decision, error) -> {
+                if (error == null) {
+                    onDecision.accept(decision);
+                } else {
+                    pollApproval(requestId, onDecision);
+                }
+            });
+        }
+        return response;
+    }
+
+    // Text: starts polling APPROVAL_STATUS if the response is a pending notice
+    private String watchApproval(String response, Consumer<String> onDecision) {
+        long requestId = pendingRequestId(response);
+        if (onDecision != null && requestId > 0) {
+            pollApproval(requestId, onDecision);
+        }
+        return response;
+    }
+
+    // The request ID of a pending notice, or 0 if the response is something else
+    private static long pendingRequestId(String response) {
+        Matcher matcher = PENDING_REQUEST_ID.matcher(response);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    // Asks for the status every APPROVAL_POLL_MILLIS until it is no longer pending.
+    // Busy replies and lost connections are retried; the server forgetting the ID
+    // (e.g. after a restart) is a decision like any other.
+    private void pollApproval(long requestId, Consumer<String> onDecision) {
+        APPROVAL_POLLER.schedule(() -> {
+            String status = approvalStatus(requestId).trim();
+            if (status.endsWith("is pending approval.") || status.startsWith(AdmissionControl.BUSY_PREFIX)
+                    || status.startsWith("[ERROR]")) {
+                pollApproval(requestId, onDecision);
+            } else {
+                onDecision.accept(status);
+            }
+        }, APPROVAL_POLL_MILLIS, TimeUnit.MILLISECONDS);
     }
 
     // Requests job completion times for a specific client
     public String requestVCCJobTimes(String clientId, String role) {
+        if (binary) {
+            return formatJobList(fetchJobs());
+        }
         String request = "DISPLAY_JOB_TIMES " + clientId + " " + role;
         System.out.println("Sending job times request to server: " + request);
         String response = sendRequest(request);  // Get full response from server
@@ -167,12 +596,233 @@ public class Client {
     }
 
 
+    // Looks up the outcome of a request queued for admin approval
+    public String approvalStatus(long requestId) {
+        if (binary) {
+            return exchangeStatus(new FrameWriter(Opcode.APPROVAL_STATUS).putLong(requestId).finish());
+        }
+        return sendRequest("APPROVAL_STATUS " + requestId);
+    }
+
+    // Marks a job as complete by its ID
+    public String markJobComplete(String jobId) {
+        if (binary) {
+            return exchangeStatus(new FrameWriter(Opcode.MARK_COMPLETE).putString(jobId).finish());
+        }
+        return sendRequest("MARK_COMPLETE " + jobId);
+    }
+
+    // Returns the queued jobs with their completion times. Over v2 the fields arrive
+    // typed; over the text protocol they are parsed back out of the response lines.
+    public List<JobListing> fetchJobs() {
+        if (binary) {
+            try {
+                return fetchJobsAsync().join();
+            } catch (CompletionException e) {
+                System.err.println("[ERROR] Error communicating with server: " + e.getCause().getMessage());
+                return new ArrayList<>();
+            }
+        }
+        return parseJobLines(sendRequest("GET_ALL_JOBS"));
+    }
+
+    // Completion times of count queued jobs from position from (0 for the head),
+    // answered by the server's completion-time index without listing the queue
+    public List<JobListing> fetchJobTimes(int from, int count) {
+        if (binary) {
+            return exchangeJobList(new FrameWriter(Opcode.DISPLAY_JOB_TIMES).putString(null).putInt(from).putInt(count).finish());
+        }
+        return parseJobLines(sendRequest("DISPLAY_JOB_TIMES FROM " + from + " " + count));
+    }
+
+    // The estimated completion time of one job; empty if it is not queued
+    public List<JobListing> fetchJobTime(String jobId) {
+        if (binary) {
+            return exchangeJobList(new FrameWriter(Opcode.DISPLAY_JOB_TIMES).putString(jobId).finish());
+        }
+        return parseJobLines(sendRequest("DISPLAY_JOB_TIMES " + jobId));
+    }
+
+    private List<JobListing> exchangeJobList(ByteBuffer request) {
+        try {
+            return sendAsync(request).thenApply(Client::readJobList).join();
+        } catch (CompletionException e) {
+            System.err.println("[ERROR] Error communicating with server: " + e.getCause().getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    // Jobs from the text form of a job list; redundancy and deadline are not in it
+    private static List<JobListing> parseJobLines(String response) {
+        List<JobListing> jobs = new ArrayList<>();
+        for (String line : response.split("\n")) {
+            Matcher matcher = JOB_LINE.matcher(line.trim());
+            if (matcher.matches()) {
+                jobs.add(new JobListing(matcher.group(1), matcher.group(2), matcher.group(3),
+                        Integer.parseInt(matcher.group(4)), 0, null, Integer.parseInt(matcher.group(5))));
+            }
+        }
+        return jobs;
+    }
+
+    private static List<JobListing> readJobList(Frame response) {
+        List<JobListing> jobs = new ArrayList<>();
+        try {
+            if (response.getOpcode() == Opcode.BUSY || response.getOpcode() == Opcode.GOAWAY) {
+                throw new CompletionException(new IOException(statusMessage(response)));
+            }
+            if (response.getOpcode() != Opcode.JOB_LIST) {
+                return jobs;
+            }
+            int count = response.readInt();
+            for (int i = 0; i < count; i++) {
+                jobs.add(new JobListing(response.readString(), response.readString(), response.readString(),
+                        response.readInt(), response.readInt(), response.readString(), response.readInt()));
+            }
+            return jobs;
+        } catch (Frame.ProtocolException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    // Asynchronous variants. Over v2 they only write the request and return, so a
+    // caller can issue e.g. login, GET_CARS and a job submission back to back and
+    // wait for all three replies together. Over text they run synchronously.
+    // Job submissions and car readiness complete with the admin's decision over v2;
+    // over text they complete with the pending notice.
+
+    public CompletableFuture<String> loginAsync(String username, String password) {
+        if (!binary) {
+            return CompletableFuture.completedFuture(login(username, password));
+        }
+        return statusAsync(new FrameWriter(Opcode.LOGIN).putString(username.trim()).putString(password.trim()).finish());
+    }
+
+    public CompletableFuture<String> submitJobAsync(String clientId, String jobDescription, int duration, int redundancyLevel, String jobDeadline) {
+        if (!binary) {
+            CompletableFuture<String> outcome = new CompletableFuture<>();
+            String response = submitJob(clientId, jobDescription, duration, redundancyLevel, jobDeadline, outcome::complete);
+            if (pendingRequestId(response) == 0) {
+                outcome.complete(response);   // Decided (or refused) right away
+            }
+            return outcome;
+        }
+        ByteBuffer request = jobSubmitFrame(clientId, jobDescription, duration, redundancyLevel, jobDeadline);
+        if (request == null) {
+            return CompletableFuture.completedFuture(INVALID_DEADLINE);
+        }
+        CompletableFuture<String> outcome = new CompletableFuture<>();
+        approvalAsync(request, outcome);
+        return outcome;
+    }
+
+    public CompletableFuture<String> notifyCarReadyAsync(String ownerId, String vehicleModel, String vehicleBrand, String plateNumber, String serialNumber, String vinNumber, String residencyTime) {
+        if (!binary) {
+            CompletableFuture<String> outcome = new CompletableFuture<>();
+            String response = notifyCarReady(ownerId, vehicleModel, vehicleBrand, plateNumber, serialNumber, vinNumber,
+                    residencyTime, outcome::complete);
+            if (pendingRequestId(response) == 0) {
+                outcome.complete(response);   // Decided (or refused) right away
+            }
+            return outcome;
+        }
+        CompletableFuture<String> outcome = new CompletableFuture<>();
+        approvalAsync(carReadyFrame(ownerId, vehicleModel, vehicleBrand, plateNumber, serialNumber, vinNumber, residencyTime),
+                outcome);
+        return outcome;
+    }
+
+    // JOB_SUBMIT frame, or null if the deadline is not in "MMM d, yyyy" form
+    private static ByteBuffer jobSubmitFrame(String clientId, String jobDescription, int duration, int redundancyLevel, String jobDeadline) {
+        String formattedDeadline;
+        try {
+            formattedDeadline = LocalDate.parse(jobDeadline, DateTimeFormatter.ofPattern("MMM d, yyyy"))
+                    .format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+        return new FrameWriter(Opcode.JOB_SUBMIT)
+                .putString(clientId)
+                .putString(jobDescription)
+                .putInt(duration)
+                .putInt(redundancyLevel)
+                .putString(formattedDeadline)
+                .finish();
+    }
+
+    private static ByteBuffer carReadyFrame(String ownerId, String vehicleModel, String vehicleBrand, String plateNumber, String serialNumber, String vinNumber, String residencyTime) {
+        return new FrameWriter(Opcode.CAR_READY)
+                .putString(ownerId.trim())
+                .putString(vehicleModel.trim())
+                .putString(vehicleBrand.trim())
+                .putString(plateNumber.trim())
+                .putString(serialNumber.trim())
+                .putString(vinNumber.trim())
+                .putString(residencyTime.trim())
+                .finish();
+    }
+
+    public CompletableFuture<List<JobListing>> fetchJobsAsync() {
+        if (!binary) {
+            return CompletableFuture.completedFuture(fetchJobs());
+        }
+        return sendAsync(new FrameWriter(Opcode.GET_ALL_JOBS).finish()).thenApply(Client::readJobList);
+    }
+
+    // Vehicles registered by an owner, as {carId, ownerId, model, brand, plateNumber,
+    // serialNumber, vinNumber, residencyTime}
+    public CompletableFuture<List<String[]>> getCarsAsync(String ownerId) {
+        if (!binary) {
+            List<String[]> cars = new ArrayList<>();
+            for (String line : sendRequest("GET_CARS " + ownerId).split("\n")) {
+                Matcher matcher = CAR_LINE.matcher(line.trim());
+                if (matcher.matches()) {
+                    cars.add(new String[]{matcher.group(1), ownerId, matcher.group(2), matcher.group(3),
+                            matcher.group(4), matcher.group(5), matcher.group(6), matcher.group(7)});
+                }
+            }
+            return CompletableFuture.completedFuture(cars);
+        }
+        return sendAsync(new FrameWriter(Opcode.GET_CARS).putString(ownerId).finish()).thenApply(response -> {
+            List<String[]> cars = new ArrayList<>();
+            try {
+                if (response.getOpcode() != Opcode.VEHICLE_LIST) {
+                    return cars;
+                }
+                int count = response.readInt();
+                for (int i = 0; i < count; i++) {
+                    String[] car = new String[8];
+                    for (int field = 0; field < car.length; field++) {
+                        car[field] = response.readString();
+                    }
+                    cars.add(car);
+                }
+                return cars;
+            } catch (Frame.ProtocolException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    private static String formatJobList(List<JobListing> jobs) {
+        if (jobs.isEmpty()) {
+            return "No jobs found for the specified client ID.";
+        }
+        StringBuilder text = new StringBuilder("All Assigned Jobs and Completion Times:\n");
+        for (JobListing job : jobs) {
+            text.append(job.toDisplayString()).append("\n");
+        }
+        return text.toString().trim();
+    }
+
     // Closes the client socket and associated streams
     public void close() {
         try {
             if (socket != null) socket.close();
             if (in != null) in.close();
             if (out != null) out.close();
+            if (binaryIn != null) binaryIn.close();
+            if (binaryOut != null) binaryOut.close();
         } catch (IOException e) {
             System.err.println("Error closing client: " + e.getMessage());
         }
@@ -0,0 +1,159 @@
+// ClientSession.java
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Server-side state of one client connection, whichever transport accepted it.
+// The transport records activity and how to close the socket or push a frame to
+// it; ConnectedClients uses that to find and reap idle or half-open connections.
+public class ClientSession {
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+    private static final int DRAINED = Integer.MIN_VALUE;   // activeRequests once closeIfIdle() won
+
+    // Protocol spoken on the connection, known after its first byte
+    public enum Protocol {
+        UNKNOWN,
+        TEXT,
+        V2
+    }
+
+    private final long id;
+    private final String remoteAddress;
+    private final TokenBucket requestBucket;   // Per-connection rate limit, null when unlimited
+    private final long openedAtMillis;
+    private volatile long lastActivityNanos;
+    private volatile Protocol protocol = Protocol.UNKNOWN;
+    private volatile String authenticatedUser;
+    private volatile Runnable closer;                   // Closes the socket, set by the transport
+    private volatile Consumer<ByteBuffer> frameSender;  // Pushes an unsolicited v2 frame, null for text
+    private volatile boolean closed;
+    private final AtomicInteger activeRequests = new AtomicInteger();   // Read but not yet answered
+    long pingSentNanos;                                 // Only used by the ConnectedClients reaper thread
+
+    public ClientSession(String remoteAddress, TokenBucket requestBucket) {
+        this.id = NEXT_ID.incrementAndGet();
+        this.remoteAddress = remoteAddress;
+        this.requestBucket = requestBucket;
+        this.openedAtMillis = System.currentTimeMillis();
+        this.lastActivityNanos = System.nanoTime();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public TokenBucket getRequestBucket() {
+        return requestBucket;
+    }
+
+    public long getOpenedAtMillis() {
+        return openedAtMillis;
+    }
+
+    // Called by the transport whenever bytes arrive from the client
+    public void touch() {
+        lastActivityNanos = System.nanoTime();
+    }
+
+    public long getLastActivityNanos() {
+        return lastActivityNanos;
+    }
+
+    public Protocol getProtocol() {
+        return protocol;
+    }
+
+    public void setProtocol(Protocol protocol) {
+        this.protocol = protocol;
+    }
+
+    // Username of the last successful LOGIN on this connection, or null
+    public String getAuthenticatedUser() {
+        return authenticatedUser;
+    }
+
+    public void setAuthenticatedUser(String authenticatedUser) {
+        this.authenticatedUser = authenticatedUser;
+    }
+
+    public void setCloser(Runnable closer) {
+        this.closer = closer;
+    }
+
+    public void setFrameSender(Consumer<ByteBuffer> frameSender) {
+        this.frameSender = frameSender;
+    }
+
+    // Sends a frame the client did not ask for (e.g. PING); false for text connections
+    public boolean sendFrame(ByteBuffer frame) {
+        Consumer<ByteBuffer> sender = frameSender;
+        if (sender == null || closed) {
+            return false;
+        }
+        sender.accept(frame);
+        return true;
+    }
+
+    // Called by the transport when it starts on a request read from the socket.
+    // False once the connection was closed for draining; the request is dropped.
+    public boolean beginRequest() {
+        while (true) {
+            int active = activeRequests.get();
+            if (active == DRAINED) {
+                return false;
+            }
+            if (activeRequests.compareAndSet(active, active + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Called once the response to a request has been handed to the socket
+    public void endRequest() {
+        activeRequests.decrementAndGet();
+    }
+
+    public int getActiveRequests() {
+        return Math.max(0, activeRequests.get());
+    }
+
+    // Closes the connection only if no request is in progress on it; used while
+    // draining so that every request already read still gets its answer
+    public boolean closeIfIdle() {
+        if (!activeRequests.compareAndSet(0, DRAINED)) {
+            return false;
+        }
+        close();
+        return true;
+    }
+
+    // Closes the connection from any thread
+    public void close() {
+        closed = true;
+        Runnable action = closer;
+        if (action != null) {
+            action.run();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Marks the session closed after the transport closed the socket itself
+    void markClosed() {
+        closed = true;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + id + " " + remoteAddress + " " + protocol
+                + (authenticatedUser != null ? " (" + authenticatedUser + ")" : "");
+    }
+}
@@ -0,0 +1,75 @@
+// CommandRegistry.java
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+// Maps each command to its handlers so a request is routed with one table lookup
+// instead of a chain of startsWith checks. Text commands are found by hashing the
+// first token in place; v2 frames index straight into an array by opcode.
+public class CommandRegistry {
+
+    // Handles a tokenized text command line from the given connection
+    public interface TextHandler {
+        String handle(ClientSession session, RequestTokenizer tokens);
+    }
+
+    // Handles a decoded v2 frame and returns the response frame. A handler that
+    // cannot answer yet returns an acknowledgement and later passes the final
+    // frame to laterReply.
+    public interface FrameHandler {
+        ByteBuffer handle(ClientSession session, Frame frame, Consumer<ByteBuffer> laterReply) throws Frame.ProtocolException;
+    }
+
+    private static final int TABLE_SIZE = 64;   // Power of two, well above the number of commands
+
+    private final TextHandler[] textHandlers = new TextHandler[Opcode.values().length];
+    private final FrameHandler[] frameHandlers = new FrameHandler[Opcode.values().length];
+    private final String[] keywords = new String[TABLE_SIZE];   // Open addressing on the keyword hash
+    private final Opcode[] keywordOpcodes = new Opcode[TABLE_SIZE];
+
+    // Registers the text keyword (the opcode's name) and both handlers for a command.
+    // Either handler may be null when the command only exists in one protocol.
+    public CommandRegistry register(Opcode opcode, TextHandler textHandler, FrameHandler frameHandler) {
+        textHandlers[opcode.ordinal()] = textHandler;
+        frameHandlers[opcode.ordinal()] = frameHandler;
+        if (textHandler != null) {
+            String keyword = opcode.name();
+            int slot = keyword.hashCode() & (TABLE_SIZE - 1);
+            while (keywords[slot] != null && !keywords[slot].equals(keyword)) {
+                slot = (slot + 1) & (TABLE_SIZE - 1);
+            }
+            keywords[slot] = keyword;
+            keywordOpcodes[slot] = opcode;
+        }
+        return this;
+    }
+
+    // Finds the command named by the first token, or null if there is none.
+    // The hash matches String.hashCode() so registration can use the keyword directly.
+    public Opcode lookup(RequestTokenizer tokens) {
+        if (tokens.count() == 0) {
+            return null;
+        }
+        int length = tokens.length(0);
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + tokens.charAt(0, i);
+        }
+        int slot = hash & (TABLE_SIZE - 1);
+        while (keywords[slot] != null) {
+            if (tokens.tokenEquals(0, keywords[slot])) {
+                return keywordOpcodes[slot];
+            }
+            slot = (slot + 1) & (TABLE_SIZE - 1);
+        }
+        return null;
+    }
+
+    public TextHandler textHandler(Opcode opcode) {
+        return textHandlers[opcode.ordinal()];
+    }
+
+    public FrameHandler frameHandler(Opcode opcode) {
+        return frameHandlers[opcode.ordinal()];
+    }
+}
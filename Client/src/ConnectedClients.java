@@ -0,0 +1,150 @@
+// ConnectedClients.java
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Registry of live client connections. Both transports add a session when they
+// accept a socket and remove it when it closes. A reaper thread walks a timer
+// wheel: a connection silent for idleTimeout is sent a PING if it speaks v2 and
+// closed if no answer arrives within pingTimeout; text connections (which cannot
+// be pinged, their clients send PING themselves) are closed once idle. This frees
+// the pool threads and sockets held by crashed or unreachable clients.
+public class ConnectedClients {
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SLOTS = 512;
+
+    private final Map<Long, ClientSession> sessions = new ConcurrentHashMap<>();
+    private final long idleTimeoutNanos;
+    private final long pingTimeoutNanos;
+    private final Consumer<String> logger;
+    private final TimerWheel<ClientSession> wheel;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder reapedIdle = new LongAdder();
+    private final LongAdder reapedUnanswered = new LongAdder();
+    private volatile Thread reaper;
+
+    public ConnectedClients(long idleTimeoutMillis, long pingTimeoutMillis, Consumer<String> logger) {
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.pingTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(pingTimeoutMillis);
+        this.logger = logger;
+        this.wheel = new TimerWheel<>(TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS), WHEEL_SLOTS, System.nanoTime());
+    }
+
+    public void add(ClientSession session) {
+        sessions.put(session.getId(), session);
+        accepted.increment();
+        if (idleTimeoutNanos > 0) {
+            wheel.schedule(session, session.getLastActivityNanos() + idleTimeoutNanos);
+        }
+    }
+
+    public void remove(ClientSession session) {
+        session.markClosed();
+        sessions.remove(session.getId());
+    }
+
+    public List<ClientSession> getAll() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    // Live connections
+    public int size() {
+        return sessions.size();
+    }
+
+    // Live connections per protocol (UNKNOWN: nothing received yet)
+    public Map<ClientSession.Protocol, Integer> countByProtocol() {
+        Map<ClientSession.Protocol, Integer> counts = new EnumMap<>(ClientSession.Protocol.class);
+        for (ClientSession.Protocol protocol : ClientSession.Protocol.values()) {
+            counts.put(protocol, 0);
+        }
+        for (ClientSession session : sessions.values()) {
+            counts.merge(session.getProtocol(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    public int countAuthenticated() {
+        int count = 0;
+        for (ClientSession session : sessions.values()) {
+            if (session.getAuthenticatedUser() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getReapedIdle() {
+        return reapedIdle.sum();
+    }
+
+    public long getReapedUnanswered() {
+        return reapedUnanswered.sum();
+    }
+
+    // Starts the reaper thread; a no-op when idle timeouts are disabled
+    public void start() {
+        if (idleTimeoutNanos <= 0 || reaper != null) {
+            return;
+        }
+        Thread thread = new Thread(this::runReaper, "connection-reaper");
+        thread.setDaemon(true);
+        reaper = thread;
+        thread.start();
+    }
+
+    public void stop() {
+        Thread thread = reaper;
+        reaper = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void runReaper() {
+        while (reaper == Thread.currentThread()) {
+            try {
+                Thread.sleep(TICK_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            reap(System.nanoTime());
+        }
+    }
+
+    // Checks the sessions whose timer expired. Most were active since they were
+    // scheduled, so they are simply rescheduled from their last activity.
+    void reap(long now) {
+        for (ClientSession session : wheel.advance(now)) {
+            if (session.isClosed() || !sessions.containsKey(session.getId())) {
+                continue; // Already gone, drop the timer
+            }
+            long lastActivity = session.getLastActivityNanos();
+            if (session.pingSentNanos != 0 && lastActivity - session.pingSentNanos >= 0) {
+                session.pingSentNanos = 0; // Answered (or other traffic arrived) since the PING
+            }
+            if (now - lastActivity < idleTimeoutNanos) {
+                wheel.schedule(session, lastActivity + idleTimeoutNanos);
+            } else if (session.pingSentNanos == 0 && session.sendFrame(new FrameWriter(Opcode.PING).finish())) {
+                session.pingSentNanos = now;
+                wheel.schedule(session, now + pingTimeoutNanos);
+            } else {
+                boolean unanswered = session.pingSentNanos != 0;
+                (unanswered ? reapedUnanswered : reapedIdle).increment();
+                logger.accept("Closing " + (unanswered ? "unresponsive" : "idle") + " connection " + session);
+                remove(session);
+                session.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,412 @@
+// ConnectionPool.java
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// JDBC connections shared by VCController and UserManager. Opening a MySQL
+// connection costs a TCP and auth handshake, far more than the single statement
+// most requests run, so connections are kept open and lent out:
+//
+//   try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+//       PreparedStatement statement = connection.prepare("SELECT ... WHERE id = ?");
+//       ...
+//   }
+//
+// At most maxSize connections exist; borrow() waits up to borrowTimeout for one.
+// A connection idle for a while is validated before it is lent out again. Each
+// connection keeps its own LRU cache of prepared statements, which callers must
+// not close. A connection held longer than leakThreshold is reported once, with
+// the stack of the thread that borrowed it as it is at that moment. Borrowing
+// only records the thread; no stack is captured until a leak is suspected.
+public class ConnectionPool {
+    private static final long VALIDATION_BYPASS_NANOS = TimeUnit.MILLISECONDS.toNanos(500);  // Recently used: skip the ping
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    // Opens a physical connection; DriverManager outside of tests
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long borrowTimeoutNanos;
+    private final long leakThresholdNanos;       // 0 disables leak detection
+    private final int statementCacheSize;
+    private final Semaphore permits;             // One per connection that may be lent out
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();   // Most recently returned first, under idleLock
+    private final ReentrantLock idleLock = new ReentrantLock();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private volatile Consumer<String> logger = System.err::println;
+    private volatile Thread leakChecker;
+    private volatile boolean closed;
+
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder waits = new LongAdder();          // Borrows that found every connection in use
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder leaks = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+    private final AtomicInteger peakBorrowed = new AtomicInteger();
+
+    public ConnectionPool(ConnectionFactory factory, int maxSize, long borrowTimeoutMillis,
+                          long leakThresholdMillis, int statementCacheSize) {
+        this.factory = factory;
+        this.maxSize = Math.max(1, maxSize);
+        this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        this.leakThresholdNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis);
+        this.statementCacheSize = Math.max(1, statementCacheSize);
+        this.permits = new Semaphore(this.maxSize, true);
+    }
+
+    // Reads the database settings from system properties, e.g. -Dvcrts.db.poolSize=20
+    public static ConnectionPool fromSystemProperties() {
+        String url = System.getProperty("vcrts.db.url", "jdbc:mysql://localhost:3306/sys?useCursorFetch=true");
+        String user = System.getProperty("vcrts.db.user", "root");
+        String password = System.getProperty("vcrts.db.password", "HmP9HC6RAjRaSolvPqpcJmbj3wR+UuSUUywHMQgWm7M=");
+        return new ConnectionPool(() -> DriverManager.getConnection(url, user, password),
+                Integer.getInteger("vcrts.db.poolSize", 10),
+                Long.getLong("vcrts.db.borrowTimeoutMillis", 5_000),
+                Long.getLong("vcrts.db.leakThresholdMillis", 30_000),
+                Integer.getInteger("vcrts.db.statementCacheSize", 32));
+    }
+
+    // Where leak reports and validation failures go (System.err by default)
+    public void setLogger(Consumer<String> logger) {
+        this.logger = logger;
+    }
+
+    // Lends out a connection, waiting up to the borrow timeout when all are in use
+    public PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        if (!permits.tryAcquire()) {
+            waits.increment();
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(borrowTimeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+            long waited = System.nanoTime() - start;
+            waitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            if (!acquired) {
+                timeouts.increment();
+                throw new SQLException("No database connection available after "
+                        + TimeUnit.NANOSECONDS.toMillis(waited) + " ms (pool size " + maxSize + ")");
+            }
+        }
+        try {
+            PooledConnection connection = takeIdle();
+            if (connection == null) {
+                connection = new PooledConnection(factory.open());
+                created.increment();
+            }
+            connection.borrowedAtNanos = System.nanoTime();
+            connection.borrowedBy = Thread.currentThread();
+            connection.leakReported = false;
+            borrowed.add(connection);
+            borrows.increment();
+            peakBorrowed.accumulateAndGet(borrowed.size(), Math::max);
+            startLeakChecker();
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Most recently used idle connection that still works, or null to open a new one
+    private PooledConnection takeIdle() {
+        while (true) {
+            PooledConnection connection;
+            idleLock.lock();
+            try {
+                connection = idle.pollFirst();
+            } finally {
+                idleLock.unlock();
+            }
+            if (connection == null) {
+                return null;
+            }
+            if (System.nanoTime() - connection.returnedAtNanos < VALIDATION_BYPASS_NANOS || isValid(connection)) {
+                return connection;
+            }
+            validationFailures.increment();
+            logger.accept("Discarding broken database connection");
+            connection.closePhysical();
+        }
+    }
+
+    private static boolean isValid(PooledConnection connection) {
+        try {
+            return connection.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void giveBack(PooledConnection connection) {
+        if (!borrowed.remove(connection)) {
+            return; // Closed twice
+        }
+        connection.borrowedBy = null;   // Don't keep a finished thread reachable from the idle list
+        try {
+            if (closed || connection.connection.isClosed()) {
+                connection.closePhysical();
+            } else {
+                if (!connection.connection.getAutoCommit()) {
+                    connection.connection.rollback();   // Never hand on half a transaction
+                    connection.connection.setAutoCommit(true);
+                }
+                connection.returnedAtNanos = System.nanoTime();
+                idleLock.lock();
+                try {
+                    idle.addFirst(connection);
+                } finally {
+                    idleLock.unlock();
+                }
+            }
+        } catch (SQLException e) {
+            connection.closePhysical();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void startLeakChecker() {
+        if (leakThresholdNanos <= 0 || leakChecker != null) {
+            return;
+        }
+        idleLock.lock();
+        try {
+            if (leakChecker == null) {
+                Thread thread = new Thread(this::checkLeaks, "db-pool-leak-check");
+                thread.setDaemon(true);
+                leakChecker = thread;
+                thread.start();
+            }
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    private void checkLeaks() {
+        long period = Math.max(1, TimeUnit.NANOSECONDS.toMillis(leakThresholdNanos) / 2);
+        while (!closed) {
+            try {
+                Thread.sleep(period);
+            } catch (InterruptedException e) {
+                return;
+            }
+            reportLeaks(System.nanoTime());
+        }
+    }
+
+    // Reports each connection held past the leak threshold once; returns how many were found
+    int reportLeaks(long now) {
+        int found = 0;
+        for (PooledConnection connection : borrowed) {
+            Thread holder = connection.borrowedBy;   // Null once returned
+            if (holder != null && !connection.leakReported && now - connection.borrowedAtNanos > leakThresholdNanos) {
+                connection.leakReported = true;
+                leaks.increment();
+                found++;
+                StringBuilder report = new StringBuilder("Database connection held for "
+                        + TimeUnit.NANOSECONDS.toMillis(now - connection.borrowedAtNanos) + " ms, possible leak"
+                        + "; borrowed by " + holder.getName() + (holder.isAlive() ? ", which is now at" : ", no longer running"));
+                for (StackTraceElement frame : holder.getStackTrace()) {
+                    report.append("\n    at ").append(frame);
+                }
+                logger.accept(report.toString());
+            }
+        }
+        return found;
+    }
+
+    // Closes idle connections now and borrowed ones as they come back
+    public void close() {
+        closed = true;
+        Thread thread = leakChecker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        idleLock.lock();
+        try {
+            for (PooledConnection connection : idle) {
+                connection.closePhysical();
+            }
+            idle.clear();
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getBorrowed() {
+        return borrowed.size();
+    }
+
+    public int getIdle() {
+        idleLock.lock();
+        try {
+            return idle.size();
+        } finally {
+            idleLock.unlock();
+        }
+    }
+
+    public int getPeakBorrowed() {
+        return peakBorrowed.get();
+    }
+
+    public long getBorrows() {
+        return borrows.sum();
+    }
+
+    // Borrows that had to wait because every connection was in use
+    public long getWaits() {
+        return waits.sum();
+    }
+
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitNanos.sum());
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getCreated() {
+        return created.sum();
+    }
+
+    public long getValidationFailures() {
+        return validationFailures.sum();
+    }
+
+    public long getLeaks() {
+        return leaks.sum();
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    @Override
+    public String toString() {
+        long borrowCount = getBorrows();
+        return "DB pool " + getBorrowed() + "/" + maxSize + " in use (peak " + getPeakBorrowed() + ")"
+                + ", waited " + getWaits() + "/" + borrowCount
+                + " (max " + getMaxWaitMillis() + " ms), timeouts " + getTimeouts()
+                + ", leaks " + getLeaks();
+    }
+
+    // A connection lent out by the pool. close() returns it instead of closing it.
+    public class PooledConnection implements AutoCloseable {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements =
+                new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() <= statementCacheSize) {
+                            return false;
+                        }
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                };
+        private volatile long borrowedAtNanos;
+        private volatile Thread borrowedBy;
+        private volatile boolean leakReported;
+        private long returnedAtNanos;
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        // Prepared statement for sql from this connection's cache, parameters cleared.
+        // Do not close it; close its ResultSets.
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement != null && !statement.isClosed()) {
+                statementCacheHits.increment();
+                statement.clearParameters();
+                return statement;
+            }
+            statementCacheMisses.increment();
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+            return statement;
+        }
+
+        // Plain statement for one-off queries; the caller closes it
+        public Statement createStatement() throws SQLException {
+            return connection.createStatement();
+        }
+
+        // The underlying connection, e.g. for transactions. Do not close it; a
+        // transaction left open is rolled back when the connection is returned.
+        public Connection getConnection() {
+            return connection;
+        }
+
+        @Override
+        public void close() {
+            giveBack(this);
+        }
+
+        private void closePhysical() {
+            for (Iterator<PreparedStatement> it = statements.values().iterator(); it.hasNext(); ) {
+                closeQuietly(it.next());
+                it.remove();
+            }
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -0,0 +1,457 @@
+// FileStorage.java
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Embedded storage for a single node without a database server, built as an
+// event log. Every change is a domain event (JOB_SUBMITTED, JOB_COMPLETED,
+// VEHICLE_READY, VEHICLE_REMOVED, USER_REGISTERED) appended to the Journal and
+// then applied to a MemoryStorage image that serves all reads.
+//
+// Every snapshotEvery events a snapshot of the image is written in the
+// background (snapshot-<sequence>.snap) and the journal moves to a new segment.
+// Once the snapshot is on disk, the segments and snapshots it supersedes are
+// deleted, so what is kept is bounded by the live data, not the history.
+// Opening loads the newest complete snapshot and replays only the journal after it.
+public class FileStorage implements Storage {
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+    private static final String SNAPSHOT_HEADER = "VCRTS-SNAPSHOT";
+
+    private final Path directory;
+    private final Journal journal;
+    private final int snapshotEvery;
+    private final Consumer<String> logger;
+    private final MemoryStorage.Jobs jobImage = new MemoryStorage.Jobs();
+    private final MemoryStorage.Vehicles vehicleImage = new MemoryStorage.Vehicles();
+    private final MemoryStorage.Users userImage = new MemoryStorage.Users();
+    private final JobStore jobs = new Jobs();
+    private final VehicleStore vehicles = new Vehicles();
+    private final UserStore users = new Users();
+
+    // Serializes appends, image updates and the start of a snapshot, and guards the
+    // fields below. Not a monitor: appends and snapshot rotation can force the
+    // journal to disk, which would pin a virtual thread's carrier inside synchronized.
+    private final ReentrantLock lock = new ReentrantLock();
+    private long eventsSinceSnapshot;
+    private boolean snapshotRunning;
+    private long snapshotSeq;               // Sequence covered by the newest snapshot on disk
+
+    private FileStorage(Path directory, Journal.FsyncPolicy fsync, long fsyncIntervalMillis, int segmentBytes,
+                        int snapshotEvery, Consumer<String> logger) {
+        this.directory = directory;
+        this.journal = new Journal(directory, fsync, fsyncIntervalMillis, segmentBytes, logger);
+        this.snapshotEvery = snapshotEvery;
+        this.logger = logger;
+    }
+
+    public static FileStorage open(Path directory, Journal.FsyncPolicy fsync, long fsyncIntervalMillis,
+                                   int segmentBytes, int snapshotEvery, Consumer<String> logger) throws StoreException {
+        FileStorage storage = new FileStorage(directory, fsync, fsyncIntervalMillis, segmentBytes, snapshotEvery, logger);
+        try {
+            storage.recover();
+        } catch (IOException | RuntimeException e) {
+            throw new StoreException("Cannot open file storage in " + directory + ": " + e.getMessage(), e);
+        }
+        return storage;
+    }
+
+    private void recover() throws IOException {
+        long started = System.nanoTime();
+        Files.createDirectories(directory);
+        List<Path> snapshots = snapshots(true);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            if (loadSnapshot(snapshots.get(i))) {
+                break;
+            }
+        }
+        List<String[]> tail = journal.recover(snapshotSeq);
+        for (String[] event : tail) {
+            apply(event);
+        }
+        eventsSinceSnapshot = tail.size();
+        logger.accept("File storage " + directory + ": snapshot at event " + snapshotSeq + " plus " + tail.size()
+                + " journal events, " + jobImage.size() + " jobs, " + vehicleImage.size() + " vehicles, "
+                + userImage.size() + " users in " + (System.nanoTime() - started) / 1_000_000 + " ms");
+        if (eventsSinceSnapshot >= snapshotEvery) {
+            startSnapshot();
+        }
+    }
+
+    // Applies a replayed event to the image
+    private void apply(String[] event) {
+        try {
+            switch (event[0]) {
+                case "JOB_SUBMITTED":
+                    jobImage.insert(new JobRequest(event[1], event[2], event[3], Integer.parseInt(event[4]),
+                            Integer.parseInt(event[5]), event[6], event[7]));
+                    break;
+                case "JOB_COMPLETED":
+                    jobImage.delete(event[1]);
+                    break;
+                case "VEHICLE_READY":
+                    vehicleImage.insert(new CarRentals(event[1], event[2], event[3], event[4], event[5], event[6], event[7]));
+                    break;
+                case "VEHICLE_REMOVED":
+                    vehicleImage.delete(event[1], event[2]);
+                    break;
+                case "USER_REGISTERED":
+                    userImage.insert(Arrays.copyOfRange(event, 1, 9));
+                    break;
+                default:
+                    logger.accept("Skipping unknown journal event " + event[0]);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException | StoreException e) {
+            logger.accept("Skipping bad journal event " + String.join(" ", event) + ": " + e);
+        }
+    }
+
+    @Override
+    public JobStore jobs() {
+        return jobs;
+    }
+
+    @Override
+    public VehicleStore vehicles() {
+        return vehicles;
+    }
+
+    @Override
+    public UserStore users() {
+        return users;
+    }
+
+    // Appends an event; the caller holds lock and applies it to the image afterwards
+    private long append(String... event) throws StoreException {
+        try {
+            long seq = journal.append(event);
+            if (++eventsSinceSnapshot >= snapshotEvery) {
+                startSnapshot();
+            }
+            return seq;
+        } catch (IOException e) {
+            throw new StoreException("Cannot write journal in " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Waits, outside the lock, until the event is as durable as the fsync policy promises
+    private void awaitDurable(long seq) throws StoreException {
+        try {
+            journal.awaitDurable(seq);
+        } catch (IOException e) {
+            throw new StoreException("Cannot sync journal in " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    private class Jobs implements JobStore {
+        @Override
+        public void loadAll(Consumer<JobRequest> rows) {
+            jobImage.loadAll(rows);
+        }
+
+        @Override
+        public void insert(JobRequest job) throws StoreException {
+            long seq;
+            lock.lock();
+            try {
+                seq = append("JOB_SUBMITTED", job.getJobId(), job.getClientId(), job.getJobDescription(),
+                        Integer.toString(job.getDuration()), Integer.toString(job.getRedundancyLevel()),
+                        job.getJobDeadline(), job.getTimestamp());
+                jobImage.insert(job);
+            } finally {
+                lock.unlock();
+            }
+            awaitDurable(seq);
+        }
+
+        @Override
+        public boolean delete(String jobId) throws StoreException {
+            long seq;
+            lock.lock();
+            try {
+                if (!jobImage.contains(jobId)) {
+                    return false;
+                }
+                seq = append("JOB_COMPLETED", jobId);
+                jobImage.delete(jobId);
+            } finally {
+                lock.unlock();
+            }
+            awaitDurable(seq);
+            return true;
+        }
+    }
+
+    private class Vehicles implements VehicleStore {
+        @Override
+        public void loadAll(Consumer<CarRentals> rows) {
+            vehicleImage.loadAll(rows);
+        }
+
+        @Override
+        public List<String[]> findByOwner(String ownerId) {
+            return vehicleImage.findByOwner(ownerId);
+        }
+
+        @Override
+        public void insert(CarRentals car) throws StoreException {
+            long seq;
+            lock.lock();
+            try {
+                seq = append("VEHICLE_READY", car.getOwnerId(), car.getVehicleModel(), car.getVehicleBrand(),
+                        car.getPlateNumber(), car.getSerialNumber(), car.getVinNumber(), car.getResidencyTime());
+                vehicleImage.insert(car);
+            } finally {
+                lock.unlock();
+            }
+            awaitDurable(seq);
+        }
+
+        @Override
+        public boolean delete(String ownerId, String vinNumber) throws StoreException {
+            long seq;
+            lock.lock();
+            try {
+                if (!vehicleImage.contains(ownerId, vinNumber)) {
+                    return false;
+                }
+                seq = append("VEHICLE_REMOVED", ownerId, vinNumber);
+                vehicleImage.delete(ownerId, vinNumber);
+            } finally {
+                lock.unlock();
+            }
+            awaitDurable(seq);
+            return true;
+        }
+    }
+
+    private class Users implements UserStore {
+        @Override
+        public void loadAll(Consumer<String[]> rows) {
+            userImage.loadAll(rows);
+        }
+
+        @Override
+        public void insert(String[] user) throws StoreException {
+            long seq;
+            lock.lock();
+            try {
+                if (userImage.findByUsername(user[USERNAME]) != null) {
+                    throw new StoreException("Duplicate username " + user[USERNAME], null);
+                }
+                String[] event = new String[user.length + 1];
+                event[0] = "USER_REGISTERED";
+                System.arraycopy(user, 0, event, 1, user.length);
+                seq = append(event);
+                userImage.insert(user);
+            } finally {
+                lock.unlock();
+            }
+            awaitDurable(seq);
+        }
+
+        @Override
+        public String[] findByUsername(String username) {
+            return userImage.findByUsername(username);
+        }
+    }
+
+    // Called with lock held
+    private void startSnapshot() {
+        if (snapshotRunning) {
+            return;
+        }
+        snapshotRunning = true;
+        Thread thread = new Thread(() -> {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                logger.accept("Snapshot of " + directory + " failed: " + e.getMessage());
+            } finally {
+                lock.lock();
+                try {
+                    snapshotRunning = false;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }, "storage-snapshot");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Copies the image at the current sequence, starts a new journal segment, then
+    // writes the copy without holding the lock and drops what it supersedes
+    void snapshot() throws IOException {
+        long seq;
+        List<JobRequest> jobRows;
+        List<String[]> vehicleRows;
+        List<String[]> userRows;
+        long lastCarId;
+        lock.lock();
+        try {
+            seq = journal.getLastSeq();
+            jobRows = jobImage.loadAll();
+            vehicleRows = vehicleImage.rows();
+            lastCarId = vehicleImage.getLastCarId();
+            userRows = userImage.loadAll();
+            journal.rotate();
+            eventsSinceSnapshot = 0;
+        } finally {
+            lock.unlock();
+        }
+
+        Path target = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, seq, SNAPSHOT_SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write(TabSeparated.join(SNAPSHOT_HEADER, Long.toString(seq), Long.toString(lastCarId)));
+            writer.write('\n');
+            for (JobRequest job : jobRows) {
+                writer.write(TabSeparated.join("J", job.getJobId(), job.getClientId(), job.getJobDescription(),
+                        Integer.toString(job.getDuration()), Integer.toString(job.getRedundancyLevel()),
+                        job.getJobDeadline(), job.getTimestamp()));
+                writer.write('\n');
+            }
+            for (String[] row : vehicleRows) {
+                writer.write("V\t" + TabSeparated.join(row));
+                writer.write('\n');
+            }
+            for (String[] row : userRows) {
+                writer.write("U\t" + TabSeparated.join(row));
+                writer.write('\n');
+            }
+            writer.write("END\t" + (jobRows.size() + vehicleRows.size() + userRows.size()));
+            writer.write('\n');
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+
+        lock.lock();
+        try {
+            snapshotSeq = seq;
+        } finally {
+            lock.unlock();
+        }
+        journal.deleteUpTo(seq);
+        for (Path old : snapshots(false)) {
+            if (!old.equals(target)) {
+                Files.deleteIfExists(old);
+            }
+        }
+        logger.accept("Snapshot of " + directory + " at event " + seq + ": "
+                + jobRows.size() + " jobs, " + vehicleRows.size() + " vehicles, " + userRows.size() + " users");
+    }
+
+    // Loads a snapshot into the empty image; false (image left empty) if it is incomplete
+    private boolean loadSnapshot(Path snapshot) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        String[] header = null;
+        boolean complete = false;
+        try (BufferedReader reader = Files.newBufferedReader(snapshot, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = TabSeparated.split(line);
+                if (header == null) {
+                    header = fields;
+                } else if (fields[0].equals("END")) {
+                    complete = Integer.parseInt(fields[1]) == rows.size();
+                    break;
+                } else {
+                    rows.add(fields);
+                }
+            }
+        }
+        if (header == null || !header[0].equals(SNAPSHOT_HEADER) || !complete) {
+            logger.accept("Ignoring incomplete snapshot " + snapshot);
+            return false;
+        }
+        for (String[] row : rows) {
+            switch (row[0]) {
+                case "J":
+                    jobImage.insert(new JobRequest(row[1], row[2], row[3], Integer.parseInt(row[4]),
+                            Integer.parseInt(row[5]), row[6], row[7]));
+                    break;
+                case "V":
+                    vehicleImage.restore(Long.parseLong(row[1]),
+                            new CarRentals(row[2], row[3], row[4], row[5], row[6], row[7], row[8]));
+                    break;
+                case "U":
+                    try {
+                        userImage.insert(Arrays.copyOfRange(row, 1, 9));
+                    } catch (StoreException e) {
+                        logger.accept("Skipping duplicate user in " + snapshot);
+                    }
+                    break;
+                default:
+                    throw new IOException("Unknown row type " + row[0] + " in " + snapshot);
+            }
+        }
+        vehicleImage.setLastCarId(Long.parseLong(header[2]));
+        snapshotSeq = Long.parseLong(header[1]);
+        return true;
+    }
+
+    // Complete snapshots, oldest first, optionally removing leftovers of an interrupted one
+    private List<Path> snapshots(boolean removeLeftovers) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*")) {
+            for (Path file : files) {
+                if (file.getFileName().toString().endsWith(SNAPSHOT_SUFFIX)) {
+                    snapshots.add(file);
+                } else if (removeLeftovers) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        Collections.sort(snapshots); // Zero-padded names sort by sequence
+        return snapshots;
+    }
+
+    public long getEventsSinceSnapshot() {
+        lock.lock();
+        try {
+            return eventsSinceSnapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Forces the journal's last appends to disk and stops its flusher
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            journal.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return "File storage " + directory + ": " + jobImage.size() + " jobs, " + vehicleImage.size() + " vehicles, "
+                    + "journal at " + journal.getLastSeq() + " (" + eventsSinceSnapshot + " since snapshot, "
+                    + journal.getPolicy().name().toLowerCase() + " fsync, " + journal.getForces() + " syncs)";
+        } finally {
+            lock.unlock();
+        }
+    }
+}
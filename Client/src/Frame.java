@@ -0,0 +1,119 @@
+// Frame.java
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// A decoded protocol v2 frame. Fields are read in order straight from the
+// payload buffer; nothing is parsed until the handler asks for it.
+public class Frame {
+    private final Opcode opcode;
+    private final int correlationId;
+    private final ByteBuffer payload;
+
+    public Frame(Opcode opcode, int correlationId, ByteBuffer payload) {
+        this.opcode = opcode;
+        this.correlationId = correlationId;
+        this.payload = payload;
+    }
+
+    // Decodes one frame body (everything after the length header)
+    public static Frame decode(ByteBuffer body) throws ProtocolException {
+        if (body.remaining() < ProtocolV2.MIN_BODY_LENGTH) {
+            throw new ProtocolException("Frame too short");
+        }
+        byte version = body.get();
+        if (version != ProtocolV2.VERSION) {
+            throw new ProtocolException("Unsupported protocol version: " + version);
+        }
+        Opcode opcode = Opcode.fromCode(body.get());
+        if (opcode == null) {
+            throw new ProtocolException("Unknown opcode");
+        }
+        int correlationId = body.getInt();
+        return new Frame(opcode, correlationId, body.slice());
+    }
+
+    public Opcode getOpcode() {
+        return opcode;
+    }
+
+    public int getCorrelationId() {
+        return correlationId;
+    }
+
+    public int readInt() throws ProtocolException {
+        require(4);
+        return payload.getInt();
+    }
+
+    public long readLong() throws ProtocolException {
+        require(8);
+        return payload.getLong();
+    }
+
+    public boolean readBoolean() throws ProtocolException {
+        require(1);
+        return payload.get() != 0;
+    }
+
+    // Strings are an int byte length followed by UTF-8 bytes; -1 encodes null
+    public String readString() throws ProtocolException {
+        int length = readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0) {
+            throw new ProtocolException("Negative string length");
+        }
+        require(length);
+        String value;
+        if (payload.hasArray()) {
+            value = new String(payload.array(), payload.arrayOffset() + payload.position(), length, StandardCharsets.UTF_8);
+            payload.position(payload.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            payload.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    // Whether any fields are left, for requests whose trailing fields are optional
+    public boolean hasRemaining() {
+        return payload.hasRemaining();
+    }
+
+    // Reads the index-th field, counted from the start of the payload, as a string
+    // without moving the read position. Only valid while fields 0..index are strings.
+    public String peekString(int index) throws ProtocolException {
+        int saved = payload.position();
+        try {
+            payload.position(0);
+            for (int i = 0; i < index; i++) {
+                int length = readInt();
+                if (length > 0) {
+                    require(length);
+                    payload.position(payload.position() + length);
+                }
+            }
+            return readString();
+        } finally {
+            payload.position(saved);
+        }
+    }
+
+    private void require(int bytes) throws ProtocolException {
+        if (payload.remaining() < bytes) {
+            throw new ProtocolException("Truncated " + opcode + " frame");
+        }
+    }
+
+    // Thrown when a peer sends bytes that are not a valid v2 frame
+    public static class ProtocolException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public ProtocolException(String message) {
+            super(message);
+        }
+    }
+}
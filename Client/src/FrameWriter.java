@@ -0,0 +1,75 @@
+// FrameWriter.java
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Builds one protocol v2 frame: int length, byte version, byte opcode,
+// int correlationId, fields. The correlation ID starts as 0 and is stamped by
+// the sender with ProtocolV2.withCorrelationId().
+public class FrameWriter {
+    private ByteBuffer buffer;
+
+    public FrameWriter(Opcode opcode) {
+        buffer = ByteBuffer.allocate(128);
+        buffer.putInt(0); // Length, filled in by finish()
+        buffer.put(ProtocolV2.VERSION);
+        buffer.put(opcode.code());
+        buffer.putInt(0); // Correlation ID
+    }
+
+    public FrameWriter putInt(int value) {
+        ensure(4);
+        buffer.putInt(value);
+        return this;
+    }
+
+    public FrameWriter putLong(long value) {
+        ensure(8);
+        buffer.putLong(value);
+        return this;
+    }
+
+    public FrameWriter putBoolean(boolean value) {
+        ensure(1);
+        buffer.put((byte) (value ? 1 : 0));
+        return this;
+    }
+
+    public FrameWriter putString(String value) {
+        if (value == null) {
+            return putInt(-1);
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensure(4 + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+        return this;
+    }
+
+    // Where the next field goes, for putInt(at, value) once its value is known
+    public int position() {
+        return buffer.position();
+    }
+
+    // Overwrites an int field written earlier, e.g. a count ahead of its rows
+    public FrameWriter putInt(int at, int value) {
+        buffer.putInt(at, value);
+        return this;
+    }
+
+    // Returns the finished frame, flipped and ready to write
+    public ByteBuffer finish() {
+        buffer.putInt(0, buffer.position() - 4);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+    }
+}
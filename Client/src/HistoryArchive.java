@@ -0,0 +1,344 @@
+// HistoryArchive.java
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Append-only history of completed jobs and retired vehicles. The live tables
+// only hold what is still active; when VCController completes a job or drops a
+// vehicle it hands the record here and returns, and one writer thread appends
+// it to a partition per kind and month (UTC):
+//
+//   jobs-2026-10.tsv        the current month, tab separated, appended to
+//   jobs-2026-09.tsv.gz     an earlier month, compacted
+//
+// Each line starts with the completion time (epoch millis) followed by the
+// record's fields. Months before the current one are gzipped when the month
+// rolls over and at startup, so reports scan them sequentially and read only
+// the partitions that overlap the range asked for.
+//
+// History is best-effort. The record is queued after the live row is deleted
+// and written a moment later, so a crash in between loses it, and a deleted
+// row that was never loaded into memory has no record to write (VCController
+// logs those). Reports built from it are for trends, not an exact ledger.
+public class HistoryArchive {
+    private static final String SUFFIX = ".tsv";
+    private static final String COMPACTED_SUFFIX = ".tsv.gz";
+
+    public enum Kind {
+        // completedAt, jobId, clientId, jobDescription, duration, redundancyLevel, jobDeadline, submittedAt
+        JOBS("jobs"),
+        // completedAt, reason, carId, ownerId, model, brand, plateNumber, serialNumber, vinNumber, residencyTime
+        VEHICLES("vehicles");
+
+        private final String prefix;
+
+        Kind(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    private static final class Record {
+        final Kind kind;
+        final long completedAt;
+        final String line;
+
+        Record(Kind kind, long completedAt, String line) {
+            this.kind = kind;
+            this.completedAt = completedAt;
+            this.line = line;
+        }
+    }
+
+    private final Path directory;
+    private final BlockingQueue<Record> queue;
+    private final Consumer<String> logger;
+    private final LongAdder archived = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private long queued;        // Guarded by this; records handed in
+    private long written;       // Guarded by this; records written or given up on
+    private YearMonth openMonth;  // Writer thread only; the month compaction last ran for
+    private volatile Thread writer;
+
+    public HistoryArchive(Path directory, int queueCapacity, Consumer<String> logger) throws IOException {
+        this.directory = directory;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.logger = logger;
+        Files.createDirectories(directory);
+    }
+
+    // Null unless -Dvcrts.archive is left on (the default)
+    public static HistoryArchive fromSystemProperties(Consumer<String> logger) throws IOException {
+        if (!Boolean.parseBoolean(System.getProperty("vcrts.archive", "true"))) {
+            return null;
+        }
+        HistoryArchive archive = new HistoryArchive(
+                Paths.get(System.getProperty("vcrts.archive.dir", "database/archive")),
+                Integer.getInteger("vcrts.archive.queue", 10_000), logger);
+        archive.start();
+        return archive;
+    }
+
+    // Starts the writer thread, which first compacts the earlier months
+    public void start() {
+        Thread thread = new Thread(this::runWriter, "history-archive");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+    }
+
+    public void jobCompleted(JobRequest job) {
+        add(Kind.JOBS, System.currentTimeMillis(), job.getJobId(), job.getClientId(), job.getJobDescription(),
+                Integer.toString(job.getDuration()), Integer.toString(job.getRedundancyLevel()),
+                job.getJobDeadline(), job.getTimestamp());
+    }
+
+    // reason says why the vehicle left, e.g. "completed" or "removed"
+    public void vehicleRetired(CarRentals car, String reason) {
+        add(Kind.VEHICLES, System.currentTimeMillis(), reason, car.getCarId(), car.getOwnerId(),
+                car.getVehicleModel(), car.getVehicleBrand(), car.getPlateNumber(), car.getSerialNumber(),
+                car.getVinNumber(), car.getResidencyTime());
+    }
+
+    // Queues a record for the writer; waits while the queue is full rather than
+    // dropping history
+    void add(Kind kind, long completedAt, String... fields) {
+        String[] line = new String[fields.length + 1];
+        line[0] = Long.toString(completedAt);
+        System.arraycopy(fields, 0, line, 1, fields.length);
+        synchronized (this) {
+            queued++;
+        }
+        try {
+            queue.put(new Record(kind, completedAt, TabSeparated.join(line)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            recordDone(1);
+            failed.increment();
+            logger.accept("History record dropped, interrupted while queueing: " + line[1]);
+        }
+    }
+
+    // Waits until everything queued before the call is on disk
+    public void flush() throws InterruptedException {
+        synchronized (this) {
+            long target = queued;
+            while (written < target) {
+                wait();
+            }
+        }
+    }
+
+    private synchronized void recordDone(int count) {
+        written += count;
+        notifyAll();
+    }
+
+    private void runWriter() {
+        List<Record> batch = new ArrayList<>();
+        while (writer == Thread.currentThread()) {
+            try {
+                compactIfMonthChanged();
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                write(batch);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                recordDone(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    // One append and sync per partition per batch
+    private void write(List<Record> batch) {
+        Map<Path, StringBuilder> byPartition = new HashMap<>();
+        for (Record record : batch) {
+            byPartition.computeIfAbsent(partition(record.kind, month(record.completedAt), SUFFIX),
+                    path -> new StringBuilder()).append(record.line).append('\n');
+        }
+        for (Map.Entry<Path, StringBuilder> entry : byPartition.entrySet()) {
+            String lines = entry.getValue().toString();
+            try (FileChannel channel = FileChannel.open(entry.getKey(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer bytes = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(false);
+                archived.add(count(lines));
+            } catch (IOException e) {
+                failed.add(count(lines));
+                logger.accept("Cannot append history to " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static int count(String lines) {
+        int count = 0;
+        for (int i = 0; i < lines.length(); i++) {
+            if (lines.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void compactIfMonthChanged() {
+        YearMonth now = YearMonth.now(ZoneOffset.UTC);
+        if (!now.equals(openMonth)) {
+            try {
+                compact(now);
+                openMonth = now;
+            } catch (IOException e) {
+                logger.accept("History compaction failed: " + e.getMessage());
+                openMonth = now; // Retried at the next month change or restart
+            }
+        }
+    }
+
+    // Gzips every plain partition of a month before current. A late record for a
+    // month already compacted is added as another gzip member, which
+    // GZIPInputStream reads as one continuous stream.
+    void compact(YearMonth current) throws IOException {
+        List<Path> plain = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            files.forEach(plain::add);
+        }
+        for (Path file : plain) {
+            String name = file.getFileName().toString();
+            YearMonth month = monthOf(name.substring(0, name.length() - SUFFIX.length()));
+            if (month == null || !month.isBefore(current)) {
+                continue;
+            }
+            Path compacted = directory.resolve(name.substring(0, name.length() - SUFFIX.length()) + COMPACTED_SUFFIX);
+            Path temporary = directory.resolve(compacted.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                if (Files.exists(compacted)) {
+                    Files.copy(compacted, out);
+                }
+                try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+                    @Override
+                    public void close() throws IOException {
+                        finish();  // Leave the underlying stream to the outer try
+                    }
+                }) {
+                    Files.copy(file, gzip);
+                }
+            }
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporary, compacted, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(file);
+            logger.accept("Compacted history partition " + name);
+        }
+    }
+
+    // Hands rows completed in [from, to) to rows, oldest partition first. Only the
+    // partitions overlapping the range are read; records still queued are not seen
+    // (flush() first for an up to date report). A scan racing the compaction of a
+    // month it reads can miss or repeat that month; compaction only runs when the
+    // month rolls over and at startup.
+    public void scan(Kind kind, Instant from, Instant to, Consumer<String[]> rows) throws IOException {
+        YearMonth first = month(from.toEpochMilli());
+        YearMonth last = month(to.toEpochMilli() - 1);
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            Path compacted = partition(kind, month, COMPACTED_SUFFIX);
+            if (Files.exists(compacted)) {
+                read(new GZIPInputStream(Files.newInputStream(compacted)), from, to, rows);
+            }
+            Path plain = partition(kind, month, SUFFIX);
+            if (Files.exists(plain)) {
+                read(Files.newInputStream(plain), from, to, rows);
+            }
+        }
+    }
+
+    private static void read(InputStream input, Instant from, Instant to, Consumer<String[]> rows) throws IOException {
+        long fromMillis = from.toEpochMilli();
+        long toMillis = to.toEpochMilli();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                long completedAt = Long.parseLong(tab < 0 ? line : line.substring(0, tab));
+                if (completedAt >= fromMillis && completedAt < toMillis) {
+                    rows.accept(TabSeparated.split(line));
+                }
+            }
+        }
+    }
+
+    private Path partition(Kind kind, YearMonth month, String suffix) {
+        return directory.resolve(kind.prefix + "-" + month + suffix);
+    }
+
+    private static YearMonth month(long epochMillis) {
+        return YearMonth.from(Instant.ofEpochMilli(epochMillis).atZone(ZoneOffset.UTC));
+    }
+
+    // "jobs-2026-10" -> 2026-10, null for files that are not partitions
+    private static YearMonth monthOf(String baseName) {
+        int dash = baseName.indexOf('-');
+        try {
+            return dash < 0 ? null : YearMonth.parse(baseName.substring(dash + 1));
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // Stops the writer once what is queued has been written
+    public void close() throws InterruptedException {
+        flush();
+        Thread thread = writer;
+        writer = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public long getArchived() {
+        return archived.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    @Override
+    public String toString() {
+        return "History: " + getArchived() + " archived, " + getQueued() + " queued"
+                + (getFailed() > 0 ? ", " + getFailed() + " FAILED" : "");
+    }
+}
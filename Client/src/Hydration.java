@@ -0,0 +1,112 @@
+// Hydration.java
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Loads the in-memory tables at startup. Each table streams on its own thread, so
+// the slowest one sets the startup time rather than the sum of all three, and the
+// server accepts connections meanwhile (Server refuses writes with "busy" until
+// isComplete()). Progress is logged every second and shown in the GUI.
+public class Hydration {
+    private static final long REPORT_INTERVAL_MS = 1000;
+
+    // Streams one table into memory, adding each row it stores to loaded
+    public interface Loader {
+        void load(LongAdder loaded) throws Exception;
+    }
+
+    private final Map<String, Loader> loaders = new LinkedHashMap<>();
+    private final Map<String, LongAdder> loaded = new LinkedHashMap<>();
+    private final Consumer<String> logger;
+    private volatile CountDownLatch remaining;
+    private volatile long startNanos;
+    private volatile long elapsedMillis = -1;   // Set once every table is in
+
+    public Hydration(Consumer<String> logger) {
+        this.logger = logger;
+    }
+
+    // Registers a table; all tables must be added before start()
+    public void add(String table, Loader loader) {
+        if (remaining != null) {
+            throw new IllegalStateException("Hydration already started");
+        }
+        loaders.put(table, loader);
+        loaded.put(table, new LongAdder());
+    }
+
+    // Starts one loader thread per table and the progress reporter; returns at once
+    public void start() {
+        startNanos = System.nanoTime();
+        remaining = new CountDownLatch(loaders.size());
+        for (Map.Entry<String, Loader> entry : loaders.entrySet()) {
+            String table = entry.getKey();
+            Thread thread = new Thread(() -> run(table, entry.getValue()), "hydrate-" + table);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Thread reporter = new Thread(this::report, "hydrate-progress");
+        reporter.setDaemon(true);
+        reporter.start();
+    }
+
+    // A table that fails to load is logged and counted as done with what it has,
+    // like the old synchronous load did, so writes are not refused forever
+    private void run(String table, Loader loader) {
+        try {
+            loader.load(loaded.get(table));
+        } catch (Exception e) {
+            logger.accept("Loading " + table + " failed: " + e.getMessage());
+        } finally {
+            remaining.countDown();
+        }
+    }
+
+    private void report() {
+        try {
+            while (!remaining.await(REPORT_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                logger.accept(toString());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        logger.accept(toString());
+    }
+
+    // True once every table has been loaded (or has failed)
+    public boolean isComplete() {
+        CountDownLatch latch = remaining;
+        return latch != null && latch.getCount() == 0;
+    }
+
+    // Waits for every table, e.g. in tests; false on timeout
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return remaining.await(timeout, unit);
+    }
+
+    // Rows loaded so far for one table
+    public long getLoaded(String table) {
+        return loaded.get(table).sum();
+    }
+
+    @Override
+    public String toString() {
+        List<String> tables = new ArrayList<>(loaded.size());
+        for (Map.Entry<String, LongAdder> entry : loaded.entrySet()) {
+            tables.add(entry.getKey() + " " + entry.getValue().sum());
+        }
+        if (elapsedMillis >= 0) {
+            return "Loaded " + String.join(", ", tables) + " in " + elapsedMillis + " ms";
+        }
+        long running = remaining == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        return "Loading " + String.join(", ", tables) + " (" + running + " ms, writes refused)";
+    }
+}
@@ -0,0 +1,64 @@
+// JobListing.java
+
+// One row of the job list as the client sees it: the queued job plus its
+// estimated completion time (hours from now, counting the jobs ahead of it).
+public class JobListing {
+    private final String jobId;
+    private final String clientId;
+    private final String description;
+    private final int duration;
+    private final int redundancyLevel;
+    private final String deadline;
+    private final int completionTime;
+
+    public JobListing(String jobId, String clientId, String description, int duration,
+                      int redundancyLevel, String deadline, int completionTime) {
+        this.jobId = jobId;
+        this.clientId = clientId;
+        this.description = description;
+        this.duration = duration;
+        this.redundancyLevel = redundancyLevel;
+        this.deadline = deadline;
+        this.completionTime = completionTime;
+    }
+
+    // The row for a queued job with completionTime hours of work up to and including it
+    public static JobListing of(JobRequest job, long completionTime) {
+        return new JobListing(job.getJobId(), job.getClientId(), job.getJobDescription(), job.getDuration(),
+                job.getRedundancyLevel(), job.getJobDeadline(), (int) Math.min(Integer.MAX_VALUE, completionTime));
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public int getRedundancyLevel() {
+        return redundancyLevel;
+    }
+
+    public String getDeadline() {
+        return deadline;
+    }
+
+    public int getCompletionTime() {
+        return completionTime;
+    }
+
+    // Same wording as the server's text response for DISPLAY_JOB_TIMES
+    public String toDisplayString() {
+        return "Job ID: " + jobId + ", Client ID: " + clientId + ", Description: " + description
+                + ", Duration: " + duration + " hours, Completion Time: " + completionTime + " hours";
+    }
+}
@@ -0,0 +1,49 @@
+// JobQueue.java
+
+import java.util.List;
+
+// The in-memory job queue VCController serves reads from, in submission order.
+// JobRegistry keeps the jobs on the heap; OffHeapJobTable keeps them in direct
+// memory for backlogs large enough that the heap copy would drive GC pauses.
+public interface JobQueue {
+    // Appends a job at the end of the queue; false if one with its ID is queued
+    boolean add(JobRequest job);
+
+    default void addAll(List<JobRequest> jobs) {
+        for (JobRequest job : jobs) {
+            add(job);
+        }
+    }
+
+    // Removes the job and returns it, or null if there is none with this ID
+    JobRequest remove(String jobId);
+
+    JobRequest get(String jobId);
+
+    // Jobs ahead of this one in the queue (0 for the head), or -1 if absent
+    int position(String jobId);
+
+    // Hours of queued work up to and including this job, or -1 if it is not queued
+    long completionTime(String jobId);
+
+    // Up to count jobs starting at position from (0 for the head), with their
+    // completion times; O(log n) to find the first plus O(1) per job
+    List<JobListing> listings(int from, int count);
+
+    int size();
+
+    // The queue in order, stamped with the version of the change that produced it;
+    // OffHeapJobTable may also list changes made while it was being read
+    VersionedList<JobRequest> snapshot();
+
+    // True when snapshot() hands out a list readers share (JobRegistry). False when
+    // it copies the queue onto the heap (OffHeapJobTable); whole-queue reads then
+    // page through listings() instead, see VCController.readJobListings.
+    default boolean sharesSnapshots() {
+        return true;
+    }
+
+    // Raised by every add and remove, so a reader holding a snapshot can tell
+    // whether it is still current without listing the queue again
+    long version();
+}
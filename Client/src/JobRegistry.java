@@ -0,0 +1,273 @@
+// JobRegistry.java
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// The in-memory job queue, in submission order. Three structures over the same
+// nodes keep every operation independent of the backlog:
+//
+//   byId     open-addressed table of the nodes   lookup and removal by jobId, O(1)
+//   head     doubly linked list of the nodes     queue order, unlinking in O(1)
+//   present  Fenwick tree over each node's slot  position in the queue, O(log n)
+//   hours    Fenwick tree of durations by slot   completion time, O(log n)
+//   bySlot   slot -> node                        the job at a position, O(log n)
+//
+// A node's slot is its insertion number. Removed slots are left as holes; when
+// the slots run out they are renumbered and the tree is rebuilt, which costs
+// O(n) once per n additions.
+//
+// Every change also publishes a new VersionedList of the queue, keyed by each
+// node's sequence number (which, unlike its slot, never changes). Publishing is
+// O(log n) and shares all but one path with the previous list, so listing the
+// queue is a volatile read, with no lock and no copy.
+//
+// byId hashes the job's compact ID (see JobRequest) and compares it in place,
+// so the registry keeps no jobId strings or boxed keys of its own.
+public class JobRegistry implements JobQueue {
+    private static final int INITIAL_SLOTS = 1024;
+
+    private static final class Node {
+        final JobRequest job;
+        final int hash;
+        final long seq;  // Key in the published list
+        Node prev;
+        Node next;
+        int slot;
+
+        Node(JobRequest job, long seq) {
+            this.job = job;
+            this.hash = mix(job.idHash());
+            this.seq = seq;
+        }
+    }
+
+    private Node[] byId = new Node[64];  // Linear probing, at most half full
+    private int size;
+    private Node head;
+    private Node tail;
+    private int[] present = new int[INITIAL_SLOTS + 1];  // Fenwick tree, 1-based; 1 where a slot holds a job
+    private long[] hours = new long[INITIAL_SLOTS + 1];  // Fenwick tree, 1-based; the duration of the job in a slot
+    private Node[] bySlot = new Node[INITIAL_SLOTS + 1];
+    private int nextSlot = 1;
+    private long nextSeq;
+    private volatile VersionedList<JobRequest> snapshot = VersionedList.empty();
+
+    // Appends a job at the end of the queue; a job already present is left where it is
+    public synchronized boolean add(JobRequest job) {
+        Node node = new Node(job, nextSeq);
+        int index = node.hash & (byId.length - 1);
+        for (Node other; (other = byId[index]) != null; index = (index + 1) & (byId.length - 1)) {
+            if (other.hash == node.hash && other.job.hasSameId(job)) {
+                return false;
+            }
+        }
+        if (nextSlot == present.length) {
+            renumber();
+        }
+        nextSeq++;
+        node.slot = nextSlot++;
+        bySlot[node.slot] = node;
+        update(node.slot, 1, job.getDuration());
+        node.prev = tail;
+        if (tail != null) {
+            tail.next = node;
+        } else {
+            head = node;
+        }
+        tail = node;
+        byId[index] = node;
+        if (++size * 2 > byId.length) {
+            rehash(byId.length * 2);
+        }
+        snapshot = snapshot.with(node.seq, job, snapshot.version() + 1);
+        return true;
+    }
+
+    @Override
+    public synchronized void addAll(List<JobRequest> jobs) {
+        for (JobRequest job : jobs) {
+            add(job);
+        }
+    }
+
+    // Removes the job and returns it, or null if there is none with this ID
+    public synchronized JobRequest remove(String jobId) {
+        int index = find(jobId);
+        if (index < 0) {
+            return null;
+        }
+        Node node = byId[index];
+        delete(index);
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            tail = node.prev;
+        }
+        update(node.slot, -1, -node.job.getDuration());
+        bySlot[node.slot] = null;
+        snapshot = snapshot.without(node.seq, snapshot.version() + 1);
+        return node.job;
+    }
+
+    public synchronized JobRequest get(String jobId) {
+        int index = find(jobId);
+        return index < 0 ? null : byId[index].job;
+    }
+
+    // Jobs ahead of this one in the queue (0 for the head), or -1 if absent
+    public synchronized int position(String jobId) {
+        int index = find(jobId);
+        return index < 0 ? -1 : prefix(byId[index].slot) - 1;
+    }
+
+    @Override
+    public synchronized long completionTime(String jobId) {
+        int index = find(jobId);
+        return index < 0 ? -1 : prefixHours(byId[index].slot);
+    }
+
+    @Override
+    public synchronized List<JobListing> listings(int from, int count) {
+        List<JobListing> listings = new ArrayList<>();
+        if (from < 0 || from >= size || count <= 0) {
+            return listings;
+        }
+        // Descend the trees to the slot holding job number from, summing the hours before it
+        int slot = 0;
+        int remaining = from + 1;
+        long before = 0;
+        for (int step = Integer.highestOneBit(present.length - 1); step > 0; step >>= 1) {
+            int next = slot + step;
+            if (next < present.length && present[next] < remaining) {
+                slot = next;
+                remaining -= present[next];
+                before += hours[next];
+            }
+        }
+        for (Node node = bySlot[slot + 1]; node != null && listings.size() < count; node = node.next) {
+            before += node.job.getDuration();
+            listings.add(JobListing.of(node.job, before));
+        }
+        return listings;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // The queue in order as of the last change; never locks
+    @Override
+    public VersionedList<JobRequest> snapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public long version() {
+        return snapshot.version();
+    }
+
+    // Gives the live jobs slots 1..n in queue order and rebuilds the tree in O(n),
+    // leaving at least as many free slots as jobs
+    private void renumber() {
+        int length = Math.max(INITIAL_SLOTS, 2 * size) + 1;
+        int[] tree = new int[length];
+        long[] durations = new long[length];
+        Node[] nodes = new Node[length];
+        int slot = 1;
+        for (Node node = head; node != null; node = node.next) {
+            node.slot = slot;
+            nodes[slot] = node;
+            tree[slot]++;
+            durations[slot] = node.job.getDuration();
+            slot++;
+        }
+        for (int i = 1; i < length; i++) {   // Linear Fenwick construction
+            int parent = i + (i & -i);
+            if (parent < length) {
+                tree[parent] += tree[i];
+                durations[parent] += durations[i];
+            }
+        }
+        present = tree;
+        hours = durations;
+        bySlot = nodes;
+        nextSlot = slot;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // The table index holding jobId, or -1
+    private int find(String jobId) {
+        UUID uuid = JobRequest.parseId(jobId);
+        int hash = mix(JobRequest.idHash(uuid, jobId));
+        for (int index = hash & (byId.length - 1); byId[index] != null; index = (index + 1) & (byId.length - 1)) {
+            Node node = byId[index];
+            if (node.hash == hash && node.job.hasId(uuid, jobId)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    // Empties a table entry, shifting later entries of its probe run back so
+    // lookups never stop early
+    private void delete(int index) {
+        int mask = byId.length - 1;
+        byId[index] = null;
+        size--;
+        for (int next = (index + 1) & mask; byId[next] != null; next = (next + 1) & mask) {
+            int home = byId[next].hash & mask;
+            if (((next - home) & mask) >= ((next - index) & mask)) {   // home is at or before the hole
+                byId[index] = byId[next];
+                byId[next] = null;
+                index = next;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        Node[] table = new Node[capacity];
+        for (Node node : byId) {
+            if (node != null) {
+                int index = node.hash & (capacity - 1);
+                while (table[index] != null) {
+                    index = (index + 1) & (capacity - 1);
+                }
+                table[index] = node;
+            }
+        }
+        byId = table;
+    }
+
+    private void update(int slot, int delta, long duration) {
+        for (int i = slot; i < present.length; i += i & -i) {
+            present[i] += delta;
+            hours[i] += duration;
+        }
+    }
+
+    private long prefixHours(int slot) {
+        long sum = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            sum += hours[i];
+        }
+        return sum;
+    }
+
+    private int prefix(int slot) {
+        int sum = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            sum += present[i];
+        }
+        return sum;
+    }
+}
@@ -1,85 +1,221 @@
-// JobRequest.java
-
-import java.util.UUID;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-
-public class JobRequest {
-    private final String jobId;           // Unique job identifier
-    private String clientId;
-    private String jobDescription;
-    private int duration;
-    private int redundancyLevel;
-    private String jobDeadline;
-    private String timestamp;             // Timestamp when the job request was created
-
-    // Constructor that generates a unique jobId and timestamp
-    public JobRequest(String clientId, String jobDescription, int duration, int redundancyLevel, String jobDeadline) {
-        this.jobId = UUID.randomUUID().toString();  // Use UUID for unique job ID
-        this.clientId = clientId;
-        this.jobDescription = jobDescription;
-        this.duration = duration;
-        this.redundancyLevel = redundancyLevel;
-        this.jobDeadline = jobDeadline;
-        this.timestamp = getCurrentTimestamp();     // Generate current timestamp
-    }
-
-    // Constructor that accepts existing jobId and timestamp (e.g., when loading from CSV)
-    public JobRequest(String jobId, String clientId, String jobDescription, int duration, int redundancyLevel, String jobDeadline, String timestamp) {
-        this.jobId = jobId;                         // Use existing jobId
-        this.clientId = clientId;
-        this.jobDescription = jobDescription;
-        this.duration = duration;
-        this.redundancyLevel = redundancyLevel;
-        this.jobDeadline = jobDeadline;
-        this.timestamp = timestamp;                 // Use existing timestamp
-    }
-
-    // Getter methods
-    public String getJobId() {
-        return jobId;
-    }
-
-    public String getClientId() {
-        return clientId;
-    }
-
-    public String getJobDescription() {
-        return jobDescription;
-    }
-
-    public int getDuration() {
-        return duration;
-    }
-
-    public int getRedundancyLevel() {
-        return redundancyLevel;
-    }
-
-    public String getJobDeadline() {
-        return jobDeadline;
-    }
-
-    public String getTimestamp() {
-        return timestamp;
-    }
-
-    // Helper method to generate current timestamp
-    private String getCurrentTimestamp() {
-        DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        return LocalDateTime.now().format(dtf);
-    }
-
-    @Override
-    public String toString() {
-        return "JobRequest{" +
-                "jobId='" + jobId + '\'' +
-                ", clientId='" + clientId + '\'' +
-                ", jobDescription='" + jobDescription + '\'' +
-                ", duration=" + duration +
-                ", redundancyLevel=" + redundancyLevel +
-                ", jobDeadline='" + jobDeadline + '\'' +
-                ", timestamp='" + timestamp + '\'' +
-                '}';
-    }
-}
+// JobRequest.java
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.UUID;
+
+// A queued job, held in primitive fields: the UUID as two longs, the deadline
+// as an epoch day, the timestamp as epoch millis and the client ID as a
+// StringDictionary code. The String getters rebuild the text the job was
+// created with, so the protocol, storage and GUI see the same values as before.
+// Text that does not round-trip through its encoding (an ID that is not a
+// lower-case UUID, a free-form deadline) is kept as-is in unencoded.
+public class JobRequest {
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    // Slots of unencoded
+    static final int ID = 0;
+    static final int DEADLINE = 1;
+    static final int TIMESTAMP = 2;
+
+    private final long idHigh;            // Unique job identifier, a UUID
+    private final long idLow;
+    private final int clientCode;         // StringDictionary.USERS
+    private final String jobDescription;
+    private final int duration;
+    private final int redundancyLevel;
+    private final int deadlineDay;        // Epoch day
+    private final long timestampMillis;   // When the job request was created
+    private final String[] unencoded;     // null unless a field is kept as text
+
+    // Constructor that generates a unique jobId and timestamp
+    public JobRequest(String clientId, String jobDescription, int duration, int redundancyLevel, String jobDeadline) {
+        UUID uuid = UUID.randomUUID();  // Use UUID for unique job ID
+        this.idHigh = uuid.getMostSignificantBits();
+        this.idLow = uuid.getLeastSignificantBits();
+        this.clientCode = StringDictionary.USERS.encode(clientId);
+        this.jobDescription = jobDescription;
+        this.duration = duration;
+        this.redundancyLevel = redundancyLevel;
+        this.deadlineDay = parseDay(jobDeadline);
+        this.timestampMillis = System.currentTimeMillis() / 1000 * 1000;  // Whole seconds, as the text form shows
+        this.unencoded = deadlineDay == Integer.MIN_VALUE ? new String[]{null, jobDeadline, null} : null;
+    }
+
+    // Constructor that accepts existing jobId and timestamp (e.g., when loading from CSV)
+    public JobRequest(String jobId, String clientId, String jobDescription, int duration, int redundancyLevel, String jobDeadline, String timestamp) {
+        this(jobId, clientId, jobDescription, duration, redundancyLevel, jobDeadline, parseMillis(timestamp), timestamp);
+    }
+
+    // Constructor for a timestamp already in epoch millis (e.g., read from a TIMESTAMP column)
+    public JobRequest(String jobId, String clientId, String jobDescription, int duration, int redundancyLevel, String jobDeadline, long timestampMillis) {
+        this(jobId, clientId, jobDescription, duration, redundancyLevel, jobDeadline, timestampMillis, null);
+    }
+
+    // timestamp is kept as text when timestampMillis is Long.MIN_VALUE (it did not parse)
+    private JobRequest(String jobId, String clientId, String jobDescription, int duration, int redundancyLevel,
+                       String jobDeadline, long timestampMillis, String timestamp) {
+        UUID uuid = parseId(jobId);
+        this.idHigh = uuid != null ? uuid.getMostSignificantBits() : 0;
+        this.idLow = uuid != null ? uuid.getLeastSignificantBits() : 0;
+        this.clientCode = StringDictionary.USERS.encode(clientId);
+        this.jobDescription = jobDescription;
+        this.duration = duration;
+        this.redundancyLevel = redundancyLevel;
+        this.deadlineDay = parseDay(jobDeadline);
+        this.timestampMillis = timestampMillis;
+        String idText = uuid == null ? jobId : null;
+        String deadlineText = deadlineDay == Integer.MIN_VALUE ? jobDeadline : null;
+        String timestampText = timestampMillis == Long.MIN_VALUE ? timestamp : null;
+        this.unencoded = idText == null && deadlineText == null && timestampText == null ? null
+                : new String[]{idText, deadlineText, timestampText};
+    }
+
+    // Rebuilds a job from the fields of another, e.g. as OffHeapJobTable stored them
+    JobRequest(long idHigh, long idLow, int clientCode, String jobDescription, int duration, int redundancyLevel,
+               int deadlineDay, long timestampMillis, String[] unencoded) {
+        this.idHigh = idHigh;
+        this.idLow = idLow;
+        this.clientCode = clientCode;
+        this.jobDescription = jobDescription;
+        this.duration = duration;
+        this.redundancyLevel = redundancyLevel;
+        this.deadlineDay = deadlineDay;
+        this.timestampMillis = timestampMillis;
+        this.unencoded = unencoded;
+    }
+
+    // The UUID a job ID encodes, or null if the ID would not print back the same
+    static UUID parseId(String jobId) {
+        if (jobId == null || jobId.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(jobId);
+            return uuid.toString().equals(jobId) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int parseDay(String date) {
+        try {
+            LocalDate day = LocalDate.parse(date);
+            return day.toString().equals(date) ? (int) day.toEpochDay() : Integer.MIN_VALUE;
+        } catch (DateTimeParseException | NullPointerException e) {
+            return Integer.MIN_VALUE;
+        }
+    }
+
+    private static long parseMillis(String timestamp) {
+        try {
+            long millis = LocalDateTime.parse(timestamp, TIMESTAMP_FORMAT).atZone(ZONE).toInstant().toEpochMilli();
+            return formatMillis(millis).equals(timestamp) ? millis : Long.MIN_VALUE;   // Not in a DST gap
+        } catch (DateTimeParseException | NullPointerException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static String formatMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZONE).format(TIMESTAMP_FORMAT);
+    }
+
+    // The text of an unencoded field (ID, DEADLINE or TIMESTAMP), or null if it is encoded
+    String text(int slot) {
+        return unencoded == null ? null : unencoded[slot];
+    }
+
+    // Getter methods
+    public String getJobId() {
+        String text = text(ID);
+        return text != null ? text : new UUID(idHigh, idLow).toString();
+    }
+
+    public String getClientId() {
+        return StringDictionary.USERS.decode(clientCode);
+    }
+
+    public String getJobDescription() {
+        return jobDescription;
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    public int getRedundancyLevel() {
+        return redundancyLevel;
+    }
+
+    public String getJobDeadline() {
+        String text = text(DEADLINE);
+        return text != null ? text : LocalDate.ofEpochDay(deadlineDay).toString();
+    }
+
+    public String getTimestamp() {
+        String text = text(TIMESTAMP);
+        return text != null ? text : formatMillis(timestampMillis);
+    }
+
+    // Creation time in epoch millis, or Long.MIN_VALUE if the timestamp is free text
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    // The compact fields, for OffHeapJobTable
+    long idHigh() {
+        return idHigh;
+    }
+
+    long idLow() {
+        return idLow;
+    }
+
+    int clientCode() {
+        return clientCode;
+    }
+
+    int deadlineDay() {
+        return deadlineDay;
+    }
+
+    // Whether this job's ID is uuid (when not null) or else the text jobId
+    boolean hasId(UUID uuid, String jobId) {
+        String text = text(ID);
+        return uuid != null ? text == null && idHigh == uuid.getMostSignificantBits() && idLow == uuid.getLeastSignificantBits()
+                : jobId.equals(text);
+    }
+
+    boolean hasSameId(JobRequest other) {
+        String text = text(ID);
+        return text != null ? text.equals(other.text(ID)) : other.text(ID) == null && idHigh == other.idHigh && idLow == other.idLow;
+    }
+
+    // A hash of the ID that hasId matches, computed without building the ID string
+    int idHash() {
+        String text = text(ID);
+        return text != null ? text.hashCode() : Long.hashCode(idHigh ^ idLow);
+    }
+
+    static int idHash(UUID uuid, String jobId) {
+        return uuid != null ? Long.hashCode(uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits()) : jobId.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "JobRequest{" +
+                "jobId='" + getJobId() + '\'' +
+                ", clientId='" + getClientId() + '\'' +
+                ", jobDescription='" + jobDescription + '\'' +
+                ", duration=" + duration +
+                ", redundancyLevel=" + redundancyLevel +
+                ", jobDeadline='" + getJobDeadline() + '\'' +
+                ", timestamp='" + getTimestamp() + '\'' +
+                '}';
+    }
+}
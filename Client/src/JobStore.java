@@ -0,0 +1,23 @@
+// JobStore.java
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Durable copy of the job queue. VCController keeps the queue in memory; it
+// loads it from the store at startup and records every change through it.
+public interface JobStore {
+    // Streams every job to rows as it is read, without building the whole list first
+    void loadAll(Consumer<JobRequest> rows) throws StoreException;
+
+    default List<JobRequest> loadAll() throws StoreException {
+        List<JobRequest> jobs = new ArrayList<>();
+        loadAll(jobs::add);
+        return jobs;
+    }
+
+    void insert(JobRequest job) throws StoreException;
+
+    // False if no job has this ID
+    boolean delete(String jobId) throws StoreException;
+}
@@ -0,0 +1,394 @@
+// Journal.java
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+// Append-only event log in fixed-size segment files (journal-<first sequence>.seg)
+// mapped into memory, so an append is a few writes into a MappedByteBuffer and
+// recovery scans the mapped files without reading them into the heap. Each record
+// is framed as
+//   int length | int CRC32C of (sequence + payload) | long sequence | payload
+// where the payload is the event's TabSeparated fields in UTF-8. A zero length
+// marks the end of what was written; a new segment is started when the next
+// record does not fit. A record torn by a crash fails its CRC and recovery zeroes
+// it and everything after it, so new records start from the last good one.
+//
+// Appends reach the page cache immediately, which survives the process dying;
+// when they reach the disk depends on the fsync policy:
+//   WRITE    - every append is forced before it returns
+//   GROUP    - writers wait in awaitDurable(); one force covers every event
+//              appended before it started, so concurrent writers share it
+//   INTERVAL - a background thread forces every intervalMillis; a power loss
+//              may lose that much
+// Appends must be serialized by the caller, who also decides when to rotate to a
+// new segment (after a snapshot) and delete the segments it supersedes.
+public class Journal {
+    public enum FsyncPolicy {
+        WRITE,
+        GROUP,
+        INTERVAL
+    }
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".seg";
+    private static final int MAGIC = 0x56434A31;       // "VCJ1"
+    private static final int SEGMENT_HEADER = 16;       // magic, reserved, first sequence
+    private static final int RECORD_HEADER = 16;        // length, crc, sequence
+
+    private final Path directory;
+    private final FsyncPolicy policy;
+    private final long intervalMillis;
+    private final int segmentBytes;
+    private final Consumer<String> logger;
+    private final CRC32C crc = new CRC32C();            // Used by the appending thread and recovery only
+
+    // Guards the fields below. A ReentrantLock rather than a monitor: force() and
+    // rolling block on disk, and a virtual thread blocked inside synchronized pins
+    // its carrier.
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition syncDone = syncLock.newCondition();  // Signalled when a GROUP force ends
+    private MappedByteBuffer segment;                   // Current segment
+    private long segmentFirstSeq;
+    private int position;                               // Where the next record goes in segment
+    private long nextSeq = 1;
+    private long appendedSeq;                           // Last event written to the mapping
+    private long durableSeq;                            // Last event known to be on disk
+    private boolean syncing;                            // A GROUP force is in progress
+    private long forces;
+    private long segmentsRolled;
+    private volatile Thread flusher;
+
+    public Journal(Path directory, FsyncPolicy policy, long intervalMillis, int segmentBytes, Consumer<String> logger) {
+        this.directory = directory;
+        this.policy = policy;
+        this.intervalMillis = intervalMillis;
+        this.segmentBytes = segmentBytes;
+        this.logger = logger;
+    }
+
+    // Reads every event after afterSeq from the existing segments, zeroing a record
+    // torn by a crash, and positions the journal after the last good record
+    public List<String[]> recover(long afterSeq) throws IOException {
+        List<String[]> events = new ArrayList<>();
+        List<Path> segments = segments();
+        long lastSeq = afterSeq;
+        for (int i = 0; i < segments.size(); i++) {
+            Path path = segments.get(i);
+            boolean last = i == segments.size() - 1;
+            MappedByteBuffer mapped = map(path, last);
+            if (last && mapped.capacity() >= SEGMENT_HEADER && mapped.getInt(0) == 0) {
+                mapped.putLong(8, firstSeq(path)); // Created just before a crash, header never written
+                mapped.putInt(0, MAGIC);
+            }
+            if (mapped.capacity() < SEGMENT_HEADER || mapped.getInt(0) != MAGIC) {
+                throw new IOException(path + " is not a journal segment");
+            }
+            int offset = SEGMENT_HEADER;
+            while (offset + RECORD_HEADER <= mapped.capacity()) {
+                int length = mapped.getInt(offset);
+                if (length == 0) {
+                    break; // End of the written part
+                }
+                if (length < 0 || offset + RECORD_HEADER + length > mapped.capacity()
+                        || checksum(mapped, offset, length) != mapped.getInt(offset + 4)) {
+                    logger.accept("Dropping torn journal record at offset " + offset + " of " + path);
+                    if (last) {
+                        zero(mapped, offset);
+                    }
+                    break;
+                }
+                long seq = mapped.getLong(offset + 8);
+                if (seq > afterSeq) {
+                    if (seq != lastSeq + 1) {
+                        logger.accept("Journal gap: event " + seq + " follows " + lastSeq + " in " + path);
+                    }
+                    lastSeq = seq;
+                    events.add(TabSeparated.split(decode(mapped, offset + RECORD_HEADER, length)));
+                }
+                offset += RECORD_HEADER + length;
+            }
+            if (last) {
+                segment = mapped;
+                segmentFirstSeq = firstSeq(path);
+                position = offset;
+            }
+        }
+        nextSeq = lastSeq + 1;
+        appendedSeq = lastSeq;
+        durableSeq = lastSeq;
+        if (segment == null) {
+            startSegment(nextSeq);
+        }
+        if (policy == FsyncPolicy.INTERVAL) {
+            startFlusher();
+        }
+        return events;
+    }
+
+    // Appends one event and returns its sequence number; the caller serializes appends
+    public long append(String... fields) throws IOException {
+        byte[] payload = TabSeparated.join(fields).getBytes(StandardCharsets.UTF_8);
+        if (payload.length == 0) {
+            throw new IOException("Empty event"); // A zero length marks the end of a segment
+        }
+        if (SEGMENT_HEADER + RECORD_HEADER + payload.length > segmentBytes) {
+            throw new IOException("Event of " + payload.length + " bytes does not fit a " + segmentBytes + " byte segment");
+        }
+        long seq = nextSeq;
+        syncLock.lock();
+        try {
+            if (position + RECORD_HEADER + payload.length > segment.capacity()) {
+                roll(seq);
+            }
+            int offset = position;
+            segment.putLong(offset + 8, seq);
+            ByteBuffer target = segment.duplicate();
+            target.position(offset + RECORD_HEADER);
+            target.put(payload);
+            segment.putInt(offset + 4, checksum(segment, offset, payload.length));
+            segment.putInt(offset, payload.length);   // Written last: a non-zero length marks a whole record
+            position = offset + RECORD_HEADER + payload.length;
+            if (policy == FsyncPolicy.WRITE) {
+                segment.force();
+                forces++;
+                durableSeq = seq;
+            }
+            appendedSeq = seq;
+        } finally {
+            syncLock.unlock();
+        }
+        nextSeq = seq + 1;
+        return seq;
+    }
+
+    // Returns once event seq is on disk as far as the policy promises; call it
+    // without holding the lock that serializes appends, so that events appended
+    // while one force runs are covered by the next one
+    public void awaitDurable(long seq) throws IOException {
+        if (policy != FsyncPolicy.GROUP) {
+            return;
+        }
+        long target;
+        MappedByteBuffer current;
+        syncLock.lock();
+        try {
+            while (syncing && durableSeq < seq) {
+                try {
+                    syncDone.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for the journal to sync", e);
+                }
+            }
+            if (durableSeq >= seq) {
+                return; // Someone else's force covered it
+            }
+            syncing = true;
+            target = appendedSeq;
+            current = segment;
+        } finally {
+            syncLock.unlock();
+        }
+        boolean forced = false;
+        try {
+            current.force(); // Only the dirty pages are written
+            forced = true;
+        } finally {
+            syncLock.lock();
+            try {
+                syncing = false;
+                if (forced) {
+                    forces++;
+                    durableSeq = Math.max(durableSeq, target);
+                }
+                syncDone.signalAll();
+            } finally {
+                syncLock.unlock();
+            }
+        }
+    }
+
+    // Starts a new segment whose first event will be the next one; everything so far is forced
+    public void rotate() throws IOException {
+        syncLock.lock();
+        try {
+            if (segmentFirstSeq != nextSeq) {
+                roll(nextSeq);
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    // Called with syncLock held: forces the current segment and maps a fresh one
+    private void roll(long firstSeq) throws IOException {
+        while (syncing) {
+            try {
+                syncDone.await(); // Let a GROUP force of this segment finish
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted rolling the journal", e);
+            }
+        }
+        segment.force();
+        forces++;
+        durableSeq = appendedSeq;
+        syncDone.signalAll();
+        startSegment(firstSeq);
+        segmentsRolled++;
+    }
+
+    private void startSegment(long firstSeq) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", PREFIX, firstSeq, SUFFIX));
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(segmentBytes); // Sparse: reads as zeros until written
+        }
+        MappedByteBuffer mapped = map(path, true);
+        mapped.putLong(8, firstSeq);
+        mapped.putInt(0, MAGIC);
+        segment = mapped;
+        segmentFirstSeq = firstSeq;
+        position = SEGMENT_HEADER;
+    }
+
+    // Deletes the segments that only hold events up to seq. A deleted segment's
+    // mapping is released by the GC; the file's space is freed then.
+    public void deleteUpTo(long seq) throws IOException {
+        List<Path> segments = segments();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstSeq(segments.get(i + 1)) <= seq + 1) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    public long getLastSeq() {
+        return nextSeq - 1;
+    }
+
+    public long getForces() {
+        syncLock.lock();
+        try {
+            return forces;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    public long getSegmentsRolled() {
+        syncLock.lock();
+        try {
+            return segmentsRolled;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    public FsyncPolicy getPolicy() {
+        return policy;
+    }
+
+    public void close() {
+        Thread thread = flusher;
+        flusher = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        syncLock.lock();
+        try {
+            if (segment != null) {
+                segment.force();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void startFlusher() {
+        Thread thread = new Thread(() -> {
+            while (flusher == Thread.currentThread()) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                syncLock.lock();
+                try {
+                    if (durableSeq < appendedSeq) {
+                        segment.force();
+                        forces++;
+                        durableSeq = appendedSeq;
+                    }
+                } finally {
+                    syncLock.unlock();
+                }
+            }
+        }, "journal-flusher");
+        thread.setDaemon(true);
+        flusher = thread;
+        thread.start();
+    }
+
+    private MappedByteBuffer map(Path path, boolean writable) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), writable ? "rw" : "r")) {
+            return file.getChannel().map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    0, file.length()); // The mapping stays valid after the file is closed
+        }
+    }
+
+    // CRC32C of the sequence and payload of the record at offset, computed on the mapping itself
+    private int checksum(MappedByteBuffer buffer, int offset, int length) {
+        ByteBuffer covered = buffer.duplicate();
+        covered.limit(offset + RECORD_HEADER + length).position(offset + 8);
+        crc.reset();
+        crc.update(covered);
+        return (int) crc.getValue();
+    }
+
+    private static String decode(MappedByteBuffer buffer, int offset, int length) {
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(offset + length).position(offset);
+        return StandardCharsets.UTF_8.decode(payload).toString();
+    }
+
+    // Clears a torn record and whatever follows it, so no leftover bytes can look like a record later
+    private static void zero(MappedByteBuffer buffer, int from) {
+        byte[] zeros = new byte[8192];
+        ByteBuffer target = buffer.duplicate();
+        target.position(from);
+        while (target.hasRemaining()) {
+            target.put(zeros, 0, Math.min(zeros.length, target.remaining()));
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        Collections.sort(segments); // Zero-padded names sort by first sequence
+        return segments;
+    }
+
+    private static long firstSeq(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,209 @@
+// MemoryStorage.java
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Keeps everything in the heap and persists nothing. Lets tests and benchmarks
+// run the full server without MySQL, so they measure request handling alone.
+// FileStorage also uses it as its in-memory image.
+public class MemoryStorage implements Storage {
+    private final Jobs jobs = new Jobs();
+    private final Vehicles vehicles = new Vehicles();
+    private final Users users = new Users();
+
+    @Override
+    public JobStore jobs() {
+        return jobs;
+    }
+
+    @Override
+    public VehicleStore vehicles() {
+        return vehicles;
+    }
+
+    @Override
+    public UserStore users() {
+        return users;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+
+    // Jobs in submission order
+    static class Jobs implements JobStore {
+        private final Map<String, JobRequest> byId = new LinkedHashMap<>();
+
+        @Override
+        public synchronized void loadAll(Consumer<JobRequest> rows) {
+            byId.values().forEach(rows);
+        }
+
+        @Override
+        public synchronized List<JobRequest> loadAll() {
+            return new ArrayList<>(byId.values());
+        }
+
+        @Override
+        public synchronized void insert(JobRequest job) {
+            byId.put(job.getJobId(), job);
+        }
+
+        @Override
+        public synchronized boolean delete(String jobId) {
+            return byId.remove(jobId) != null;
+        }
+
+        synchronized boolean contains(String jobId) {
+            return byId.containsKey(jobId);
+        }
+
+        synchronized int size() {
+            return byId.size();
+        }
+    }
+
+    // Vehicles in registration order; carId is assigned like MySQL's AUTO_INCREMENT
+    static class Vehicles implements VehicleStore {
+        private final List<Vehicle> vehicles = new ArrayList<>();
+        private long lastCarId;
+
+        private static class Vehicle {
+            final long carId;
+            final CarRentals car;
+
+            Vehicle(long carId, CarRentals car) {
+                this.carId = carId;
+                this.car = car;
+                car.setCarId(Long.toString(carId));
+            }
+        }
+
+        @Override
+        public synchronized void loadAll(Consumer<CarRentals> rows) {
+            for (Vehicle vehicle : vehicles) {
+                rows.accept(vehicle.car);
+            }
+        }
+
+        @Override
+        public synchronized List<String[]> findByOwner(String ownerId) {
+            List<String[]> found = new ArrayList<>();
+            for (Vehicle vehicle : vehicles) {
+                if (vehicle.car.getOwnerId().equals(ownerId)) {
+                    found.add(row(vehicle));
+                }
+            }
+            return found;
+        }
+
+        // Every vehicle as findByOwner() returns them, carId first
+        synchronized List<String[]> rows() {
+            List<String[]> rows = new ArrayList<>(vehicles.size());
+            for (Vehicle vehicle : vehicles) {
+                rows.add(row(vehicle));
+            }
+            return rows;
+        }
+
+        private static String[] row(Vehicle vehicle) {
+            CarRentals car = vehicle.car;
+            return new String[] {
+                Long.toString(vehicle.carId), car.getOwnerId(), car.getVehicleModel(), car.getVehicleBrand(),
+                car.getPlateNumber(), car.getSerialNumber(), car.getVinNumber(), car.getResidencyTime()
+            };
+        }
+
+        @Override
+        public synchronized void insert(CarRentals car) {
+            vehicles.add(new Vehicle(++lastCarId, car));
+        }
+
+        // Puts back a vehicle with the carId it had, e.g. from a snapshot
+        synchronized void restore(long carId, CarRentals car) {
+            vehicles.add(new Vehicle(carId, car));
+            lastCarId = Math.max(lastCarId, carId);
+        }
+
+        synchronized long getLastCarId() {
+            return lastCarId;
+        }
+
+        synchronized void setLastCarId(long lastCarId) {
+            this.lastCarId = lastCarId;
+        }
+
+        @Override
+        public synchronized boolean delete(String ownerId, String vinNumber) {
+            boolean removed = false;
+            for (Iterator<Vehicle> it = vehicles.iterator(); it.hasNext(); ) {
+                CarRentals car = it.next().car;
+                if (car.getOwnerId().equals(ownerId) && car.getVinNumber().equals(vinNumber)) {
+                    it.remove();
+                    removed = true;
+                }
+            }
+            return removed;
+        }
+
+        synchronized boolean contains(String ownerId, String vinNumber) {
+            for (Vehicle vehicle : vehicles) {
+                if (vehicle.car.getOwnerId().equals(ownerId) && vehicle.car.getVinNumber().equals(vinNumber)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        synchronized int size() {
+            return vehicles.size();
+        }
+    }
+
+    // Users by username
+    static class Users implements UserStore {
+        private final Map<String, String[]> byUsername = new LinkedHashMap<>();
+
+        @Override
+        public synchronized void loadAll(Consumer<String[]> rows) {
+            for (String[] user : byUsername.values()) {
+                rows.accept(user.clone());
+            }
+        }
+
+        @Override
+        public synchronized List<String[]> loadAll() {
+            List<String[]> all = new ArrayList<>(byUsername.size());
+            loadAll(all::add);
+            return all;
+        }
+
+        @Override
+        public synchronized void insert(String[] user) throws StoreException {
+            if (byUsername.containsKey(user[USERNAME])) {
+                throw new StoreException("Duplicate username " + user[USERNAME], null);
+            }
+            byUsername.put(user[USERNAME], user.clone());
+        }
+
+        @Override
+        public synchronized String[] findByUsername(String username) {
+            String[] user = byUsername.get(username);
+            return user != null ? user.clone() : null;
+        }
+
+        synchronized int size() {
+            return byUsername.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "In-memory storage: " + jobs.size() + " jobs, " + vehicles.size() + " vehicles";
+    }
+}
@@ -0,0 +1,274 @@
+// MySqlStorage.java
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// The original schema: JobRequests, CarRentals and Users tables in MySQL, created
+// and upgraded by SchemaManager. Every store borrows from one ConnectionPool; job
+// and vehicle writes go through the write-behind queue when it is enabled.
+public class MySqlStorage implements Storage {
+    // Run per request; SchemaManager checks these use an index. jobId is stored as
+    // BINARY(16) and converted to and from the UUID string at the edge.
+    static final String DELETE_JOB = "DELETE FROM JobRequests WHERE jobId = UUID_TO_BIN(?)";
+    static final String SELECT_VEHICLES_BY_OWNER = "SELECT carId, ownerId, model, brand, plateNumber, serialNumber, vinNumber, residencyTime FROM CarRentals WHERE ownerId = ?";
+    static final String DELETE_VEHICLE = "DELETE FROM CarRentals WHERE ownerId = ? AND vinNumber = ?";
+    static final String SELECT_USER_BY_USERNAME = "SELECT * FROM Users WHERE username = ?";
+    // The AUTO_INCREMENT id of a row just inserted; through write-behind there is no
+    // generated-keys result to read it from
+    static final String SELECT_CAR_ID = "SELECT MAX(carId) FROM CarRentals WHERE ownerId = ? AND vinNumber = ?";
+
+    private final ConnectionPool pool;
+    private final WriteBehindQueue writeBehind;  // Group-commits inserts and deletes, null to write directly
+    private final int fetchSize;                  // Rows per round trip when streaming a whole table
+    private final JobStore jobs = new Jobs();
+    private final VehicleStore vehicles = new Vehicles();
+    private final UserStore users = new Users();
+
+    public MySqlStorage(ConnectionPool pool, WriteBehindQueue writeBehind, int fetchSize) {
+        this.pool = pool;
+        this.writeBehind = writeBehind;
+        this.fetchSize = Math.max(1, fetchSize);
+    }
+
+    @Override
+    public JobStore jobs() {
+        return jobs;
+    }
+
+    @Override
+    public VehicleStore vehicles() {
+        return vehicles;
+    }
+
+    @Override
+    public UserStore users() {
+        return users;
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    // Null when write-behind is disabled
+    public WriteBehindQueue getWriteBehind() {
+        return writeBehind;
+    }
+
+    private interface RowReader<T> {
+        T read(ResultSet resultSet) throws SQLException;
+    }
+
+    // Reads a whole table through a forward-only cursor, handing each row on as it
+    // arrives. With useCursorFetch=true on the URL the driver fetches fetchSize rows
+    // per round trip instead of buffering the full result set first.
+    private <T> void stream(String query, RowReader<T> reader, Consumer<T> rows) throws StoreException {
+        try (ConnectionPool.PooledConnection connection = pool.borrow();
+             Statement statement = connection.getConnection().createStatement(
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(fetchSize);
+            try (ResultSet resultSet = statement.executeQuery(query)) {
+                while (resultSet.next()) {
+                    rows.accept(reader.read(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            throw new StoreException(e.getMessage(), e);
+        }
+    }
+
+    // Runs an INSERT/DELETE and returns the rows affected; with write-behind enabled it
+    // waits for the group commit that includes it, so memory is only updated after commit.
+    // A write saved to the retry file counts as one row: it will be applied on replay,
+    // so the caller updates memory as if it had committed.
+    private int update(String query, Object... params) throws StoreException {
+        if (writeBehind != null) {
+            try {
+                return writeBehind.execute(query, params);
+            } catch (WriteBehindQueue.WriteFailedException e) {
+                if (e.isSaved()) {
+                    return 1;
+                }
+                throw new StoreException(e.getMessage(), e);
+            }
+        }
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            PreparedStatement statement = connection.prepare(query);
+            for (int i = 0; i < params.length; i++) {
+                statement.setObject(i + 1, params[i]);
+            }
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new StoreException(e.getMessage(), e);
+        }
+    }
+
+    private class Jobs implements JobStore {
+        @Override
+        public void loadAll(Consumer<JobRequest> rows) throws StoreException {
+            stream("SELECT BIN_TO_UUID(jobId) AS jobId, clientId, jobDescription, duration, redundancyLevel, jobDeadline, timestamp FROM JobRequests", resultSet -> new JobRequest(
+                    resultSet.getString("jobId"),
+                    resultSet.getString("clientId"),
+                    resultSet.getString("jobDescription"),
+                    resultSet.getInt("duration"),
+                    resultSet.getInt("redundancyLevel"),
+                    resultSet.getString("jobDeadline"),
+                    resultSet.getTimestamp("timestamp").getTime()
+            ), rows);
+        }
+
+        @Override
+        public void insert(JobRequest job) throws StoreException {
+            update("INSERT INTO JobRequests (jobId, clientId, jobDescription, duration, redundancyLevel, jobDeadline, timestamp) VALUES (UUID_TO_BIN(?), ?, ?, ?, ?, ?, NOW())",
+                    job.getJobId(), job.getClientId(), job.getJobDescription(), job.getDuration(),
+                    job.getRedundancyLevel(), job.getJobDeadline());
+        }
+
+        @Override
+        public boolean delete(String jobId) throws StoreException {
+            return update(DELETE_JOB, jobId) > 0;
+        }
+    }
+
+    private class Vehicles implements VehicleStore {
+        @Override
+        public void loadAll(Consumer<CarRentals> rows) throws StoreException {
+            stream("SELECT * FROM CarRentals", resultSet -> {
+                CarRentals car = new CarRentals(
+                    resultSet.getString("ownerId"),
+                    resultSet.getString("model"),
+                    resultSet.getString("brand"),
+                    resultSet.getString("plateNumber"),
+                    resultSet.getString("serialNumber"),
+                    resultSet.getString("vinNumber"),
+                    resultSet.getString("residencyTime")   // As findByOwner reads it
+                );
+                car.setCarId(resultSet.getString("carId"));
+                return car;
+            }, rows);
+        }
+
+        @Override
+        public List<String[]> findByOwner(String ownerId) throws StoreException {
+            List<String[]> vehicles = new ArrayList<>();
+            try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+                PreparedStatement statement = connection.prepare(SELECT_VEHICLES_BY_OWNER);
+
+                statement.setString(1, ownerId);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        vehicles.add(new String[] {
+                            resultSet.getString("carId"),
+                            resultSet.getString("ownerId"),
+                            resultSet.getString("model"),
+                            resultSet.getString("brand"),
+                            resultSet.getString("plateNumber"),
+                            resultSet.getString("serialNumber"),
+                            resultSet.getString("vinNumber"),
+                            resultSet.getString("residencyTime")
+                        });
+                    }
+                }
+            } catch (SQLException e) {
+                throw new StoreException(e.getMessage(), e);
+            }
+            return vehicles;
+        }
+
+        @Override
+        public void insert(CarRentals car) throws StoreException {
+            update("INSERT INTO CarRentals (ownerId, model, brand, plateNumber, serialNumber, vinNumber, residencyTime) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    car.getOwnerId(), car.getVehicleModel(), car.getVehicleBrand(), car.getPlateNumber(),
+                    car.getSerialNumber(), car.getVinNumber(), java.sql.Date.valueOf(car.getResidencyTime()));
+            // The row is in (or saved for retry), so failing here would leave the caller
+            // thinking it is not. Without an id the vehicle gets one when reconcileVehicles reloads it.
+            try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+                PreparedStatement statement = connection.prepare(SELECT_CAR_ID);
+                statement.setString(1, car.getOwnerId());
+                statement.setString(2, car.getVinNumber());
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next() && resultSet.getString(1) != null) {
+                        car.setCarId(resultSet.getString(1));
+                    }
+                }
+            } catch (SQLException e) {
+                System.err.println("Vehicle " + car.getVinNumber() + " stored, but its carId could not be read: "
+                        + e.getMessage());
+            }
+        }
+
+        @Override
+        public boolean delete(String ownerId, String vinNumber) throws StoreException {
+            return update(DELETE_VEHICLE, ownerId, vinNumber) > 0;
+        }
+    }
+
+    private class Users implements UserStore {
+        @Override
+        public void loadAll(Consumer<String[]> rows) throws StoreException {
+            stream("SELECT * FROM Users", this::read, rows);
+        }
+
+        @Override
+        public void insert(String[] user) throws StoreException {
+            try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+                PreparedStatement statement = connection.prepare(
+                    "INSERT INTO Users (userId, firstName, lastName, username, email, dob, password, accountType) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+                for (int i = 0; i < user.length; i++) {
+                    if (i == DOB) {
+                        statement.setDate(i + 1, java.sql.Date.valueOf(user[i]));
+                    } else {
+                        statement.setString(i + 1, user[i]);
+                    }
+                }
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                throw new StoreException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public String[] findByUsername(String username) throws StoreException {
+            try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+                PreparedStatement statement = connection.prepare(SELECT_USER_BY_USERNAME);
+                statement.setString(1, username);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? read(resultSet) : null;
+                }
+            } catch (SQLException e) {
+                throw new StoreException(e.getMessage(), e);
+            }
+        }
+
+        private String[] read(ResultSet resultSet) throws SQLException {
+            return new String[]{
+                resultSet.getString("userId"),
+                resultSet.getString("firstName"),
+                resultSet.getString("lastName"),
+                resultSet.getString("username"),
+                resultSet.getString("email"),
+                resultSet.getString("dob"),
+                resultSet.getString("password"),
+                resultSet.getString("accountType")
+            };
+        }
+    }
+
+    // Commits the writes still queued behind, then closes the pool's connections
+    @Override
+    public void close() {
+        if (writeBehind != null) {
+            writeBehind.stop();
+        }
+        pool.close();
+    }
+
+    @Override
+    public String toString() {
+        return pool + (writeBehind != null ? "   " + writeBehind : "");
+    }
+}
@@ -0,0 +1,505 @@
+// NioServerTransport.java
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+// Non-blocking transport for the line based text protocol and the binary v2
+// protocol (picked per connection from its first byte). One acceptor thread and
+// a small number of selector threads own all sockets; only request handlers run
+// on the worker pool, so idle connections cost a buffer instead of a thread.
+// When the worker pool refuses a request the client gets a "busy" answer for it
+// from the selector thread, and the connection stays open. A connection with
+// MAX_OUTSTANDING requests read but not yet answered stops being read until
+// replies go out, so one client cannot queue up unbounded work.
+public class NioServerTransport {
+    private static final int MAX_LINE_LENGTH = 64 * 1024;  // Drop clients that never send a newline
+    static final int MAX_OUTSTANDING = Server.MAX_PIPELINED_REQUESTS;  // Same per-connection limit as blocking
+    private static final byte[] END_OF_RESPONSE = "\n\n".getBytes(StandardCharsets.UTF_8);
+
+    // Turns one v2 frame body into a response frame (null if nothing is owed, e.g. for
+    // a PONG); may send more frames later through laterReply
+    public interface FrameHandler {
+        ByteBuffer handle(ClientSession session, ByteBuffer body, Consumer<ByteBuffer> laterReply);
+    }
+
+    private final int port;
+    private final BiFunction<ClientSession, String, String> requestHandler;  // Turns one request line into a response
+    private final FrameHandler frameHandler;
+    private final AdmissionControl admission;
+    private final ConnectedClients clients;
+    private final Consumer<String> logger;
+    private final IoLoop[] ioLoops;
+    private final ExecutorService workers;
+    private volatile boolean running;
+    private ServerSocketChannel serverChannel;
+    private Selector acceptSelector;
+
+    public NioServerTransport(int port, int ioThreads, ExecutorService workers,
+                              BiFunction<ClientSession, String, String> requestHandler,
+                              FrameHandler frameHandler, AdmissionControl admission,
+                              ConnectedClients clients, Consumer<String> logger) {
+        this.port = port;
+        this.requestHandler = requestHandler;
+        this.frameHandler = frameHandler;
+        this.admission = admission;
+        this.clients = clients;
+        this.logger = logger;
+        this.ioLoops = new IoLoop[Math.max(1, ioThreads)];
+        this.workers = workers;
+    }
+
+    // Runs the accept loop on the calling thread until stop() is called
+    public void run() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        acceptSelector = Selector.open();
+        serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+        for (int i = 0; i < ioLoops.length; i++) {
+            ioLoops[i] = new IoLoop(Selector.open());
+            Thread thread = new Thread(ioLoops[i], "nio-io-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        running = true;
+
+        int next = 0;
+        try {
+            while (running) {
+                acceptSelector.select();
+                Iterator<SelectionKey> keys = acceptSelector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid() || !key.isAcceptable()) {
+                        continue;
+                    }
+                    SocketChannel channel;
+                    while ((channel = serverChannel.accept()) != null) {
+                        channel.configureBlocking(false);
+                        channel.socket().setTcpNoDelay(true);
+                        ioLoops[next].register(channel); // Spread connections round-robin
+                        next = (next + 1) % ioLoops.length;
+                    }
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // stopAccepting() closed the selector
+        } finally {
+            stopAccepting(); // Connections stay open until stop()
+        }
+    }
+
+    // Closes the listening socket; open connections are still served
+    public void stopAccepting() {
+        running = false;
+        try {
+            if (acceptSelector != null && acceptSelector.isOpen()) {
+                acceptSelector.close();
+            }
+            if (serverChannel != null && serverChannel.isOpen()) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            logger.accept("Error closing NIO listener: " + e.getMessage());
+        }
+    }
+
+    // Closes the listening socket, every connection and the worker pool
+    public void stop() {
+        stopAccepting();
+        for (IoLoop loop : ioLoops) {
+            if (loop != null) {
+                loop.shutdown();
+            }
+        }
+        workers.shutdown();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // A selector thread owning a subset of the connections
+    private class IoLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();  // Work handed over from other threads
+
+        IoLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void register(SocketChannel channel) {
+            execute(() -> {
+                try {
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                    key.attach(new Connection(this, channel, key,
+                            admission.openSession(String.valueOf(channel.getRemoteAddress()))));
+                } catch (IOException e) {
+                    logger.accept("Error registering client connection: " + e.getMessage());
+                    closeQuietly(channel);
+                }
+            });
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void shutdown() {
+            execute(() -> {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof Connection) {
+                        ((Connection) key.attachment()).close();
+                    } else {
+                        closeQuietly(key.channel());
+                    }
+                }
+                try {
+                    selector.close();
+                } catch (IOException ignored) {
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (selector.isOpen()) {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+                    if (!selector.isOpen()) {
+                        break;
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        if (connection == null) {
+                            continue;
+                        }
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                connection.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.onWritable();
+                            }
+                        } catch (IOException e) {
+                            connection.close();
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    logger.accept("NIO selector stopped: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Per-socket state. Only touched from its IoLoop thread. Text requests from one
+    // client are handled one at a time so responses keep their order; v2 frames carry
+    // correlation IDs, so they are all handed to the workers at once and answered
+    // in whatever order they finish.
+    private class Connection {
+        private final IoLoop loop;
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ClientSession session;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(1024);
+        private final Queue<Request> pendingRequests = new ArrayDeque<>();
+        private int outstanding;           // Requests read and not yet answered, pending ones included
+        private final Queue<ByteBuffer> writeQueue = new ArrayDeque<>();
+        private Boolean binary;            // Unknown until the first byte arrives
+        private boolean preambleRead;
+        private boolean processing;        // A text request is being handled
+        private boolean closeWhenFlushed;  // Close once writeQueue is empty
+
+        Connection(IoLoop loop, SocketChannel channel, SelectionKey key, ClientSession session) {
+            this.loop = loop;
+            this.channel = channel;
+            this.key = key;
+            this.session = session;
+            session.setCloser(() -> loop.execute(this::closeAfterFlush));
+            clients.add(session);
+        }
+
+        void onReadable() throws IOException {
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                close();
+                return;
+            }
+            session.touch();
+            if (binary == null && readBuffer.position() > 0) {
+                binary = ProtocolV2.isPreambleStart(readBuffer.get(0));
+                session.setProtocol(binary ? ClientSession.Protocol.V2 : ClientSession.Protocol.TEXT);
+                if (binary) {
+                    session.setFrameSender(frame -> loop.execute(() -> onResponse(new ByteBuffer[]{frame})));
+                }
+            }
+            if (!extractRequests()) {
+                close();
+                return;
+            }
+            if (!readBuffer.hasRemaining() && outstanding < MAX_OUTSTANDING) {   // Else full of requests not taken yet
+                int maxLength = Boolean.TRUE.equals(binary) ? ProtocolV2.MAX_FRAME_LENGTH + 4 : MAX_LINE_LENGTH;
+                if (readBuffer.capacity() >= maxLength) {
+                    logger.accept("Closing client connection: request too long");
+                    close();
+                    return;
+                }
+                ByteBuffer bigger = ByteBuffer.allocate(readBuffer.capacity() * 2);
+                readBuffer.flip();
+                bigger.put(readBuffer);
+                readBuffer = bigger;
+            }
+            dispatchNext();
+            updateInterest();
+        }
+
+        // Takes the complete requests out of the buffer, up to the outstanding limit;
+        // false on a protocol violation
+        private boolean extractRequests() {
+            if (Boolean.TRUE.equals(binary)) {
+                return extractFrames();
+            }
+            extractLines();
+            return true;
+        }
+
+        // Splits the bytes read so far on '\n' and keeps any partial line
+        private void extractLines() {
+            readBuffer.flip();
+            byte[] bytes = readBuffer.array();
+            int start = 0;
+            int limit = readBuffer.limit();
+            for (int i = 0; i < limit && outstanding < MAX_OUTSTANDING; i++) {
+                if (bytes[i] == '\n') {
+                    int end = (i > start && bytes[i - 1] == '\r') ? i - 1 : i;
+                    String line = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+                    pendingRequests.add(new Request(line, null));
+                    outstanding++;
+                    start = i + 1;
+                }
+            }
+            readBuffer.position(start);
+            readBuffer.compact();
+        }
+
+        // Cuts complete length-prefixed frames out of the buffer; false on a protocol violation
+        private boolean extractFrames() {
+            readBuffer.flip();
+            try {
+                if (!preambleRead) {
+                    if (readBuffer.remaining() < ProtocolV2.MAGIC.length) {
+                        return true;
+                    }
+                    for (byte expected : ProtocolV2.MAGIC) {
+                        if (readBuffer.get() != expected) {
+                            logger.accept("Closing client connection: bad protocol preamble");
+                            return false;
+                        }
+                    }
+                    preambleRead = true;
+                }
+                while (outstanding < MAX_OUTSTANDING && readBuffer.remaining() >= 4) {
+                    int length = readBuffer.getInt(readBuffer.position());
+                    if (length < ProtocolV2.MIN_BODY_LENGTH || length > ProtocolV2.MAX_FRAME_LENGTH) {
+                        logger.accept("Closing client connection: invalid frame length " + length);
+                        return false;
+                    }
+                    if (readBuffer.remaining() < 4 + length) {
+                        break;
+                    }
+                    readBuffer.position(readBuffer.position() + 4);
+                    byte[] body = new byte[length];
+                    readBuffer.get(body);
+                    pendingRequests.add(new Request(null, ByteBuffer.wrap(body)));
+                    outstanding++;
+                }
+                return true;
+            } finally {
+                readBuffer.compact();
+            }
+        }
+
+        // One request read from the socket: a text line or a v2 frame body
+        private final class Request {
+            final String line;
+            final ByteBuffer body;
+
+            Request(String line, ByteBuffer body) {
+                this.line = line;
+                this.body = body;
+            }
+
+            ByteBuffer[] handle() {
+                if (body != null) {
+                    ByteBuffer response = frameHandler.handle(session, body,
+                            later -> loop.execute(() -> onResponse(new ByteBuffer[]{later})));
+                    return response == null ? new ByteBuffer[0] : new ByteBuffer[]{response};
+                }
+                String response;
+                try {
+                    response = requestHandler.apply(session, line);
+                } catch (RuntimeException e) {
+                    response = "Error: Unable to process request";
+                }
+                return textFrame(response);
+            }
+
+            ByteBuffer[] busy(long retryAfterMillis) {
+                if (body != null) {
+                    return new ByteBuffer[]{ProtocolV2.withCorrelationId(ProtocolV2.busy(retryAfterMillis),
+                            ProtocolV2.correlationIdOf(body))};
+                }
+                return textFrame(AdmissionControl.busyMessage(retryAfterMillis));
+            }
+        }
+
+        private ByteBuffer[] textFrame(String response) {
+            return new ByteBuffer[]{ByteBuffer.wrap(response.getBytes(StandardCharsets.UTF_8)), ByteBuffer.wrap(END_OF_RESPONSE)};
+        }
+
+        private void dispatchNext() {
+            boolean pipelined = Boolean.TRUE.equals(binary);
+            boolean refused = false;
+            while (!processing && !pendingRequests.isEmpty()) {
+                if (!session.beginRequest()) {
+                    outstanding -= pendingRequests.size();
+                    pendingRequests.clear(); // Closed for draining, nothing more is served
+                    return;
+                }
+                processing = !pipelined;
+                Request request = pendingRequests.poll();
+                try {
+                    workers.execute(() -> {
+                        ByteBuffer[] response = request.handle();
+                        loop.execute(() -> {
+                            outstanding--;
+                            onResponse(response);
+                            session.endRequest();
+                        });
+                    });
+                } catch (RejectedExecutionException e) {
+                    session.endRequest();
+                    if (workers.isShutdown()) {
+                        close();
+                        return;
+                    }
+                    // Worker queue is full: answer from here and keep the connection
+                    processing = false;
+                    outstanding--;
+                    for (ByteBuffer buffer : request.busy(admission.rejectFullQueue())) {
+                        writeQueue.add(buffer);
+                    }
+                    refused = true;
+                }
+            }
+            if (refused) {
+                try {
+                    onWritable();
+                } catch (IOException e) {
+                    close();
+                }
+            }
+        }
+
+        private void onResponse(ByteBuffer[] response) {
+            processing = false;
+            if (!channel.isOpen()) {
+                return;
+            }
+            for (ByteBuffer buffer : response) {
+                writeQueue.add(buffer);
+            }
+            try {
+                onWritable();
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (!extractRequests()) {   // Requests left in the buffer while at the limit
+                close();
+                return;
+            }
+            dispatchNext();
+            updateInterest();
+        }
+
+        void onWritable() throws IOException {
+            while (!writeQueue.isEmpty()) {
+                ByteBuffer buffer = writeQueue.peek();
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    updateInterest(); // Socket is full, wait
+                    return;
+                }
+                writeQueue.poll();
+            }
+            if (closeWhenFlushed) {
+                close();
+            } else {
+                updateInterest();
+            }
+        }
+
+        // Writes while output is queued; reads unless closing or at the outstanding limit
+        private void updateInterest() {
+            if (!key.isValid()) {
+                return;
+            }
+            int ops = writeQueue.isEmpty() ? 0 : SelectionKey.OP_WRITE;
+            if (!closeWhenFlushed && outstanding < MAX_OUTSTANDING) {
+                ops |= SelectionKey.OP_READ;
+            }
+            key.interestOps(ops);
+        }
+
+        // Lets responses already queued reach the client, then closes
+        void closeAfterFlush() {
+            if (writeQueue.isEmpty() || !key.isValid()) {
+                close();
+                return;
+            }
+            closeWhenFlushed = true;
+            updateInterest();   // Stop reading; onWritable closes when done
+        }
+
+        void close() {
+            key.cancel();
+            closeQuietly(channel);
+            clients.remove(session);
+        }
+    }
+
+    private static void closeQuietly(java.nio.channels.Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
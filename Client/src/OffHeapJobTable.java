@@ -0,0 +1,571 @@
+// OffHeapJobTable.java
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+// The job queue kept in direct memory, for backlogs of tens of millions of jobs
+// where a heap copy would make every old-generation collection walk them. The
+// heap holds only a few large buffers; a JobRequest is built when a job is
+// returned and dropped with the response. Enabled with -Dvcrts.jobs.offHeap=true.
+//
+//   records   64-byte rows of JobRequest's compact fields; removed rows are reused
+//   arena     1 MB chunks of the variable-length text: the description, plus any
+//             field JobRequest keeps unencoded. A chunk is reused once every
+//             entry in it is removed, so there is no compaction pass
+//   index     open-addressed (key, record) pairs; the key is the 64-bit fold of
+//             the job's UUID, and a match is confirmed against the record
+//   slots     the records in queue order, with Fenwick trees of presence and of
+//             duration, so a job's position and its completion time (the hours
+//             of work up to and including it) are O(log n)
+//
+// Slots are renumbered in place when they run out, as in JobRegistry. Only the
+// index is copied when it grows; presize it with the expectedJobs constructor
+// argument (-Dvcrts.jobs.offHeap.capacity) to keep that off the request path.
+public class OffHeapJobTable implements JobQueue {
+    private static final int RECORD_BYTES = 64;
+    private static final int ID_HIGH = 0;        // long
+    private static final int ID_LOW = 8;         // long
+    private static final int TIMESTAMP = 16;     // long, epoch millis
+    private static final int TEXT = 24;          // long, arena address
+    private static final int CLIENT = 32;        // int, StringDictionary.USERS code
+    private static final int DURATION = 36;      // int
+    private static final int REDUNDANCY = 40;    // int
+    private static final int DEADLINE = 44;      // int, epoch day
+    private static final int SLOT = 48;          // int
+    private static final int FLAGS = 52;         // int, bit n set when JobRequest field n is text in the arena
+    private static final int NEXT_FREE = 56;     // int, free record list
+    private static final int TEXT_LENGTH = 60;   // int, arena bytes
+
+    private static final int INDEX_BYTES = 12;   // long key, int record + 1 (0 when empty)
+    private static final int INDEX_KEY = 0;
+    private static final int INDEX_RECORD = 8;
+
+    private static final int ARENA_CHUNK = 1 << 20;
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int CHUNK_SHIFT = 16;   // Elements per chunk in the record and slot regions
+    private static final int SNAPSHOT_BATCH = 1024;  // Slots materialized per hold of the lock
+
+    // Fixed-width elements in direct buffers of 2^shift elements each
+    private static final class Region {
+        private final int width;
+        private final int shift;
+        private final long mask;
+        private ByteBuffer[] chunks = new ByteBuffer[0];
+
+        Region(int width, int shift, long elements) {
+            this.width = width;
+            this.shift = shift;
+            this.mask = (1L << shift) - 1;
+            ensure(elements);
+        }
+
+        void ensure(long elements) {
+            int needed = (int) ((elements + mask) >>> shift);
+            if (needed > chunks.length) {
+                int old = chunks.length;
+                chunks = Arrays.copyOf(chunks, needed);
+                for (int i = old; i < needed; i++) {
+                    chunks[i] = ByteBuffer.allocateDirect(width << shift).order(ByteOrder.nativeOrder());
+                }
+            }
+        }
+
+        long bytes() {
+            return (long) chunks.length * (width << shift);
+        }
+
+        private ByteBuffer chunk(long element) {
+            return chunks[(int) (element >>> shift)];
+        }
+
+        private int at(long element, int field) {
+            return (int) (element & mask) * width + field;
+        }
+
+        long getLong(long element, int field) {
+            return chunk(element).getLong(at(element, field));
+        }
+
+        void putLong(long element, int field, long value) {
+            chunk(element).putLong(at(element, field), value);
+        }
+
+        int getInt(long element, int field) {
+            return chunk(element).getInt(at(element, field));
+        }
+
+        void putInt(long element, int field, int value) {
+            chunk(element).putInt(at(element, field), value);
+        }
+    }
+
+    private final Region records;
+    private int recordsUsed;        // Records ever handed out
+    private int freeRecord = -1;
+
+    private Region index;
+    private int indexCapacity;      // A power of two, at most 70% full
+    private int size;
+    private volatile long version;  // Raised by every add and remove
+
+    private final Region slotRecords = new Region(4, CHUNK_SHIFT, INITIAL_SLOTS + 1);  // -1 for a hole
+    private final Region counts = new Region(4, CHUNK_SHIFT, INITIAL_SLOTS + 1);       // Fenwick tree, 1-based
+    private final Region durations = new Region(8, CHUNK_SHIFT, INITIAL_SLOTS + 1);    // Fenwick tree, 1-based
+    private int slotCapacity = INITIAL_SLOTS;
+    private int nextSlot = 1;
+    private int renumbers;          // Raised by every renumber(), which moves jobs between slots
+    private volatile WeakReference<VersionedList<JobRequest>> lastSnapshot = new WeakReference<>(null);
+
+    private ByteBuffer[] arena = new ByteBuffer[16];  // null for a released oversized chunk
+    private int[] arenaLive = new int[16];            // Live bytes per chunk
+    private int arenaChunks;
+    private int[] freeChunks = new int[16];
+    private int freeChunkCount;
+    private int currentChunk = -1;
+    private int cursor;
+
+    public OffHeapJobTable() {
+        this(INITIAL_SLOTS);
+    }
+
+    public OffHeapJobTable(int expectedJobs) {
+        records = new Region(RECORD_BYTES, CHUNK_SHIFT - 2, Math.max(1, expectedJobs));
+        long wanted = Math.max(16, expectedJobs * 10L / 7 + 1);
+        indexCapacity = (int) Math.min(1 << 30, Long.highestOneBit(wanted - 1) << 1);
+        index = newIndex(indexCapacity);
+    }
+
+    private static Region newIndex(int capacity) {
+        return new Region(INDEX_BYTES, Math.min(CHUNK_SHIFT, Integer.numberOfTrailingZeros(capacity)), capacity);
+    }
+
+    @Override
+    public synchronized boolean add(JobRequest job) {
+        String idText = job.text(JobRequest.ID);
+        long key = idText != null ? textKey(idText) : job.idHigh() ^ job.idLow();
+        int mask = indexCapacity - 1;
+        int at = home(key, mask);
+        for (int found; (found = index.getInt(at, INDEX_RECORD)) != 0; at = (at + 1) & mask) {
+            if (index.getLong(at, INDEX_KEY) == key && matches(found - 1, job.idHigh(), job.idLow(), idText)) {
+                return false;
+            }
+        }
+        if (nextSlot > slotCapacity) {
+            renumber();
+        }
+
+        int record = freeRecord;
+        if (record >= 0) {
+            freeRecord = records.getInt(record, NEXT_FREE);
+        } else {
+            record = recordsUsed++;
+            records.ensure(recordsUsed);
+        }
+        int flags = 0;
+        for (int field = JobRequest.ID; field <= JobRequest.TIMESTAMP; field++) {
+            if (job.text(field) != null) {
+                flags |= 1 << field;
+            }
+        }
+        byte[] text = encodeText(job, flags);
+        records.putLong(record, ID_HIGH, job.idHigh());
+        records.putLong(record, ID_LOW, job.idLow());
+        records.putLong(record, TIMESTAMP, job.getTimestampMillis());
+        records.putLong(record, TEXT, store(text));
+        records.putInt(record, CLIENT, job.clientCode());
+        records.putInt(record, DURATION, job.getDuration());
+        records.putInt(record, REDUNDANCY, job.getRedundancyLevel());
+        records.putInt(record, DEADLINE, job.deadlineDay());
+        records.putInt(record, FLAGS, flags);
+        records.putInt(record, TEXT_LENGTH, text.length);
+
+        int slot = nextSlot++;
+        records.putInt(record, SLOT, slot);
+        slotRecords.putInt(slot, 0, record);
+        update(slot, 1, job.getDuration());
+
+        index.putLong(at, INDEX_KEY, key);
+        index.putInt(at, INDEX_RECORD, record + 1);
+        if (++size * 10L > indexCapacity * 7L) {
+            rehash(indexCapacity * 2);
+        }
+        version++;
+        return true;
+    }
+
+    @Override
+    public synchronized JobRequest remove(String jobId) {
+        int at = find(jobId);
+        if (at < 0) {
+            return null;
+        }
+        int record = index.getInt(at, INDEX_RECORD) - 1;
+        JobRequest job = materialize(record);
+        delete(at);
+        int slot = records.getInt(record, SLOT);
+        slotRecords.putInt(slot, 0, -1);
+        update(slot, -1, -records.getInt(record, DURATION));
+        release(records.getLong(record, TEXT), records.getInt(record, TEXT_LENGTH));
+        records.putInt(record, NEXT_FREE, freeRecord);
+        freeRecord = record;
+        version++;
+        return job;
+    }
+
+    @Override
+    public synchronized JobRequest get(String jobId) {
+        int at = find(jobId);
+        return at < 0 ? null : materialize(index.getInt(at, INDEX_RECORD) - 1);
+    }
+
+    @Override
+    public synchronized int position(String jobId) {
+        int at = find(jobId);
+        return at < 0 ? -1 : (int) prefix(counts, 4, slotOf(at)) - 1;
+    }
+
+    @Override
+    public synchronized long completionTime(String jobId) {
+        int at = find(jobId);
+        return at < 0 ? -1 : prefix(durations, 8, slotOf(at));
+    }
+
+    // Finds the slot of job number from by descending the trees, then walks the
+    // slots after it, skipping holes left by removals since the last renumbering
+    @Override
+    public synchronized List<JobListing> listings(int from, int count) {
+        List<JobListing> listings = new ArrayList<>();
+        if (from < 0 || from >= size || count <= 0) {
+            return listings;
+        }
+        int slot = 0;
+        int remaining = from + 1;
+        long before = 0;
+        for (int step = Integer.highestOneBit(slotCapacity); step > 0; step >>= 1) {
+            int next = slot + step;
+            if (next <= slotCapacity && counts.getInt(next, 0) < remaining) {
+                slot = next;
+                remaining -= counts.getInt(next, 0);
+                before += durations.getLong(next, 0);
+            }
+        }
+        for (slot++; slot < nextSlot && listings.size() < count; slot++) {
+            int record = slotRecords.getInt(slot, 0);
+            if (record >= 0) {
+                before += records.getInt(record, DURATION);
+                listings.add(JobListing.of(materialize(record), before));
+            }
+        }
+        return listings;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    // Materialized SNAPSHOT_BATCH slots at a time, releasing the lock between
+    // batches, so a writer waits for one batch rather than the whole table. A job
+    // added or removed meanwhile may or may not be listed; the list carries the
+    // version it started from, so callers comparing versions fetch again. Callers
+    // at an unchanged version share the last list while anyone still holds it,
+    // but it is not kept on the heap for them.
+    @Override
+    public VersionedList<JobRequest> snapshot() {
+        VersionedList<JobRequest> last = lastSnapshot.get();
+        if (last != null && !last.changedSince(version)) {
+            return last;
+        }
+        List<JobRequest> jobs = null;
+        long startVersion = 0;
+        int startRenumbers = 0;
+        int slot = 1;
+        boolean more = true;
+        while (more) {
+            synchronized (this) {
+                if (jobs == null || renumbers != startRenumbers) {
+                    jobs = new ArrayList<>(size);   // Slots already read were moved; start over
+                    startVersion = version;
+                    startRenumbers = renumbers;
+                    slot = 1;
+                }
+                for (int end = Math.min(nextSlot, slot + SNAPSHOT_BATCH); slot < end; slot++) {
+                    int record = slotRecords.getInt(slot, 0);
+                    if (record >= 0) {
+                        jobs.add(materialize(record));
+                    }
+                }
+                more = slot < nextSlot;
+            }
+        }
+        VersionedList<JobRequest> built = VersionedList.of(jobs, startVersion);
+        lastSnapshot = new WeakReference<>(built);
+        return built;
+    }
+
+    @Override
+    public boolean sharesSnapshots() {
+        return false;
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    // Direct memory held by the table
+    public synchronized long offHeapBytes() {
+        long bytes = records.bytes() + index.bytes() + slotRecords.bytes() + counts.bytes() + durations.bytes();
+        for (int chunk = 0; chunk < arenaChunks; chunk++) {
+            if (arena[chunk] != null) {
+                bytes += arena[chunk].capacity();
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Off-heap job table: " + size + " jobs in " + (offHeapBytes() >> 20) + " MB";
+    }
+
+    private JobRequest materialize(int record) {
+        ByteBuffer text = ByteBuffer.wrap(load(records.getLong(record, TEXT), records.getInt(record, TEXT_LENGTH)));
+        String description = readString(text);
+        int flags = records.getInt(record, FLAGS);
+        String[] unencoded = null;
+        if (flags != 0) {
+            unencoded = new String[JobRequest.TIMESTAMP + 1];
+            for (int field = JobRequest.ID; field <= JobRequest.TIMESTAMP; field++) {
+                if ((flags & (1 << field)) != 0) {
+                    unencoded[field] = readString(text);
+                }
+            }
+        }
+        return new JobRequest(records.getLong(record, ID_HIGH), records.getLong(record, ID_LOW),
+                records.getInt(record, CLIENT), description, records.getInt(record, DURATION),
+                records.getInt(record, REDUNDANCY), records.getInt(record, DEADLINE),
+                records.getLong(record, TIMESTAMP), unencoded);
+    }
+
+    // The description and the unencoded fields, each as a length and UTF-8 bytes
+    private static byte[] encodeText(JobRequest job, int flags) {
+        List<byte[]> parts = new ArrayList<>(2);
+        int length = 0;
+        String description = job.getJobDescription();
+        parts.add(description == null ? null : description.getBytes(StandardCharsets.UTF_8));
+        for (int field = JobRequest.ID; field <= JobRequest.TIMESTAMP; field++) {
+            if ((flags & (1 << field)) != 0) {
+                parts.add(job.text(field).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        for (byte[] part : parts) {
+            length += 4 + (part == null ? 0 : part.length);
+        }
+        ByteBuffer out = ByteBuffer.allocate(length);
+        for (byte[] part : parts) {
+            if (part == null) {
+                out.putInt(-1);
+            } else {
+                out.putInt(part.length).put(part);
+            }
+        }
+        return out.array();
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    // The index entry for jobId, or -1
+    private int find(String jobId) {
+        UUID uuid = JobRequest.parseId(jobId);
+        long high = uuid != null ? uuid.getMostSignificantBits() : 0;
+        long low = uuid != null ? uuid.getLeastSignificantBits() : 0;
+        String idText = uuid != null ? null : jobId;
+        long key = idText != null ? textKey(idText) : high ^ low;
+        int mask = indexCapacity - 1;
+        for (int at = home(key, mask), found; (found = index.getInt(at, INDEX_RECORD)) != 0; at = (at + 1) & mask) {
+            if (index.getLong(at, INDEX_KEY) == key && matches(found - 1, high, low, idText)) {
+                return at;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(int record, long high, long low, String idText) {
+        boolean textId = (records.getInt(record, FLAGS) & (1 << JobRequest.ID)) != 0;
+        if (idText == null) {
+            return !textId && records.getLong(record, ID_HIGH) == high && records.getLong(record, ID_LOW) == low;
+        }
+        return textId && idText.equals(materialize(record).text(JobRequest.ID));
+    }
+
+    private static long textKey(String jobId) {
+        return jobId.hashCode() * 0x9E3779B97F4A7C15L;
+    }
+
+    private static int home(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private int slotOf(int at) {
+        return records.getInt(index.getInt(at, INDEX_RECORD) - 1, SLOT);
+    }
+
+    // Empties an index entry, shifting later entries of its probe run back so
+    // lookups never stop early
+    private void delete(int at) {
+        int mask = indexCapacity - 1;
+        index.putInt(at, INDEX_RECORD, 0);
+        size--;
+        for (int next = (at + 1) & mask; index.getInt(next, INDEX_RECORD) != 0; next = (next + 1) & mask) {
+            int home = home(index.getLong(next, INDEX_KEY), mask);
+            if (((next - home) & mask) >= ((next - at) & mask)) {   // home is at or before the hole
+                index.putLong(at, INDEX_KEY, index.getLong(next, INDEX_KEY));
+                index.putInt(at, INDEX_RECORD, index.getInt(next, INDEX_RECORD));
+                index.putInt(next, INDEX_RECORD, 0);
+                at = next;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        Region table = newIndex(capacity);
+        int mask = capacity - 1;
+        for (int at = 0; at < indexCapacity; at++) {
+            int record = index.getInt(at, INDEX_RECORD);
+            if (record != 0) {
+                long key = index.getLong(at, INDEX_KEY);
+                int to = home(key, mask);
+                while (table.getInt(to, INDEX_RECORD) != 0) {
+                    to = (to + 1) & mask;
+                }
+                table.putLong(to, INDEX_KEY, key);
+                table.putInt(to, INDEX_RECORD, record);
+            }
+        }
+        index = table;
+        indexCapacity = capacity;
+    }
+
+    // Moves the live records to slots 1..n in queue order and rebuilds both
+    // trees in O(n), leaving at least as many free slots as jobs
+    private void renumber() {
+        int live = 0;
+        for (int slot = 1; slot < nextSlot; slot++) {
+            int record = slotRecords.getInt(slot, 0);
+            if (record >= 0) {
+                live++;
+                slotRecords.putInt(live, 0, record);
+                records.putInt(record, SLOT, live);
+            }
+        }
+        slotCapacity = Math.max(INITIAL_SLOTS, 2 * live);
+        slotRecords.ensure(slotCapacity + 1L);
+        counts.ensure(slotCapacity + 1L);
+        durations.ensure(slotCapacity + 1L);
+        for (int i = 1; i <= slotCapacity; i++) {
+            boolean present = i <= live;
+            counts.putInt(i, 0, present ? 1 : 0);
+            durations.putLong(i, 0, present ? records.getInt(slotRecords.getInt(i, 0), DURATION) : 0);
+        }
+        for (int i = 1; i <= slotCapacity; i++) {   // Linear Fenwick construction
+            int parent = i + (i & -i);
+            if (parent <= slotCapacity) {
+                counts.putInt(parent, 0, counts.getInt(parent, 0) + counts.getInt(i, 0));
+                durations.putLong(parent, 0, durations.getLong(parent, 0) + durations.getLong(i, 0));
+            }
+        }
+        nextSlot = live + 1;
+        renumbers++;
+    }
+
+    private void update(int slot, int count, long duration) {
+        for (int i = slot; i <= slotCapacity; i += i & -i) {
+            counts.putInt(i, 0, counts.getInt(i, 0) + count);
+            durations.putLong(i, 0, durations.getLong(i, 0) + duration);
+        }
+    }
+
+    private long prefix(Region tree, int width, int slot) {
+        long sum = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            sum += width == 4 ? tree.getInt(i, 0) : tree.getLong(i, 0);
+        }
+        return sum;
+    }
+
+    // Copies text into the arena and returns its address: chunk << 32 | offset
+    private long store(byte[] text) {
+        int chunk;
+        int offset;
+        if (text.length > ARENA_CHUNK) {   // An entry of its own, released with it
+            chunk = newChunk(ByteBuffer.allocateDirect(text.length));
+            offset = 0;
+        } else {
+            if (currentChunk >= 0 && cursor + text.length > ARENA_CHUNK && arenaLive[currentChunk] == 0) {
+                cursor = 0;   // Everything written to it was removed: start it over
+            }
+            if (currentChunk < 0 || cursor + text.length > ARENA_CHUNK) {   // Full: release() frees it later
+                currentChunk = freeChunkCount > 0 ? freeChunks[--freeChunkCount] : newChunk(null);
+                if (arena[currentChunk] == null) {
+                    arena[currentChunk] = ByteBuffer.allocateDirect(ARENA_CHUNK);
+                }
+                cursor = 0;
+            }
+            chunk = currentChunk;
+            offset = cursor;
+            cursor += text.length;
+        }
+        arena[chunk].put(offset, text);
+        arenaLive[chunk] += text.length;
+        return (long) chunk << 32 | offset;
+    }
+
+    private byte[] load(long address, int length) {
+        byte[] text = new byte[length];
+        arena[(int) (address >>> 32)].get((int) address, text);
+        return text;
+    }
+
+    private void release(long address, int length) {
+        int chunk = (int) (address >>> 32);
+        if ((arenaLive[chunk] -= length) == 0 && chunk != currentChunk) {
+            if (arena[chunk].capacity() != ARENA_CHUNK) {
+                arena[chunk] = null;   // Oversized: give the memory back, keep the number
+            }
+            freeChunks = push(freeChunks, freeChunkCount++, chunk);
+        }
+    }
+
+    private int newChunk(ByteBuffer buffer) {
+        if (arenaChunks == arena.length) {
+            arena = Arrays.copyOf(arena, arenaChunks * 2);
+            arenaLive = Arrays.copyOf(arenaLive, arenaChunks * 2);
+        }
+        arena[arenaChunks] = buffer;
+        return arenaChunks++;
+    }
+
+    private static int[] push(int[] stack, int at, int value) {
+        if (at == stack.length) {
+            stack = Arrays.copyOf(stack, at * 2);
+        }
+        stack[at] = value;
+        return stack;
+    }
+}
@@ -0,0 +1,50 @@
+// Opcode.java
+
+// Message types of the binary protocol (v2). Request codes mirror the text
+// commands; response codes start at 0x40.
+public enum Opcode {
+    REGISTER(0x01),
+    LOGIN(0x02),
+    JOB_SUBMIT(0x03),
+    CAR_READY(0x04),
+    DISPLAY_JOB_TIMES(0x05),  // No fields for the whole queue; String jobId for one job; or null, int from, int count
+    GET_ALL_JOBS(0x06),
+    MARK_COMPLETE(0x07),
+    REMOVE_VEHICLE(0x08),
+    GET_CARS(0x09),
+    APPROVAL_STATUS(0x0A),  // long approvalId
+    PING(0x0B),             // No fields; sent by either side, answered with PONG
+    TEXT_REQUEST(0x3F),     // Carries a legacy text command line, for commands not yet typed
+
+    STATUS(0x40),           // boolean ok, String message
+    JOB_LIST(0x41),         // int count, then per job: jobId, clientId, description, duration, redundancy, deadline, completionTime
+    VEHICLE_LIST(0x42),     // int count, then per vehicle: carId, ownerId, model, brand, plate, serial, vin, residencyTime
+    PENDING(0x43),          // long approvalId, String message; the final reply follows with the same correlation ID
+    BUSY(0x44),             // int retryAfterMillis, String message; the request was not processed
+    PONG(0x45),             // No fields; answers PING with its correlation ID
+    GOAWAY(0x46);           // String message; the server is draining. Sent unsolicited (correlation ID 0)
+                            // and as the reply to requests it will no longer process: reconnect and retry
+
+    private static final Opcode[] BY_CODE = new Opcode[256];
+
+    static {
+        for (Opcode opcode : values()) {
+            BY_CODE[opcode.code] = opcode;
+        }
+    }
+
+    private final int code;
+
+    Opcode(int code) {
+        this.code = code;
+    }
+
+    public byte code() {
+        return (byte) code;
+    }
+
+    // Returns null for codes this version does not know
+    public static Opcode fromCode(byte code) {
+        return BY_CODE[code & 0xFF];
+    }
+}
@@ -0,0 +1,248 @@
+// PendingApprovals.java
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Requests waiting for an admin decision. Submitting one returns at once, so the
+// thread serving the client is free again; the outcome future completes when the
+// admin approves (the action then runs on a small approval executor) or declines.
+// At most maxPending requests wait at once; beyond that submit refuses, so a
+// flood of submissions cannot grow the queue (and the admin's table) without bound.
+public class PendingApprovals {
+    private static final int RECENT_OUTCOMES = 1000;   // Finished requests kept for APPROVAL_STATUS
+    public static final int DEFAULT_MAX_PENDING = 500;
+
+    public enum Kind {
+        JOB_SUBMISSION("Job submission"),
+        CAR_READY("Car readiness");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    // One request waiting for a decision
+    public static class Approval {
+        private final long id;
+        private final Kind kind;
+        private final String details;
+        private final long submittedAt;
+        private final Supplier<String> action;
+        private final CompletableFuture<String> outcome = new CompletableFuture<>();
+
+        Approval(long id, Kind kind, String details, Supplier<String> action) {
+            this.id = id;
+            this.kind = kind;
+            this.details = details;
+            this.submittedAt = System.currentTimeMillis();
+            this.action = action;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getDetails() {
+            return details;
+        }
+
+        public long getSubmittedAt() {
+            return submittedAt;
+        }
+
+        // Completes with the handler's response once approved, or the decline message
+        public CompletableFuture<String> getOutcome() {
+            return outcome;
+        }
+    }
+
+    private final AtomicLong nextId = new AtomicLong();
+    private final ConcurrentSkipListMap<Long, Approval> pending = new ConcurrentSkipListMap<>();
+    private final int maxPending;
+    private final AtomicInteger pendingCount = new AtomicInteger();   // pending.size() is not constant time
+    private final Map<Long, String> recentOutcomes = new LinkedHashMap<Long, String>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > RECENT_OUTCOMES;
+        }
+    };
+    private final ReentrantLock outcomesLock = new ReentrantLock();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final ExecutorService approvalExecutor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "approval-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int runningActions;                              // Approved actions not yet finished, under actionsLock
+    private final ReentrantLock actionsLock = new ReentrantLock();
+    private final Condition actionsIdle = actionsLock.newCondition();
+
+    public PendingApprovals() {
+        this(DEFAULT_MAX_PENDING);
+    }
+
+    public PendingApprovals(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    // Queues a request; action runs only if the admin approves it. Returns null
+    // without queueing when maxPending requests are already waiting.
+    public Approval submit(Kind kind, String details, Supplier<String> action) {
+        if (pendingCount.incrementAndGet() > maxPending) {
+            pendingCount.decrementAndGet();
+            return null;
+        }
+        Approval approval = new Approval(nextId.incrementAndGet(), kind, details, action);
+        pending.put(approval.getId(), approval);
+        approval.getOutcome().thenAccept(result -> {
+            outcomesLock.lock();
+            try {
+                recentOutcomes.put(approval.getId(), result);
+            } finally {
+                outcomesLock.unlock();
+            }
+        });
+        fireChanged();
+        return approval;
+    }
+
+    // Approves each request still pending; returns how many were approved
+    public int approve(Collection<Long> ids) {
+        int count = 0;
+        for (Long id : ids) {
+            Approval approval = pending.remove(id);
+            if (approval == null) {
+                continue;
+            }
+            pendingCount.decrementAndGet();
+            count++;
+            actionStarted();
+            approvalExecutor.execute(() -> {
+                try {
+                    approval.getOutcome().complete(approval.action.get());
+                } catch (RuntimeException e) {
+                    approval.getOutcome().complete("Error: Unable to process request");
+                } finally {
+                    actionFinished();
+                }
+            });
+        }
+        fireChanged();
+        return count;
+    }
+
+    // Waits until every approved action (and its database writes) has finished;
+    // false if some were still running when the timeout ran out
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        actionsLock.lock();
+        try {
+            while (runningActions > 0) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = actionsIdle.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            actionsLock.unlock();
+        }
+    }
+
+    private void actionStarted() {
+        actionsLock.lock();
+        try {
+            runningActions++;
+        } finally {
+            actionsLock.unlock();
+        }
+    }
+
+    private void actionFinished() {
+        actionsLock.lock();
+        try {
+            if (--runningActions == 0) {
+                actionsIdle.signalAll();
+            }
+        } finally {
+            actionsLock.unlock();
+        }
+    }
+
+    // Declines each request still pending; returns how many were declined
+    public int decline(Collection<Long> ids) {
+        int count = 0;
+        for (Long id : ids) {
+            Approval approval = pending.remove(id);
+            if (approval != null) {
+                pendingCount.decrementAndGet();
+                count++;
+                approval.getOutcome().complete(approval.getKind().getLabel() + " declined.");
+            }
+        }
+        fireChanged();
+        return count;
+    }
+
+    // Pending requests, oldest first
+    public List<Approval> getPending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    public int size() {
+        return pendingCount.get();
+    }
+
+    // Text status of a request for clients polling with APPROVAL_STATUS
+    public String status(long id) {
+        Approval approval = pending.get(id);
+        if (approval != null) {
+            return approval.getKind().getLabel() + " request " + id + " is pending approval.";
+        }
+        outcomesLock.lock();
+        try {
+            String outcome = recentOutcomes.get(id);
+            if (outcome != null) {
+                return outcome;
+            }
+        } finally {
+            outcomesLock.unlock();
+        }
+        return "Error: Unknown approval request ID: " + id;
+    }
+
+    // Called after every change to the pending set (e.g. to refresh the GUI table)
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    private void fireChanged() {
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+// ProtocolV2.java
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Constants and stream helpers for the length-prefixed binary protocol.
+// A v2 client opens the connection with MAGIC; any other first byte means the
+// connection speaks the original text protocol, so both can share a port.
+//
+// Frame layout: int length | byte version | byte opcode | int correlationId | fields.
+// The server echoes the correlation ID of the request in its response, which lets
+// a client keep many requests in flight on one socket and match replies arriving
+// out of order.
+public class ProtocolV2 {
+    public static final byte VERSION = 2;
+    public static final byte[] MAGIC = {0x00, 'V', 'C', VERSION};
+    public static final int MAX_FRAME_LENGTH = 1 << 20;
+    public static final int MIN_BODY_LENGTH = 6;          // version + opcode + correlationId
+    private static final int CORRELATION_OFFSET = 6;      // From the start of the frame, length included
+
+    private ProtocolV2() {
+    }
+
+    // True if the first byte of a connection belongs to the v2 preamble
+    public static boolean isPreambleStart(int firstByte) {
+        return firstByte == MAGIC[0];
+    }
+
+    // Reads and checks the rest of the preamble after its first byte
+    public static void readPreambleTail(DataInputStream in) throws IOException {
+        byte[] rest = new byte[MAGIC.length - 1];
+        in.readFully(rest);
+        for (int i = 0; i < rest.length; i++) {
+            if (rest[i] != MAGIC[i + 1]) {
+                throw new IOException("Bad protocol preamble");
+            }
+        }
+    }
+
+    // Reads one frame body (without its length header) from a blocking stream
+    public static ByteBuffer readFrameBody(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < MIN_BODY_LENGTH || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        byte[] body = new byte[length];
+        in.readFully(body);
+        return ByteBuffer.wrap(body);
+    }
+
+    // Stamps a finished frame with the correlation ID of the request it belongs to
+    public static ByteBuffer withCorrelationId(ByteBuffer frame, int correlationId) {
+        frame.putInt(frame.position() + CORRELATION_OFFSET, correlationId);
+        return frame;
+    }
+
+    public static ByteBuffer status(boolean ok, String message) {
+        return new FrameWriter(Opcode.STATUS).putBoolean(ok).putString(message).finish();
+    }
+
+    // Sent while the server drains: unsolicited to every v2 connection, and in place
+    // of the response to requests it no longer processes
+    public static ByteBuffer goAway(String message) {
+        return new FrameWriter(Opcode.GOAWAY).putString(message).finish();
+    }
+
+    // Refusal sent instead of a response when the server is overloaded
+    public static ByteBuffer busy(long retryAfterMillis) {
+        return new FrameWriter(Opcode.BUSY)
+                .putInt((int) Math.min(Integer.MAX_VALUE, retryAfterMillis))
+                .putString(AdmissionControl.busyMessage(retryAfterMillis))
+                .finish();
+    }
+
+    // Correlation ID of a frame body (no length header), or 0 if it is too short to have one
+    public static int correlationIdOf(ByteBuffer body) {
+        return body.remaining() >= MIN_BODY_LENGTH ? body.getInt(body.position() + CORRELATION_OFFSET - 4) : 0;
+    }
+}
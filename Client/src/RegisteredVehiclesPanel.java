@@ -213,6 +213,17 @@ public class RegisteredVehiclesPanel extends JPanel {
         }
     }
 
+    // Shows a new status for the vehicle with this VIN, e.g. once the admin decides
+    public void updateVehicleStatus(String vinNumber, String status) {
+        for (Vehicle vehicle : vehicles) {
+            if (vehicle.getVinNum().equals(vinNumber)) {
+                vehicle.setStatus(status);
+                updateVehiclesList();
+                return;
+            }
+        }
+    }
+
     public boolean vehicleExists(String vinNumber) {
         if (vinNumber == null) return false;
         return vehicles.stream().anyMatch(v -> vinNumber.equals(v.getVinNum()));
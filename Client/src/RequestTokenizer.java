@@ -0,0 +1,94 @@
+// RequestTokenizer.java
+
+// Splits a text request line into space separated tokens without regex objects or
+// split arrays. Only token offsets are recorded; a String is cut out of the line
+// when a handler actually asks for one, and numbers are parsed in place.
+// A token starting with '"' runs to the matching closing quote, so quoted values
+// may contain spaces. Instances are reused, one per worker thread.
+public class RequestTokenizer {
+    private String line;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+
+    public RequestTokenizer reset(String line) {
+        this.line = line;
+        this.count = 0;
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            char c = line.charAt(i);
+            if (c == ' ') {
+                i++;
+                continue;
+            }
+            if (c == '"') {
+                int close = line.indexOf('"', i + 1);
+                if (close > 0 && (close + 1 == length || line.charAt(close + 1) == ' ')) {
+                    add(i + 1, close);
+                    i = close + 1;
+                    continue;
+                }
+            }
+            int end = line.indexOf(' ', i);
+            if (end < 0) {
+                end = length;
+            }
+            add(i, end);
+            i = end;
+        }
+        return this;
+    }
+
+    private void add(int start, int end) {
+        if (count == starts.length) {
+            starts = java.util.Arrays.copyOf(starts, count * 2);
+            ends = java.util.Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public String line() {
+        return line;
+    }
+
+    public String get(int index) {
+        return line.substring(starts[index], ends[index]);
+    }
+
+    public int length(int index) {
+        return ends[index] - starts[index];
+    }
+
+    public char charAt(int index, int offset) {
+        return line.charAt(starts[index] + offset);
+    }
+
+    public boolean tokenEquals(int index, String value) {
+        return length(index) == value.length() && line.regionMatches(starts[index], value, 0, value.length());
+    }
+
+    // Parses a non-negative decimal token without creating a substring
+    public int getInt(int index) {
+        int start = starts[index];
+        int end = ends[index];
+        if (start == end || end - start > 9) {
+            throw new NumberFormatException("Not a number: " + get(index));
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Not a number: " + get(index));
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,298 @@
+// SchemaManager.java
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Creates and upgrades the MySQL schema at startup. Each migration has a version
+// and runs once; the versions applied are recorded in schema_version, so a
+// database created by an older build is brought forward and a current one is
+// left alone. Afterwards the statements MySqlStorage runs per request are checked
+// with EXPLAIN, and any that would scan a whole table is logged.
+//
+// Migrations are append-only: never edit one that has shipped, add the next
+// version instead. MySQL commits DDL as it goes, so a migration that fails
+// half way is not rolled back. To make a rerun safe, a step can name a query that
+// tells whether its change is already there, and statements that fail only
+// because it is (table, column or index exists) are skipped. A step that would
+// fail on the data itself, such as a unique index over duplicate rows, names a
+// query for those rows; they are reported and the migration stops before it.
+public class SchemaManager {
+    private static final int ER_TABLE_EXISTS = 1050;
+    private static final int ER_DUP_FIELDNAME = 1060;
+    private static final int ER_DUP_KEYNAME = 1061;
+
+    private static final int MAX_CONFLICTS_REPORTED = 20;
+
+    // One statement of a migration. doneIf, when set, is a query whose first column
+    // is non-zero once the statement has taken effect. conflicts, when set, lists
+    // the rows (a value and a count) that would make the statement fail.
+    static final class Step {
+        final String sql;
+        final String doneIf;
+        final String conflicts;
+
+        Step(String sql, String doneIf, String conflicts) {
+            this.sql = sql;
+            this.doneIf = doneIf;
+            this.conflicts = conflicts;
+        }
+    }
+
+    static final class Migration {
+        final int version;
+        final String description;
+        final List<Step> steps;
+
+        Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            List<Step> steps = new ArrayList<>();
+            for (String sql : statements) {
+                steps.add(new Step(sql, null, null));
+            }
+            this.steps = Collections.unmodifiableList(steps);
+        }
+
+        Migration(int version, String description, Step... steps) {
+            this.version = version;
+            this.description = description;
+            this.steps = Collections.unmodifiableList(Arrays.asList(steps));
+        }
+    }
+
+    // Counts the JobRequests columns matching a condition on COLUMN_NAME and DATA_TYPE
+    private static String jobColumns(String condition) {
+        return "SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() "
+                + "AND TABLE_NAME = 'JobRequests' AND (" + condition + ")";
+    }
+
+    private static final String JOB_ID_IS_BINARY = jobColumns("COLUMN_NAME = 'jobId' AND DATA_TYPE = 'binary'");
+
+    private static final String JOB_PRIMARY_KEY_EXISTS = "SELECT COUNT(*) FROM information_schema.STATISTICS "
+            + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'JobRequests' AND INDEX_NAME = 'PRIMARY'";
+
+    static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+        // The tables as the project has always used them, for a new database
+        new Migration(1, "create tables",
+            "CREATE TABLE IF NOT EXISTS JobRequests ("
+                + "jobId VARCHAR(36) NOT NULL, "
+                + "clientId VARCHAR(64) NOT NULL, "
+                + "jobDescription TEXT NOT NULL, "
+                + "duration INT NOT NULL, "
+                + "redundancyLevel INT NOT NULL, "
+                + "jobDeadline VARCHAR(32) NOT NULL, "
+                + "timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                + "PRIMARY KEY (jobId))",
+            "CREATE TABLE IF NOT EXISTS CarRentals ("
+                + "carId INT NOT NULL AUTO_INCREMENT, "
+                + "ownerId VARCHAR(64) NOT NULL, "
+                + "model VARCHAR(64) NOT NULL, "
+                + "brand VARCHAR(64) NOT NULL, "
+                + "plateNumber VARCHAR(32) NOT NULL, "
+                + "serialNumber VARCHAR(64) NOT NULL, "
+                + "vinNumber VARCHAR(32) NOT NULL, "
+                + "residencyTime DATE NOT NULL, "
+                + "PRIMARY KEY (carId))",
+            "CREATE TABLE IF NOT EXISTS Users ("
+                + "userId VARCHAR(36) NOT NULL, "
+                + "firstName VARCHAR(64) NOT NULL, "
+                + "lastName VARCHAR(64) NOT NULL, "
+                + "username VARCHAR(64) NOT NULL, "
+                + "email VARCHAR(255) NOT NULL, "
+                + "dob DATE NOT NULL, "
+                + "password VARCHAR(255) NOT NULL, "
+                + "accountType VARCHAR(32) NOT NULL, "
+                + "PRIMARY KEY (userId))"),
+        // ownerId first so the same index serves "vehicles of an owner" and the
+        // (ownerId, vinNumber) delete; vinNumber alone for the duplicate-VIN check.
+        // Usernames become unique, as the file and memory backends already enforce.
+        new Migration(2, "index hot lookups",
+            new Step("CREATE INDEX idx_carrentals_owner_vin ON CarRentals (ownerId, vinNumber)", null, null),
+            new Step("CREATE INDEX idx_carrentals_vin ON CarRentals (vinNumber)", null, null),
+            new Step("CREATE UNIQUE INDEX idx_users_username ON Users (username)", null,
+                "SELECT username, COUNT(*) FROM Users GROUP BY username HAVING COUNT(*) > 1")),
+        // 16 bytes instead of a 36 character string per key, in the primary key
+        // and in every secondary index entry that points at it. Each step checks
+        // the column types first, since the last one removes what the first two
+        // would look for. A JobRequests table from before migration 1 was kept by
+        // CREATE TABLE IF NOT EXISTS and may have no primary key, which the last
+        // step drops, so one is added on jobId first. Nothing changes for a table
+        // that already has one.
+        new Migration(3, "store jobId as BINARY(16)",
+            new Step("ALTER TABLE JobRequests ADD PRIMARY KEY (jobId)", JOB_PRIMARY_KEY_EXISTS,
+                "SELECT jobId, COUNT(*) FROM JobRequests GROUP BY jobId HAVING COUNT(*) > 1 OR jobId IS NULL"),
+            new Step("ALTER TABLE JobRequests ADD COLUMN jobKey BINARY(16) NULL",
+                jobColumns("COLUMN_NAME = 'jobKey' OR (COLUMN_NAME = 'jobId' AND DATA_TYPE = 'binary')"), null),
+            new Step("UPDATE JobRequests SET jobKey = UUID_TO_BIN(jobId) WHERE jobKey IS NULL",
+                JOB_ID_IS_BINARY, null),
+            new Step("ALTER TABLE JobRequests DROP PRIMARY KEY, DROP COLUMN jobId, "
+                + "CHANGE COLUMN jobKey jobId BINARY(16) NOT NULL FIRST, ADD PRIMARY KEY (jobId)",
+                JOB_ID_IS_BINARY, null))
+    ));
+
+    // The per-request statements that must find their rows through an index, with
+    // placeholder values to EXPLAIN them with
+    static final class HotStatement {
+        final String sql;
+        final Object[] params;
+
+        HotStatement(String sql, Object... params) {
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+
+    static final List<HotStatement> HOT_STATEMENTS = Collections.unmodifiableList(Arrays.asList(
+        new HotStatement(MySqlStorage.SELECT_VEHICLES_BY_OWNER, "0"),
+        new HotStatement(MySqlStorage.DELETE_VEHICLE, "0", "0"),
+        new HotStatement(MySqlStorage.SELECT_CAR_ID, "0", "0"),
+        new HotStatement(MySqlStorage.DELETE_JOB, "00000000-0000-0000-0000-000000000000"),
+        new HotStatement(MySqlStorage.SELECT_USER_BY_USERNAME, "\"\"")
+    ));
+
+    private final ConnectionPool pool;
+    private final Consumer<String> logger;
+
+    public SchemaManager(ConnectionPool pool, Consumer<String> logger) {
+        this.pool = pool;
+        this.logger = logger;
+    }
+
+    // Latest version this build knows
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    // Applies every migration newer than the database and returns its version after
+    public int migrate() throws StoreException {
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                        + "version INT NOT NULL, description VARCHAR(128) NOT NULL, "
+                        + "appliedAt TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY (version))");
+            }
+            int current = currentVersion(connection);
+            if (current > getLatestVersion()) {
+                throw new StoreException("Database schema is at version " + current
+                        + ", newer than this server knows (" + getLatestVersion() + ")", null);
+            }
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version > current) {
+                    apply(connection, migration);
+                    current = migration.version;
+                }
+            }
+            return current;
+        } catch (SQLException e) {
+            throw new StoreException("Schema migration failed: " + e.getMessage(), e);
+        }
+    }
+
+    private int currentVersion(ConnectionPool.PooledConnection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;  // NULL, i.e. an empty table, reads as 0
+        }
+    }
+
+    private void apply(ConnectionPool.PooledConnection connection, Migration migration)
+            throws SQLException, StoreException {
+        logger.accept("Migrating schema to version " + migration.version + ": " + migration.description);
+        for (Step step : migration.steps) {
+            if (step.doneIf != null && count(connection, step.doneIf) > 0) {
+                logger.accept("Schema version " + migration.version + ": already applied, skipping: " + step.sql);
+                continue;
+            }
+            if (step.conflicts != null) {
+                checkConflicts(connection, migration, step);
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(step.sql);
+            } catch (SQLException e) {
+                int code = e.getErrorCode();
+                if (code != ER_TABLE_EXISTS && code != ER_DUP_FIELDNAME && code != ER_DUP_KEYNAME) {
+                    throw e;
+                }
+                logger.accept("Schema version " + migration.version + ": already applied, skipping: " + e.getMessage());
+            }
+        }
+        PreparedStatement record = connection.prepare("INSERT INTO schema_version (version, description) VALUES (?, ?)");
+        record.setInt(1, migration.version);
+        record.setString(2, migration.description);
+        record.executeUpdate();
+    }
+
+    private static long count(ConnectionPool.PooledConnection connection, String query) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+    // Stops the migration before a step that would fail on existing rows, naming them
+    private void checkConflicts(ConnectionPool.PooledConnection connection, Migration migration, Step step)
+            throws SQLException, StoreException {
+        List<String> rows = new ArrayList<>();
+        int total = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(step.conflicts)) {
+            while (resultSet.next()) {
+                if (total++ < MAX_CONFLICTS_REPORTED) {
+                    rows.add(resultSet.getString(1) + " (" + resultSet.getLong(2) + " rows)");
+                }
+            }
+        }
+        if (total > 0) {
+            String message = "Schema version " + migration.version + " cannot run \"" + step.sql + "\": "
+                    + total + " conflicting values: " + String.join(", ", rows)
+                    + (total > rows.size() ? ", ..." : "") + ". Resolve them and restart the server.";
+            logger.accept(message);
+            throw new StoreException(message, null);
+        }
+    }
+
+    // EXPLAINs each hot statement and returns a description of every one MySQL
+    // would answer with a full table or index scan (empty when all use a lookup)
+    public List<String> verifyIndexes() throws StoreException {
+        List<String> scans = new ArrayList<>();
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            for (HotStatement hot : HOT_STATEMENTS) {
+                PreparedStatement explain = connection.prepare("EXPLAIN " + hot.sql);
+                for (int i = 0; i < hot.params.length; i++) {
+                    explain.setObject(i + 1, hot.params[i]);
+                }
+                try (ResultSet plan = explain.executeQuery()) {
+                    while (plan.next()) {
+                        String type = plan.getString("type");
+                        if ("ALL".equals(type) || "index".equals(type)) {
+                            scans.add(plan.getString("table") + " " + type + " scan (possible keys: "
+                                    + plan.getString("possible_keys") + ") for " + hot.sql);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new StoreException("EXPLAIN failed: " + e.getMessage(), e);
+        }
+        return scans;
+    }
+
+    // Migrates, then logs the outcome of verifyIndexes()
+    public void migrateAndVerify() throws StoreException {
+        int version = migrate();
+        List<String> scans = verifyIndexes();
+        if (scans.isEmpty()) {
+            logger.accept("Schema at version " + version + ", " + HOT_STATEMENTS.size() + " hot statements use indexes");
+        }
+        for (String scan : scans) {
+            logger.accept("Warning: " + scan);
+        }
+    }
+}
@@ -1,165 +1,834 @@
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class Server implements Runnable {
-    private static final int PORT = 12345;       // Port for the server
-    private ServerSocket serverSocket;          // Server socket
-    private boolean running = true;            // Server state
+    // What the server reports to; ServerGUI in production, a console for benchmarks
+    public interface Listener {
+        void log(String message);
+
+        void updateServerStatus(boolean isRunning);
+    }
+
+    private final ServerConfig config;          // Startup options (port, transport, pool sizes)
+    private ServerSocket serverSocket;          // Server socket (blocking transport)
+    private NioServerTransport nioTransport;    // Selector based transport (NIO mode)
+    private volatile boolean running = false;   // Server state
+    private volatile boolean draining = false;  // stop() in progress: finishing requests already running
     private ExecutorService threadPool;         // Thread pool for client handling
-    private ServerGUI serverGUI;                // Reference to the GUI
+    private ExecutorService pipelineExecutor;   // Runs pipelined v2 requests for blocking connections
+    // Requests running or waiting on the blocking transport, across all connections.
+    // With one virtual thread per connection this, not the executor, is the limit.
+    private final Semaphore requestPermits;
+    private ExecutorService refusalExecutor;    // Tells connections the handler pool turned away that we are busy
+    private static final int REFUSAL_QUEUE = 64;             // Refused connections waiting to be told so
+    private static final int REFUSAL_READ_TIMEOUT_MS = 1000; // How long a refused client gets to send its request
+    static final int MAX_PIPELINED_REQUESTS = 32;          // Outstanding v2 requests per connection
+    private static final long DRAIN_POLL_MS = 50;          // How often a drain looks for connections that went idle
+    static final String DRAINING_MESSAGE = "Error: Server shutting down, reconnect and retry";
+    private final Listener listener;            // Where log lines and status changes go (the GUI)
+    // Guards start/stop. A ReentrantLock rather than synchronized so a handler running
+    // on a virtual thread never pins its carrier while waiting on it.
+    private final ReentrantLock lifecycleLock = new ReentrantLock();
 
+    private final Storage storage;  // Jobs, vehicles and users; MySQL unless -Dvcrts.storage says otherwise
     private UserManager userManager;            // Handles user registration and login
     private VCController vcController;          // Handles job and vehicle management
+    private final HistoryArchive history;       // Completed jobs and retired vehicles, null if disabled
+    private final Hydration hydration;          // Startup load of jobs, vehicles and users; writes wait for it
+    private volatile EncodedJobList jobListCache;  // Last JOB_LIST frame and the queue version it shows
+    // Commands that change jobs, vehicles or users, refused with "busy" until hydration completes
+    private static final Set<Opcode> WRITE_COMMANDS = EnumSet.of(Opcode.REGISTER, Opcode.JOB_SUBMIT,
+            Opcode.CAR_READY, Opcode.MARK_COMPLETE, Opcode.REMOVE_VEHICLE);
+    private final CommandRegistry commands;     // Command keyword/opcode -> handler table
+    private final PendingApprovals approvals = new PendingApprovals();  // Requests waiting for the admin
+    private final AdmissionControl admission;   // Rate limits and "busy" answers under overload
+    private final ConnectedClients connectedClients;  // Live connections, reaped when idle
+    private final ApprovalPolicy approvalPolicy;  // Auto-approves/rejects before anything reaches the admin
+    private final ApprovalPolicy.Facts policyFacts = new ApprovalPolicy.Facts() {
+        @Override
+        public boolean isKnownOwner(String ownerId) {
+            return userManager.isKnownUserId(ownerId);
+        }
+
+        @Override
+        public boolean isVinRegistered(String vinNumber) {
+            return vcController.isVinRegistered(vinNumber);
+        }
+    };
+    // One tokenizer per worker thread, reused for every request it handles
+    private final ThreadLocal<RequestTokenizer> tokenizers = ThreadLocal.withInitial(RequestTokenizer::new);
 
     // Constructor to initialize server components with GUI reference
-    public Server(ServerGUI serverGUI) {
-        this.serverGUI = serverGUI; // Assign the GUI reference
+    public Server(Listener listener) {
+        this(listener, ServerConfig.fromSystemProperties());
+    }
+
+    public Server(Listener listener, ServerConfig config) {
+        this.listener = listener;
+        this.config = config;
         try {
-            serverSocket = new ServerSocket(PORT);
-            threadPool = Executors.newFixedThreadPool(10); // Limit to 10 concurrent clients
-            userManager = new UserManager();
-            vcController = new VCController();
-            serverGUI.log("Server initialized on port " + PORT);
+            storage = Storage.fromSystemProperties(listener::log);
+        } catch (StoreException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        userManager = new UserManager(storage.users());
+        try {
+            history = HistoryArchive.fromSystemProperties(listener::log);
         } catch (IOException e) {
-            serverGUI.log("Failed to initialize server: " + e.getMessage());
+            throw new IllegalStateException("Cannot open the history archive: " + e.getMessage(), e);
+        }
+        vcController = new VCController(storage.jobs(), storage.vehicles(), history);
+        hydration = new Hydration(listener::log);
+        hydration.add("jobs", vcController::loadJobs);
+        hydration.add("vehicles", vcController::loadVehicles);
+        hydration.add("users", userManager::loadUsers);
+        hydration.start(); // Reads are served while it runs
+        startVehicleReconciler(config.getReconcileMillis());
+        approvalPolicy = loadApprovalPolicy(config.getApprovalPolicyFile());
+        admission = AdmissionControl.fromConfig(config);
+        connectedClients = new ConnectedClients(config.getIdleTimeoutMillis(), config.getPingTimeoutMillis(), listener::log);
+        requestPermits = new Semaphore(config.getWorkerThreads() + config.getQueueCapacity());
+        commands = registerCommands();
+        listener.log("Server initialized: " + config);
+    }
+
+    // A policy file that cannot be read or parsed is logged and ignored, so every
+    // request falls back to the admin rather than being auto-approved by mistake
+    private ApprovalPolicy loadApprovalPolicy(String file) {
+        if (file == null) {
+            return ApprovalPolicy.escalateAll();
+        }
+        try {
+            ApprovalPolicy policy = ApprovalPolicy.load(Paths.get(file));
+            listener.log("Loaded " + policy.getRuleCount() + " approval rules from " + file);
+            return policy;
+        } catch (IOException | IllegalArgumentException e) {
+            listener.log("Approval policy not loaded, all requests need the admin: " + e.getMessage());
+            return ApprovalPolicy.escalateAll();
         }
     }
 
   
     @Override
     public void run() {
+        running = true;
+        listener.updateServerStatus(true);
+        connectedClients.start();
         try {
-            serverSocket = new ServerSocket(PORT); // Create a new ServerSocket
-            threadPool = Executors.newFixedThreadPool(10); // Create a new thread pool with size of 10
-            running = true;
-            serverGUI.updateServerStatus(true);
-            serverGUI.log("Server is running on port " + PORT + "...");
+            if (config.getTransport() == ServerConfig.Transport.NIO) {
+                runNio();
+            } else {
+                runBlocking();
+            }
+        } catch (IOException e) {
+            listener.log("Failed to start server: " + e.getMessage());
+        } finally {
+            if (!draining) {
+                shutdownServer(); // Ensure resources are cleaned up; stop() does it after draining
+            }
+        }
+    }
+
+    // Accepts sockets and keeps one pool thread per connection
+    private void runBlocking() throws IOException {
+        serverSocket = new ServerSocket(config.getPort()); // Create a new ServerSocket
+        threadPool = ServerExecutors.forBlockingTransport(config); // Fixed pool or one virtual thread per client
+        pipelineExecutor = ServerExecutors.forBlockingTransport(config);
+        refusalExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(REFUSAL_QUEUE));
+        listener.log("Server is running on port " + config.getPort() + " (" + config.getExecution() + ")...");
 
-            while (running) {
+        while (running) {
+            try {
+                Socket clientSocket = serverSocket.accept();
+                ClientSession session = admission.openSession(String.valueOf(clientSocket.getRemoteSocketAddress()));
+                session.setCloser(() -> closeQuietly(clientSocket)); // Unblocks the handler's read
+                connectedClients.add(session);
                 try {
-                    Socket clientSocket = serverSocket.accept();
-                    threadPool.execute(() -> handleClient(clientSocket)); // Handle each client in a thread
-                } catch (IOException e) {
-                    if (running) {
-                        serverGUI.log("Error accepting client connection: " + e.getMessage());
-                    }
+                    threadPool.execute(() -> handleClient(clientSocket, session)); // Handle each client in a thread
+                } catch (RejectedExecutionException e) {
+                    connectedClients.remove(session);
+                    refuseConnection(clientSocket); // Every handler and queue slot is taken
+                }
+            } catch (IOException e) {
+                if (running) {
+                    listener.log("Error accepting client connection: " + e.getMessage());
                 }
             }
-        } catch (IOException e) {
-            serverGUI.log("Failed to start server: " + e.getMessage());
-        } finally {
-            shutdownServer(); // Ensure resources are cleaned up
         }
     }
 
+    // Serves every connection from a few selector threads; the worker pool only runs handlers
+    private void runNio() throws IOException {
+        threadPool = ServerExecutors.forHandlers(config);
+        nioTransport = new NioServerTransport(config.getPort(), config.getIoThreads(),
+                threadPool, this::handleRequest, this::handleFrame, admission, connectedClients, listener::log);
+        listener.log("Server is running on port " + config.getPort() + " (NIO, "
+                + config.getIoThreads() + " I/O threads, " + config.getExecution() + ")...");
+        nioTransport.run();
+    }
+
 
     // Start the server
-    public synchronized void start() {
-        if (!running) {
-            new Thread(this).start(); // Start the server in a new thread
-        } else {
-            serverGUI.log("Server is already running.");
+    public void start() {
+        lifecycleLock.lock();
+        try {
+            if (!running) {
+                running = true;
+                new Thread(this).start(); // Start the server in a new thread
+            } else {
+                listener.log("Server is already running.");
+            }
+        } finally {
+            lifecycleLock.unlock();
         }
     }
 
 
-    // Stop the server gracefully
-    public synchronized void stop() {
-        if (running) {
-            running = false;
-            try {
-                if (serverSocket != null && !serverSocket.isClosed()) {
-                    serverSocket.close(); // Close the ServerSocket
+    // Stop the server gracefully. Blocks for up to vcrts.drainTimeoutMillis while
+    // requests already running finish, so call it off the event dispatch thread.
+    public void stop() {
+        lifecycleLock.lock();
+        try {
+            if (running) {
+                running = false;
+                draining = true;
+                try {
+                    drain();
+                } finally {
+                    shutdownServer(); // Whatever is left after the deadline is cut off
+                    draining = false;
+                }
+                listener.log("Server stopped.");
+            } else {
+                listener.log("Server is not running.");
+            }
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    // Stops the server if it is running, then closes storage so buffered writes
+    // reach disk or the database. Call once, when the application exits; the
+    // server cannot be started again afterwards.
+    public void close() {
+        lifecycleLock.lock();
+        try {
+            if (running) {
+                stop();
+            }
+            storage.close();
+            listener.log("Storage closed.");
+        } finally {
+            lifecycleLock.unlock();
+        }
+    }
+
+    // Drains in order: stop accepting, tell clients to reconnect elsewhere, close
+    // each connection once it has no request in progress, then wait for approved
+    // actions and handler threads to finish their database writes. Requests that
+    // arrive meanwhile are answered with DRAINING_MESSAGE / GOAWAY, not run.
+    private void drain() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getDrainTimeoutMillis());
+        try {
+            if (serverSocket != null && !serverSocket.isClosed()) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            listener.log("Error closing server socket: " + e.getMessage());
+        }
+        if (nioTransport != null) {
+            nioTransport.stopAccepting();
+        }
+
+        List<ClientSession> sessions = connectedClients.getAll();
+        listener.log("Draining " + sessions.size() + " connections...");
+        for (ClientSession session : sessions) {
+            session.sendFrame(ProtocolV2.goAway(DRAINING_MESSAGE)); // v2 only; text clients see the close
+        }
+
+        try {
+            int busy;
+            do {
+                busy = 0;
+                for (ClientSession session : connectedClients.getAll()) {
+                    if (!session.closeIfIdle() && !session.isClosed()) {
+                        busy++;
+                    }
                 }
-                if (threadPool != null && !threadPool.isShutdown()) {
-                    threadPool.shutdownNow(); // Stop all threads in the thread pool
+                if (busy > 0) {
+                    Thread.sleep(DRAIN_POLL_MS);
                 }
-                serverGUI.log("Server stopped.");
-                serverGUI.updateServerStatus(false); // Update GUI to reflect the server's stopped status
-            } catch (IOException e) {
-                serverGUI.log("Error stopping server: " + e.getMessage());
+            } while (busy > 0 && System.nanoTime() < deadline);
+
+            boolean actionsDone = approvals.awaitIdle(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            boolean handlersDone = awaitTermination(threadPool, deadline)
+                    & awaitTermination(pipelineExecutor, deadline);
+            if (busy == 0 && actionsDone && handlersDone) {
+                listener.log("Drain complete.");
+            } else {
+                listener.log("Drain deadline reached: " + busy + " connections still busy"
+                        + (actionsDone ? "" : ", approved actions still running")
+                        + (handlersDone ? "" : ", handlers still running"));
             }
-        } else {
-            serverGUI.log("Server is not running.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            listener.log("Drain interrupted, stopping now.");
         }
     }
 
+    // Lets the queued and running tasks of an executor finish, up to the deadline
+    private static boolean awaitTermination(ExecutorService executor, long deadline) throws InterruptedException {
+        if (executor == null) {
+            return true;
+        }
+        executor.shutdown();
+        return executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
     // Returns the current running state of the server
-    public synchronized boolean isRunning() {
+    public boolean isRunning() {
         return running;
     }
 
-    // Shuts down server resources
+    // Shuts down server resources, interrupting anything still running
     private void shutdownServer() {
         try {
             if (serverSocket != null && !serverSocket.isClosed()) {
                 serverSocket.close();
             }
-            threadPool.shutdown();
         } catch (IOException e) {
-            serverGUI.log("Error during server shutdown: " + e.getMessage());
+            listener.log("Error during server shutdown: " + e.getMessage());
+        }
+        if (nioTransport != null) {
+            nioTransport.stop(); // Closes the selector threads and their connections
+        }
+        for (ClientSession session : connectedClients.getAll()) {
+            session.close(); // Blocking handlers only notice through their socket
+        }
+        if (threadPool != null) {
+            threadPool.shutdownNow();
+        }
+        if (pipelineExecutor != null) {
+            pipelineExecutor.shutdownNow();
+        }
+        if (refusalExecutor != null) {
+            refusalExecutor.shutdownNow();
         }
+        connectedClients.stop();
+        if (history != null) {
+            try {
+                history.flush(); // Records of the last completions reach disk before we report stopped
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        running = false;
+        listener.updateServerStatus(false);
     }
 
-    // Handles client communication
-    private void handleClient(Socket clientSocket) {
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-             PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true)) {
+    // Handles client communication. The first byte tells whether the client speaks
+    // the binary protocol (v2 preamble) or the original line based text protocol.
+    private void handleClient(Socket clientSocket, ClientSession session) {
+        try (BufferedInputStream input = new BufferedInputStream(clientSocket.getInputStream());
+             OutputStream output = clientSocket.getOutputStream()) {
+
+            input.mark(1);
+            int firstByte = input.read();
+            if (firstByte == -1) {
+                return;
+            }
+            session.touch();
+            if (ProtocolV2.isPreambleStart(firstByte)) {
+                session.setProtocol(ClientSession.Protocol.V2);
+                handleBinaryClient(session, new DataInputStream(input), output);
+                return;
+            }
+            session.setProtocol(ClientSession.Protocol.TEXT);
+            input.reset();
 
+            BufferedReader in = new BufferedReader(new InputStreamReader(input));
+            PrintWriter out = new PrintWriter(output, true);
             String clientMessage;
             while ((clientMessage = in.readLine()) != null) {
-                serverGUI.log("Received: " + clientMessage);
-                String response = processClientMessage(clientMessage);
+                session.touch();
+                if (!session.beginRequest()) {
+                    break; // Closed for draining
+                }
+                try {
+                    String response;
+                    if (requestPermits.tryAcquire()) {
+                        try {
+                            response = handleRequest(session, clientMessage);
+                        } finally {
+                            requestPermits.release();
+                        }
+                    } else {
+                        response = AdmissionControl.busyMessage(admission.rejectFullQueue()); // Connection stays open
+                    }
 
-                out.println(response);
-                out.println(); // Send an empty line to indicate end of response
+                    out.println(response);
+                    out.println(); // Send an empty line to indicate end of response
+                    out.flush();
+                } finally {
+                    session.endRequest();
+                }
+            }
+        } catch (IOException e) {
+            if (!session.isClosed()) {
+                listener.log("Error handling client connection: " + e.getMessage());
+            } // Otherwise the reaper closed it
+        } finally {
+            connectedClients.remove(session);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    // Serves a protocol v2 client. Frames are pipelined: this thread keeps reading
+    // while earlier requests run on the pipeline executor, and each response is
+    // written as soon as it is ready, tagged with its request's correlation ID.
+    private void handleBinaryClient(ClientSession session, DataInputStream in, OutputStream out) throws IOException {
+        ProtocolV2.readPreambleTail(in);
+        ReentrantLock writeLock = new ReentrantLock();
+        Semaphore inFlight = new Semaphore(MAX_PIPELINED_REQUESTS); // Stop reading once a client has this many outstanding
+        Consumer<ByteBuffer> writer = response -> {
+            if (response == null) {
+                return; // Nothing to answer (e.g. a PONG)
+            }
+            writeLock.lock();
+            try {
+                out.write(response.array(), response.arrayOffset() + response.position(), response.remaining());
                 out.flush();
+            } catch (IOException e) {
+                if (!session.isClosed()) {
+                    listener.log("Error writing to client: " + e.getMessage());
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        };
+        session.setFrameSender(writer);
+        while (true) {
+            ByteBuffer request;
+            try {
+                request = ProtocolV2.readFrameBody(in);
+                session.touch();
+                inFlight.acquire();
+                if (!session.beginRequest()) {
+                    return; // Closed for draining
+                }
+            } catch (EOFException e) {
+                return; // Client closed the connection
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!requestPermits.tryAcquire()) {
+                session.endRequest();
+                inFlight.release();
+                writer.accept(ProtocolV2.withCorrelationId(ProtocolV2.busy(admission.rejectFullQueue()),
+                        ProtocolV2.correlationIdOf(request)));
+                continue;
+            }
+            try {
+                pipelineExecutor.execute(() -> {
+                    try {
+                        writer.accept(handleFrame(session, request, writer));
+                    } finally {
+                        requestPermits.release();
+                        session.endRequest();
+                        inFlight.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                requestPermits.release();
+                session.endRequest();
+                if (pipelineExecutor.isShutdown()) {
+                    return;
+                }
+                inFlight.release();
+                writer.accept(ProtocolV2.withCorrelationId(ProtocolV2.busy(admission.rejectFullQueue()),
+                        ProtocolV2.correlationIdOf(request)));
+            }
+        }
+    }
+
+    // Answers the first request of a connection the handler pool had no room for
+    // with "busy", then closes it. Runs on its own single thread so the accept loop
+    // never waits on the client; if even that backs up the socket is just closed.
+    private void refuseConnection(Socket clientSocket) {
+        long retryAfterMillis = admission.rejectFullQueue();
+        try {
+            refusalExecutor.execute(() -> answerBusyAndClose(clientSocket, retryAfterMillis));
+        } catch (RejectedExecutionException e) {
+            try {
+                clientSocket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void answerBusyAndClose(Socket clientSocket, long retryAfterMillis) {
+        try (Socket socket = clientSocket;
+             BufferedInputStream input = new BufferedInputStream(socket.getInputStream());
+             OutputStream output = socket.getOutputStream()) {
+            socket.setSoTimeout(REFUSAL_READ_TIMEOUT_MS);
+            int firstByte = input.read();
+            if (firstByte == -1) {
+                return;
+            }
+            if (ProtocolV2.isPreambleStart(firstByte)) {
+                DataInputStream in = new DataInputStream(input);
+                ProtocolV2.readPreambleTail(in);
+                ByteBuffer request = ProtocolV2.readFrameBody(in);
+                ByteBuffer busy = ProtocolV2.withCorrelationId(ProtocolV2.busy(retryAfterMillis),
+                        ProtocolV2.correlationIdOf(request));
+                output.write(busy.array(), busy.arrayOffset() + busy.position(), busy.remaining());
+            } else {
+                while (firstByte != '\n' && firstByte != -1) {
+                    firstByte = input.read(); // Skip the rest of the request line
+                }
+                output.write((AdmissionControl.busyMessage(retryAfterMillis) + "\n\n").getBytes(StandardCharsets.UTF_8));
             }
+            output.flush();
         } catch (IOException e) {
-            serverGUI.log("Error handling client connection: " + e.getMessage());
+            // Client sent nothing in time or went away; closing is all that is left
         }
     }
 
-    // Processes client messages and routes to the appropriate handler
-    private String processClientMessage(String clientMessage) {
+    // Entry point shared by both transports for a single request line
+    String handleRequest(ClientSession session, String clientMessage) {
+        listener.log("Received: " + clientMessage);
+        if (draining) {
+            return DRAINING_MESSAGE; // Not started before the drain; the client retries elsewhere
+        }
+        return processClientMessage(session, clientMessage);
+    }
+
+    // Entry point shared by both transports for a single v2 frame body. Returns the
+    // immediate response; frames sent later (e.g. after an admin decision) go to
+    // laterReply. Every frame is tagged with the request's correlation ID.
+    ByteBuffer handleFrame(ClientSession session, ByteBuffer body, Consumer<ByteBuffer> laterReply) {
+        int correlationId = ProtocolV2.correlationIdOf(body);
+        ByteBuffer response;
         try {
-            if (clientMessage.startsWith("REGISTER")) {
-                return userManager.registerUser(clientMessage);
-            } else if (clientMessage.startsWith("LOGIN")) {
-                return userManager.loginUser(clientMessage);
-            } else if (clientMessage.startsWith("JOB_SUBMIT")) {
-                return promptAndHandleJobSubmission(clientMessage);
-            } else if (clientMessage.startsWith("CAR_READY")) {
-                return promptAndHandleCarReady(clientMessage);
-            } else if (clientMessage.startsWith("DISPLAY_JOB_TIMES")) {
-                return vcController.displayJobsAndCompletionTimes();
-            } else if (clientMessage.equals("GET_ALL_JOBS")) {
-                return vcController.displayJobsAndCompletionTimes();
-            } else if (clientMessage.startsWith("MARK_COMPLETE")) {
-                return vcController.markJobComplete(clientMessage);
-            } else if (clientMessage.startsWith("REMOVE_VEHICLE")) {
-                return vcController.handleVehicleRemoval(clientMessage);
-            } else if (clientMessage.startsWith("GET_CARS")) {
-                return handleGetCars(clientMessage);
+            Frame frame = Frame.decode(body);
+            if (frame.getOpcode() == Opcode.PONG) {
+                return null; // Answer to our PING; reading it already counted as activity
+            }
+            listener.log("Received frame: " + frame.getOpcode() + " #" + frame.getCorrelationId());
+            if (draining) {
+                response = ProtocolV2.goAway(DRAINING_MESSAGE);
             } else {
+                response = processFrame(session, frame,
+                        later -> laterReply.accept(ProtocolV2.withCorrelationId(later, correlationId)));
+            }
+        } catch (Frame.ProtocolException e) {
+            listener.log("Malformed frame: " + e.getMessage());
+            response = ProtocolV2.status(false, "Error: " + e.getMessage());
+        } catch (Exception e) {
+            listener.log("Error processing client frame: " + e.getMessage());
+            response = ProtocolV2.status(false, "Error: Unable to process request");
+        }
+        return ProtocolV2.withCorrelationId(response, correlationId);
+    }
+
+    // Routes a typed v2 request through the command table, after the rate limits
+    private ByteBuffer processFrame(ClientSession session, Frame frame, Consumer<ByteBuffer> laterReply)
+            throws Frame.ProtocolException {
+        if (AdmissionControl.isLimited(frame.getOpcode())) {
+            int userField = AdmissionControl.userField(frame.getOpcode());
+            long retryAfterMillis = admission.admit(session, frame.getOpcode(),
+                    userField < 0 ? null : frame.peekString(userField));
+            if (retryAfterMillis > 0) {
+                return ProtocolV2.busy(retryAfterMillis);
+            }
+        }
+        if (isHydrating(frame.getOpcode())) {
+            return ProtocolV2.busy(config.getBusyRetryMillis());
+        }
+        CommandRegistry.FrameHandler handler = commands.frameHandler(frame.getOpcode());
+        if (handler == null) {
+            return ProtocolV2.status(false, "Invalid request");
+        }
+        return handler.handle(session, frame, laterReply);
+    }
+
+    // Builds the command table. Each text handler checks its own token layout
+    // (what the regex and split calls used to do); each frame handler reads its
+    // typed fields. Both end in the same VCController/UserManager methods.
+    private CommandRegistry registerCommands() {
+        CommandRegistry registry = new CommandRegistry();
+
+        registry.register(Opcode.REGISTER,
+            (session, tokens) -> tokens.count() != 8 ? "Error: Invalid registration command"
+                    : userManager.register(tokens.get(1), tokens.get(2), tokens.get(3), tokens.get(4),
+                                           tokens.get(5).trim(), tokens.get(6), tokens.get(7)),
+            (session, frame, laterReply) -> statusOf(userManager.register(frame.readString(), frame.readString(), frame.readString(),
+                    frame.readString(), frame.readString(), frame.readString(), frame.readString())));
+
+        registry.register(Opcode.LOGIN,
+            (session, tokens) -> tokens.count() != 3 ? "Error: Invalid login command"
+                    : login(session, tokens.get(1), tokens.get(2)),
+            (session, frame, laterReply) -> statusOf(login(session, frame.readString(), frame.readString())));
+
+        registry.register(Opcode.JOB_SUBMIT, (session, tokens) -> {
+            if (tokens.count() != 6) {
+                return "Invalid job submission format.";
+            }
+            String clientId = tokens.get(1);
+            String description = tokens.get(2);
+            int duration;
+            int redundancyLevel;
+            try {
+                duration = tokens.getInt(3);
+                redundancyLevel = tokens.getInt(4);
+            } catch (NumberFormatException e) {
+                return "Invalid job submission format.";
+            }
+            String deadline = tokens.get(5);
+            return approveText(ApprovalPolicy.Request.job(clientId, duration, redundancyLevel, policyFacts), tokens.line(),
+                    () -> vcController.submitJob(clientId, description, duration, redundancyLevel, deadline));
+        }, (session, frame, laterReply) -> {
+            String clientId = frame.readString();
+            String description = frame.readString();
+            int duration = frame.readInt();
+            int redundancyLevel = frame.readInt();
+            String deadline = frame.readString();
+            String details = "Client: " + clientId + ", Description: " + description + ", Duration: " + duration
+                    + ", Redundancy: " + redundancyLevel + ", Deadline: " + deadline;
+            return approveFrame(ApprovalPolicy.Request.job(clientId, duration, redundancyLevel, policyFacts), details,
+                    () -> vcController.submitJob(clientId, description, duration, redundancyLevel, deadline), laterReply);
+        });
+
+        registry.register(Opcode.CAR_READY, (session, tokens) -> {
+            if (tokens.count() < 8) {
+                return "Error: Invalid car readiness format.";
+            }
+            String ownerId = tokens.get(1);
+            String model = tokens.get(2);
+            String brand = tokens.get(3);
+            String plateNumber = tokens.get(4);
+            String serialNumber = tokens.get(5);
+            String vinNumber = tokens.get(6);
+            String residencyDate = tokens.get(7);
+            return approveText(ApprovalPolicy.Request.car(ownerId, vinNumber, policyFacts), tokens.line(),
+                    () -> vcController.registerCar(ownerId, model, brand, plateNumber, serialNumber, vinNumber, residencyDate));
+        }, (session, frame, laterReply) -> {
+            String ownerId = frame.readString();
+            String model = frame.readString();
+            String brand = frame.readString();
+            String plateNumber = frame.readString();
+            String serialNumber = frame.readString();
+            String vinNumber = frame.readString();
+            String residencyDate = frame.readString();
+            String details = "Owner: " + ownerId + ", " + brand + " " + model + ", Plate: " + plateNumber
+                    + ", VIN: " + vinNumber + ", Residency: " + residencyDate;
+            return approveFrame(ApprovalPolicy.Request.car(ownerId, vinNumber, policyFacts), details,
+                    () -> vcController.registerCar(ownerId, model, brand, plateNumber, serialNumber, vinNumber, residencyDate),
+                    laterReply);
+        });
+
+        registry.register(Opcode.APPROVAL_STATUS, (session, tokens) -> {
+            if (tokens.count() != 2) {
+                return "Invalid APPROVAL_STATUS request format. Usage: APPROVAL_STATUS <requestId>";
+            }
+            try {
+                return approvals.status(Long.parseLong(tokens.get(1)));
+            } catch (NumberFormatException e) {
+                return "Invalid APPROVAL_STATUS request format. Usage: APPROVAL_STATUS <requestId>";
+            }
+        }, (session, frame, laterReply) -> statusOf(approvals.status(frame.readLong())));
+
+        // DISPLAY_JOB_TIMES [<jobId> | FROM <position> <count>]; the whole queue without arguments
+        registry.register(Opcode.DISPLAY_JOB_TIMES,
+            (session, tokens) -> {
+                if (tokens.count() == 2) {
+                    return vcController.displayJobCompletionTime(tokens.get(1));
+                }
+                if (tokens.count() == 4 && tokens.get(1).equals("FROM")) {
+                    try {
+                        return vcController.displayJobTimes(Integer.parseInt(tokens.get(2)), Integer.parseInt(tokens.get(3)));
+                    } catch (NumberFormatException e) {
+                        return "Invalid DISPLAY_JOB_TIMES request format. Usage: DISPLAY_JOB_TIMES FROM <position> <count>";
+                    }
+                }
+                return vcController.displayJobsAndCompletionTimes();   // Also the legacy "<clientId> <role>" form
+            },
+            (session, frame, laterReply) -> {
+                if (!frame.hasRemaining()) {
+                    return jobListFrame();
+                }
+                String jobId = frame.readString();
+                if (jobId == null) {
+                    return encodeListings(vcController.getJobTimes(frame.readInt(), frame.readInt()));
+                }
+                JobRequest job = vcController.getJob(jobId);
+                long completionTime = vcController.getCompletionTime(jobId);
+                return encodeListings(job == null || completionTime < 0 ? List.of() : List.of(JobListing.of(job, completionTime)));
+            });
+
+        registry.register(Opcode.GET_ALL_JOBS,
+            (session, tokens) -> tokens.count() != 1 ? "Invalid request" : vcController.displayJobsAndCompletionTimes(),
+            (session, frame, laterReply) -> jobListFrame());
+
+        registry.register(Opcode.MARK_COMPLETE,
+            (session, tokens) -> tokens.count() != 2 ? "Error: Invalid MARK_COMPLETE command format."
+                    : vcController.completeJob(tokens.get(1)),
+            (session, frame, laterReply) -> statusOf(vcController.completeJob(frame.readString())));
+
+        registry.register(Opcode.REMOVE_VEHICLE,
+            (session, tokens) -> tokens.count() != 3 ? "Error: Invalid command format"
+                    : vcController.removeVehicle(tokens.get(1), tokens.get(2)),
+            (session, frame, laterReply) -> statusOf(vcController.removeVehicle(frame.readString(), frame.readString())));
+
+        registry.register(Opcode.GET_CARS,
+            (session, tokens) -> tokens.count() != 2 ? "Invalid GET_CARS request format. Usage: GET_CARS <ownerId>"
+                    : handleGetCars(tokens.get(1).trim()),
+            (session, frame, laterReply) -> encodeVehicleList(vcController.getVehiclesByOwnerId(frame.readString())));
+
+        // Keepalive; the read itself marks the connection active
+        registry.register(Opcode.PING,
+            (session, tokens) -> "PONG",
+            (session, frame, laterReply) -> new FrameWriter(Opcode.PONG).finish());
+
+        // Not limited itself; processClientMessage limits the command it carries
+        registry.register(Opcode.TEXT_REQUEST, null,
+            (session, frame, laterReply) -> statusOf(processClientMessage(session, frame.readString())));
+
+        return registry;
+    }
+
+    // Logs the user in and remembers who is on the connection
+    private String login(ClientSession session, String username, String password) {
+        String response = userManager.login(username, password);
+        if (session != null && response.startsWith("Login successful")) {
+            session.setAuthenticatedUser(username);
+        }
+        return response;
+    }
+
+    private static ByteBuffer statusOf(String response) {
+        boolean ok = !response.startsWith("Error") && !response.startsWith("Invalid");
+        return ProtocolV2.status(ok, response);
+    }
+
+    private static final class EncodedJobList {
+        final long version;
+        final ByteBuffer frame;
+
+        EncodedJobList(long version, ByteBuffer frame) {
+            this.version = version;
+            this.frame = frame;
+        }
+    }
+
+    // JOB_LIST for the current queue, encoded once per queue version. Each
+    // response gets its own copy, as the correlation ID is written into it.
+    private ByteBuffer jobListFrame() {
+        long version = vcController.getJobsVersion();
+        EncodedJobList cached = jobListCache;
+        if (cached == null || cached.version != version) {
+            cached = new EncodedJobList(version, vcController.readJobListings(JobListWriter::new, JobListWriter::add).finish());
+            jobListCache = cached;
+        }
+        ByteBuffer copy = ByteBuffer.allocate(cached.frame.remaining());
+        copy.put(cached.frame.duplicate()).flip();
+        return copy;
+    }
+
+    // A JOB_LIST frame filled one row at a time; the count ahead of the rows is
+    // written once they are all in, as the whole queue is not listed up front
+    private static final class JobListWriter {
+        private final FrameWriter writer = new FrameWriter(Opcode.JOB_LIST);
+        private final int countAt = writer.position();
+        private int count;
+
+        JobListWriter() {
+            writer.putInt(0);
+        }
+
+        void add(JobListing listing) {
+            writer.putString(listing.getJobId())
+                  .putString(listing.getClientId())
+                  .putString(listing.getDescription())
+                  .putInt(listing.getDuration())
+                  .putInt(listing.getRedundancyLevel())
+                  .putString(listing.getDeadline())
+                  .putInt(listing.getCompletionTime());
+            count++;
+        }
+
+        ByteBuffer finish() {
+            return writer.putInt(countAt, count).finish();
+        }
+    }
+
+    private static ByteBuffer encodeListings(List<JobListing> listings) {
+        JobListWriter writer = new JobListWriter();
+        for (JobListing listing : listings) {
+            writer.add(listing);
+        }
+        return writer.finish();
+    }
+
+    private static ByteBuffer encodeVehicleList(List<String[]> vehicles) {
+        FrameWriter writer = new FrameWriter(Opcode.VEHICLE_LIST).putInt(vehicles.size());
+        for (String[] vehicle : vehicles) {
+            for (String field : vehicle) {
+                writer.putString(field);
+            }
+        }
+        return writer.finish();
+    }
+
+    // Processes client messages and routes to the appropriate handler
+    private String processClientMessage(ClientSession session, String clientMessage) {
+        try {
+            RequestTokenizer tokens = tokenizers.get().reset(clientMessage);
+            Opcode command = commands.lookup(tokens);
+            if (command == null) {
                 return "Invalid request";
             }
+            if (AdmissionControl.isLimited(command)) {
+                int userToken = AdmissionControl.userField(command) + 1;
+                long retryAfterMillis = admission.admit(session, command,
+                        userToken > 0 && userToken < tokens.count() ? tokens.get(userToken) : null);
+                if (retryAfterMillis > 0) {
+                    return AdmissionControl.busyMessage(retryAfterMillis);
+                }
+            }
+            if (isHydrating(command)) {
+                return AdmissionControl.busyMessage(config.getBusyRetryMillis());
+            }
+            return commands.textHandler(command).handle(session, tokens);
         } catch (Exception e) {
-            serverGUI.log("Error processing client message: " + e.getMessage());
+            listener.log("Error processing client message: " + e.getMessage());
             return "Error: Unable to process request";
         }
     }
-    private String handleGetCars(String clientMessage) {
+    private String handleGetCars(String ownerId) {
         try {
-            String[] parts = clientMessage.split(" ");
-            if (parts.length != 2) {
-                return "Invalid GET_CARS request format. Usage: GET_CARS <ownerId>";
-            }
-
-            String ownerId = parts[1].trim();
             List<String[]> vehicles = vcController.getVehiclesByOwnerId(ownerId);
 
             if (vehicles.isEmpty()) {
@@ -189,31 +858,156 @@ public class Server implements Runnable {
 
     
     
-    private String promptAndHandleJobSubmission(String message) {
-        boolean approved = serverGUI.showConfirmDialog("Approve job submission request?\nDetails: " + message);
-        if (approved) {
-            String response = vcController.handleJobSubmission(message);
-            serverGUI.log("Job submission approved: " + response);
-            return response;
-        } else {
-            serverGUI.log("Job submission declined by admin.");
-            return "Job submission declined.";
+    // Lets the approval policy decide first. Auto-approved requests run right away on
+    // this thread and auto-rejected ones are answered at once; only requests no
+    // rule decides are queued for the admin.
+    private String approveText(ApprovalPolicy.Request request, String details, Supplier<String> action) {
+        ApprovalPolicy.Verdict verdict = approvalPolicy.evaluate(request);
+        switch (verdict.getDecision()) {
+            case APPROVE:
+                return autoApprove(request, verdict, details, action);
+            case REJECT:
+                return autoReject(request, verdict, details);
+            default:
+                PendingApprovals.Approval approval = queueForApproval(request.getKind(), details, action);
+                if (approval == null) {
+                    return AdmissionControl.busyMessage(admission.rejectFullQueue());
+                }
+                return pendingMessage(approval);
         }
     }
 
-    
-    private String promptAndHandleCarReady(String message) {
-        boolean approved = serverGUI.showConfirmDialog("Approve vehicle readiness notification?\nDetails: " + message);
-        if (approved) {
-            String response = vcController.handleCarReady(message);
-            serverGUI.log("Car readiness approved: " + response);
-            return response;
-        } else {
-            serverGUI.log("Car readiness declined by admin.");
-            return "Car readiness declined.";
+    private ByteBuffer approveFrame(ApprovalPolicy.Request request, String details, Supplier<String> action,
+                                    Consumer<ByteBuffer> laterReply) {
+        ApprovalPolicy.Verdict verdict = approvalPolicy.evaluate(request);
+        switch (verdict.getDecision()) {
+            case APPROVE:
+                return statusOf(autoApprove(request, verdict, details, action));
+            case REJECT:
+                return ProtocolV2.status(false, autoReject(request, verdict, details));
+            default:
+                PendingApprovals.Approval approval = queueForApproval(request.getKind(), details, action);
+                if (approval == null) {
+                    return ProtocolV2.busy(admission.rejectFullQueue());
+                }
+                return pendingFrame(approval, laterReply);
         }
     }
 
+    private String autoApprove(ApprovalPolicy.Request request, ApprovalPolicy.Verdict verdict, String details,
+                               Supplier<String> action) {
+        String response = action.get();
+        listener.log(request.getKind().getLabel() + " auto-approved (" + verdict.getRule() + "): " + details + " -> " + response);
+        return response;
+    }
+
+    private String autoReject(ApprovalPolicy.Request request, ApprovalPolicy.Verdict verdict, String details) {
+        listener.log(request.getKind().getLabel() + " auto-rejected (" + verdict.getRule() + "): " + details);
+        return "Error: " + request.getKind().getLabel() + " rejected by policy: " + verdict.getRule();
+    }
+
+    // Queues a request for the admin instead of blocking this thread on a dialog;
+    // action runs on the approval executor if and when it is approved. Null when
+    // too many requests are already waiting; the client is told the server is busy.
+    private PendingApprovals.Approval queueForApproval(PendingApprovals.Kind kind, String details, Supplier<String> action) {
+        PendingApprovals.Approval approval = approvals.submit(kind, details, action);
+        if (approval == null) {
+            listener.log(kind.getLabel() + " refused: " + approvals.size() + " requests already waiting for approval");
+            return null;
+        }
+        listener.log(kind.getLabel() + " request " + approval.getId() + " waiting for approval: " + details);
+        approval.getOutcome().thenAccept(response ->
+                listener.log(kind.getLabel() + " request " + approval.getId() + ": " + response));
+        return approval;
+    }
+
+    // Text clients get the request ID back and can poll APPROVAL_STATUS
+    private static String pendingMessage(PendingApprovals.Approval approval) {
+        return approval.getKind().getLabel() + " pending approval (request ID: " + approval.getId()
+                + "). Check its status with APPROVAL_STATUS " + approval.getId() + ".";
+    }
+
+    // v2 clients get a PENDING frame now and the final STATUS frame once the admin decides
+    private static ByteBuffer pendingFrame(PendingApprovals.Approval approval, Consumer<ByteBuffer> laterReply) {
+        approval.getOutcome().thenAccept(response -> laterReply.accept(statusOf(response)));
+        return new FrameWriter(Opcode.PENDING)
+                .putLong(approval.getId())
+                .putString(pendingMessage(approval))
+                .finish();
+    }
+
+
+    // Rate limiting and overload counters
+    public AdmissionControl getAdmissionControl() {
+        return admission;
+    }
+
+    // GET_CARS is answered from memory; every intervalMillis, once loaded, the vehicles
+    // are checked against storage to pick up rows changed outside this server
+    private void startVehicleReconciler(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (!hydration.isComplete()) {
+                    continue;
+                }
+                try {
+                    int differences = vcController.reconcileVehicles();
+                    if (differences > 0) {
+                        listener.log("Vehicles reloaded from storage: " + differences + " differed from memory");
+                    } else if (differences < 0) {
+                        listener.log("Vehicle reconciliation skipped: writes kept arriving");
+                    }
+                } catch (StoreException e) {
+                    listener.log("Vehicle reconciliation failed: " + e.getMessage());
+                }
+            }
+        }, "vehicle-reconcile");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // True while a write would land on tables that are still loading
+    private boolean isHydrating(Opcode command) {
+        return WRITE_COMMANDS.contains(command) && !hydration.isComplete();
+    }
+
+    // Startup load progress, shown in the server GUI
+    public Hydration getHydration() {
+        return hydration;
+    }
+
+    // Completed-job and vehicle history, null if -Dvcrts.archive=false
+    public HistoryArchive getHistory() {
+        return history;
+    }
+
+    // Storage backend and its metrics, shown in the server GUI
+    public Storage getStorage() {
+        return storage;
+    }
+
+    // Live connections, shown in the server GUI
+    public ConnectedClients getConnectedClients() {
+        return connectedClients;
+    }
+
+    // Pending admin approvals, shown in the server GUI
+    public PendingApprovals getPendingApprovals() {
+        return approvals;
+    }
+
+    // Auto-approval rules and their counters
+    public ApprovalPolicy getApprovalPolicy() {
+        return approvalPolicy;
+    }
 
     // Accessors for VCController
     public VCController getVCController() {
@@ -0,0 +1,247 @@
+// ServerConfig.java
+
+// Startup options for the server. Values come from -D system properties so
+// the server can be reconfigured without changing how ServerGUI is launched,
+// e.g. java -Dvcrts.transport=nio ServerGUI. Tests and benchmarks build one
+// with ServerConfig.builder() or withoutLimits() and set only what they need.
+public class ServerConfig {
+    // How sockets are accepted and read
+    public enum Transport {
+        BLOCKING,   // One pool thread per connection (original behaviour)
+        NIO         // Selector event loop, no thread per connection
+    }
+
+    // What runs the client handlers
+    public enum Execution {
+        POOL,       // Fixed pool of workerThreads platform threads
+        VIRTUAL     // One virtual thread per connection (blocking) or per request (NIO)
+    }
+
+    private final int port;
+    private final Transport transport;
+    private final Execution execution;
+    private final int ioThreads;         // Selector threads used by the NIO transport
+    private final int workerThreads;     // Threads that run request handlers
+    private final String approvalPolicyFile;  // Auto-approval rules, or null to ask the admin every time
+    private final int queueCapacity;     // Work waiting for a handler beyond workerThreads
+    private final double connectionRate; // Limited commands per second per connection (0 = unlimited)
+    private final double userRate;       // Limited commands per second per user (0 = unlimited)
+    private final long busyRetryMillis;  // Retry hint sent when the work queue is full
+    private final long idleTimeoutMillis; // Silence before a connection is pinged or closed (0 = never)
+    private final long pingTimeoutMillis; // Time a v2 client has to answer that PING
+    private final long drainTimeoutMillis; // How long stop() lets in-flight requests finish
+    private final long reconcileMillis;  // How often in-memory vehicles are checked against storage (0 = never)
+
+    // Starts from the defaults fromSystemProperties falls back to
+    public static class Builder {
+        private int port = 12345;
+        private Transport transport = Transport.BLOCKING;
+        private Execution execution = Execution.POOL;
+        private int ioThreads = 2;
+        private int workerThreads = 10;
+        private String approvalPolicyFile;
+        private int queueCapacity = 100;
+        private double connectionRate = 20;
+        private double userRate = 5;
+        private long busyRetryMillis = 200;
+        private long idleTimeoutMillis = 90_000;
+        private long pingTimeoutMillis = 15_000;
+        private long drainTimeoutMillis = 10_000;
+        private long reconcileMillis = 300_000;
+
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder transport(Transport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        public Builder execution(Execution execution) {
+            this.execution = execution;
+            return this;
+        }
+
+        public Builder ioThreads(int ioThreads) {
+            this.ioThreads = ioThreads;
+            return this;
+        }
+
+        public Builder workerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+            return this;
+        }
+
+        public Builder approvalPolicyFile(String approvalPolicyFile) {
+            this.approvalPolicyFile = approvalPolicyFile;
+            return this;
+        }
+
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder connectionRate(double connectionRate) {
+            this.connectionRate = connectionRate;
+            return this;
+        }
+
+        public Builder userRate(double userRate) {
+            this.userRate = userRate;
+            return this;
+        }
+
+        public Builder busyRetryMillis(long busyRetryMillis) {
+            this.busyRetryMillis = busyRetryMillis;
+            return this;
+        }
+
+        public Builder idleTimeoutMillis(long idleTimeoutMillis) {
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            return this;
+        }
+
+        public Builder pingTimeoutMillis(long pingTimeoutMillis) {
+            this.pingTimeoutMillis = pingTimeoutMillis;
+            return this;
+        }
+
+        public Builder drainTimeoutMillis(long drainTimeoutMillis) {
+            this.drainTimeoutMillis = drainTimeoutMillis;
+            return this;
+        }
+
+        public Builder reconcileMillis(long reconcileMillis) {
+            this.reconcileMillis = reconcileMillis;
+            return this;
+        }
+
+        public ServerConfig build() {
+            return new ServerConfig(this);
+        }
+    }
+
+    private ServerConfig(Builder builder) {
+        this.port = builder.port;
+        this.transport = builder.transport;
+        this.execution = builder.execution;
+        this.ioThreads = builder.ioThreads;
+        this.workerThreads = builder.workerThreads;
+        this.approvalPolicyFile = builder.approvalPolicyFile;
+        this.queueCapacity = builder.queueCapacity;
+        this.connectionRate = builder.connectionRate;
+        this.userRate = builder.userRate;
+        this.busyRetryMillis = builder.busyRetryMillis;
+        this.idleTimeoutMillis = builder.idleTimeoutMillis;
+        this.pingTimeoutMillis = builder.pingTimeoutMillis;
+        this.drainTimeoutMillis = builder.drainTimeoutMillis;
+        this.reconcileMillis = builder.reconcileMillis;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // No rate limits, idle timeouts or reconciliation, for tests and benchmarks
+    public static Builder withoutLimits() {
+        return builder().connectionRate(0).userRate(0).idleTimeoutMillis(0).pingTimeoutMillis(0).reconcileMillis(0);
+    }
+
+    // Reads the configuration from system properties, falling back to the builder's defaults
+    public static ServerConfig fromSystemProperties() {
+        Builder defaults = builder();
+        return builder()
+            .port(Integer.getInteger("vcrts.port", defaults.port))
+            .transport(Transport.valueOf(System.getProperty("vcrts.transport", defaults.transport.name()).trim().toUpperCase()))
+            .execution(Execution.valueOf(System.getProperty("vcrts.execution", defaults.execution.name()).trim().toUpperCase()))
+            .ioThreads(Integer.getInteger("vcrts.nio.ioThreads", defaults.ioThreads))
+            .workerThreads(Integer.getInteger("vcrts.workerThreads", defaults.workerThreads))
+            .approvalPolicyFile(System.getProperty("vcrts.approvalPolicy"))
+            .queueCapacity(Integer.getInteger("vcrts.queueCapacity", defaults.queueCapacity))
+            .connectionRate(Double.parseDouble(System.getProperty("vcrts.rate.connection", String.valueOf(defaults.connectionRate))))
+            .userRate(Double.parseDouble(System.getProperty("vcrts.rate.user", String.valueOf(defaults.userRate))))
+            .busyRetryMillis(Long.getLong("vcrts.busyRetryMillis", defaults.busyRetryMillis))
+            .idleTimeoutMillis(Long.getLong("vcrts.idleTimeoutMillis", defaults.idleTimeoutMillis))
+            .pingTimeoutMillis(Long.getLong("vcrts.pingTimeoutMillis", defaults.pingTimeoutMillis))
+            .drainTimeoutMillis(Long.getLong("vcrts.drainTimeoutMillis", defaults.drainTimeoutMillis))
+            .reconcileMillis(Long.getLong("vcrts.reconcileMillis", defaults.reconcileMillis))
+            .build();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public Execution getExecution() {
+        return execution;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public String getApprovalPolicyFile() {
+        return approvalPolicyFile;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public double getConnectionRate() {
+        return connectionRate;
+    }
+
+    public double getUserRate() {
+        return userRate;
+    }
+
+    public long getBusyRetryMillis() {
+        return busyRetryMillis;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public long getPingTimeoutMillis() {
+        return pingTimeoutMillis;
+    }
+
+    public long getDrainTimeoutMillis() {
+        return drainTimeoutMillis;
+    }
+
+    public long getReconcileMillis() {
+        return reconcileMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ServerConfig{" +
+                "port=" + port +
+                ", transport=" + transport +
+                ", execution=" + execution +
+                ", ioThreads=" + ioThreads +
+                ", workerThreads=" + workerThreads +
+                ", approvalPolicy=" + approvalPolicyFile +
+                ", queueCapacity=" + queueCapacity +
+                ", connectionRate=" + connectionRate +
+                ", userRate=" + userRate +
+                ", idleTimeoutMillis=" + idleTimeoutMillis +
+                ", drainTimeoutMillis=" + drainTimeoutMillis +
+                ", reconcileMillis=" + reconcileMillis +
+                '}';
+    }
+}
@@ -0,0 +1,128 @@
+// ServerExecutors.java
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Builds the executors that run client handlers for the configured execution mode.
+// Virtual threads are looked up reflectively so the server still compiles and runs
+// on JDKs without them; there it falls back to an unbounded platform thread pool.
+//
+// forHandlers admits at most workerThreads + queueCapacity tasks at once in both
+// modes and throws RejectedExecutionException beyond that, so the caller can
+// answer "busy" instead of letting a backlog build up. forBlockingTransport does
+// the same for POOL, but in VIRTUAL mode it is unbounded: there a task is a
+// connection, which mostly sits idle on a cheap parked thread, and the server
+// limits requests in flight itself.
+public class ServerExecutors {
+
+    private ServerExecutors() {
+    }
+
+    // One task per connection (and per pipelined v2 request) of the blocking transport
+    public static ExecutorService forBlockingTransport(ServerConfig config) {
+        if (config.getExecution() == ServerConfig.Execution.VIRTUAL) {
+            return newVirtualThreadPerTaskExecutor();
+        }
+        return forHandlers(config);
+    }
+
+    // One task per request, as the NIO transport runs them
+    public static ExecutorService forHandlers(ServerConfig config) {
+        if (config.getExecution() == ServerConfig.Execution.VIRTUAL) {
+            return new BoundedExecutor(newVirtualThreadPerTaskExecutor(),
+                    config.getWorkerThreads() + config.getQueueCapacity());
+        }
+        return new ThreadPoolExecutor(config.getWorkerThreads(), config.getWorkerThreads(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity())));
+    }
+
+    // True when this JVM can start virtual threads
+    public static boolean virtualThreadsAvailable() {
+        return lookupVirtualFactory() != null;
+    }
+
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        Method factory = lookupVirtualFactory();
+        if (factory != null) {
+            try {
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Preview feature not enabled, fall through
+            }
+        }
+        System.err.println("Virtual threads are not available on this JVM, using a cached thread pool instead.");
+        return Executors.newCachedThreadPool();
+    }
+
+    // Caps the tasks running or waiting on an executor that has no queue of its own
+    // (one virtual thread per task would otherwise accept any amount of work)
+    private static class BoundedExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        BoundedExecutor(ExecutorService delegate, int limit) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(limit);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (!permits.tryAcquire()) {
+                throw new RejectedExecutionException("Too many tasks in flight");
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+
+    private static Method lookupVirtualFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -1,20 +1,40 @@
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
-public class ServerGUI extends JFrame {
+public class ServerGUI extends JFrame implements Server.Listener {
+    private static final int JOB_TABLE_PAGE = 500;  // Job rows shown at a time; the queue can hold millions
     private JTabbedPane tabbedPane;
     private DefaultTableModel vehiclesTableModel;
     private DefaultTableModel jobsTableModel;
+    private DefaultTableModel approvalsTableModel;
+    private long shownVehiclesVersion = -1;  // Version of the snapshot in each table; EDT only
+    private long shownJobsVersion = -1;
+    private int jobsPageStart;               // Queue position of the first job row; EDT only
+    private JLabel jobsPageLabel;
+    private JLabel policyCountersLabel;
     private JTextArea logArea;
     private JLabel statusLabel;
+    private JLabel connectionsLabel;
     private Server server;
 
     public ServerGUI() {
         setupMainWindow();
         server = new Server(this);
+        server.getPendingApprovals().addListener(this::refreshApprovalsTable);
         updateServerStatus(server.isRunning());
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                server.close(); // Drains and flushes storage before EXIT_ON_CLOSE ends the JVM
+            }
+        });
     }
 
     private void setupMainWindow() {
@@ -33,6 +53,7 @@ public class ServerGUI extends JFrame {
         tabbedPane = new JTabbedPane();
         tabbedPane.addTab("Registered Vehicles", createVehiclePanel());
         tabbedPane.addTab("Job Requests", createJobManagementPanel());
+        tabbedPane.addTab("Pending Approvals", createApprovalsPanel());
         mainPanel.add(tabbedPane, BorderLayout.CENTER);
 
         // Add Log Panel
@@ -50,6 +71,9 @@ public class ServerGUI extends JFrame {
         statusLabel.setFont(new Font("Arial", Font.BOLD, 14));
         statusLabel.setForeground(Color.RED);
 
+        connectionsLabel = new JLabel();
+        new Timer(1000, e -> updateConnections()).start();
+
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         JButton startButton = new JButton("Start Server");
         JButton stopButton = new JButton("Stop Server");
@@ -63,8 +87,8 @@ public class ServerGUI extends JFrame {
 
         stopButton.addActionListener(e -> {
             if (server.isRunning()) {
-                server.stop();
-                updateServerStatus(false);
+                // Draining waits for in-flight requests, so keep it off the event thread
+                new Thread(server::stop, "server-drain").start();
             }
         });
 
@@ -72,6 +96,7 @@ public class ServerGUI extends JFrame {
         buttonPanel.add(stopButton);
 
         panel.add(statusLabel, BorderLayout.WEST);
+        panel.add(connectionsLabel, BorderLayout.CENTER);
         panel.add(buttonPanel, BorderLayout.EAST);
 
         return panel;
@@ -125,12 +150,20 @@ public class ServerGUI extends JFrame {
         jobsTable.getTableHeader().setReorderingAllowed(false);
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        jobsPageLabel = new JLabel();
+        JButton previousButton = new JButton("Previous Page");
+        JButton nextButton = new JButton("Next Page");
         JButton refreshButton = new JButton("Refresh");
         JButton completeButton = new JButton("Mark Complete");
 
+        previousButton.addActionListener(e -> showJobsPage(jobsPageStart - JOB_TABLE_PAGE));
+        nextButton.addActionListener(e -> showJobsPage(jobsPageStart + JOB_TABLE_PAGE));
         refreshButton.addActionListener(e -> refreshJobRequestsTable());
         completeButton.addActionListener(e -> markSelectedJobComplete(jobsTable));
 
+        buttonPanel.add(jobsPageLabel);
+        buttonPanel.add(previousButton);
+        buttonPanel.add(nextButton);
         buttonPanel.add(refreshButton);
         buttonPanel.add(completeButton);
 
@@ -140,6 +173,109 @@ public class ServerGUI extends JFrame {
         return panel;
     }
 
+    // Requests waiting for the admin. Several rows can be selected and approved or
+    // declined together; the clients are answered when the decision is made.
+    private JPanel createApprovalsPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBorder(BorderFactory.createTitledBorder("Pending Approvals"));
+
+        String[] columns = {"Request ID", "Type", "Details", "Submitted"};
+        approvalsTableModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false; // Make the table non-editable
+            }
+        };
+
+        JTable approvalsTable = new JTable(approvalsTableModel);
+        approvalsTable.getTableHeader().setReorderingAllowed(false);
+        approvalsTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton approveButton = new JButton("Approve Selected");
+        JButton declineButton = new JButton("Decline Selected");
+
+        // Auto-decided requests never reach the table, so poll the policy counters
+        policyCountersLabel = new JLabel();
+        new Timer(1000, e -> updatePolicyCounters()).start();
+
+        approveButton.addActionListener(e -> {
+            List<Long> ids = selectedApprovalIds(approvalsTable);
+            if (!ids.isEmpty()) {
+                log("Admin approved " + server.getPendingApprovals().approve(ids) + " request(s).");
+            }
+        });
+        declineButton.addActionListener(e -> {
+            List<Long> ids = selectedApprovalIds(approvalsTable);
+            if (!ids.isEmpty()) {
+                log("Admin declined " + server.getPendingApprovals().decline(ids) + " request(s).");
+            }
+        });
+
+        buttonPanel.add(approveButton);
+        buttonPanel.add(declineButton);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(policyCountersLabel, BorderLayout.WEST);
+        southPanel.add(buttonPanel, BorderLayout.EAST);
+
+        panel.add(new JScrollPane(approvalsTable), BorderLayout.CENTER);
+        panel.add(southPanel, BorderLayout.SOUTH);
+
+        return panel;
+    }
+
+    private List<Long> selectedApprovalIds(JTable approvalsTable) {
+        List<Long> ids = new ArrayList<>();
+        for (int row : approvalsTable.getSelectedRows()) {
+            ids.add((Long) approvalsTableModel.getValueAt(row, 0));
+        }
+        if (ids.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Please select one or more requests.");
+        }
+        return ids;
+    }
+
+    private void updatePolicyCounters() {
+        if (server == null) {
+            return;
+        }
+        ApprovalPolicy policy = server.getApprovalPolicy();
+        policyCountersLabel.setText("Auto-approved: " + policy.getAutoApproved()
+                + "   Auto-rejected: " + policy.getAutoRejected()
+                + "   Escalated: " + policy.getEscalated());
+    }
+
+    private void updateConnections() {
+        if (server == null) {
+            return;
+        }
+        ConnectedClients clients = server.getConnectedClients();
+        Map<ClientSession.Protocol, Integer> byProtocol = clients.countByProtocol();
+        connectionsLabel.setText("   Connections: " + clients.size()
+                + " (text " + byProtocol.get(ClientSession.Protocol.TEXT)
+                + ", v2 " + byProtocol.get(ClientSession.Protocol.V2)
+                + ", logged in " + clients.countAuthenticated() + ")"
+                + "   Reaped: " + (clients.getReapedIdle() + clients.getReapedUnanswered())
+                + "   " + server.getStorage()
+                + (server.getHistory() != null ? "   " + server.getHistory() : "")
+                + (server.getHydration().isComplete() ? "" : "   " + server.getHydration()));
+    }
+
+    // Called by PendingApprovals from whichever thread changed the queue
+    private void refreshApprovalsTable() {
+        SwingUtilities.invokeLater(() -> {
+            approvalsTableModel.setRowCount(0);
+            for (PendingApprovals.Approval approval : server.getPendingApprovals().getPending()) {
+                approvalsTableModel.addRow(new Object[]{
+                        approval.getId(), approval.getKind().getLabel(), approval.getDetails(),
+                        new Date(approval.getSubmittedAt())
+                });
+            }
+            tabbedPane.setTitleAt(2, "Pending Approvals (" + approvalsTableModel.getRowCount() + ")");
+        });
+    }
+
     private JPanel createLogPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         panel.setBorder(BorderFactory.createTitledBorder("Server Log"));
@@ -165,8 +301,13 @@ public class ServerGUI extends JFrame {
 
     private void refreshVehicleTable() {
         SwingUtilities.invokeLater(() -> {
+            VersionedList<CarRentals> vehicles = server.getVCController().getVehiclesReady();
+            if (!vehicles.changedSince(shownVehiclesVersion)) {
+                log("Vehicle table is up to date.");
+                return;
+            }
+            shownVehiclesVersion = vehicles.version();
             vehiclesTableModel.setRowCount(0);
-            List<CarRentals> vehicles = server.getVCController().getVehiclesReady();
             for (CarRentals vehicle : vehicles) {
                 vehiclesTableModel.addRow(new Object[]{
                         vehicle.getVinNumber(), vehicle.getOwnerId(), "Ready", vehicle.getVehicleModel(),
@@ -177,16 +318,47 @@ public class ServerGUI extends JFrame {
         });
     }
 
+    // Shows the page of jobs from queue position start, clamped to the queue
+    private void showJobsPage(int start) {
+        int clamped = Math.max(0, Math.min(start, lastJobsPageStart(server.getVCController().getJobCount())));
+        if (clamped != jobsPageStart) {
+            jobsPageStart = clamped;
+            shownJobsVersion = -1;
+        }
+        refreshJobRequestsTable();
+    }
+
+    private static int lastJobsPageStart(int jobCount) {
+        return Math.max(0, (jobCount - 1) / JOB_TABLE_PAGE * JOB_TABLE_PAGE);
+    }
+
+    // One page of the queue at a time, read through listings() so an off-heap
+    // queue never copies more than the page onto the heap
     private void refreshJobRequestsTable() {
         SwingUtilities.invokeLater(() -> {
+            VCController controller = server.getVCController();
+            long version = controller.getJobsVersion();
+            if (version == shownJobsVersion) {
+                log("Job requests table is up to date.");
+                return;
+            }
+            shownJobsVersion = version;
             jobsTableModel.setRowCount(0);
-            List<JobRequest> jobs = server.getVCController().getJobsQueue();
-            for (JobRequest job : jobs) {
+            int jobCount = controller.getJobCount();
+            jobsPageStart = Math.min(jobsPageStart, lastJobsPageStart(jobCount));   // The queue may have shrunk
+            List<JobListing> page = controller.getJobTimes(jobsPageStart, JOB_TABLE_PAGE);
+            for (JobListing listing : page) {
+                JobRequest job = controller.getJob(listing.getJobId());
+                if (job == null) {
+                    continue;   // Completed since the page was read
+                }
                 jobsTableModel.addRow(new Object[]{
                         job.getJobId(), job.getClientId(), job.getJobDescription(), job.getDuration(),
                         job.getRedundancyLevel(), job.getJobDeadline(), job.getTimestamp()
                 });
             }
+            jobsPageLabel.setText(page.isEmpty() ? "No jobs" : "Jobs " + (jobsPageStart + 1) + "-"
+                    + (jobsPageStart + page.size()) + " of " + jobCount);
             log("Job requests table refreshed.");
         });
     }
@@ -195,7 +367,7 @@ public class ServerGUI extends JFrame {
         int selectedRow = jobsTable.getSelectedRow();
         if (selectedRow >= 0) {
             String jobId = (String) jobsTableModel.getValueAt(selectedRow, 0);
-            String response = server.getVCController().markJobComplete("MARK_COMPLETE " + jobId);
+            String response = server.getVCController().completeJob(jobId);
             log(response);
             if (response.contains("successfully")) {
                 jobsTableModel.removeRow(selectedRow);
@@ -212,12 +384,6 @@ public class ServerGUI extends JFrame {
         });
     }
 
-    public boolean showConfirmDialog(String message) {
-        int result = JOptionPane.showConfirmDialog(this, message,
-                "Server Confirmation", JOptionPane.YES_NO_OPTION);
-        log("Admin confirmation: " + (result == JOptionPane.YES_OPTION ? "Approved" : "Declined"));
-        return result == JOptionPane.YES_OPTION;
-    }
     private void markSelectedVehicleComplete(JTable vehiclesTable) {
         int selectedRow = vehiclesTable.getSelectedRow();
         if (selectedRow >= 0) {
@@ -0,0 +1,49 @@
+// Storage.java
+
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+// Where the server keeps jobs, vehicles and users. Chosen at startup with
+// -Dvcrts.storage:
+//   mysql  - the MySQL schema, through ConnectionPool (default)
+//   file   - an embedded event journal with snapshots under vcrts.storage.dir,
+//            for a single node without a database server
+//   memory - nothing persisted; for tests and benchmarks that should measure the
+//            server rather than the database
+public interface Storage {
+    JobStore jobs();
+
+    VehicleStore vehicles();
+
+    UserStore users();
+
+    // Flushes what is still buffered and releases files, threads and connections.
+    // The stores must not be used afterwards.
+    void close();
+
+    static Storage fromSystemProperties(Consumer<String> logger) throws StoreException {
+        String backend = System.getProperty("vcrts.storage", "mysql");
+        switch (backend) {
+            case "mysql":
+                ConnectionPool pool = ConnectionPool.fromSystemProperties();
+                pool.setLogger(logger);
+                new SchemaManager(pool, logger).migrateAndVerify(); // Before anything reads or writes the tables
+                WriteBehindQueue writeBehind = WriteBehindQueue.fromSystemProperties(pool, logger);
+                if (writeBehind != null) {
+                    writeBehind.start(); // Also replays writes saved by an earlier run
+                }
+                return new MySqlStorage(pool, writeBehind, Integer.getInteger("vcrts.db.fetchSize", 1000));
+            case "file":
+                return FileStorage.open(Paths.get(System.getProperty("vcrts.storage.dir", "database")),
+                        Journal.FsyncPolicy.valueOf(System.getProperty("vcrts.storage.fsync", "group").toUpperCase()),
+                        Long.getLong("vcrts.storage.fsyncIntervalMillis", 1000),
+                        Integer.getInteger("vcrts.storage.segmentBytes", 64 << 20),
+                        Integer.getInteger("vcrts.storage.snapshotEvery", 10_000),
+                        logger);
+            case "memory":
+                return new MemoryStorage();
+            default:
+                throw new IllegalArgumentException("Unknown vcrts.storage '" + backend + "', expected mysql, file or memory");
+        }
+    }
+}
@@ -0,0 +1,11 @@
+// StoreException.java
+
+// A storage backend could not read or write its data, whatever the backend
+// (SQLException from MySQL, IOException from the file store)
+public class StoreException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public StoreException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
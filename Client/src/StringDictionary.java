@@ -0,0 +1,53 @@
+// StringDictionary.java
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Maps strings that repeat across many records (user IDs, vehicle brands and
+// models) to small ints, so each record stores 4 bytes instead of its own
+// String. Codes are never reused or removed; the dictionaries grow with the
+// number of distinct values, not with the number of records.
+public class StringDictionary {
+    public static final StringDictionary USERS = new StringDictionary();   // clientId / ownerId
+    public static final StringDictionary BRANDS = new StringDictionary();
+    public static final StringDictionary MODELS = new StringDictionary();
+
+    public static final int NULL = -1;
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[16];
+    private int size;  // Guarded by this
+
+    // The code for value, adding it on first use
+    public int encode(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    private synchronized int add(String value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        String[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = value;
+        values = current;   // Publishes the entry before its code can be seen
+        codes.put(value, size);
+        return size++;
+    }
+
+    public String decode(int code) {
+        return code == NULL ? null : values[code];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,59 @@
+// TabSeparated.java
+
+import java.util.ArrayList;
+import java.util.List;
+
+// One record per line with tab separated fields. Backslash escapes keep tabs,
+// line breaks and backslashes inside a field from breaking the record, so any
+// text a client sends can be stored. Used by the write-behind retry file and the
+// file storage backend. A null field is written as an empty one.
+public class TabSeparated {
+    private TabSeparated() {
+    }
+
+    public static String join(String... fields) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append('\t');
+            }
+            if (fields[i] != null) {
+                line.append(escape(fields[i]));
+            }
+        }
+        return line.toString();
+    }
+
+    public static String[] split(String line) {
+        List<String> fields = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= line.length(); i++) {
+            if (i == line.length() || line.charAt(i) == '\t') {
+                fields.add(unescape(line.substring(start, i)));
+                start = i + 1;
+            }
+        }
+        return fields.toArray(new String[0]);
+    }
+
+    public static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    public static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                out.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,64 @@
+// TimerWheel.java
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Hashed timer wheel: deadlines fall into one of a fixed number of slots by tick,
+// and each tick only looks at the slot the wheel has reached, so scheduling is
+// O(1) and a tick costs the timers in one slot instead of all of them. Deadlines
+// more than a full turn ahead stay in their slot until a later turn reaches them.
+// schedule() may be called from any thread; advance() from one thread only.
+public class TimerWheel<T> {
+    private static class Timer<T> {
+        final T item;
+        final long deadlineNanos;
+
+        Timer(T item, long deadlineNanos) {
+            this.item = item;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+
+    private final long tickNanos;
+    private final ConcurrentLinkedQueue<Timer<T>>[] slots;
+    private final int mask;
+    private volatile long currentTick;    // Last tick processed by advance()
+
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long tickNanos, int slotCount, long startNanos) {
+        int size = Integer.highestOneBit(Math.max(2, slotCount - 1) << 1);   // Round up to a power of two
+        this.tickNanos = tickNanos;
+        this.slots = (ConcurrentLinkedQueue<Timer<T>>[]) new ConcurrentLinkedQueue<?>[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = size - 1;
+        this.currentTick = Math.floorDiv(startNanos, tickNanos) - 1;
+    }
+
+    public void schedule(T item, long deadlineNanos) {
+        long tick = Math.max(Math.floorDiv(deadlineNanos, tickNanos), currentTick + 1);   // Never into a slot already passed
+        slots[(int) (tick & mask)].add(new Timer<>(item, deadlineNanos));
+    }
+
+    // Processes every tick that has fully elapsed and returns the items whose deadline has passed
+    public List<T> advance(long nowNanos) {
+        List<T> expired = new ArrayList<>();
+        long target = Math.floorDiv(nowNanos, tickNanos) - 1;
+        long last = Math.min(target, currentTick + slots.length);   // One full turn covers every slot
+        for (long tick = currentTick + 1; tick <= last; tick++) {
+            Iterator<Timer<T>> timers = slots[(int) (tick & mask)].iterator();
+            while (timers.hasNext()) {
+                Timer<T> timer = timers.next();
+                if (timer.deadlineNanos <= nowNanos) {
+                    timers.remove();
+                    expired.add(timer.item);
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, target);
+        return expired;
+    }
+}
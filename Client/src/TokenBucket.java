@@ -0,0 +1,40 @@
+// TokenBucket.java
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lock-free token bucket, kept as a single "theoretical arrival time" (the
+// generic cell rate algorithm): each request pushes that time forward by one
+// refill interval, and a request that would push it more than burst intervals
+// past now is refused. Safe to share between the threads of one connection.
+public class TokenBucket {
+    private final long intervalNanos;     // Time to refill one token
+    private final long toleranceNanos;    // burst * intervalNanos
+    private final AtomicLong arrival;     // Theoretical arrival time of the next request
+
+    public TokenBucket(double perSecond, int burst) {
+        this.intervalNanos = Math.max(1L, (long) (1_000_000_000L / perSecond));
+        this.toleranceNanos = intervalNanos * Math.max(1, burst);
+        this.arrival = new AtomicLong(System.nanoTime() - toleranceNanos);   // Starts full
+    }
+
+    // Takes a token if one is available. Returns 0 on success, otherwise the
+    // nanoseconds until the next token will be.
+    public long tryAcquire(long now) {
+        while (true) {
+            long current = arrival.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long ahead = next - now;
+            if (ahead > toleranceNanos) {
+                return ahead - toleranceNanos;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    // True once the bucket has refilled completely, i.e. it is no different from a new one
+    public boolean isFull(long now) {
+        return arrival.get() - now <= 0;
+    }
+}
@@ -1,55 +1,34 @@
 // UserManager.java
 
 import java.io.*;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.UUID;
-import java.sql.Date;
 
 public class UserManager {
     private static final String USER_DATA_FILE = "UserInformation.csv";
-    private Map<String, String[]> users;
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/sys";
-    private static final String DB_USER = "root";
-    private static final String DB_PASSWORD = "HmP9HC6RAjRaSolvPqpcJmbj3wR+UuSUUywHMQgWm7M=";
-
-    public UserManager() {
-        users = new HashMap<>();
-        loadUsersFromDatabase();
+    private final Map<String, String[]> users;  // Rows by stored (quoted) username, for logins
+    private final Set<String> userIds = ConcurrentHashMap.newKeySet();  // Known user IDs, for owner checks
+    private final UserStore store;
+
+    public UserManager(UserStore store) {
+        this.store = store;
+        users = new ConcurrentHashMap<>();  // Filled by loadUsers while logins are served
     }
 
-    private void loadUsersFromDatabase() {
-        String query = "SELECT * FROM users";
-        try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             Statement statement = connection.createStatement();
-             ResultSet resultSet = statement.executeQuery(query)) {
-
-            while (resultSet.next()) {
-                String userId = resultSet.getString("userId");
-                String username = resultSet.getString("username");
-
-                String[] userData = new String[]{
-                    userId,
-                    resultSet.getString("firstName"),
-                    resultSet.getString("lastName"),
-                    username,
-                    resultSet.getString("email"),
-                    resultSet.getString("dob"),
-                    resultSet.getString("password"),
-                    resultSet.getString("accountType")
-                };
-
-                users.put(username, userData);
-            }
-        } catch (SQLException e) {
+    // Stream users from storage into memory, counting rows in loaded
+    public void loadUsers(LongAdder loaded) {
+        try {
+            store.loadAll(userData -> {
+                users.put(userData[UserStore.USERNAME], userData);
+                userIds.add(userData[UserStore.USER_ID]);
+                loaded.increment();
+            });
+        } catch (StoreException e) {
             e.printStackTrace();
             System.err.println("Error loading users from database: " + e.getMessage());
         }
@@ -57,21 +36,16 @@ public class UserManager {
 
     public List<String[]> getAllUsers() {
         List<String[]> users = new ArrayList<>();
-        String query = "SELECT userId, username, email, accountType FROM users";
-        
-        try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             Statement statement = connection.createStatement();
-             ResultSet resultSet = statement.executeQuery(query)) {
-            
-            while (resultSet.next()) {
-                String[] user = new String[4];
-                user[0] = resultSet.getString("userId");
-                user[1] = resultSet.getString("username");
-                user[2] = resultSet.getString("email");
-                user[3] = resultSet.getString("accountType");
-                users.add(user);
+        try {
+            for (String[] userData : store.loadAll()) {
+                users.add(new String[]{
+                    userData[UserStore.USER_ID],
+                    userData[UserStore.USERNAME],
+                    userData[UserStore.EMAIL],
+                    userData[UserStore.ACCOUNT_TYPE]
+                });
             }
-        } catch (SQLException e) {
+        } catch (StoreException e) {
             e.printStackTrace();
             System.err.println("Error retrieving users from database: " + e.getMessage());
         }
@@ -79,74 +53,63 @@ public class UserManager {
         return users;
     }
 
-    public String registerUser(String message) {
-        String[] parts = message.split(" ");
-        if (parts.length != 8) {
-            return "Error: Invalid registration command";
-        }
-
+    // Register a user from already parsed fields. Text fields are stored wrapped in
+    // quotes, which is the format login() matches usernames against.
+    public String register(String firstName, String lastName, String username, String email,
+                           String dob, String password, String accountType) {
         String userId = UUID.randomUUID().toString();
-        String firstName = parts[1];
-        String lastName = parts[2];
-        String username = parts[3];
-        String email = parts[4];
-        String dob = parts[5].trim();  // Trim whitespace
-        String password = parts[6];
-        String accountType = parts[7];
-
-        // Debugging
-        System.out.println("Original DOB value: [" + dob + "]");
-
-        // Remove surrounding quotes, if any
-        dob = dob.replaceAll("^\"|\"$", "");
-        System.out.println("Processed DOB value: [" + dob + "]");
-
-        try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement statement = connection.prepareStatement(
-                 "INSERT INTO Users (userId, firstName, lastName, username, email, dob, password, accountType) VALUES (?, ?, ?, ?, ?, ?, ?, ?)"
-             )) {
-
-            statement.setString(1, userId);
-            statement.setString(2, firstName);
-            statement.setString(3, lastName);
-            statement.setString(4, username);
-            statement.setString(5, email);
-
-            try {
-                // Parse the date and convert to java.sql.Date
-                LocalDate parsedDate = LocalDate.parse(dob); // Ensures valid format
-                Date sqlDate = Date.valueOf(parsedDate);    // Converts to java.sql.Date
-                statement.setDate(6, sqlDate);
-            } catch (Exception e) {
-                e.printStackTrace();
-                return "Error: Invalid date format for DOB. Ensure it is yyyy-MM-dd.";
-            }
 
-            statement.setString(7, password);
-            statement.setString(8, accountType);
+        try {
+            LocalDate.parse(dob); // Ensures valid format
+        } catch (Exception e) {
+            e.printStackTrace();
+            return "Error: Invalid date format for DOB. Ensure it is yyyy-MM-dd.";
+        }
 
-            statement.executeUpdate();
+        try {
+            String[] user = {
+                userId, quote(firstName), quote(lastName), quote(username), quote(email),
+                dob, quote(password), quote(accountType)
+            };
+            store.insert(user);
+            users.put(user[UserStore.USERNAME], user);
+            userIds.add(userId);
             return "Registration successful";
-        } catch (SQLException e) {
+        } catch (StoreException e) {
             e.printStackTrace();
             return "Error: Unable to register user";
         }
     }
 
+    // True if userId belongs to a registered user
+    public boolean isKnownUserId(String userId) {
+        return userIds.contains(userId);
+    }
+
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
 
+    // The user row for a stored username, from memory once hydration has loaded it.
+    // Falls back to the store for users hydration has not reached yet.
+    private String[] findUser(String storedUsername) throws StoreException {
+        String[] user = users.get(storedUsername);
+        if (user == null) {
+            user = store.findByUsername(storedUsername);
+            if (user != null) {
+                users.putIfAbsent(storedUsername, user);
+            }
+        }
+        return user;
+    }
 
 
 
 
-    public String loginUser(String message) {
-        String[] parts = message.split(" ");
-        if (parts.length != 3) {
-            return "Error: Invalid login command";
-        }
 
-        String username = parts[1];
-        String password = parts[2];
 
+    // Check credentials from already parsed fields
+    public String login(String username, String password) {
         System.out.printf("Attempting login: Username=%s, Password=%s\n", username, password);
 
         // Hardcoded credentials for "vcc"
@@ -156,41 +119,34 @@ public class UserManager {
             return "Login successful,VCCController," + vccUserId;
         }
 
-        // SQL Query to validate user credentials
-        String query = "SELECT userId, password, accountType FROM users WHERE username = ?";
-        try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement statement = connection.prepareStatement(query)) {
-
-            statement.setString(1, "\"" + username + "\""); // Add quotes to match the stored format
-
-            try (ResultSet resultSet = statement.executeQuery()) {
-                if (!resultSet.next()) {
-                    // Username not found in database
-                    System.out.println("Error: Username not found in database");
-                    return "Error: Username not found";
-                }
-
-                // Retrieve user details from database
-                String storedPassword = resultSet.getString("password");
-                String accountType = resultSet.getString("accountType");
-                String userId = resultSet.getString("userId");
+        try {
+            String[] user = findUser(quote(username)); // Stored with quotes
+            if (user == null) {
+                // Username not found in database
+                System.out.println("Error: Username not found in database");
+                return "Error: Username not found";
+            }
 
-                // Remove quotes from stored values for comparison
-                storedPassword = storedPassword.replaceAll("^\"|\"$", "");
-                accountType = accountType.replaceAll("^\"|\"$", "");
+            // Retrieve user details from database
+            String storedPassword = user[UserStore.PASSWORD];
+            String accountType = user[UserStore.ACCOUNT_TYPE];
+            String userId = user[UserStore.USER_ID];
 
-                System.out.printf("Found user: StoredPassword=%s, AccountType=%s, userId=%s\n", storedPassword, accountType, userId);
+            // Remove quotes from stored values for comparison
+            storedPassword = storedPassword.replaceAll("^\"|\"$", "");
+            accountType = accountType.replaceAll("^\"|\"$", "");
 
-                if (!storedPassword.equals(password)) {
-                    // Password mismatch
-                    System.out.println("Error: Incorrect password");
-                    return "Error: Incorrect password";
-                }
+            System.out.printf("Found user: StoredPassword=%s, AccountType=%s, userId=%s\n", storedPassword, accountType, userId);
 
-                // Login successful
-                return "Login successful," + accountType + "," + userId;
+            if (!storedPassword.equals(password)) {
+                // Password mismatch
+                System.out.println("Error: Incorrect password");
+                return "Error: Incorrect password";
             }
-        } catch (SQLException e) {
+
+            // Login successful
+            return "Login successful," + accountType + "," + userId;
+        } catch (StoreException e) {
             e.printStackTrace();
             return "Error: Unable to process login";
         }
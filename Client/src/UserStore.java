@@ -0,0 +1,30 @@
+// UserStore.java
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Registered users. A user is the row UserManager stores: userId, firstName,
+// lastName, username, email, dob, password, accountType (text fields quoted).
+public interface UserStore {
+    int USER_ID = 0;
+    int USERNAME = 3;
+    int EMAIL = 4;
+    int DOB = 5;
+    int PASSWORD = 6;
+    int ACCOUNT_TYPE = 7;
+
+    // Streams every user to rows as it is read
+    void loadAll(Consumer<String[]> rows) throws StoreException;
+
+    default List<String[]> loadAll() throws StoreException {
+        List<String[]> users = new ArrayList<>();
+        loadAll(users::add);
+        return users;
+    }
+
+    void insert(String[] user) throws StoreException;
+
+    // The user with this (quoted) username, or null
+    String[] findByUsername(String username) throws StoreException;
+}
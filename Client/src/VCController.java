@@ -1,303 +1,426 @@
-import java.sql.*;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 public class VCController {
-    private List<JobRequest> jobsQueue;  // In-memory job queue
-    private List<CarRentals> vehiclesReady;  // In-memory vehicle list
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/sys";
-    private static final String DB_USER = "root";
-    private static final String DB_PASSWORD = "HmP9HC6RAjRaSolvPqpcJmbj3wR+UuSUUywHMQgWm7M=";
-    public VCController() {
-        this.jobsQueue = new LinkedList<>();
-        this.vehiclesReady = new ArrayList<>();
-        loadJobsFromDatabase(); // Load jobs into memory from SQL
-        loadVehiclesFromDatabase(); // Load vehicles into memory from SQL
-    }
-    public List<JobRequest> getJobsQueue() {
-        return new ArrayList<>(jobsQueue);
-    }
-    // Load jobs from SQL database into the in-memory queue
-    private void loadJobsFromDatabase() {
-        String query = "SELECT * FROM JobRequests";
-        try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             Statement statement = connection.createStatement();
-             ResultSet resultSet = statement.executeQuery(query)) {
-
-            while (resultSet.next()) {
-                JobRequest job = new JobRequest(
-                    resultSet.getString("jobId"),
-                    resultSet.getString("clientId"),
-                    resultSet.getString("jobDescription"),
-                    resultSet.getInt("duration"),
-                    resultSet.getInt("redundancyLevel"),
-                    resultSet.getString("jobDeadline"),
-                    resultSet.getTimestamp("timestamp").toString()
-                );
-                jobsQueue.add(job);
+    private static final int LOAD_BATCH = 1000;  // Rows added to memory at a time while loading
+    private static final int LISTING_PAGE = 1024;  // Jobs per listings() call when paging the whole queue
+    private static final int LISTING_ATTEMPTS = 3;  // Paged reads started over because the queue changed
+    private final JobQueue jobsQueue = newJobQueue();  // In-memory job queue, indexed by jobId
+    private final VehicleRegistry vehiclesReady = new VehicleRegistry();  // In-memory vehicles; its lock also guards the fields below
+    private int vehicleWritesInFlight;  // Stored or being stored but not yet in memory
+    private long vehicleChanges;        // Bumped by every write, so reconcileVehicles can spot one racing it
+    private volatile boolean vehiclesLoaded;  // Until then GET_CARS asks storage
+    private static final String JOB_TIMES_HEADER = "All Assigned Jobs and Completion Times:\n";
+    private volatile JobTimesText jobTimesText;  // Last DISPLAY_JOB_TIMES text and the queue version it shows
+
+    private static final class JobTimesText {
+        final long version;
+        final String text;
+
+        JobTimesText(long version, String text) {
+            this.version = version;
+            this.text = text;
+        }
+    }
+    private final JobStore jobStore;  // Durable copy of jobsQueue
+    private final VehicleStore vehicleStore;  // Durable copy of vehiclesReady
+    private final HistoryArchive history;  // Where completed jobs and retired vehicles go, or null to drop them
+    public VCController(JobStore jobStore, VehicleStore vehicleStore) {
+        this(jobStore, vehicleStore, null);
+    }
+    public VCController(JobStore jobStore, VehicleStore vehicleStore, HistoryArchive history) {
+        this.jobStore = jobStore;
+        this.vehicleStore = vehicleStore;
+        this.history = history;
+    }
+    // On the heap unless -Dvcrts.jobs.offHeap=true asks for an OffHeapJobTable
+    private static JobQueue newJobQueue() {
+        if (Boolean.getBoolean("vcrts.jobs.offHeap")) {
+            return new OffHeapJobTable(Integer.getInteger("vcrts.jobs.offHeap.capacity", 1024));
+        }
+        return new JobRegistry();
+    }
+
+    // Jobs in queue order; an immutable snapshot stamped with the queue's version.
+    // With the off-heap queue this copies every job; use readJobListings for whole-queue reads.
+    public VersionedList<JobRequest> getJobsQueue() {
+        return jobsQueue.snapshot();
+    }
+
+    // Adds every queued job, in order and with its completion time, to a result
+    // from newResult. The heap queue is read from its shared snapshot. The off-heap
+    // queue is paged through listings(), so only one page of jobs is on the heap at
+    // a time; if the queue changes between pages, the read starts over with a new
+    // result (up to LISTING_ATTEMPTS times) so the jobs come from one version.
+    // Callers caching the result should stamp it with getJobsVersion() read first.
+    public <R> R readJobListings(Supplier<R> newResult, BiConsumer<R, JobListing> add) {
+        if (jobsQueue.sharesSnapshots()) {
+            R result = newResult.get();
+            long cumulativeTime = 0;
+            for (JobRequest job : jobsQueue.snapshot()) {
+                cumulativeTime += job.getDuration();
+                add.accept(result, JobListing.of(job, cumulativeTime));
             }
-        } catch (SQLException e) {
+            return result;
+        }
+        R result;
+        int attempts = 0;
+        long version;
+        do {
+            version = jobsQueue.version();
+            result = newResult.get();
+            for (int from = 0; ; from += LISTING_PAGE) {
+                List<JobListing> page = jobsQueue.listings(from, LISTING_PAGE);
+                for (JobListing listing : page) {
+                    add.accept(result, listing);
+                }
+                if (page.size() < LISTING_PAGE) {
+                    break;
+                }
+            }
+        } while (jobsQueue.version() != version && ++attempts < LISTING_ATTEMPTS);
+        return result;
+    }
+
+    // Version of the job queue; a snapshot with this version is still current
+    public long getJobsVersion() {
+        return jobsQueue.version();
+    }
+
+    // The queued job with this ID, or null
+    public JobRequest getJob(String jobId) {
+        return jobsQueue.get(jobId);
+    }
+
+    // How many jobs are ahead of this one, or -1 if it is not queued
+    public int getJobPosition(String jobId) {
+        return jobsQueue.position(jobId);
+    }
+
+    public int getJobCount() {
+        return jobsQueue.size();
+    }
+    // Stream jobs from storage into the in-memory queue, counting rows in loaded
+    public void loadJobs(LongAdder loaded) {
+        try {
+            List<JobRequest> batch = new ArrayList<>(LOAD_BATCH);
+            jobStore.loadAll(job -> {
+                batch.add(job);
+                if (batch.size() == LOAD_BATCH) {
+                    jobsQueue.addAll(batch);
+                    loaded.add(batch.size());
+                    batch.clear();
+                }
+            });
+            jobsQueue.addAll(batch);
+            loaded.add(batch.size());
+        } catch (StoreException e) {
             e.printStackTrace();
             System.err.println("Error loading jobs from database: " + e.getMessage());
         }
     }
+    // carId, ownerId, model, brand, plateNumber, serialNumber, vinNumber, residencyTime
+    // per vehicle, from the owner index once the vehicles are loaded
     public List<String[]> getVehiclesByOwnerId(String ownerId) {
-        List<String[]> vehicles = new ArrayList<>();
-        String query = "SELECT carId, ownerId, model, brand, plateNumber, serialNumber, vinNumber, residencyTime FROM CarRentals WHERE ownerId = ?";
-        try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement statement = connection.prepareStatement(query)) {
-
-            statement.setString(1, ownerId);
-            ResultSet resultSet = statement.executeQuery();
-
-            while (resultSet.next()) {
-                String[] vehicle = new String[] {
-                    resultSet.getString("carId"),         // Car ID
-                    resultSet.getString("ownerId"),       // Owner ID
-                    resultSet.getString("model"),         // Model
-                    resultSet.getString("brand"),         // Brand
-                    resultSet.getString("plateNumber"),   // Plate Number
-                    resultSet.getString("serialNumber"),  // Serial Number
-                    resultSet.getString("vinNumber"),     // VIN
-                    resultSet.getString("residencyTime")  // Residency Time
-                };
-                vehicles.add(vehicle);
+        if (vehiclesLoaded) {
+            List<CarRentals> owned = vehiclesReady.findByOwner(ownerId);
+            List<String[]> rows = new ArrayList<>(owned.size());
+            for (CarRentals car : owned) {
+                rows.add(row(car));
             }
-        } catch (SQLException e) {
+            return rows;
+        }
+        try {
+            return vehicleStore.findByOwner(ownerId);
+        } catch (StoreException e) {
             e.printStackTrace();
             System.err.println("Error fetching vehicles for owner ID: " + e.getMessage());
+            return new ArrayList<>();
         }
-        return vehicles;
     }
 
-
     
-    public List<CarRentals> getVehiclesReady() {
-        return new ArrayList<>(vehiclesReady); // Return a copy to avoid modification
-    }
-
-    // Load vehicles from SQL database into the in-memory list
-    private void loadVehiclesFromDatabase() {
-        String query = "SELECT * FROM carrentals";
-        try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             Statement statement = connection.createStatement();
-             ResultSet resultSet = statement.executeQuery(query)) {
-
-            while (resultSet.next()) {
-                CarRentals car = new CarRentals(
-                    resultSet.getString("ownerId"),
-                    resultSet.getString("model"),
-                    resultSet.getString("brand"),
-                    resultSet.getString("plateNumber"),
-                    resultSet.getString("serialNumber"),
-                    resultSet.getString("vinNumber"),
-                    resultSet.getTimestamp("residencyTime").toString()
-                );
-                vehiclesReady.add(car);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            System.err.println("Error loading vehicles from database: " + e.getMessage());
+    // Vehicles in registration order; an immutable snapshot stamped with a version
+    public VersionedList<CarRentals> getVehiclesReady() {
+        return vehiclesReady.snapshot();
+    }
+
+    public long getVehiclesVersion() {
+        return vehiclesReady.version();
+    }
+
+    // True if a ready vehicle with this VIN is already registered
+    public boolean isVinRegistered(String vinNumber) {
+        return vehiclesReady.containsVin(vinNumber);
+    }
+
+    private static String[] row(CarRentals car) {
+        return new String[] {
+            car.getCarId(), car.getOwnerId(), car.getVehicleModel(), car.getVehicleBrand(),
+            car.getPlateNumber(), car.getSerialNumber(), car.getVinNumber(), car.getResidencyTime()
+        };
+    }
+
+    // Hands a vehicle that left the live table to the history, off the request path.
+    // car is the in-memory record, null if memory never held the deleted row.
+    private void retire(CarRentals car, String vinNumber, String reason) {
+        if (history == null) {
+            return;
+        }
+        if (car == null) {
+            System.err.println("Vehicle " + vinNumber + " deleted from storage but not in memory; no history record");
+            return;
         }
+        history.vehicleRetired(car, reason);
     }
 
-    // Handle job submission and log it into SQL
-    public String handleJobSubmission(String message) {
-        System.out.println("Received job submission message: " + message);
-        Pattern pattern = Pattern.compile("JOB_SUBMIT (\\S+) \"([^\"]+)\" (\\d+) (\\d+) (\\S+)");
-        Matcher matcher = pattern.matcher(message);
+    // Brackets a vehicle write: storage first, then memory, as one change
+    private void beginVehicleWrite() {
+        synchronized (vehiclesReady) {
+            vehicleWritesInFlight++;
+            vehicleChanges++;
+        }
+    }
 
-        if (!matcher.matches()) {
-            return "Invalid job submission format.";
+    private void endVehicleWrite() {
+        synchronized (vehiclesReady) {
+            vehicleWritesInFlight--;
+            vehicleChanges++;
         }
+    }
 
-        String clientId = matcher.group(1);
-        String jobDescription = matcher.group(2);
-        int duration = Integer.parseInt(matcher.group(3));
-        int redundancyLevel = Integer.parseInt(matcher.group(4));
-        String jobDeadline = matcher.group(5);
+    // Stream vehicles from storage into the in-memory list, counting rows in loaded
+    public void loadVehicles(LongAdder loaded) {
+        try {
+            List<CarRentals> batch = new ArrayList<>(LOAD_BATCH);
+            vehicleStore.loadAll(car -> {
+                batch.add(car);
+                if (batch.size() == LOAD_BATCH) {
+                    vehiclesReady.addAll(batch);
+                    loaded.add(batch.size());
+                    batch.clear();
+                }
+            });
+            vehiclesReady.addAll(batch);
+            loaded.add(batch.size());
+            vehiclesLoaded = true;
+        } catch (StoreException e) {
+            e.printStackTrace();
+            System.err.println("Error loading vehicles from database: " + e.getMessage());
+        }
+    }
 
+    // Queue a job from already parsed fields and log it into storage
+    public String submitJob(String clientId, String jobDescription, int duration, int redundancyLevel, String jobDeadline) {
         JobRequest job = new JobRequest(clientId, jobDescription, duration, redundancyLevel, jobDeadline);
 
         // Log job into the database
-        String query = "INSERT INTO JobRequests (jobId, clientId, jobDescription, duration, redundancyLevel, jobDeadline, timestamp) VALUES (?, ?, ?, ?, ?, ?, NOW())";
-        try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement statement = connection.prepareStatement(query)) {
-
-            statement.setString(1, job.getJobId());
-            statement.setString(2, clientId);
-            statement.setString(3, jobDescription);
-            statement.setInt(4, duration);
-            statement.setInt(5, redundancyLevel);
-            statement.setString(6, jobDeadline);
-
-            statement.executeUpdate();
+        try {
+            jobStore.insert(job);
             jobsQueue.add(job); // Keep it in memory
             return "Job submitted and logged successfully with ID: " + job.getJobId();
-        } catch (SQLException e) {
+        } catch (StoreException e) {
             e.printStackTrace();
             return "Error: Unable to log job in database.";
         }
     }
 
-    // Handle car readiness and log it into SQL
-    public String handleCarReady(String message) {
-        String[] parts = message.split(" ");
-        if (parts.length < 8) {
-            return "Error: Invalid car readiness format.";
+    // Register a ready vehicle from already parsed fields and log it into storage
+    public String registerCar(String ownerId, String model, String brand, String plateNumber,
+                              String serialNumber, String vinNumber, String residencyDate) {
+        try {
+            java.sql.Date.valueOf(residencyDate); // Rejects anything but yyyy-MM-dd
+        } catch (IllegalArgumentException e) {
+            return "Error: Invalid residency date, expected yyyy-MM-dd.";
         }
-
-        String ownerId = parts[1];
-        String model = parts[2];
-        String brand = parts[3];
-        String plateNumber = parts[4];
-        String serialNumber = parts[5];
-        String vinNumber = parts[6];
-        String residencyDate = parts[7]; // Expected format: yyyy-MM-dd
-
-        String query = "INSERT INTO CarRentals (ownerId, model, brand, plateNumber, serialNumber, vinNumber, residencyTime) VALUES (?, ?, ?, ?, ?, ?, ?)";
-        try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement statement = connection.prepareStatement(query)) {
-
-            statement.setString(1, ownerId);
-            statement.setString(2, model);
-            statement.setString(3, brand);
-            statement.setString(4, plateNumber);
-            statement.setString(5, serialNumber);
-            statement.setString(6, vinNumber);
-            statement.setDate(7, java.sql.Date.valueOf(residencyDate)); // Convert to java.sql.Date
-
-            statement.executeUpdate();
-            CarRentals car = new CarRentals(ownerId, model, brand, plateNumber, serialNumber, vinNumber, residencyDate);
-            vehiclesReady.add(car); // Keep it in memory
+        // Duplicates are turned away in memory, before anything is written
+        if (!vehiclesReady.reserve(vinNumber)) {
+            return "Error: A vehicle with VIN " + vinNumber + " is already registered.";
+        }
+        CarRentals car = new CarRentals(ownerId, model, brand, plateNumber, serialNumber, vinNumber, residencyDate);
+        beginVehicleWrite();
+        try {
+            vehicleStore.insert(car);
+            vehiclesReady.add(car); // Keep it in memory, visible to the owner's next GET_CARS
             return "Car ready notification logged successfully.";
-        } catch (SQLException e) {
+        } catch (StoreException e) {
             e.printStackTrace();
             return "Error: Unable to log car readiness in database.";
+        } finally {
+            vehiclesReady.release(vinNumber); // Only still reserved if the write failed
+            endVehicleWrite();
         }
     }
 
-    public String handleVehicleRemoval(String message) {
+    // Remove a vehicle an owner no longer offers, from storage and memory
+    public String removeVehicle(String ownerId, String vinNumber) {
+        beginVehicleWrite();
         try {
-            // Parse message format: "REMOVE_VEHICLE ownerId vinNumber"
-            String[] parts = message.split(" ");
-            if (parts.length != 3) {
-                return "Error: Invalid command format";
-            }
-
-            String ownerId = parts[1];
-            String vinNumber = parts[2];
-
-            // SQL Query to remove vehicle from database
-            String query = "DELETE FROM CarRentals WHERE ownerId = ? AND vinNumber = ?";
-            try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-                 PreparedStatement statement = connection.prepareStatement(query)) {
-
-                statement.setString(1, ownerId);
-                statement.setString(2, vinNumber);
-
-                int rowsAffected = statement.executeUpdate();
-
-                if (rowsAffected > 0) {
-                    // Remove from the in-memory list
-                    vehiclesReady.removeIf(car -> car.getOwnerId().equals(ownerId) && car.getVinNumber().equals(vinNumber));
-                    return "Vehicle removed successfully.";
-                } else {
-                    return "Error: Vehicle not found in the database.";
-                }
+            if (vehicleStore.delete(ownerId, vinNumber)) {
+                retire(vehiclesReady.remove(ownerId, vinNumber), vinNumber, "removed");
+                return "Vehicle removed successfully.";
+            } else {
+                return "Error: Vehicle not found in the database.";
             }
-        } catch (SQLException e) {
+        } catch (StoreException e) {
             e.printStackTrace();
             return "Error: Unable to remove vehicle from the database.";
-        } catch (Exception e) {
-            e.printStackTrace();
-            return "Error processing vehicle removal request.";
+        } finally {
+            endVehicleWrite();
         }
     }
 
     // Get all jobs from memory
     public String getAllJobs() {
-        StringBuilder jobInfo = new StringBuilder("All Jobs in Queue:\n");
-        for (JobRequest job : jobsQueue) {
+        return readJobListings(() -> new StringBuilder("All Jobs in Queue:\n"), (jobInfo, job) ->
             jobInfo.append(String.format(
                 "Job ID: %s, Client ID: %s, Description: %s, Duration: %d, Redundancy Level: %d, Deadline: %s\n",
-                job.getJobId(), job.getClientId(), job.getJobDescription(),
-                job.getDuration(), job.getRedundancyLevel(), job.getJobDeadline()
-            ));
-        }
-        return jobInfo.toString();
+                job.getJobId(), job.getClientId(), job.getDescription(),
+                job.getDuration(), job.getRedundancyLevel(), job.getDeadline()
+            ))).toString();
     }
 
-    // Mark job as complete and remove it from SQL and memory
-    public String markJobComplete(String message) {
-        String[] parts = message.split(" ");
-        if (parts.length != 2) {
-            return "Error: Invalid MARK_COMPLETE command format.";
-        }
-
-        String jobId = parts[1];
-
-        String query = "DELETE FROM JobRequests WHERE jobId = ?";
-        try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement statement = connection.prepareStatement(query)) {
-
-            statement.setString(1, jobId);
-            int rowsAffected = statement.executeUpdate();
-
-            if (rowsAffected > 0) {
-                jobsQueue.removeIf(job -> job.getJobId().equals(jobId)); // Remove from memory
+    // Mark a job as complete by ID and remove it from storage and memory
+    public String completeJob(String jobId) {
+        try {
+            if (jobStore.delete(jobId)) {
+                JobRequest completed = jobsQueue.remove(jobId); // Remove from memory
+                if (history != null) {
+                    if (completed != null) {
+                        history.jobCompleted(completed);
+                    } else {
+                        System.err.println("Job " + jobId + " deleted from storage but not in memory; no history record");
+                    }
+                }
                 return "Job marked as complete and removed successfully.";
             } else {
                 return "Error: Job ID not found.";
             }
-        } catch (SQLException e) {
+        } catch (StoreException e) {
             e.printStackTrace();
             return "Error: Unable to mark job as complete in database.";
         }
     }
+    // Every queued job with its completion time. Dashboards poll this, so the
+    // text is built once per queue version and reused until the queue changes.
     public String displayJobsAndCompletionTimes() {
+        long version = jobsQueue.version();
+        JobTimesText cached = jobTimesText;
+        if (cached != null && cached.version == version) {
+            return cached.text;
+        }
+        StringBuilder jobInfo = readJobListings(() -> new StringBuilder(JOB_TIMES_HEADER),
+                (out, listing) -> out.append(listing.toDisplayString()).append('\n'));
+        String text = jobInfo.length() == JOB_TIMES_HEADER.length()
+                ? "No jobs found for the specified client ID." : jobInfo.toString();
+        jobTimesText = new JobTimesText(version, text);
+        return text;
+    }
 
-        StringBuilder jobInfo = new StringBuilder("All Assigned Jobs and Completion Times:\n");
-        int cumulativeTime = 0;
+    // One job's completion time from the queue's index, in O(log n)
+    public String displayJobCompletionTime(String jobId) {
+        JobRequest job = jobsQueue.get(jobId);
+        long completionTime = jobsQueue.completionTime(jobId);
+        if (job == null || completionTime < 0) {
+            return "Error: Job ID not found.";
+        }
+        return appendJobTime(new StringBuilder(JOB_TIMES_HEADER), job, completionTime).toString();
+    }
 
-        // Loop through in-memory jobsQueue for real-time data
-        for (JobRequest job : jobsQueue) {
-            
-                cumulativeTime += job.getDuration();
-                jobInfo.append(String.format(
-                    "Job ID: %s, Client ID: %s, Description: %s, Duration: %d hours, Completion Time: %d hours\n",
-                    job.getJobId(), job.getClientId(), job.getJobDescription(),
-                    job.getDuration(), cumulativeTime
-                ));
-            
+    // Completion times of count jobs from position from (0 for the head), in O(log n + count)
+    public String displayJobTimes(int from, int count) {
+        List<JobListing> listings = getJobTimes(from, count);
+        if (listings.isEmpty()) {
+            return "No jobs found in that range.";
+        }
+        StringBuilder jobInfo = new StringBuilder(JOB_TIMES_HEADER);
+        for (JobListing listing : listings) {
+            jobInfo.append(listing.toDisplayString()).append('\n');
         }
+        return jobInfo.toString();
+    }
+
+    // Hours of queued work up to and including this job, or -1 if it is not queued
+    public long getCompletionTime(String jobId) {
+        return jobsQueue.completionTime(jobId);
+    }
 
-        return jobInfo.length() > "All Assigned Jobs and Completion Times:\n".length()
-                ? jobInfo.toString()
-                : "No jobs found for the specified client ID.";
+    public List<JobListing> getJobTimes(int from, int count) {
+        return jobsQueue.listings(from, count);
+    }
+
+    // Same line as JobListing.toDisplayString
+    private static StringBuilder appendJobTime(StringBuilder jobInfo, JobRequest job, long completionTime) {
+        return jobInfo.append("Job ID: ").append(job.getJobId())
+                .append(", Client ID: ").append(job.getClientId())
+                .append(", Description: ").append(job.getJobDescription())
+                .append(", Duration: ").append(job.getDuration())
+                .append(" hours, Completion Time: ").append(completionTime).append(" hours\n");
     }
     public String handleVehicleCompletion(String ownerId, String vinNumber) {
-        // Only update fields that exist in the database
-        String query = "DELETE FROM CarRentals WHERE ownerId = ? AND vinNumber = ?";
-        try (Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-             PreparedStatement stmt = conn.prepareStatement(query)) {
-
-            stmt.setString(1, ownerId);
-            stmt.setString(2, vinNumber);
-
-            int rowsAffected = stmt.executeUpdate();
-            if (rowsAffected > 0) {
-                // Remove from the in-memory list
-                vehiclesReady.removeIf(vehicle -> vehicle.getOwnerId().equals(ownerId) && vehicle.getVinNumber().equals(vinNumber));
+        beginVehicleWrite();
+        try {
+            if (vehicleStore.delete(ownerId, vinNumber)) {
+                retire(vehiclesReady.remove(ownerId, vinNumber), vinNumber, "completed");
                 return "Vehicle marked as complete successfully.";
             } else {
                 return "Error: Vehicle not found in the database.";
             }
-        } catch (SQLException e) {
+        } catch (StoreException e) {
             e.printStackTrace();
             return "Error: Unable to mark vehicle as complete.";
+        } finally {
+            endVehicleWrite();
+        }
+    }
+
+    // Reloads the vehicles from storage and, if memory has drifted from it (rows
+    // changed by another tool or server), replaces the registry's contents.
+    // Returns how many vehicles differed, or -1 if writes kept racing the reload;
+    // a reload that overlaps a write is thrown away so that write is not lost.
+    public int reconcileVehicles() throws StoreException {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            if (attempt > 0) {
+                try {
+                    Thread.sleep(100);   // Let the racing writes finish
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+            }
+            long changesBefore;
+            synchronized (vehiclesReady) {
+                if (vehicleWritesInFlight > 0) {
+                    continue;
+                }
+                changesBefore = vehicleChanges;
+            }
+            List<CarRentals> stored = vehicleStore.loadAll();
+            synchronized (vehiclesReady) {
+                if (vehicleChanges != changesBefore) {
+                    continue;
+                }
+                Set<String> inMemory = new HashSet<>();
+                for (CarRentals car : vehiclesReady.snapshot()) {
+                    inMemory.add(TabSeparated.join(row(car)));
+                }
+                int differences = 0;
+                for (CarRentals car : stored) {
+                    if (!inMemory.remove(TabSeparated.join(row(car)))) {
+                        differences++;
+                    }
+                }
+                differences += inMemory.size();
+                if (differences > 0) {
+                    vehiclesReady.replaceAll(stored);
+                }
+                vehiclesLoaded = true;
+                return differences;
+            }
         }
+        return -1;
     }
 
 
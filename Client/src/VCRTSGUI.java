@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.List;
 import java.util.Properties;
 
 public class VCRTSGUI extends JFrame {
@@ -112,22 +113,21 @@ public class VCRTSGUI extends JFrame {
     private void refreshJobList() {
         jobContainer.removeAll(); // Clear previous entries
 
-        String response = client.requestAllJobs();
-        String[] jobs = response.split("\n(?=Job ID: )");
+        List<JobListing> jobs = client.fetchJobs();
 
-        if (jobs.length > 1) { // Skip header and process jobs
-            for (int i = 1; i < jobs.length; i++) {
+        if (!jobs.isEmpty()) {
+            for (JobListing job : jobs) {
                 JPanel jobPanel = new JPanel(new BorderLayout());
                 jobPanel.setBorder(BorderFactory.createMatteBorder(0, 0, 1, 0, Color.LIGHT_GRAY));
 
-                JLabel jobLabel = new JLabel("<html>" + jobs[i].replaceAll("\n", "<br>") + "</html>");
+                JLabel jobLabel = new JLabel("<html>" + escapeHtml(job.toDisplayString()) + "</html>");
                 jobPanel.add(jobLabel, BorderLayout.CENTER);
 
                 JButton completeButton = createStyledButton("Mark Complete");
                 completeButton.setPreferredSize(new Dimension(200, completeButton.getPreferredSize().height));
 
-                // Extract Job ID and pass it to the button's ActionListener
-                String jobId = jobs[i].split(",")[0].split(": ")[1].trim();
+                // Pass the Job ID to the button's ActionListener
+                String jobId = job.getJobId();
                 completeButton.addActionListener(ev -> markJobComplete(jobId));
                 
                 jobPanel.add(completeButton, BorderLayout.EAST);
@@ -147,11 +147,16 @@ public class VCRTSGUI extends JFrame {
 
 
 
+    // Job descriptions are free text, keep them from being read as HTML markup
+    private static String escapeHtml(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\n", "<br>");
+    }
+
     // Helper method for marking job as complete
     private void markJobComplete(String jobId) {
         try {
             // Send the mark complete request to the server
-            String response = client.sendRequest("MARK_COMPLETE " + jobId);
+            String response = client.markJobComplete(jobId);
 
             // Show the server response
             JOptionPane.showMessageDialog(this, response);
@@ -623,7 +628,8 @@ public class VCRTSGUI extends JFrame {
                     return;
                 }
 
-                String response = client.submitJob(clientId, jobDescription, jobDuration, redundancyLevel, jobDeadline);
+                String response = client.submitJob(clientId, jobDescription, jobDuration, redundancyLevel, jobDeadline,
+                        this::showJobDecision);
                 JOptionPane.showMessageDialog(this, response);
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(this, "Please enter valid numbers for job duration and redundancy level.");
@@ -824,13 +830,28 @@ public class VCRTSGUI extends JFrame {
                 return;
             }
 
-            String response = client.submitJob(clientId, jobDescription, jobDuration, redundancyLevel, jobDeadline);
+            String response = client.submitJob(clientId, jobDescription, jobDuration, redundancyLevel, jobDeadline,
+                    this::showJobDecision);
             JOptionPane.showMessageDialog(this, response);
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Please enter valid numbers for job duration and redundancy level.");
         }
     }
 
+    // Called from the client's background thread once the admin decides a queued job
+    private void showJobDecision(String decision) {
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this, decision));
+    }
+
+    // Likewise for a queued car: the side panel shows the decision in place of "Pending Approval"
+    private void showCarDecision(String vinNumber, String decision) {
+        SwingUtilities.invokeLater(() -> {
+            registeredVehiclesPanel.updateVehicleStatus(vinNumber,
+                    decision.contains("successful") ? "Available" : "Not Registered");
+            JOptionPane.showMessageDialog(this, "Vehicle " + vinNumber + ": " + decision);
+        });
+    }
+
     private void registerVehicle() {
         try {
             String ownerId = ownerIdField.getText();
@@ -852,17 +873,18 @@ public class VCRTSGUI extends JFrame {
 
             // Send car registration details to the server
             String response = client.notifyCarReady(ownerId, vehicleModel, vehicleBrand, plateNumber, serialNumber,
-                    vinNumber, residencyDate);
+                    vinNumber, residencyDate, decision -> showCarDecision(vinNumber, decision));
 
             // Debug print
             System.out.println("Server response: " + response);
 
-            // If registration was successful, add the vehicle to the side panel
-            if (response.contains("successful")) {
+            // If registration was successful (or is waiting for the admin), add the vehicle to the side panel
+            boolean pending = response.contains("pending approval");
+            if (response.contains("successful") || pending) {
                 // Create new vehicle with status "Available"
                 Vehicle newVehicle = new Vehicle(
                         generateVehicleId(), // You can create a method to generate unique IDs
-                        "Available", // Initial status
+                        pending ? "Pending Approval" : "Available", // Initial status
                         ownerId,
                         vehicleModel,
                         vehicleBrand,
@@ -883,7 +905,7 @@ public class VCRTSGUI extends JFrame {
                 // Clear the form fields
                 clearRegistrationFields();
 
-                JOptionPane.showMessageDialog(this, "Vehicle registered successfully!");
+                JOptionPane.showMessageDialog(this, pending ? response : "Vehicle registered successfully!");
             } else {
                 JOptionPane.showMessageDialog(this,
                         "Failed to register vehicle: " + response,
@@ -0,0 +1,152 @@
+// VehicleRegistry.java
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// The in-memory vehicles ready for rental, in registration order. A vehicle is
+// identified by (ownerId, VIN), the same pair storage deletes by; a VIN index
+// makes "is this VIN taken" O(1), and the owner index answers GET_CARS. Register,
+// remove, complete and lookup are all hash operations.
+//
+// As in JobRegistry, each change publishes a new VersionedList of the vehicles,
+// keyed by registration sequence. snapshot() is a volatile read and never locks.
+//
+// A VIN can be reserved before the storage write that registers it, so two
+// concurrent CAR_READYs for one VIN cannot both reach the database. Rows that
+// predate the check may still share a VIN across owners; they load normally and
+// the VIN stays taken until the last of them is gone.
+public class VehicleRegistry {
+    private static final class Entry {
+        final CarRentals car;
+        final long seq;  // Key in the published list
+
+        Entry(CarRentals car, long seq) {
+            this.car = car;
+            this.seq = seq;
+        }
+    }
+
+    private final Map<String, Entry> byKey = new HashMap<>();                          // ownerId + VIN
+    private final Map<String, Map<String, CarRentals>> byOwner = new HashMap<>();      // ownerId -> VIN -> vehicle
+    private final Map<String, Integer> vinCounts = new HashMap<>();                    // VIN -> vehicles with it
+    private final Set<String> reserved = new HashSet<>();                              // VINs being registered
+    private long nextSeq;
+    private volatile VersionedList<CarRentals> snapshot = VersionedList.empty();
+
+    private static String key(String ownerId, String vinNumber) {
+        return ownerId + '\u0000' + vinNumber;
+    }
+
+    // Claims a VIN for a registration about to be stored; false if it is taken
+    public synchronized boolean reserve(String vinNumber) {
+        if (vinCounts.containsKey(vinNumber) || reserved.contains(vinNumber)) {
+            return false;
+        }
+        reserved.add(vinNumber);
+        return true;
+    }
+
+    // Gives up a reservation, e.g. when the storage write failed; no-op once added
+    public synchronized void release(String vinNumber) {
+        reserved.remove(vinNumber);
+    }
+
+    // Adds a stored vehicle, turning its VIN's reservation into a registration.
+    // Another vehicle with the same owner and VIN is replaced.
+    public synchronized void add(CarRentals car) {
+        snapshot = put(car, snapshot, snapshot.version() + 1);
+    }
+
+    // Indexes car and returns list with it appended
+    private VersionedList<CarRentals> put(CarRentals car, VersionedList<CarRentals> list, long version) {
+        String vin = car.getVinNumber();
+        Entry entry = new Entry(car, nextSeq++);
+        Entry replaced = byKey.put(key(car.getOwnerId(), vin), entry);
+        if (replaced == null) {
+            vinCounts.merge(vin, 1, Integer::sum);
+        } else {
+            list = list.without(replaced.seq, version);
+        }
+        byOwner.computeIfAbsent(car.getOwnerId(), owner -> new LinkedHashMap<>()).put(vin, car);
+        reserved.remove(vin);
+        return list.with(entry.seq, car, version);
+    }
+
+    // Publishes once for the whole batch
+    public synchronized void addAll(Collection<CarRentals> cars) {
+        if (cars.isEmpty()) {
+            return;
+        }
+        long version = snapshot.version() + 1;
+        VersionedList<CarRentals> list = snapshot;
+        for (CarRentals car : cars) {
+            list = put(car, list, version);
+        }
+        snapshot = list.stamped(version);
+    }
+
+    // Removes and returns the owner's vehicle with this VIN, or null
+    public synchronized CarRentals remove(String ownerId, String vinNumber) {
+        Entry entry = byKey.remove(key(ownerId, vinNumber));
+        if (entry == null) {
+            return null;
+        }
+        Map<String, CarRentals> owned = byOwner.get(ownerId);
+        owned.remove(vinNumber);
+        if (owned.isEmpty()) {
+            byOwner.remove(ownerId);
+        }
+        vinCounts.computeIfPresent(vinNumber, (vin, count) -> count == 1 ? null : count - 1);
+        snapshot = snapshot.without(entry.seq, snapshot.version() + 1);
+        return entry.car;
+    }
+
+    public synchronized CarRentals get(String ownerId, String vinNumber) {
+        Entry entry = byKey.get(key(ownerId, vinNumber));
+        return entry == null ? null : entry.car;
+    }
+
+    public synchronized boolean containsVin(String vinNumber) {
+        return vinCounts.containsKey(vinNumber);
+    }
+
+    // The owner's vehicles in registration order
+    public synchronized List<CarRentals> findByOwner(String ownerId) {
+        Map<String, CarRentals> owned = byOwner.get(ownerId);
+        return owned == null ? Collections.emptyList() : new ArrayList<>(owned.values());
+    }
+
+    // Replaces every vehicle, e.g. after reloading from storage; reservations stay
+    public synchronized void replaceAll(Collection<CarRentals> cars) {
+        long version = snapshot.version() + 1;
+        byKey.clear();
+        byOwner.clear();
+        vinCounts.clear();
+        VersionedList<CarRentals> list = VersionedList.empty();
+        for (CarRentals car : cars) {
+            list = put(car, list, version);
+        }
+        snapshot = list.stamped(version);
+    }
+
+    public synchronized int size() {
+        return byKey.size();
+    }
+
+    // Every vehicle in order as of the last change; never locks
+    public VersionedList<CarRentals> snapshot() {
+        return snapshot;
+    }
+
+    // Raised by every change; compare with a snapshot's version() to see if it is current
+    public long version() {
+        return snapshot.version();
+    }
+}
@@ -0,0 +1,26 @@
+// VehicleStore.java
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Durable copy of the vehicles offered for rental, kept in memory by VCController
+public interface VehicleStore {
+    // Streams every vehicle to rows as it is read, each with its carId set
+    void loadAll(Consumer<CarRentals> rows) throws StoreException;
+
+    default List<CarRentals> loadAll() throws StoreException {
+        List<CarRentals> cars = new ArrayList<>();
+        loadAll(cars::add);
+        return cars;
+    }
+
+    // carId, ownerId, model, brand, plateNumber, serialNumber, vinNumber, residencyTime
+    List<String[]> findByOwner(String ownerId) throws StoreException;
+
+    // Stores the vehicle and sets the carId it was given
+    void insert(CarRentals car) throws StoreException;
+
+    // False if the owner has no vehicle with this VIN
+    boolean delete(String ownerId, String vinNumber) throws StoreException;
+}
@@ -0,0 +1,201 @@
+// VersionedList.java
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// An immutable list stamped with the version of the registry that published it.
+// Items are kept in a persistent treap ordered by a key the registry assigns
+// (its insertion sequence). with() and without() return a new list in O(log n)
+// by copying only the path to the change; everything else is shared with the
+// previous list. A registry can therefore publish a new list on every write,
+// and readers can hold any published list without locking or copying.
+// get(i) is O(log n), and iteration is O(1) per item.
+public final class VersionedList<T> extends AbstractList<T> {
+    private static final VersionedList<Object> EMPTY = new VersionedList<>(null, 0);
+
+    private static final class Node<T> {
+        final long key;
+        final int priority;
+        final T value;
+        final Node<T> left;
+        final Node<T> right;
+        final int size;
+
+        Node(long key, int priority, T value, Node<T> left, Node<T> right) {
+            this.key = key;
+            this.priority = priority;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+
+        Node<T> with(Node<T> left, Node<T> right) {
+            return new Node<>(key, priority, value, left, right);
+        }
+    }
+
+    private final Node<T> root;
+    private final long version;
+
+    private VersionedList(Node<T> root, long version) {
+        this.root = root;
+        this.version = version;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> VersionedList<T> empty() {
+        return (VersionedList<T>) EMPTY;
+    }
+
+    // A list of items keyed 0..n-1 in order, built in O(n); for registries that
+    // rebuild their list rather than share it
+    public static <T> VersionedList<T> of(List<T> items, long version) {
+        return new VersionedList<>(build(items, 0, items.size(), Integer.MAX_VALUE), version);
+    }
+
+    // Version 0 is the empty list; each published change has a higher one
+    public long version() {
+        return version;
+    }
+
+    public boolean changedSince(long version) {
+        return this.version != version;
+    }
+
+    // This list plus value at key, which must be above every key in it
+    VersionedList<T> with(long key, T value, long version) {
+        return new VersionedList<>(append(root, new Node<>(key, priority(key), value, null, null)), version);
+    }
+
+    // The same items under another version
+    VersionedList<T> stamped(long version) {
+        return version == this.version ? this : new VersionedList<>(root, version);
+    }
+
+    // This list less the item at key; the same list if there is none
+    VersionedList<T> without(long key, long version) {
+        Node<T> removed = remove(root, key);
+        return removed == root ? this : new VersionedList<>(removed, version);
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        Node<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.value;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private final Deque<Node<T>> path = new ArrayDeque<>();
+            {
+                descend(root);
+            }
+
+            private void descend(Node<T> node) {
+                for (; node != null; node = node.left) {
+                    path.push(node);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<T> node = path.pop();
+                descend(node.right);
+                return node.value;
+            }
+        };
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    // Random-looking but fixed per key, so the shape depends only on the keys present
+    private static int priority(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // Adds a node whose key is the largest, along the right spine
+    private static <T> Node<T> append(Node<T> node, Node<T> added) {
+        if (node == null) {
+            return added;
+        }
+        if (added.priority > node.priority) {
+            return added.with(node, null);
+        }
+        return node.with(node.left, append(node.right, added));
+    }
+
+    private static <T> Node<T> remove(Node<T> node, long key) {
+        if (node == null) {
+            return null;
+        }
+        if (key < node.key) {
+            Node<T> left = remove(node.left, key);
+            return left == node.left ? node : node.with(left, node.right);
+        }
+        if (key > node.key) {
+            Node<T> right = remove(node.right, key);
+            return right == node.right ? node : node.with(node.left, right);
+        }
+        return merge(node.left, node.right);
+    }
+
+    // Joins two treaps where every key in left is below every key in right
+    private static <T> Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            return left.with(left.left, merge(left.right, right));
+        }
+        return right.with(merge(left, right.left), right.right);
+    }
+
+    // A balanced treap over items[from, to) with keys equal to their indexes;
+    // priorities fall with depth, so later with() and without() calls keep it a treap
+    private static <T> Node<T> build(List<T> items, int from, int to, int priority) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        return new Node<>(middle, priority, items.get(middle),
+                build(items, from, middle, priority - 1), build(items, middle + 1, to, priority - 1));
+    }
+}
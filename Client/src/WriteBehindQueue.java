@@ -0,0 +1,453 @@
+// WriteBehindQueue.java
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Group commit for VCController's inserts and deletes. Callers queue a statement
+// and wait on its future; one writer thread takes everything queued so far, runs
+// it as JDBC batches (consecutive rows with the same SQL share a batch) in a
+// single transaction and completes the futures once that transaction commits. So
+// a burst of N registrations costs a few round trips and one commit on the MySQL
+// side instead of N of each, while every caller is still answered only after its
+// row is durable.
+//
+// If a batch fails it is rolled back and its rows are retried one by one, so one
+// bad row cannot sink the others. A row the database rejects (a constraint, bad
+// data) fails its caller and is forgotten. A row that could not reach the
+// database at all (no connection, or the connection broke) is appended (and
+// synced) to the retry file instead. Its caller gets a WriteFailedException with
+// isSaved() true, which means accepted: the writer replays the retry file
+// periodically and at startup until the row commits, so the caller should treat
+// the write as done. A saved row the database rejects on replay has nobody left
+// to tell; it goes to the .rejected file next to the retry file for the admin.
+public class WriteBehindQueue {
+    private static final long REPLAY_INTERVAL_MILLIS = 30_000;
+
+    // A write that did not commit. saved is true when it went to the retry file,
+    // which makes it accepted: it is applied when the file is replayed.
+    public static class WriteFailedException extends Exception {
+        private static final long serialVersionUID = 1L;
+        private final boolean saved;
+
+        WriteFailedException(String message, boolean saved, Throwable cause) {
+            super(message, cause);
+            this.saved = saved;
+        }
+
+        public boolean isSaved() {
+            return saved;
+        }
+    }
+
+    // One queued statement; result completes with its update count
+    private static class Write {
+        final String sql;
+        final Object[] params;
+        final boolean replayed;   // From the retry file; its caller was long since answered
+        final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+        Write(String sql, Object[] params, boolean replayed) {
+            this.sql = sql;
+            this.params = params;
+            this.replayed = replayed;
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final BlockingQueue<Write> queue;
+    private final int maxBatch;
+    private final long enqueueTimeoutMillis;
+    private final Path retryFile;
+    private final Path rejectedFile;   // Saved writes the database refused on replay
+    private final Consumer<String> logger;
+    private final ReentrantLock retryLock = new ReentrantLock();   // Guards the retry and rejected files
+    private volatile Thread writer;
+
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder rowsCommitted = new LongAdder();
+    private final LongAdder rowsFailed = new LongAdder();
+    private final LongAdder rowsRejected = new LongAdder();
+    private final LongAdder rowsReplayed = new LongAdder();
+
+    public WriteBehindQueue(ConnectionPool pool, int capacity, int maxBatch, long enqueueTimeoutMillis,
+                            Path retryFile, Consumer<String> logger) {
+        this.pool = pool;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.maxBatch = Math.max(1, maxBatch);
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+        this.retryFile = retryFile;
+        this.rejectedFile = retryFile.resolveSibling(retryFile.getFileName() + ".rejected");
+        this.logger = logger;
+    }
+
+    // The queue configured by -Dvcrts.db.writeBehind=true, or null when writes stay synchronous
+    public static WriteBehindQueue fromSystemProperties(ConnectionPool pool, Consumer<String> logger) {
+        if (!Boolean.getBoolean("vcrts.db.writeBehind")) {
+            return null;
+        }
+        return new WriteBehindQueue(pool,
+                Integer.getInteger("vcrts.db.writeQueue", 1000),
+                Integer.getInteger("vcrts.db.maxBatch", 100),
+                Long.getLong("vcrts.db.borrowTimeoutMillis", 5_000),
+                Paths.get(System.getProperty("vcrts.db.retryFile", "database/write-retry.log")),
+                logger);
+    }
+
+    public void start() {
+        if (writer != null) {
+            return;
+        }
+        Thread thread = new Thread(this::runWriter, "db-write-behind");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+    }
+
+    // Stops the writer and commits whatever is still queued on the calling thread,
+    // so no caller is left waiting. Writes queued after this are never run.
+    public void stop() {
+        Thread thread = writer;
+        writer = null;
+        if (thread != null) {
+            thread.interrupt();   // Only the wait for the next write notices
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<Write> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            flush(rest);
+        }
+    }
+
+    // Queues a statement and waits until its transaction commits; returns the update count
+    public int execute(String sql, Object... params) throws WriteFailedException {
+        Write write = new Write(sql, params, false);
+        try {
+            if (!queue.offer(write, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new WriteFailedException("Write queue full", false, null);
+            }
+            return write.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WriteFailedException("Interrupted while waiting for the database", false, e);
+        } catch (java.util.concurrent.ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof WriteFailedException) {
+                throw (WriteFailedException) cause;
+            }
+            throw new WriteFailedException(cause.getMessage(), false, cause);
+        }
+    }
+
+    private void runWriter() {
+        long nextReplay = System.nanoTime();
+        List<Write> batch = new ArrayList<>(maxBatch);
+        while (writer == Thread.currentThread()) {
+            try {
+                if (System.nanoTime() - nextReplay >= 0) {
+                    replayRetryFile();
+                    nextReplay = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REPLAY_INTERVAL_MILLIS);
+                }
+                Write first = queue.poll(REPLAY_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);   // Everything that queued up during the last commit
+                flush(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                logger.accept("Write-behind error: " + e);
+                for (Write write : batch) {
+                    write.result.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Commits the writes as one transaction, falling back to one at a time on failure
+    void flush(List<Write> batch) {
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            int[] counts;
+            Connection raw = connection.getConnection();
+            raw.setAutoCommit(false);
+            try {
+                counts = executeBatches(connection, batch);
+                raw.commit();
+            } catch (SQLException e) {
+                if (isConnectionFailure(e)) {
+                    throw e;   // Nothing to gain from one by one on a broken connection
+                }
+                raw.rollback();
+                raw.setAutoCommit(true);
+                logger.accept("Batch of " + batch.size() + " writes failed (" + e.getMessage() + "), retrying one by one");
+                flushOneByOne(connection, batch);
+                return;
+            }
+            raw.setAutoCommit(true);
+            commits.increment();
+            rowsCommitted.add(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(counts[i]);
+            }
+        } catch (SQLException e) {
+            saveForRetry(batch, e); // No usable connection at all
+        }
+    }
+
+    // SQLState class 08 is a connection exception: the statement may never have
+    // reached the database, so it is worth running again later
+    private static boolean isConnectionFailure(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
+
+    // Runs consecutive writes with the same SQL as one JDBC batch, keeping their order
+    private static int[] executeBatches(ConnectionPool.PooledConnection connection, List<Write> batch) throws SQLException {
+        int[] counts = new int[batch.size()];
+        int start = 0;
+        while (start < batch.size()) {
+            String sql = batch.get(start).sql;
+            int end = start;
+            PreparedStatement statement = connection.prepare(sql);
+            while (end < batch.size() && batch.get(end).sql.equals(sql)) {
+                bind(statement, batch.get(end).params);
+                statement.addBatch();
+                end++;
+            }
+            int[] run = statement.executeBatch();
+            System.arraycopy(run, 0, counts, start, run.length);
+            start = end;
+        }
+        return counts;
+    }
+
+    // Rows the database rejects fail on their own; once the connection breaks, that
+    // row and the rest are saved for retry
+    private void flushOneByOne(ConnectionPool.PooledConnection connection, List<Write> batch) {
+        List<Write> unreachable = new ArrayList<>();
+        SQLException connectionError = null;
+        for (Write write : batch) {
+            if (connectionError != null) {
+                unreachable.add(write);
+                continue;
+            }
+            try {
+                PreparedStatement statement = connection.prepare(write.sql);
+                bind(statement, write.params);
+                int count = statement.executeUpdate();
+                rowsCommitted.increment();
+                write.result.complete(count);
+            } catch (SQLException e) {
+                if (isConnectionFailure(e)) {
+                    connectionError = e;
+                    unreachable.add(write);
+                } else {
+                    reject(write, e);
+                }
+            }
+        }
+        if (!unreachable.isEmpty()) {
+            saveForRetry(unreachable, connectionError);
+        }
+    }
+
+    // A row the database refused. Its caller is told it failed; a replayed row's
+    // caller was already told it was accepted, so it is kept in the rejected file.
+    private void reject(Write write, SQLException cause) {
+        rowsRejected.increment();
+        if (write.replayed) {
+            boolean kept = append(rejectedFile, List.of(write));
+            logger.accept("Saved database write rejected on replay (" + cause.getMessage() + ")"
+                    + (kept ? ", moved to " + rejectedFile : ", COULD NOT KEEP IT") + ": " + write.sql);
+        }
+        write.result.completeExceptionally(new WriteFailedException(cause.getMessage(), false, cause));
+    }
+
+    private static void bind(PreparedStatement statement, Object[] params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            statement.setObject(i + 1, params[i]);
+        }
+    }
+
+    // Appends the writes to the retry file (synced to disk) and tells their callers
+    // whether they were saved, i.e. accepted
+    private void saveForRetry(List<Write> writes, SQLException cause) {
+        rowsFailed.add(writes.size());
+        boolean saved = append(retryFile, writes);
+        String reason = cause == null ? "unknown error" : cause.getMessage();
+        logger.accept(writes.size() + " database writes failed (" + reason + ")"
+                + (saved ? ", saved to " + retryFile + " for retry" : ", COULD NOT SAVE THEM"));
+        for (Write write : writes) {
+            write.result.completeExceptionally(new WriteFailedException(reason, saved, cause));
+        }
+    }
+
+    private boolean append(Path file, List<Write> writes) {
+        StringBuilder lines = new StringBuilder();
+        for (Write write : writes) {
+            lines.append(encode(write)).append('\n');
+        }
+        retryLock.lock();
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(true);
+            }
+            return true;
+        } catch (IOException e) {
+            logger.accept("Cannot write " + file + ": " + e.getMessage());
+            return false;
+        } finally {
+            retryLock.unlock();
+        }
+    }
+
+    // Moves the retry file aside and runs its writes again; those that still fail are
+    // appended to a fresh retry file. Returns how many were committed.
+    int replayRetryFile() {
+        List<Write> writes = new ArrayList<>();
+        retryLock.lock();
+        try {
+            if (!Files.exists(retryFile)) {
+                return 0;
+            }
+            Path replaying = retryFile.resolveSibling(retryFile.getFileName() + ".replaying");
+            Files.move(retryFile, replaying, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            try (BufferedReader reader = Files.newBufferedReader(replaying, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        writes.add(decode(line));
+                    }
+                }
+            }
+            Files.delete(replaying);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.accept("Cannot replay " + retryFile + ": " + e.getMessage());
+            return 0;
+        } finally {
+            retryLock.unlock();
+        }
+        if (writes.isEmpty()) {
+            return 0;
+        }
+        long before = rowsCommitted.sum();
+        try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+            flushOneByOne(connection, writes);
+        } catch (SQLException e) {
+            saveForRetry(writes, e);
+        }
+        long replayed = rowsCommitted.sum() - before;
+        rowsReplayed.add(replayed);
+        rowsFailed.add(-writes.size());   // Counted again by saveForRetry if they failed once more
+        if (replayed > 0) {
+            logger.accept("Replayed " + replayed + " of " + writes.size() + " saved database writes");
+        }
+        return (int) replayed;
+    }
+
+    // One line per write: the SQL, then each parameter as a typed field, tab separated
+    static String encode(Write write) {
+        StringBuilder line = new StringBuilder(TabSeparated.escape(write.sql));
+        for (Object param : write.params) {
+            line.append('\t');
+            if (param == null) {
+                line.append('n');
+            } else if (param instanceof Integer) {
+                line.append('i').append(param);
+            } else if (param instanceof java.sql.Date) {
+                line.append('d').append(param);
+            } else {
+                line.append('s').append(TabSeparated.escape(param.toString()));
+            }
+        }
+        return line.toString();
+    }
+
+    static Write decode(String line) {
+        String[] fields = line.split("\t", -1);
+        Object[] params = new Object[fields.length - 1];
+        for (int i = 1; i < fields.length; i++) {
+            String field = fields[i];
+            if (field.isEmpty()) {
+                throw new IllegalArgumentException("empty field in retry line");
+            }
+            String value = field.substring(1);
+            switch (field.charAt(0)) {
+                case 'n': params[i - 1] = null; break;
+                case 'i': params[i - 1] = Integer.valueOf(value); break;
+                case 'd': params[i - 1] = java.sql.Date.valueOf(value); break;
+                case 's': params[i - 1] = TabSeparated.unescape(value); break;
+                default: throw new IllegalArgumentException("unknown field type '" + field.charAt(0) + "'");
+            }
+        }
+        return new Write(TabSeparated.unescape(fields[0]), params, true);
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    public long getRowsCommitted() {
+        return rowsCommitted.sum();
+    }
+
+    // Rows currently saved in the retry file
+    public long getRowsFailed() {
+        return rowsFailed.sum();
+    }
+
+    public long getRowsReplayed() {
+        return rowsReplayed.sum();
+    }
+
+    // Rows the database refused, whether on first try or on replay
+    public long getRowsRejected() {
+        return rowsRejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "Write-behind " + getQueued() + " queued, " + getCommits() + " commits / "
+                + getRowsCommitted() + " rows, " + getRowsFailed() + " awaiting retry, " + getRowsRejected() + " rejected";
+    }
+}
@@ -0,0 +1,113 @@
+// CommandDispatchBenchmark.java
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Compares the old request routing (startsWith chain, Pattern.compile per JOB_SUBMIT,
+// String.split for the rest) with CommandRegistry + RequestTokenizer for the four
+// commands clients send most. Handlers only consume the parsed fields, so the
+// numbers are parse and dispatch cost without any database work.
+// JMH is not on the project's classpath, so this is a plain warm-up-then-measure loop.
+//
+// Run from the project root after compiling Client/src into bin:
+//   javac -d bin -cp bin bench/CommandDispatchBenchmark.java
+//   java -cp bin CommandDispatchBenchmark
+public class CommandDispatchBenchmark {
+    private static final String[] REQUESTS = {
+        "REGISTER \"Ada\" \"Lovelace\" \"ada\" \"ada@example.com\" \"1815-12-10\" \"secret\" \"JobOwner\"",
+        "LOGIN ada secret",
+        "JOB_SUBMIT 42 \"Render frames for the demo\" 12 3 2026-11-05",
+        "CAR_READY 7 Civic Honda ABC123 SN-99 1HGCM82633A004352 2026-11-01",
+    };
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final int ITERATIONS = 200_000;
+
+    private static long sink;   // Keeps the JIT from discarding parsed fields
+
+    public static void main(String[] args) {
+        CommandRegistry registry = buildRegistry();
+        RequestTokenizer tokenizer = new RequestTokenizer();
+
+        System.out.printf("%-12s %16s %16s%n", "command", "legacy ns/op", "registry ns/op");
+        for (String request : REQUESTS) {
+            String command = request.substring(0, request.indexOf(' '));
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                runLegacy(request);
+                runRegistry(registry, tokenizer, request);
+            }
+            long legacy = Long.MAX_VALUE;
+            long table = Long.MAX_VALUE;
+            for (int i = 0; i < MEASURED_ROUNDS; i++) {
+                legacy = Math.min(legacy, runLegacy(request));
+                table = Math.min(table, runRegistry(registry, tokenizer, request));
+            }
+            System.out.printf("%-12s %16.1f %16.1f%n", command,
+                    legacy / (double) ITERATIONS, table / (double) ITERATIONS);
+        }
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static long runLegacy(String request) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += legacyDispatch(request).length();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long runRegistry(CommandRegistry registry, RequestTokenizer tokenizer, String request) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            tokenizer.reset(request);
+            Opcode command = registry.lookup(tokenizer);
+            sink += registry.textHandler(command).handle(null, tokenizer).length();
+        }
+        return System.nanoTime() - start;
+    }
+
+    // The routing and parsing Server/VCController/UserManager did before CommandRegistry
+    private static String legacyDispatch(String message) {
+        if (message.startsWith("REGISTER")) {
+            String[] parts = message.split(" ");
+            String dob = parts[5].trim().replaceAll("^\"|\"$", "");
+            return consume(parts[1], parts[3], dob, parts[7]);
+        } else if (message.startsWith("LOGIN")) {
+            String[] parts = message.split(" ");
+            return consume(parts[1], parts[2], null, null);
+        } else if (message.startsWith("JOB_SUBMIT")) {
+            Pattern pattern = Pattern.compile("JOB_SUBMIT (\\S+) \"([^\"]+)\" (\\d+) (\\d+) (\\S+)");
+            Matcher matcher = pattern.matcher(message);
+            if (!matcher.matches()) {
+                return "Invalid job submission format.";
+            }
+            sink += Integer.parseInt(matcher.group(3)) + Integer.parseInt(matcher.group(4));
+            return consume(matcher.group(1), matcher.group(2), matcher.group(5), null);
+        } else if (message.startsWith("CAR_READY")) {
+            String[] parts = message.split(" ");
+            return consume(parts[1], parts[6], parts[7], parts[3]);
+        }
+        return "Invalid request";
+    }
+
+    // The same commands through the table, parsed the way Server.registerCommands() does
+    private static CommandRegistry buildRegistry() {
+        CommandRegistry registry = new CommandRegistry();
+        registry.register(Opcode.REGISTER,
+            (session, tokens) -> consume(tokens.get(1), tokens.get(3), tokens.get(5).trim(), tokens.get(7)), null);
+        registry.register(Opcode.LOGIN,
+            (session, tokens) -> consume(tokens.get(1), tokens.get(2), null, null), null);
+        registry.register(Opcode.JOB_SUBMIT, (session, tokens) -> {
+            sink += tokens.getInt(3) + tokens.getInt(4);
+            return consume(tokens.get(1), tokens.get(2), tokens.get(5), null);
+        }, null);
+        registry.register(Opcode.CAR_READY,
+            (session, tokens) -> consume(tokens.get(1), tokens.get(6), tokens.get(7), tokens.get(3)), null);
+        return registry;
+    }
+
+    private static String consume(String a, String b, String c, String d) {
+        sink += a.length() + b.length() + (c == null ? 0 : c.length()) + (d == null ? 0 : d.length());
+        return a;
+    }
+}
@@ -0,0 +1,127 @@
+// ModelFootprintBenchmark.java
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Heap retained per queued job and per ready vehicle: the compact JobRequest and
+// CarRentals against copies of their previous all-String layout (LegacyJob and
+// LegacyCar below). Records are built the way the server builds them: fresh
+// UUIDs and timestamps, and client IDs, brands and models drawn from small sets
+// as they arrive parsed out of separate requests. Jobs are also measured as
+// MySqlStorage loads them at startup, from the ID text and a TIMESTAMP column
+// value. Prints bytes per record.
+//
+// Run from the project root after compiling Client/src into bin:
+//   javac -d bin -cp "lib/*" -encoding UTF-8 Client/src/*.java
+//   javac -d bin -cp bin bench/ModelFootprintBenchmark.java
+//   java -Xmx2g -cp bin ModelFootprintBenchmark
+public class ModelFootprintBenchmark {
+    private static final int RECORDS = 500_000;
+    private static final int CLIENTS = 1_000;
+    private static final String[] BRANDS = {"Honda", "Toyota", "Ford", "VW", "Tesla"};
+    private static final String[] MODELS = {"Civic", "Corolla", "Focus", "Golf", "Model 3"};
+
+    // The fields JobRequest had before it was made compact
+    static final class LegacyJob {
+        final String jobId, clientId, jobDescription, jobDeadline, timestamp;
+        final int duration, redundancyLevel;
+
+        LegacyJob(String jobId, String clientId, String jobDescription, int duration, int redundancyLevel,
+                  String jobDeadline, String timestamp) {
+            this.jobId = jobId;
+            this.clientId = clientId;
+            this.jobDescription = jobDescription;
+            this.duration = duration;
+            this.redundancyLevel = redundancyLevel;
+            this.jobDeadline = jobDeadline;
+            this.timestamp = timestamp;
+        }
+    }
+
+    // The fields CarRentals had before it was made compact
+    static final class LegacyCar {
+        final String carId, ownerId, model, brand, plateNumber, serialNumber, vinNum, residencyTime;
+        final List<JobRequest> assignedJobs = new ArrayList<>();
+
+        LegacyCar(String carId, String ownerId, String model, String brand, String plateNumber,
+                  String serialNumber, String vinNum, String residencyTime) {
+            this.carId = carId;
+            this.ownerId = ownerId;
+            this.model = model;
+            this.brand = brand;
+            this.plateNumber = plateNumber;
+            this.serialNumber = serialNumber;
+            this.vinNum = vinNum;
+            this.residencyTime = residencyTime;
+        }
+    }
+
+    interface Factory {
+        Object create(int i);
+    }
+
+    public static void main(String[] args) {
+        // Strings built per record, as the request parser produces them
+        Factory legacyJob = i -> new LegacyJob(UUID.randomUUID().toString(), "client" + (i % CLIENTS), "job",
+                1 + i % 10, 1, "2025-0" + (1 + i % 9) + "-15", "2025-01-01 10:" + (10 + i % 50) + ":00");
+        Factory compactJob = i -> new JobRequest("client" + (i % CLIENTS), "job",
+                1 + i % 10, 1, "2025-0" + (1 + i % 9) + "-15");
+        // The old layout kept the column's Timestamp.toString(), e.g. "2025-01-01 10:12:00.0"
+        Factory legacyLoadedJob = i -> new LegacyJob(UUID.randomUUID().toString(), "client" + (i % CLIENTS), "job",
+                1 + i % 10, 1, "2025-0" + (1 + i % 9) + "-15", loadedTimestamp(i).toString());
+        Factory compactLoadedJob = i -> new JobRequest(UUID.randomUUID().toString(), "client" + (i % CLIENTS), "job",
+                1 + i % 10, 1, "2025-0" + (1 + i % 9) + "-15", loadedTimestamp(i).getTime());
+        Factory legacyCar = i -> new LegacyCar(Integer.toString(i), "client" + (i % CLIENTS), new String(MODELS[i % 5]),
+                new String(BRANDS[i % 5]), "P" + i, "S" + i, "VIN" + i, "2025-0" + (1 + i % 9) + "-15");
+        Factory compactCar = i -> {
+            CarRentals car = new CarRentals("client" + (i % CLIENTS), new String(MODELS[i % 5]), new String(BRANDS[i % 5]),
+                    "P" + i, "S" + i, "VIN" + i, "2025-0" + (1 + i % 9) + "-15");
+            car.setCarId(Integer.toString(i));
+            return car;
+        };
+        for (int round = 0; round < 2; round++) {   // The first round warms up and fills the dictionaries
+            boolean print = round == 1;
+            long legacyJobs = measure(legacyJob);
+            long compactJobs = measure(compactJob);
+            long legacyLoadedJobs = measure(legacyLoadedJob);
+            long compactLoadedJobs = measure(compactLoadedJob);
+            long legacyCars = measure(legacyCar);
+            long compactCars = measure(compactCar);
+            if (print) {
+                System.out.printf("%-12s %14s %14s%n", "record", "legacy B", "compact B");
+                System.out.printf("%-12s %14d %14d%n", "JobRequest", legacyJobs / RECORDS, compactJobs / RECORDS);
+                System.out.printf("%-12s %14d %14d%n", "  loaded", legacyLoadedJobs / RECORDS, compactLoadedJobs / RECORDS);
+                System.out.printf("%-12s %14d %14d%n", "CarRentals", legacyCars / RECORDS, compactCars / RECORDS);
+            }
+        }
+    }
+
+    // What ResultSet.getTimestamp returns for row i
+    private static Timestamp loadedTimestamp(int i) {
+        return Timestamp.valueOf("2025-01-01 10:" + (10 + i % 50) + ":00");
+    }
+
+    // Heap retained by RECORDS records from factory
+    private static long measure(Factory factory) {
+        long before = usedAfterGc();
+        Object[] records = new Object[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            records[i] = factory.create(i);
+        }
+        long after = usedAfterGc();
+        if (records[RECORDS - 1] == null) {   // Keeps records reachable through the second measurement
+            throw new AssertionError();
+        }
+        return after - before - (16L + 4L * RECORDS);   // Less the holding array
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
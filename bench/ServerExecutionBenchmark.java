@@ -0,0 +1,124 @@
+// ServerExecutionBenchmark.java
+
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Compares the fixed pool of 10 with one virtual thread per connection for the
+// blocking transport. A real Server is started for each run, with in-memory
+// storage and no archive, so every request goes through handleClient and the
+// command table exactly as in production, minus the database. Every client keeps
+// its socket open for the whole run (like VCRTSGUI does) and sends a few
+// requests. Prints completed requests per second for each connection count.
+//
+// Without virtual threads (before JDK 21) ServerExecutors runs VIRTUAL on a
+// cached platform thread pool; those rows are labelled "cached*" rather than
+// passed off as virtual thread numbers.
+//
+// Run from the project root after compiling Client/src into bin:
+//   javac -d bin -cp "lib/*" -encoding UTF-8 Client/src/*.java
+//   javac -d bin -cp bin bench/ServerExecutionBenchmark.java
+//   java -cp "bin:lib/*" ServerExecutionBenchmark            (JDK 21+ for real virtual threads)
+public class ServerExecutionBenchmark {
+    private static final int[] CONNECTION_COUNTS = {10, 50, 200, 1000};
+    private static final int REQUESTS_PER_CONNECTION = 5;
+    private static final long STARTUP_TIMEOUT_MILLIS = 10_000;
+
+    // Drops the per-request log lines, which would otherwise dominate the run
+    private static final Server.Listener QUIET = new Server.Listener() {
+        @Override
+        public void log(String message) {
+        }
+
+        @Override
+        public void updateServerStatus(boolean isRunning) {
+        }
+    };
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("vcrts.storage", "memory");
+        System.setProperty("vcrts.archive", "false");
+        boolean virtual = ServerExecutors.virtualThreadsAvailable();
+        if (!virtual) {
+            System.err.println("Virtual threads are not available on this JVM: VIRTUAL runs on a cached thread pool"
+                    + " and is shown as cached*. Use JDK 21+ to measure virtual threads.");
+        }
+        System.out.printf("%-10s %12s %14s %12s%n", "mode", "connections", "requests/s", "elapsed ms");
+        for (int connections : CONNECTION_COUNTS) {
+            for (ServerConfig.Execution mode : ServerConfig.Execution.values()) {
+                String label = mode == ServerConfig.Execution.VIRTUAL && !virtual ? "cached*" : mode.name();
+                // POOL refuses connections beyond workers + queue, so the queue is sized to the run;
+                // VIRTUAL accepts them all and only caps requests in flight at the same number
+                ServerConfig config = ServerConfig.withoutLimits().port(freePort()).execution(mode)
+                        .queueCapacity(connections).build();
+                runOnce(config, connections, label);
+            }
+        }
+    }
+
+    private static void runOnce(ServerConfig config, int connections, String label) throws Exception {
+        Server server = new Server(QUIET, config);
+        server.start();
+        awaitListening(config.getPort());
+
+        ExecutorService clients = Executors.newFixedThreadPool(Math.min(connections, 200));
+        CountDownLatch done = new CountDownLatch(connections);
+        AtomicLong completed = new AtomicLong();
+        long start = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            clients.execute(() -> {
+                try (Socket socket = new Socket("localhost", config.getPort());
+                     PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                     BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+                    for (int r = 0; r < REQUESTS_PER_CONNECTION; r++) {
+                        out.println("GET_ALL_JOBS");
+                        String line;
+                        while ((line = in.readLine()) != null && !line.isEmpty()) {
+                            // Read until the empty terminator line
+                        }
+                        completed.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Client failed: " + e.getMessage());
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        System.out.printf("%-10s %12d %14d %12d%n", label, connections,
+                completed.get() * 1000 / elapsedMillis, elapsedMillis);
+
+        clients.shutdown();
+        server.stop();
+    }
+
+    // A port nothing is listening on right now, for the next server to bind
+    private static int freePort() throws IOException {
+        try (ServerSocket probe = new ServerSocket(0)) {
+            return probe.getLocalPort();
+        }
+    }
+
+    // Server.start() binds on its own thread; wait until it accepts connections
+    private static void awaitListening(int port) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STARTUP_TIMEOUT_MILLIS);
+        while (true) {
+            try {
+                new Socket("localhost", port).close();
+                return;
+            } catch (ConnectException e) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Server did not start listening on port " + port);
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+}
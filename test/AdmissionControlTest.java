@@ -0,0 +1,50 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class AdmissionControlTest {
+
+
+    @Test
+    public void testTokenBucketAllowsBurstThenRefills() {
+        TokenBucket bucket = new TokenBucket(10, 3);   // One token per 100 ms, burst of 3
+        long now = System.nanoTime();
+
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        long wait = bucket.tryAcquire(now);
+        assertTrue("wait " + wait, wait > 0 && wait <= 100_000_000L);
+
+        assertEquals(0, bucket.tryAcquire(now + wait));
+        assertFalse(bucket.isFull(now + wait));
+        assertTrue(bucket.isFull(now + 1_000_000_000L));
+    }
+
+
+    @Test
+    public void testPerConnectionLimit() {
+        AdmissionControl admission = new AdmissionControl(2, 0, 200);
+        ClientSession session = admission.openSession("test");
+
+        assertEquals(0, admission.admit(session, Opcode.GET_ALL_JOBS, null));
+        assertEquals(0, admission.admit(session, Opcode.GET_ALL_JOBS, null));
+        assertTrue(admission.admit(session, Opcode.GET_ALL_JOBS, null) > 0);
+        assertEquals(0, admission.admit(session, Opcode.GET_CARS, null));   // Not a limited command
+        assertEquals(0, admission.admit(admission.openSession("other"), Opcode.LOGIN, "alice"));
+        assertEquals(1, admission.getRateLimited());
+    }
+
+
+    @Test
+    public void testPerUserLimitSpansConnections() {
+        AdmissionControl admission = new AdmissionControl(0, 1, 200);
+
+        assertEquals(0, admission.admit(admission.openSession("a"), Opcode.JOB_SUBMIT, "client-7"));
+        long retryAfter = admission.admit(admission.openSession("b"), Opcode.JOB_SUBMIT, "client-7");
+        assertTrue(retryAfter > 0 && retryAfter <= 1000);
+        assertEquals(0, admission.admit(admission.openSession("c"), Opcode.JOB_SUBMIT, "client-8"));
+        assertEquals("Error: Server busy, retry after 200 ms", AdmissionControl.busyMessage(admission.rejectFullQueue()));
+        assertEquals(1, admission.getQueueRejected());
+    }
+}
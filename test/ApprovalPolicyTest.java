@@ -0,0 +1,81 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.Arrays;
+
+
+public class ApprovalPolicyTest {
+
+
+    private static final ApprovalPolicy.Facts FACTS = new ApprovalPolicy.Facts() {
+        @Override
+        public boolean isKnownOwner(String ownerId) {
+            return ownerId.equals("owner-1");
+        }
+
+        @Override
+        public boolean isVinRegistered(String vinNumber) {
+            return vinNumber.equals("VIN-TAKEN");
+        }
+    };
+
+
+    private final ApprovalPolicy policy = ApprovalPolicy.compile(Arrays.asList(
+            "# sample policy",
+            "reject job when redundancy > 5",
+            "approve job when duration <= 24 and redundancy <= 3 and knownOwner",
+            "reject car when vinRegistered",
+            "approve car when knownOwner   # trailing comment"));
+
+
+    @Test
+    public void testFirstMatchingRuleWins() {
+        ApprovalPolicy.Verdict verdict = policy.evaluate(ApprovalPolicy.Request.job("owner-1", 2, 9, FACTS));
+        assertEquals(ApprovalPolicy.Decision.REJECT, verdict.getDecision());
+        assertEquals("reject job when redundancy > 5", verdict.getRule());
+
+        assertEquals(ApprovalPolicy.Decision.APPROVE,
+                policy.evaluate(ApprovalPolicy.Request.job("owner-1", 24, 3, FACTS)).getDecision());
+        assertEquals(ApprovalPolicy.Decision.REJECT,
+                policy.evaluate(ApprovalPolicy.Request.car("owner-1", "VIN-TAKEN", FACTS)).getDecision());
+        assertEquals(ApprovalPolicy.Decision.APPROVE,
+                policy.evaluate(ApprovalPolicy.Request.car("owner-1", "VIN-NEW", FACTS)).getDecision());
+    }
+
+
+    @Test
+    public void testUnmatchedRequestsEscalateAndAreCounted() {
+        assertEquals(ApprovalPolicy.Decision.ESCALATE,
+                policy.evaluate(ApprovalPolicy.Request.job("stranger", 2, 1, FACTS)).getDecision());
+        assertEquals(ApprovalPolicy.Decision.ESCALATE,
+                policy.evaluate(ApprovalPolicy.Request.job("owner-1", 48, 1, FACTS)).getDecision());
+        policy.evaluate(ApprovalPolicy.Request.job("owner-1", 1, 1, FACTS));
+        policy.evaluate(ApprovalPolicy.Request.car("owner-2", "VIN-TAKEN", FACTS));
+
+        assertEquals(1, policy.getAutoApproved());
+        assertEquals(1, policy.getAutoRejected());
+        assertEquals(2, policy.getEscalated());
+        assertEquals(ApprovalPolicy.Decision.ESCALATE, ApprovalPolicy.escalateAll()
+                .evaluate(ApprovalPolicy.Request.car("owner-1", "VIN-NEW", FACTS)).getDecision());
+    }
+
+
+    @Test
+    public void testInvalidRulesNameTheLine() {
+        String[][] invalid = {
+                {"approve job when colour == 3"},
+                {"", "approve car when duration < 4"},
+                {"maybe job"},
+                {"approve job when not duration < 4"},
+                {"approve job when knownOwner or duration < 4"},
+                {"reject job when vinRegistered"},
+        };
+        for (String[] lines : invalid) {
+            try {
+                ApprovalPolicy.compile(Arrays.asList(lines));
+                fail("Expected a compile error for " + Arrays.toString(lines));
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Approval policy line " + lines.length + ":"));
+            }
+        }
+    }
+}
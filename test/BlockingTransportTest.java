@@ -0,0 +1,153 @@
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+
+public class BlockingTransportTest {
+    private static final Server.Listener QUIET = new Server.Listener() {
+        @Override
+        public void log(String message) {
+        }
+
+        @Override
+        public void updateServerStatus(boolean isRunning) {
+        }
+    };
+
+    // A real server whose v2 requests wait for release before the normal handling runs
+    private static class HeldServer extends Server {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch arrived;
+
+        HeldServer(ServerConfig config, int expected) {
+            super(QUIET, config);
+            arrived = new CountDownLatch(expected);
+        }
+
+        @Override
+        ByteBuffer handleFrame(ClientSession session, ByteBuffer body, Consumer<ByteBuffer> laterReply) {
+            arrived.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.handleFrame(session, body, laterReply);
+        }
+    }
+
+    private final List<Socket> sockets = new ArrayList<>();
+    private HeldServer server;
+    private int port;
+
+    // A VIRTUAL blocking server that allows two requests in flight
+    private void start(int heldRequests) throws Exception {
+        System.setProperty("vcrts.storage", "memory");
+        System.setProperty("vcrts.archive", "false");
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        server = new HeldServer(ServerConfig.withoutLimits().port(port).execution(ServerConfig.Execution.VIRTUAL)
+                .workerThreads(1).queueCapacity(1).build(), heldRequests);
+        server.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            try {
+                new Socket("localhost", port).close();
+                return;
+            } catch (ConnectException e) {
+                assertTrue("server did not start listening", System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", port);
+        socket.setSoTimeout(10_000);
+        sockets.add(socket);
+        return socket;
+    }
+
+    // Sends a text request and reads its response up to the blank terminator line
+    private static String ask(Socket socket, BufferedReader in, String request) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write((request + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        String line = in.readLine();
+        assertEquals("", in.readLine());
+        return line;
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        if (server != null) {
+            server.release.countDown();
+            server.stop();
+        }
+        System.clearProperty("vcrts.storage");
+        System.clearProperty("vcrts.archive");
+    }
+
+
+    @Test
+    public void testVirtualModeAcceptsMoreConnectionsThanRequestPermits() throws Exception {
+        start(0);
+        List<BufferedReader> readers = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {   // Three times workers + queue, all left open
+            readers.add(reader(connect()));
+        }
+        for (int i = 0; i < 6; i++) {
+            assertEquals("PONG", ask(sockets.get(i), readers.get(i), "PING"));
+        }
+    }
+
+
+    @Test
+    public void testVirtualModeAnswersBusyPastTheRequestLimit() throws Exception {
+        start(2);
+        for (int i = 0; i < 2; i++) {   // Each holds one of the two permits
+            Socket held = connect();
+            OutputStream out = held.getOutputStream();
+            out.write(ProtocolV2.MAGIC);
+            ByteBuffer frame = ProtocolV2.withCorrelationId(new FrameWriter(Opcode.PING).finish(), 1);
+            out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+            out.flush();
+        }
+        assertTrue(server.arrived.await(5, TimeUnit.SECONDS));
+
+        Socket text = connect();
+        BufferedReader in = reader(text);
+        String busy = ask(text, in, "PING");
+        assertTrue(busy, busy.startsWith("Error: Server busy"));
+        server.release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String response;
+        while (!(response = ask(text, in, "PING")).equals("PONG")) {   // Same connection once permits free up
+            assertTrue(response, System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
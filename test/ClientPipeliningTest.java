@@ -0,0 +1,178 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+
+public class ClientPipeliningTest {
+    private static final int REQUESTS = Server.MAX_PIPELINED_REQUESTS + 8;
+
+    private static final Server.Listener QUIET = new Server.Listener() {
+        @Override
+        public void log(String message) {
+        }
+
+        @Override
+        public void updateServerStatus(boolean isRunning) {
+        }
+    };
+
+    // A real server whose v2 requests each wait for the gate of their correlation
+    // ID (the client numbers them from 1) before the normal handling runs
+    private static class GatedServer extends Server {
+        final List<CountDownLatch> gates = new ArrayList<>();
+        private int arrived;   // Guarded by gates
+
+        GatedServer(ServerConfig config) {
+            super(QUIET, config);
+            for (int i = 0; i < REQUESTS; i++) {
+                gates.add(new CountDownLatch(1));
+            }
+        }
+
+        @Override
+        ByteBuffer handleFrame(ClientSession session, ByteBuffer body, Consumer<ByteBuffer> laterReply) {
+            synchronized (gates) {
+                arrived++;
+                gates.notifyAll();
+            }
+            try {
+                gates.get(ProtocolV2.correlationIdOf(body) - 1).await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.handleFrame(session, body, laterReply);
+        }
+
+        void release(ByteBuffer request) {
+            gates.get(correlationIdOf(request) - 1).countDown();
+        }
+
+        int arrived() {
+            synchronized (gates) {
+                return arrived;
+            }
+        }
+
+        void awaitArrived(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            synchronized (gates) {
+                while (arrived < count && System.currentTimeMillis() < deadline) {
+                    gates.wait(deadline - System.currentTimeMillis());
+                }
+            }
+            assertEquals(count, arrived());
+        }
+    }
+
+    private GatedServer server;
+    private Client client;
+
+    @Before
+    public void setUp() throws Exception {
+        System.setProperty("vcrts.storage", "memory");
+        System.setProperty("vcrts.archive", "false");
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        // Enough pipeline threads that every request the server reads can wait at its gate
+        server = new GatedServer(ServerConfig.withoutLimits().port(port).workerThreads(REQUESTS).build());
+        server.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            try {
+                new Socket("localhost", port).close();
+                break;
+            } catch (ConnectException e) {
+                assertTrue("server did not start listening", System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+        }
+        client = new Client(true, "localhost", port);
+    }
+
+    @After
+    public void tearDown() {
+        for (CountDownLatch gate : server.gates) {
+            gate.countDown();
+        }
+        server.stop();
+        System.clearProperty("vcrts.storage");
+        System.clearProperty("vcrts.archive");
+    }
+
+    // The correlation ID sendAsync stamped into a request frame
+    private static int correlationIdOf(ByteBuffer request) {
+        ByteBuffer body = request.duplicate();
+        body.position(body.position() + 4);   // Past the length
+        return ProtocolV2.correlationIdOf(body);
+    }
+
+
+    @Test
+    public void testRepliesOutOfOrderReachTheirRequests() throws Exception {
+        ByteBuffer jobs = new FrameWriter(Opcode.GET_ALL_JOBS).finish();
+        ByteBuffer cars = new FrameWriter(Opcode.GET_CARS).putString("nobody").finish();
+        ByteBuffer ping = new FrameWriter(Opcode.PING).finish();
+        CompletableFuture<Frame> jobsReply = client.sendAsync(jobs);   // Back to back, none answered yet
+        CompletableFuture<Frame> carsReply = client.sendAsync(cars);
+        CompletableFuture<Frame> pingReply = client.sendAsync(ping);
+        server.awaitArrived(3);
+
+        server.release(ping);
+        Frame pong = pingReply.get(5, TimeUnit.SECONDS);
+        assertFalse(jobsReply.isDone());
+        assertFalse(carsReply.isDone());
+        server.release(jobs);
+        Frame jobList = jobsReply.get(5, TimeUnit.SECONDS);
+        assertFalse(carsReply.isDone());
+        server.release(cars);
+        Frame vehicleList = carsReply.get(5, TimeUnit.SECONDS);
+
+        assertEquals(Opcode.PONG, pong.getOpcode());
+        assertEquals(correlationIdOf(ping), pong.getCorrelationId());
+        assertEquals(Opcode.JOB_LIST, jobList.getOpcode());
+        assertEquals(correlationIdOf(jobs), jobList.getCorrelationId());
+        assertEquals(Opcode.VEHICLE_LIST, vehicleList.getOpcode());
+        assertEquals(correlationIdOf(cars), vehicleList.getCorrelationId());
+        assertEquals(0, vehicleList.readInt());
+    }
+
+
+    @Test
+    public void testServerStopsReadingAtThePipelineLimit() throws Exception {
+        List<ByteBuffer> requests = new ArrayList<>();
+        List<CompletableFuture<Frame>> replies = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            requests.add(new FrameWriter(Opcode.PING).finish());
+            replies.add(client.sendAsync(requests.get(i)));
+        }
+        server.awaitArrived(Server.MAX_PIPELINED_REQUESTS);
+        Thread.sleep(200);
+        assertEquals(Server.MAX_PIPELINED_REQUESTS, server.arrived());   // The rest wait in the socket
+
+        server.release(requests.get(0));   // One finishes, so one more is read
+        replies.get(0).get(5, TimeUnit.SECONDS);
+        server.awaitArrived(Server.MAX_PIPELINED_REQUESTS + 1);
+
+        for (CountDownLatch gate : server.gates) {
+            gate.countDown();
+        }
+        for (CompletableFuture<Frame> reply : replies) {
+            assertEquals(Opcode.PONG, reply.get(5, TimeUnit.SECONDS).getOpcode());
+        }
+        assertEquals(REQUESTS, server.arrived());
+    }
+}
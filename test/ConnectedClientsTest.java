@@ -0,0 +1,84 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class ConnectedClientsTest {
+    private static final long SECOND = 1_000_000_000L;
+
+
+    @Test
+    public void testTimerWheelExpiresOnlyElapsedDeadlines() {
+        TimerWheel<String> wheel = new TimerWheel<>(SECOND, 8, 0);
+        wheel.schedule("soon", 2 * SECOND);
+        wheel.schedule("later", 20 * SECOND);   // More than a full turn ahead
+
+        assertTrue(wheel.advance(SECOND).isEmpty());
+        assertEquals(Collections.singletonList("soon"), wheel.advance(3 * SECOND));
+        assertTrue(wheel.advance(12 * SECOND).isEmpty());
+        assertEquals(Collections.singletonList("later"), wheel.advance(21 * SECOND));
+    }
+
+
+    @Test
+    public void testIdleTextConnectionIsClosed() {
+        ConnectedClients clients = new ConnectedClients(1000, 500, message -> { });
+        ClientSession session = new ClientSession("text", null);
+        AtomicInteger closes = new AtomicInteger();
+        session.setCloser(closes::incrementAndGet);
+        clients.add(session);
+        long start = session.getLastActivityNanos();
+
+        clients.reap(start + SECOND / 2);
+        assertEquals(0, closes.get());
+        assertEquals(1, clients.size());
+
+        clients.reap(start + 3 * SECOND);
+        assertEquals(1, closes.get());
+        assertEquals(0, clients.size());
+        assertEquals(1, clients.getReapedIdle());
+    }
+
+
+    @Test
+    public void testIdleV2ConnectionIsPingedThenClosed() {
+        ConnectedClients clients = new ConnectedClients(1000, 1000, message -> { });
+        ClientSession session = new ClientSession("v2", null);
+        List<ByteBuffer> sent = new ArrayList<>();
+        AtomicInteger closes = new AtomicInteger();
+        session.setFrameSender(sent::add);
+        session.setCloser(closes::incrementAndGet);
+        clients.add(session);
+        long start = session.getLastActivityNanos();
+
+        clients.reap(start + 3 * SECOND);
+        assertEquals(1, sent.size());
+        assertEquals(Opcode.PING.code(), sent.get(0).get(5));   // After the length and version
+        assertEquals(0, closes.get());
+
+        clients.reap(start + 6 * SECOND);   // No PONG arrived
+        assertEquals(1, closes.get());
+        assertEquals(1, clients.getReapedUnanswered());
+        assertTrue(session.isClosed());
+    }
+
+
+    @Test
+    public void testCloseIfIdleWaitsForActiveRequest() {
+        ClientSession session = new ClientSession("drain", null);
+        AtomicInteger closes = new AtomicInteger();
+        session.setCloser(closes::incrementAndGet);
+
+        assertTrue(session.beginRequest());
+        assertFalse(session.closeIfIdle());
+        session.endRequest();
+        assertTrue(session.closeIfIdle());
+        assertEquals(1, closes.get());
+        assertFalse(session.beginRequest());   // Requests read after the close are dropped
+    }
+}
@@ -0,0 +1,128 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class ConnectionPoolTest {
+
+    // Stand-in for a JDBC connection that counts the statements it prepares
+    private static class FakeConnection {
+        final AtomicInteger prepared = new AtomicInteger();
+        volatile boolean valid = true;
+        volatile boolean closed;
+
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (self, method, args) -> {
+                        switch (method.getName()) {
+                            case "prepareStatement":
+                                prepared.incrementAndGet();
+                                return statement();
+                            case "isValid":
+                                return valid;
+                            case "isClosed":
+                                return closed;
+                            case "close":
+                                closed = true;
+                                return null;
+                            case "getAutoCommit":
+                                return true;
+                            default:
+                                return null;
+                        }
+                    });
+        }
+
+        private PreparedStatement statement() {
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    (self, method, args) -> method.getName().equals("isClosed") ? false : null);
+        }
+    }
+
+    private final List<FakeConnection> opened = new ArrayList<>();
+
+    private ConnectionPool pool(int size, long leakThresholdMillis) {
+        return new ConnectionPool(() -> {
+            FakeConnection connection = new FakeConnection();
+            opened.add(connection);
+            return connection.proxy();
+        }, size, 50, leakThresholdMillis, 8);
+    }
+
+
+    @Test
+    public void testReusesConnectionsAndStatements() throws Exception {
+        ConnectionPool pool = pool(2, 0);
+        for (int i = 0; i < 3; i++) {
+            try (ConnectionPool.PooledConnection connection = pool.borrow()) {
+                assertSame(connection.prepare("SELECT 1"), connection.prepare("SELECT 1"));
+            }
+        }
+
+        assertEquals(1, opened.size());
+        assertEquals(1, opened.get(0).prepared.get());
+        assertEquals(5, pool.getStatementCacheHits());
+        assertEquals(3, pool.getBorrows());
+        assertEquals(1, pool.getIdle());
+    }
+
+
+    @Test
+    public void testBoundedSizeTimesOut() throws Exception {
+        ConnectionPool pool = pool(1, 0);
+        ConnectionPool.PooledConnection held = pool.borrow();
+        assertEquals(1, pool.getBorrowed());
+        try {
+            pool.borrow();
+            fail("Expected the pool to be exhausted");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("No database connection available"));
+        } finally {
+            held.close();
+        }
+        assertEquals(0, pool.getBorrowed());
+        assertEquals(1, pool.getWaits());
+        assertEquals(1, pool.getTimeouts());
+        assertTrue(pool.getMaxWaitMillis() >= 40);
+        pool.borrow().close();   // Free again once returned
+    }
+
+
+    @Test
+    public void testBrokenIdleConnectionIsReplaced() throws Exception {
+        ConnectionPool pool = pool(1, 0);
+        pool.setLogger(message -> { });
+        pool.borrow().close();
+        opened.get(0).valid = false;
+        Thread.sleep(600);   // Past the window in which a returned connection is trusted
+
+        pool.borrow().close();
+        assertEquals(2, opened.size());
+        assertTrue(opened.get(0).closed);
+        assertEquals(1, pool.getValidationFailures());
+    }
+
+
+    @Test
+    public void testReportsLeakOnce() throws Exception {
+        ConnectionPool pool = pool(1, 1000);
+        List<String> reports = new ArrayList<>();
+        pool.setLogger(reports::add);
+        ConnectionPool.PooledConnection leaked = pool.borrow();
+
+        long later = System.nanoTime() + 2_000_000_000L;
+        assertEquals(1, pool.reportLeaks(later));
+        assertEquals(0, pool.reportLeaks(later));
+        assertEquals(1, pool.getLeaks());
+        assertTrue(reports.get(0), reports.get(0).contains("testReportsLeakOnce"));
+        leaked.close();
+    }
+}
@@ -0,0 +1,79 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+public class FileStorageTest {
+    private final List<String> log = new ArrayList<>();
+
+    private FileStorage open(Path directory) throws Exception {
+        return FileStorage.open(directory, Journal.FsyncPolicy.GROUP, 1000, 1 << 20, 1000, log::add);
+    }
+
+    private static String[] user(String id, String username) {
+        return new String[]{id, "\"Ada\"", "\"Lovelace\"", username, "\"ada@example.com\"", "1815-12-10", "\"pw\"", "\"Client\""};
+    }
+
+    private static List<String> files(Path directory, String prefix) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.startsWith(prefix))
+                    .sorted().collect(Collectors.toList());
+        }
+    }
+
+
+    @Test
+    public void testReopenReplaysJournal() throws Exception {
+        Path directory = Files.createTempDirectory("file-storage");
+        FileStorage storage = open(directory);
+        JobRequest kept = new JobRequest("c1", "render\tframes\nfast", 3, 2, "2025-01-01");
+        storage.jobs().insert(kept);
+        storage.jobs().insert(new JobRequest("c1", "done soon", 1, 1, "2025-01-02"));
+        storage.jobs().delete(storage.jobs().loadAll().get(1).getJobId());
+        storage.vehicles().insert(new CarRentals("o1", "Civic", "Honda", "ABC", "S1", "VIN1", "2025-01-01"));
+        storage.vehicles().insert(new CarRentals("o1", "Golf", "VW", "DEF", "S2", "VIN2", "2025-01-01"));
+        assertTrue(storage.vehicles().delete("o1", "VIN1"));
+        assertFalse(storage.vehicles().delete("o1", "VIN1"));
+        storage.users().insert(user("u1", "\"ada\""));
+        storage.close();
+
+        FileStorage reopened = open(directory);
+        List<JobRequest> jobs = reopened.jobs().loadAll();
+        assertEquals(1, jobs.size());
+        assertEquals(kept.getJobId(), jobs.get(0).getJobId());
+        assertEquals("render\tframes\nfast", jobs.get(0).getJobDescription());
+        List<String[]> vehicles = reopened.vehicles().findByOwner("o1");
+        assertEquals(1, vehicles.size());
+        assertEquals("2", vehicles.get(0)[0]);   // carId survives like AUTO_INCREMENT
+        assertEquals("VIN2", vehicles.get(0)[6]);
+        assertEquals("u1", reopened.users().findByUsername("\"ada\"")[UserStore.USER_ID]);
+        assertEquals(7, reopened.getEventsSinceSnapshot());
+    }
+
+
+    @Test
+    public void testSnapshotCompactsJournal() throws Exception {
+        Path directory = Files.createTempDirectory("file-storage");
+        FileStorage storage = open(directory);
+        for (int i = 0; i < 5; i++) {
+            storage.vehicles().insert(new CarRentals("o1", "Civic", "Honda", "P" + i, "S" + i, "VIN" + i, "2025-01-01"));
+        }
+        storage.vehicles().delete("o1", "VIN4");
+        storage.snapshot();
+        storage.vehicles().insert(new CarRentals("o2", "Golf", "VW", "P9", "S9", "VIN9", "2025-01-01"));
+
+        assertEquals(1, files(directory, "snapshot-").size());
+        assertEquals(1, files(directory, "journal-").size());   // Events up to the snapshot are gone
+
+        FileStorage reopened = open(directory);
+        assertEquals(1, reopened.getEventsSinceSnapshot());
+        assertEquals(5, reopened.vehicles().loadAll().size());
+        assertEquals("6", reopened.vehicles().findByOwner("o2").get(0)[0]);   // Not reusing the removed VIN4's id
+    }
+}
@@ -0,0 +1,67 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.nio.ByteBuffer;
+
+
+public class FrameCodecTest {
+
+
+    // Strips the length header the way the transports do before decoding
+    private Frame decode(ByteBuffer encoded) throws Frame.ProtocolException {
+        int length = encoded.getInt();
+        assertEquals(encoded.remaining(), length);
+        return Frame.decode(encoded.slice());
+    }
+
+
+    @Test
+    public void testRoundTripTypedFields() throws Exception {
+        ByteBuffer encoded = new FrameWriter(Opcode.JOB_SUBMIT)
+                .putString("owner-1")
+                .putString("Render \"frames\" with spaces\nand newlines")
+                .putInt(12)
+                .putInt(3)
+                .putString(null)
+                .finish();
+
+        Frame frame = decode(encoded);
+        assertEquals(Opcode.JOB_SUBMIT, frame.getOpcode());
+        assertEquals("owner-1", frame.readString());
+        assertEquals("Render \"frames\" with spaces\nand newlines", frame.readString());
+        assertEquals(12, frame.readInt());
+        assertEquals(3, frame.readInt());
+        assertNull(frame.readString());
+    }
+
+
+    @Test
+    public void testStatusFrame() throws Exception {
+        Frame frame = decode(ProtocolV2.status(true, "Registration successful"));
+        assertEquals(Opcode.STATUS, frame.getOpcode());
+        assertTrue(frame.readBoolean());
+        assertEquals("Registration successful", frame.readString());
+    }
+
+
+    @Test
+    public void testCorrelationIdIsStamped() throws Exception {
+        ByteBuffer encoded = ProtocolV2.withCorrelationId(new FrameWriter(Opcode.GET_CARS).putString("7").finish(), 42);
+        Frame frame = decode(encoded);
+        assertEquals(42, frame.getCorrelationId());
+        assertEquals("7", frame.readString());
+    }
+
+
+    @Test(expected = Frame.ProtocolException.class)
+    public void testTruncatedFrameIsRejected() throws Exception {
+        Frame frame = decode(new FrameWriter(Opcode.LOGIN).putString("vcc").finish());
+        frame.readString();
+        frame.readString(); // Password field is missing
+    }
+
+
+    @Test(expected = Frame.ProtocolException.class)
+    public void testUnknownVersionIsRejected() throws Exception {
+        Frame.decode(ByteBuffer.wrap(new byte[]{1, Opcode.LOGIN.code(), 0, 0, 0, 0}));
+    }
+}
@@ -0,0 +1,92 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+public class HistoryArchiveTest {
+    private final List<String> log = new ArrayList<>();
+
+    private static long at(String instant) {
+        return Instant.parse(instant).toEpochMilli();
+    }
+
+    private static List<String> files(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> scan(HistoryArchive archive, String from, String to) throws Exception {
+        List<String> ids = new ArrayList<>();
+        archive.scan(HistoryArchive.Kind.JOBS, Instant.parse(from), Instant.parse(to), row -> ids.add(row[1]));
+        return ids;
+    }
+
+
+    @Test
+    public void testPartitionsByMonthAndCompactsEarlierOnes() throws Exception {
+        Path directory = Files.createTempDirectory("history");
+        HistoryArchive archive = new HistoryArchive(directory, 100, log::add);
+        archive.start();
+        archive.add(HistoryArchive.Kind.JOBS, at("2025-01-31T23:59:59Z"), "j1", "c1", "tab\there");
+        archive.add(HistoryArchive.Kind.JOBS, at("2025-02-01T00:00:00Z"), "j2", "c1", "x");
+        archive.add(HistoryArchive.Kind.VEHICLES, at("2025-02-03T00:00:00Z"), "completed", "1", "o1");
+        archive.flush();
+        assertEquals(3, archive.getArchived());
+        assertEquals(List.of("jobs-2025-01.tsv", "jobs-2025-02.tsv", "vehicles-2025-02.tsv"), files(directory));
+
+        archive.compact(YearMonth.of(2025, 2));
+        assertEquals(List.of("jobs-2025-01.tsv.gz", "jobs-2025-02.tsv", "vehicles-2025-02.tsv"), files(directory));
+
+        archive.add(HistoryArchive.Kind.JOBS, at("2025-01-15T00:00:00Z"), "late", "c2", "y");   // After compaction
+        archive.flush();
+        archive.compact(YearMonth.of(2025, 2));
+        assertEquals(List.of("j1", "late", "j2"), scan(archive, "2025-01-01T00:00:00Z", "2025-03-01T00:00:00Z"));
+        assertEquals(List.of("j2"), scan(archive, "2025-02-01T00:00:00Z", "2025-02-02T00:00:00Z"));
+
+        List<String[]> rows = new ArrayList<>();
+        archive.scan(HistoryArchive.Kind.JOBS, Instant.parse("2025-01-31T00:00:00Z"), Instant.parse("2025-02-01T00:00:00Z"), rows::add);
+        assertEquals("tab\there", rows.get(0)[3]);
+        archive.close();
+    }
+
+
+    @Test
+    public void testCompletionMovesRecordsToHistory() throws Exception {
+        HistoryArchive archive = new HistoryArchive(Files.createTempDirectory("history"), 100, log::add);
+        archive.start();
+        MemoryStorage storage = new MemoryStorage();
+        VCController controller = new VCController(storage.jobs(), storage.vehicles(), archive);
+        controller.loadJobs(new LongAdder());
+        controller.loadVehicles(new LongAdder());
+        controller.submitJob("c1", "render", 2, 1, "2025-03-01");
+        String jobId = controller.getJobsQueue().get(0).getJobId();
+        controller.registerCar("o1", "Civic", "Honda", "P1", "S1", "VIN1", "2025-01-01");
+
+        controller.completeJob(jobId);
+        controller.handleVehicleCompletion("o1", "VIN1");
+        archive.flush();
+
+        assertTrue(controller.getJobsQueue().isEmpty());
+        assertTrue(storage.jobs().loadAll().isEmpty());
+        Instant now = Instant.now();
+        List<String[]> jobs = new ArrayList<>();
+        archive.scan(HistoryArchive.Kind.JOBS, now.minusSeconds(60), now.plusSeconds(60), jobs::add);
+        assertEquals(1, jobs.size());
+        assertEquals(jobId, jobs.get(0)[1]);
+        List<String[]> vehicles = new ArrayList<>();
+        archive.scan(HistoryArchive.Kind.VEHICLES, now.minusSeconds(60), now.plusSeconds(60), vehicles::add);
+        assertEquals("completed", vehicles.get(0)[1]);
+        assertEquals("VIN1", vehicles.get(0)[8]);
+        archive.close();
+    }
+}
@@ -0,0 +1,71 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+public class HydrationTest {
+    private final List<String> log = new ArrayList<>();
+
+    private synchronized void log(String message) {
+        log.add(message);
+    }
+
+
+    @Test
+    public void testTablesLoadInParallelIntoMemory() throws Exception {
+        MemoryStorage storage = new MemoryStorage();
+        for (int i = 0; i < 2500; i++) {   // More than one load batch
+            storage.jobs().insert(new JobRequest("c" + i, "job " + i, 1, 1, "2025-01-01"));
+        }
+        storage.vehicles().insert(new CarRentals("o1", "Civic", "Honda", "ABC", "S1", "VIN1", "2025-01-01"));
+        storage.users().insert(new String[]{"u1", "\"Ada\"", "\"Lovelace\"", "\"ada\"", "\"ada@example.com\"",
+                "1815-12-10", "\"pw\"", "\"Client\""});
+        VCController controller = new VCController(storage.jobs(), storage.vehicles());
+        UserManager users = new UserManager(storage.users());
+        assertTrue(controller.getJobsQueue().isEmpty());   // Nothing is read until hydration runs
+
+        Hydration hydration = new Hydration(this::log);
+        hydration.add("jobs", controller::loadJobs);
+        hydration.add("vehicles", controller::loadVehicles);
+        hydration.add("users", users::loadUsers);
+        hydration.start();
+
+        assertTrue(hydration.await(5, TimeUnit.SECONDS));
+        assertTrue(hydration.isComplete());
+        assertEquals(2500, hydration.getLoaded("jobs"));
+        assertEquals(2500, controller.getJobsQueue().size());
+        assertEquals("job 0", controller.getJobsQueue().get(0).getJobDescription());   // Order is kept
+        assertTrue(controller.isVinRegistered("VIN1"));
+        assertTrue(users.isKnownUserId("u1"));
+        assertEquals("Login successful,Client,u1", users.login("ada", "pw"));
+    }
+
+
+    @Test
+    public void testFailedTableDoesNotBlockCompletion() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Hydration hydration = new Hydration(this::log);
+        hydration.add("slow", loaded -> {
+            loaded.add(3);
+            release.await();
+        });
+        hydration.add("broken", loaded -> {
+            throw new IllegalStateException("no such table");
+        });
+        hydration.start();
+
+        assertFalse(hydration.await(100, TimeUnit.MILLISECONDS));
+        assertFalse(hydration.isComplete());
+        assertTrue(hydration.toString().startsWith("Loading slow 3, broken 0"));
+        release.countDown();
+        assertTrue(hydration.await(5, TimeUnit.SECONDS));
+        assertTrue(hydration.isComplete());
+        synchronized (this) {
+            assertTrue(log.contains("Loading broken failed: no such table"));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+public class JobRegistryTest {
+
+    private static JobRequest job(String id) {
+        return new JobRequest(id, "c1", "job " + id, 1, 1, "2025-01-01", "2025-01-01 00:00:00");
+    }
+
+
+    @Test
+    public void testLookupRemovalAndPosition() {
+        JobRegistry registry = new JobRegistry();
+        for (String id : new String[]{"a", "b", "c", "d"}) {
+            assertTrue(registry.add(job(id)));
+        }
+        assertFalse(registry.add(job("b")));   // Already queued
+        List<JobRequest> before = registry.snapshot();
+        assertSame(before, registry.snapshot());   // Reused until a change
+
+        assertEquals("b", registry.remove("b").getJobId());
+        assertNull(registry.remove("b"));
+        assertEquals(4, before.size());
+        assertEquals(0, registry.position("a"));
+        assertEquals(1, registry.position("c"));
+        assertEquals(2, registry.position("d"));
+        assertEquals(-1, registry.position("b"));
+        assertEquals("job c", registry.get("c").getJobDescription());
+        registry.remove("a");
+        registry.remove("d");
+        registry.add(job("e"));
+        assertEquals(List.of("c", "e"), ids(registry.snapshot()));
+        assertEquals(1, registry.position("e"));
+    }
+
+
+    @Test
+    public void testMatchesAListThroughRenumbering() {
+        JobRegistry registry = new JobRegistry();
+        List<String> expected = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {   // Many times the initial slots, so the tree is rebuilt
+            if (expected.isEmpty() || random.nextInt(3) > 0) {
+                registry.add(job("j" + i));
+                expected.add("j" + i);
+            } else {
+                String id = expected.remove(random.nextInt(expected.size()));
+                assertEquals(id, registry.remove(id).getJobId());
+            }
+            if (i % 997 == 0) {
+                String probe = expected.get(random.nextInt(expected.size()));
+                assertEquals(expected.indexOf(probe), registry.position(probe));
+            }
+        }
+        assertEquals(expected, ids(registry.snapshot()));
+        assertEquals(expected.size(), registry.size());
+        for (int i = 0; i < expected.size(); i += 101) {
+            assertEquals(i, registry.position(expected.get(i)));
+        }
+    }
+
+    @Test
+    public void testUuidJobsAreFoundByTheirText() {
+        JobRegistry registry = new JobRegistry();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            JobRequest job = new JobRequest("c1", "job " + i, 1, 1, "2025-01-01");
+            assertTrue(registry.add(job));
+            ids.add(job.getJobId());
+        }
+        assertFalse(registry.add(registry.get(ids.get(7))));
+        for (int i = 0; i < ids.size(); i += 2) {
+            assertNotNull(registry.remove(ids.get(i)));
+        }
+        for (int i = 1; i < ids.size(); i += 2) {
+            assertEquals(i / 2, registry.position(ids.get(i)));
+        }
+        assertNull(registry.get(ids.get(0)));
+        assertNull(registry.get(ids.get(1).toUpperCase()));
+        assertEquals(250, registry.size());
+    }
+
+    @Test
+    public void testCompletionTimesFollowTheQueue() {
+        JobRegistry registry = new JobRegistry();
+        List<JobRequest> expected = new ArrayList<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 5_000; i++) {   // Through several renumberings
+            if (expected.isEmpty() || random.nextInt(3) > 0) {
+                JobRequest job = new JobRequest("j" + i, "c1", "job", 1 + random.nextInt(20), 1, "2025-01-01", "2025-01-01 00:00:00");
+                registry.add(job);
+                expected.add(job);
+            } else {
+                registry.remove(expected.remove(random.nextInt(expected.size())).getJobId());
+            }
+        }
+        long[] completion = new long[expected.size()];
+        long hours = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            hours += expected.get(i).getDuration();
+            completion[i] = hours;
+        }
+        for (int i = 0; i < expected.size(); i += 37) {
+            assertEquals(completion[i], registry.completionTime(expected.get(i).getJobId()));
+        }
+        int from = expected.size() / 3;
+        List<JobListing> page = registry.listings(from, 25);
+        assertEquals(25, page.size());
+        for (int i = 0; i < page.size(); i++) {
+            assertEquals(expected.get(from + i).getJobId(), page.get(i).getJobId());
+            assertEquals(completion[from + i], page.get(i).getCompletionTime());
+        }
+        assertEquals(1, registry.listings(expected.size() - 1, 10).size());   // Clipped at the tail
+        assertTrue(registry.listings(expected.size(), 10).isEmpty());
+        assertEquals(completion[0], registry.listings(0, 1).get(0).getCompletionTime());
+        assertEquals(-1, registry.completionTime("missing"));
+    }
+
+    private static List<String> ids(List<JobRequest> jobs) {
+        List<String> ids = new ArrayList<>();
+        for (JobRequest job : jobs) {
+            ids.add(job.getJobId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,38 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class JobRequestTest {
+
+
+    @Test
+    public void testCompactFieldsPrintBackUnchanged() {
+        JobRequest job = new JobRequest("c1", "render", 3, 2, "2025-03-01");
+        JobRequest copy = new JobRequest(job.getJobId(), job.getClientId(), job.getJobDescription(),
+                job.getDuration(), job.getRedundancyLevel(), job.getJobDeadline(), job.getTimestamp());
+        assertEquals(job.toString(), copy.toString());
+        assertTrue(job.hasSameId(copy));
+        assertEquals("2025-03-01", copy.getJobDeadline());
+
+        JobRequest legacy = new JobRequest("job-7", "c1", "old", 1, 1, "next-friday", "2025-01-01 10:00:00.0");
+        assertEquals("job-7", legacy.getJobId());           // Not a UUID: kept as text
+        assertEquals("next-friday", legacy.getJobDeadline());
+        assertEquals("2025-01-01 10:00:00.0", legacy.getTimestamp());
+        assertFalse(legacy.hasSameId(job));
+
+        // As MySqlStorage loads it: the TIMESTAMP column's millis, not its text
+        java.sql.Timestamp column = java.sql.Timestamp.valueOf("2025-01-01 10:00:00");
+        JobRequest loaded = new JobRequest(job.getJobId(), "c1", "render", 3, 2, "2025-03-01", column.getTime());
+        assertEquals("2025-01-01 10:00:00", loaded.getTimestamp());
+        assertNull(loaded.text(JobRequest.TIMESTAMP));
+        assertEquals(column.getTime(), loaded.getTimestampMillis());
+
+        CarRentals car = new CarRentals("o1", "Civic", "Honda", "P1", "S1", "VIN1", "2025-01-01");
+        assertEquals("Honda", car.getVehicleBrand());
+        assertEquals("2025-01-01", car.getResidencyTime());
+        assertNull(car.getCarId());
+        car.setCarId("12");
+        assertEquals("12", car.getCarId());
+        assertTrue(car.getAssignedJobs().isEmpty());
+    }
+}
@@ -0,0 +1,76 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+
+public class JournalTest {
+    private final List<String> log = new ArrayList<>();
+
+    private Journal journal(Path directory, int segmentBytes) {
+        return new Journal(directory, Journal.FsyncPolicy.GROUP, 1000, segmentBytes, log::add);
+    }
+
+    private static long segmentCount(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("journal-")).count();
+        }
+    }
+
+
+    @Test
+    public void testRollsSegmentsAndReplaysAfterSequence() throws Exception {
+        Path directory = Files.createTempDirectory("journal");
+        Journal journal = journal(directory, 1024);
+        journal.recover(0);
+        for (int i = 1; i <= 200; i++) {
+            journal.awaitDurable(journal.append("EVENT", "payload " + i));
+        }
+        journal.close();
+        assertTrue(segmentCount(directory) > 1);
+
+        Journal reopened = journal(directory, 1024);
+        List<String[]> tail = reopened.recover(150);
+        assertEquals(50, tail.size());
+        assertArrayEquals(new String[]{"EVENT", "payload 151"}, tail.get(0));
+        assertArrayEquals(new String[]{"EVENT", "payload 200"}, tail.get(49));
+        assertEquals(201, reopened.append("EVENT", "next"));
+        assertTrue(log.isEmpty());
+    }
+
+
+    @Test
+    public void testTornRecordIsDroppedAndOverwritten() throws Exception {
+        Path directory = Files.createTempDirectory("journal");
+        Journal journal = journal(directory, 4096);
+        journal.recover(0);
+        journal.append("EVENT", "one");
+        journal.append("EVENT", "two");
+        journal.append("EVENT", "three");
+        journal.close();
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().get();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            long third = 16 + (16 + "EVENT\tone".length()) + (16 + "EVENT\ttwo".length());
+            file.seek(third + 16 + 2);
+            file.write('X'); // Half written before a crash
+        }
+
+        Journal reopened = journal(directory, 4096);
+        assertEquals(2, reopened.recover(0).size());
+        assertEquals(1, log.size());
+        assertEquals(3, reopened.append("EVENT", "3"));
+        reopened.close();
+
+        List<String[]> events = journal(directory, 4096).recover(0);
+        assertEquals(3, events.size());
+        assertEquals("3", events.get(2)[1]);
+    }
+}
@@ -0,0 +1,265 @@
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+
+public class NioServerTransportTest {
+    private static final long RETRY_MILLIS = 250;
+    private static final int HELD_FROM = 1000;
+
+    private final List<String> log = Collections.synchronizedList(new ArrayList<>());
+    private final List<Socket> sockets = new ArrayList<>();
+    private final CountDownLatch unblock = new CountDownLatch(1);   // Releases "block" requests
+    private final CountDownLatch blocking = new CountDownLatch(1);  // A "block" request is running
+    private ThreadPoolExecutor workers;
+    private NioServerTransport transport;
+    private int port;
+
+    // Starts a transport whose text requests are echoed back ("block" waits for
+    // unblock first) and whose v2 requests are answered with a STATUS naming them
+    // (those with a correlation ID from HELD_FROM also wait for unblock)
+    private void start(int workerThreads, int queueCapacity, ConnectedClients clients) throws Exception {
+        workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity));
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        transport = new NioServerTransport(port, 1, workers,
+                (session, line) -> {
+                    if (line.equals("block")) {
+                        blocking.countDown();
+                        try {
+                            unblock.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return "echo " + line;
+                },
+                (session, body, laterReply) -> {
+                    if (ProtocolV2.correlationIdOf(body) >= HELD_FROM) {
+                        try {
+                            unblock.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return ProtocolV2.withCorrelationId(
+                            ProtocolV2.status(true, "frame " + ProtocolV2.correlationIdOf(body)),
+                            ProtocolV2.correlationIdOf(body));
+                },
+                new AdmissionControl(0, 0, RETRY_MILLIS), clients, log::add);
+        Thread acceptor = new Thread(() -> {
+            try {
+                transport.run();
+            } catch (IOException e) {
+                log.add("Transport failed: " + e.getMessage());
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            try {
+                new Socket("localhost", port).close();
+                return;
+            } catch (ConnectException e) {
+                assertTrue("transport did not start listening", System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("localhost", port);
+        socket.setTcpNoDelay(true);   // Each write below is its own segment
+        socket.setSoTimeout(10_000);
+        sockets.add(socket);
+        return socket;
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static void write(Socket socket, byte[] bytes, int from, int to) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(bytes, from, to - from);
+        out.flush();
+    }
+
+    // Reads one text response up to its blank terminator line
+    private static String response(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        assertEquals("", in.readLine());
+        return line;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        unblock.countDown();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        if (transport != null) {
+            transport.stop();
+        }
+    }
+
+
+    @Test
+    public void testRequestsSplitAcrossReads() throws Exception {
+        start(2, 8, new ConnectedClients(0, 0, log::add));
+
+        Socket text = connect();
+        BufferedReader in = reader(text);
+        byte[] lines = "GET_ALL_JOBS\nPING\n".getBytes(StandardCharsets.UTF_8);
+        write(text, lines, 0, 5);               // "GET_A"
+        Thread.sleep(100);
+        write(text, lines, 5, lines.length);    // The rest of that line and the whole next one
+        assertEquals("echo GET_ALL_JOBS", response(in));
+        assertEquals("echo PING", response(in));
+
+        Socket binary = connect();
+        ByteBuffer frame = ProtocolV2.withCorrelationId(new FrameWriter(Opcode.GET_ALL_JOBS).finish(), 42);
+        byte[] bytes = new byte[ProtocolV2.MAGIC.length + frame.remaining()];
+        System.arraycopy(ProtocolV2.MAGIC, 0, bytes, 0, ProtocolV2.MAGIC.length);
+        frame.get(bytes, ProtocolV2.MAGIC.length, frame.remaining());
+        write(binary, bytes, 0, 2);                                  // Half the preamble
+        Thread.sleep(100);
+        write(binary, bytes, 2, ProtocolV2.MAGIC.length + 2);        // The rest, and half the length prefix
+        Thread.sleep(100);
+        write(binary, bytes, ProtocolV2.MAGIC.length + 2, bytes.length);
+        Frame reply = Frame.decode(ProtocolV2.readFrameBody(new DataInputStream(binary.getInputStream())));
+        assertEquals(Opcode.STATUS, reply.getOpcode());
+        assertEquals(42, reply.getCorrelationId());
+        assertTrue(reply.readBoolean());
+        assertEquals("frame 42", reply.readString());
+    }
+
+
+    @Test
+    public void testFullWorkerQueueAnswersBusyAndKeepsConnection() throws Exception {
+        start(1, 1, new ConnectedClients(0, 0, log::add));
+
+        Socket running = connect();
+        write(running, "block\n".getBytes(StandardCharsets.UTF_8), 0, 6);
+        assertTrue(blocking.await(5, TimeUnit.SECONDS));   // Holds the only worker
+        Socket queued = connect();
+        write(queued, "block\n".getBytes(StandardCharsets.UTF_8), 0, 6);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (workers.getQueue().isEmpty()) {              // Takes the only queue slot
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+
+        Socket refused = connect();
+        BufferedReader in = reader(refused);
+        write(refused, "hello\n".getBytes(StandardCharsets.UTF_8), 0, 6);
+        assertEquals(AdmissionControl.busyMessage(RETRY_MILLIS), response(in));
+
+        unblock.countDown();
+        assertEquals("echo block", response(reader(running)));
+        assertEquals("echo block", response(reader(queued)));
+        write(refused, "again\n".getBytes(StandardCharsets.UTF_8), 0, 6);
+        assertEquals("echo again", response(in));   // Same connection, served once there is room
+    }
+
+
+    @Test
+    public void testIdleConnectionIsClosed() throws Exception {
+        ConnectedClients clients = new ConnectedClients(1000, 1000, log::add);
+        clients.start();
+        try {
+            start(1, 4, clients);
+            Socket idle = connect();
+            BufferedReader in = reader(idle);
+            write(idle, "PING\n".getBytes(StandardCharsets.UTF_8), 0, 5);
+            assertEquals("echo PING", response(in));
+
+            long silentSince = System.nanoTime();
+            assertNull(in.readLine());   // Closed by the server, well before the socket timeout
+            assertTrue(System.nanoTime() - silentSince >= TimeUnit.MILLISECONDS.toNanos(900));
+            assertEquals(0, clients.size());
+            assertEquals(1, clients.getReapedIdle());
+        } finally {
+            clients.stop();
+        }
+    }
+
+
+    @Test
+    public void testConnectionIsNotReadPastTheOutstandingLimit() throws Exception {
+        int sent = NioServerTransport.MAX_OUTSTANDING + 8;
+        start(4, 2 * sent, new ConnectedClients(0, 0, log::add));
+
+        Socket binary = connect();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(ProtocolV2.MAGIC);
+        for (int i = 0; i < sent; i++) {
+            ByteBuffer frame = ProtocolV2.withCorrelationId(new FrameWriter(Opcode.PING).finish(), HELD_FROM + i);
+            bytes.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+        }
+        write(binary, bytes.toByteArray(), 0, bytes.size());   // All at once, none answered yet
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (workers.getActiveCount() + workers.getQueue().size() < NioServerTransport.MAX_OUTSTANDING) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+        assertEquals(NioServerTransport.MAX_OUTSTANDING, workers.getActiveCount() + workers.getQueue().size());
+
+        unblock.countDown();   // Replies go out, so the rest is read
+        DataInputStream in = new DataInputStream(binary.getInputStream());
+        List<Integer> answered = new ArrayList<>();
+        for (int i = 0; i < sent; i++) {
+            answered.add(Frame.decode(ProtocolV2.readFrameBody(in)).getCorrelationId());
+        }
+        Collections.sort(answered);
+        for (int i = 0; i < sent; i++) {
+            assertEquals(Integer.valueOf(HELD_FROM + i), answered.get(i));
+        }
+    }
+
+
+    @Test
+    public void testTextLinesBeyondTheLimitAreServedInOrder() throws Exception {
+        start(1, 4, new ConnectedClients(0, 0, log::add));
+
+        Socket text = connect();
+        BufferedReader in = reader(text);
+        StringBuilder lines = new StringBuilder("block\n");
+        int sent = NioServerTransport.MAX_OUTSTANDING + 8;
+        for (int i = 0; i < sent; i++) {
+            lines.append("line ").append(i).append('\n');
+        }
+        byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+        write(text, bytes, 0, bytes.length);   // Left in the buffer past the limit
+        assertTrue(blocking.await(5, TimeUnit.SECONDS));
+
+        unblock.countDown();
+        assertEquals("echo block", response(in));
+        for (int i = 0; i < sent; i++) {
+            assertEquals("echo line " + i, response(in));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+public class OffHeapJobTableTest {
+
+
+    @Test
+    public void testMatchesJobRegistryThroughChurn() {
+        OffHeapJobTable table = new OffHeapJobTable();
+        JobRegistry registry = new JobRegistry();
+        List<String> ids = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 30_000; i++) {   // Past the initial slots, index and an arena chunk
+            if (ids.isEmpty() || random.nextInt(3) > 0) {
+                JobRequest job = new JobRequest("c" + random.nextInt(50), "job " + i + " ☃" + "x".repeat(random.nextInt(80)), 1 + random.nextInt(9), 1, "2025-01-01");
+                assertTrue(table.add(job));
+                registry.add(job);
+                ids.add(job.getJobId());
+            } else {
+                String id = ids.remove(random.nextInt(ids.size()));
+                assertEquals(registry.remove(id).toString(), table.remove(id).toString());
+            }
+            if (i % 499 == 0) {
+                String probe = ids.get(random.nextInt(ids.size()));
+                assertEquals(registry.position(probe), table.position(probe));
+                assertEquals(registry.get(probe).toString(), table.get(probe).toString());
+            }
+        }
+        assertEquals(registry.size(), table.size());
+        List<JobRequest> expected = registry.snapshot();
+        List<JobRequest> actual = table.snapshot();
+        assertSame(actual, table.snapshot());
+        long hours = 0;
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+            hours += expected.get(i).getDuration();
+            if (i % 97 == 0) {
+                assertEquals(hours, table.completionTime(expected.get(i).getJobId()));
+            }
+        }
+        assertEquals(-1, table.completionTime("missing"));
+        for (int from = 0; from < expected.size(); from += expected.size() / 7) {
+            List<JobListing> want = registry.listings(from, 40);
+            List<JobListing> got = table.listings(from, 40);
+            assertEquals(want.size(), got.size());
+            for (int i = 0; i < want.size(); i++) {
+                assertEquals(want.get(i).toDisplayString(), got.get(i).toDisplayString());
+            }
+        }
+    }
+
+
+    @Test
+    public void testSnapshotWhileWriting() throws Exception {
+        OffHeapJobTable table = new OffHeapJobTable();
+        for (int i = 0; i < 20_000; i++) {
+            table.add(new JobRequest("c1", Integer.toString(i), 1, 1, "2025-01-01"));
+        }
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = new Thread(() -> {
+            for (int i = 20_000; !stop.get(); i++) {   // Enough churn to renumber the slots
+                JobRequest job = new JobRequest("c2", Integer.toString(i), 1, 1, "2025-01-01");
+                table.add(job);
+                if (i % 2 == 0) {
+                    table.remove(job.getJobId());
+                }
+            }
+        });
+        writer.start();
+        try {
+            for (int round = 0; round < 20; round++) {
+                long before = table.version();
+                VersionedList<JobRequest> jobs = table.snapshot();
+                assertTrue(jobs.version() >= before);
+                int last = -1;
+                for (JobRequest job : jobs) {
+                    int number = Integer.parseInt(job.getJobDescription());
+                    assertTrue(number > last);  // In queue order, none twice
+                    assertTrue(number >= 20_000 || number == last + 1);  // None of the first jobs missing
+                    last = number;
+                }
+                assertTrue(last >= 19_999);
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+    }
+
+
+    @Test
+    public void testUnencodedFieldsAndDuplicates() {
+        OffHeapJobTable table = new OffHeapJobTable(4);
+        JobRequest legacy = new JobRequest("job-1", "c1", "old", 2, 1, "next-friday", "2025-01-01 10:00:00.0");
+        JobRequest nullDescription = new JobRequest("job-2", "c1", null, 3, 1, "2025-01-01", "2025-01-01 10:00:00");
+        assertTrue(table.add(legacy));
+        assertTrue(table.add(nullDescription));
+        assertFalse(table.add(new JobRequest("job-1", "c2", "other", 1, 1, "2025-01-01", "2025-01-01 10:00:00")));
+
+        assertEquals(legacy.toString(), table.get("job-1").toString());
+        assertNull(table.get("job-2").getJobDescription());
+        assertEquals(5, table.completionTime("job-2"));
+        assertEquals(legacy.toString(), table.remove("job-1").toString());
+        assertEquals(0, table.position("job-2"));
+        assertNull(table.get("job-1"));
+    }
+}
@@ -0,0 +1,84 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class PendingApprovalsTest {
+
+
+    @Test
+    public void testSubmitReturnsBeforeDecision() {
+        PendingApprovals approvals = new PendingApprovals();
+        AtomicInteger runs = new AtomicInteger();
+        PendingApprovals.Approval approval = approvals.submit(PendingApprovals.Kind.JOB_SUBMISSION, "job",
+                () -> "Job submitted " + runs.incrementAndGet());
+
+        assertFalse(approval.getOutcome().isDone());
+        assertEquals(1, approvals.size());
+        assertEquals(0, runs.get());
+        assertEquals("Job submission request " + approval.getId() + " is pending approval.",
+                approvals.status(approval.getId()));
+    }
+
+
+    @Test
+    public void testBulkApproveAndDecline() throws Exception {
+        PendingApprovals approvals = new PendingApprovals();
+        PendingApprovals.Approval first = approvals.submit(PendingApprovals.Kind.JOB_SUBMISSION, "a", () -> "done a");
+        PendingApprovals.Approval second = approvals.submit(PendingApprovals.Kind.CAR_READY, "b", () -> "done b");
+        PendingApprovals.Approval third = approvals.submit(PendingApprovals.Kind.CAR_READY, "c", () -> "done c");
+
+        assertEquals(2, approvals.approve(Arrays.asList(first.getId(), second.getId())));
+        assertEquals(1, approvals.decline(Arrays.asList(third.getId(), first.getId())));
+
+        assertEquals("done a", first.getOutcome().get(1, TimeUnit.SECONDS));
+        assertEquals("done b", second.getOutcome().get(1, TimeUnit.SECONDS));
+        assertEquals("Car readiness declined.", third.getOutcome().get(1, TimeUnit.SECONDS));
+        assertEquals(0, approvals.size());
+        assertEquals("done a", approvals.status(first.getId()));
+    }
+
+
+    @Test
+    public void testAwaitIdleWaitsForApprovedActions() throws Exception {
+        PendingApprovals approvals = new PendingApprovals();
+        CountDownLatch release = new CountDownLatch(1);
+        PendingApprovals.Approval approval = approvals.submit(PendingApprovals.Kind.JOB_SUBMISSION, "slow", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "done";
+        });
+        assertTrue(approvals.awaitIdle(0, TimeUnit.MILLISECONDS));   // Pending is not running
+
+        approvals.approve(Arrays.asList(approval.getId()));
+        assertFalse(approvals.awaitIdle(50, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(approvals.awaitIdle(1, TimeUnit.SECONDS));
+        assertEquals("done", approval.getOutcome().getNow(null));
+    }
+
+
+    @Test
+    public void testSubmitRefusesPastMaxPending() {
+        PendingApprovals approvals = new PendingApprovals(2);
+        PendingApprovals.Approval first = approvals.submit(PendingApprovals.Kind.JOB_SUBMISSION, "a", () -> "done a");
+        approvals.submit(PendingApprovals.Kind.JOB_SUBMISSION, "b", () -> "done b");
+
+        assertNull(approvals.submit(PendingApprovals.Kind.JOB_SUBMISSION, "c", () -> "done c"));
+        assertEquals(2, approvals.size());
+        approvals.decline(Arrays.asList(first.getId()));
+        assertNotNull(approvals.submit(PendingApprovals.Kind.JOB_SUBMISSION, "c", () -> "done c"));
+    }
+
+
+    @Test
+    public void testUnknownRequestId() {
+        assertTrue(new PendingApprovals().status(42).startsWith("Error:"));
+    }
+}
@@ -0,0 +1,43 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+
+public class RequestTokenizerTest {
+
+
+    private final RequestTokenizer tokenizer = new RequestTokenizer();
+
+
+    @Test
+    public void testQuotedTokensKeepSpaces() {
+        tokenizer.reset("JOB_SUBMIT 42 \"Render frames for the demo\" 12 3 2026-11-05");
+        assertEquals(6, tokenizer.count());
+        assertEquals("42", tokenizer.get(1));
+        assertEquals("Render frames for the demo", tokenizer.get(2));
+        assertEquals(12, tokenizer.getInt(3));
+        assertEquals(3, tokenizer.getInt(4));
+        assertEquals("2026-11-05", tokenizer.get(5));
+    }
+
+
+    @Test(expected = NumberFormatException.class)
+    public void testGetIntRejectsNonDigits() {
+        tokenizer.reset("JOB_SUBMIT 42 \"x\" 1h 3 2026-11-05");
+        tokenizer.getInt(3);
+    }
+
+
+    @Test
+    public void testRegistryLooksUpFirstToken() {
+        CommandRegistry registry = new CommandRegistry()
+                .register(Opcode.LOGIN, (session, tokens) -> "login " + tokens.get(1), null)
+                .register(Opcode.GET_ALL_JOBS, (session, tokens) -> "jobs", null);
+
+        assertEquals(Opcode.LOGIN, registry.lookup(tokenizer.reset("LOGIN ada secret")));
+        assertEquals("login ada", registry.textHandler(Opcode.LOGIN).handle(null, tokenizer));
+        assertEquals(Opcode.GET_ALL_JOBS, registry.lookup(tokenizer.reset("GET_ALL_JOBS")));
+        assertNull(registry.lookup(tokenizer.reset("LOGINX ada secret")));
+        assertNull(registry.lookup(tokenizer.reset("REGISTER a b")));
+        assertNull(registry.lookup(tokenizer.reset("")));
+    }
+}
@@ -0,0 +1,231 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+public class SchemaManagerTest {
+
+    // Stand-in for MySQL that records the DDL it is sent and the versions written
+    // to schema_version. EXPLAIN reports a full scan for the tables in scanned.
+    // Other queries answer with the rows in answers, or a count of 0.
+    private static class FakeDatabase {
+        final List<String> executed = new ArrayList<>();
+        final Set<Integer> versions = new HashSet<>();
+        final Set<String> scanned = new HashSet<>();
+        final Map<String, Integer> failures = new HashMap<>();   // DDL prefix -> MySQL error code
+        final Map<String, List<Map<String, Object>>> answers = new HashMap<>();   // Query fragment -> rows
+
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (self, method, args) -> {
+                        switch (method.getName()) {
+                            case "createStatement":
+                                return statement();
+                            case "prepareStatement":
+                                return prepared((String) args[0]);
+                            case "isValid":
+                                return true;
+                            case "getAutoCommit":
+                                return true;
+                            case "isClosed":
+                                return false;
+                            default:
+                                return null;
+                        }
+                    });
+        }
+
+        private Statement statement() {
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class},
+                    (self, method, args) -> {
+                        switch (method.getName()) {
+                            case "execute":
+                                String sql = (String) args[0];
+                                for (Map.Entry<String, Integer> failure : failures.entrySet()) {
+                                    if (sql.startsWith(failure.getKey())) {
+                                        throw new SQLException("Duplicate", "42000", failure.getValue());
+                                    }
+                                }
+                                executed.add(sql);
+                                return false;
+                            case "executeQuery":
+                                String query = (String) args[0];
+                                if (query.contains("MAX(version)")) {
+                                    int max = versions.stream().mapToInt(Integer::intValue).max().orElse(0);
+                                    return resultSet(List.of(row("1", max)));
+                                }
+                                for (Map.Entry<String, List<Map<String, Object>>> answer : answers.entrySet()) {
+                                    if (query.contains(answer.getKey())) {
+                                        return resultSet(answer.getValue());
+                                    }
+                                }
+                                return resultSet(query.startsWith("SELECT COUNT(*)") ? List.of(row("1", 0L)) : List.of());
+                            default:
+                                return null;
+                        }
+                    });
+        }
+
+        private PreparedStatement prepared(String sql) {
+            Map<Integer, Object> params = new HashMap<>();
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    (self, method, args) -> {
+                        switch (method.getName()) {
+                            case "setInt":
+                            case "setString":
+                            case "setObject":
+                                params.put((Integer) args[0], args[1]);
+                                return null;
+                            case "executeUpdate":
+                                versions.add((Integer) params.get(1));
+                                return 1;
+                            case "executeQuery":
+                                String table = sql.replaceAll(".* FROM (\\w+).*", "$1");
+                                String type = scanned.contains(table) ? "ALL" : "ref";
+                                return resultSet(List.of(row("table", table, "type", type, "possible_keys", null)));
+                            case "isClosed":
+                                return false;
+                            default:
+                                return null;
+                        }
+                    });
+        }
+
+        private static Map<String, Object> row(Object... columnsAndValues) {
+            Map<String, Object> row = new HashMap<>();
+            for (int i = 0; i < columnsAndValues.length; i += 2) {
+                row.put((String) columnsAndValues[i], columnsAndValues[i + 1]);
+            }
+            return row;
+        }
+
+        // Columns by label, or "1", "2", ... by position
+        private static ResultSet resultSet(List<Map<String, Object>> rows) {
+            int[] at = {-1};
+            return (ResultSet) Proxy.newProxyInstance(FakeDatabase.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class},
+                    (self, method, args) -> {
+                        switch (method.getName()) {
+                            case "next":
+                                return ++at[0] < rows.size();
+                            case "getInt":
+                            case "getLong":
+                                return rows.get(at[0]).get(String.valueOf(args[0]));
+                            case "getString":
+                                Object value = rows.get(at[0]).get(String.valueOf(args[0]));
+                                return value == null ? null : value.toString();
+                            default:
+                                return null;
+                        }
+                    });
+        }
+    }
+
+    private final FakeDatabase database = new FakeDatabase();
+    private final List<String> log = new ArrayList<>();
+
+    private SchemaManager manager() {
+        return new SchemaManager(new ConnectionPool(database::proxy, 1, 1000, 0, 8), log::add);
+    }
+
+
+    @Test
+    public void testMigratesOnceInOrder() throws Exception {
+        assertEquals(SchemaManager.getLatestVersion(), manager().migrate());
+        int applied = database.executed.size();
+        assertTrue(database.executed.get(0).startsWith("CREATE TABLE IF NOT EXISTS schema_version"));
+        assertTrue(database.executed.get(1).startsWith("CREATE TABLE IF NOT EXISTS JobRequests"));
+        assertTrue(database.executed.get(applied - 1).contains("jobId BINARY(16)"));
+        assertEquals(SchemaManager.getLatestVersion(), database.versions.size());
+
+        assertEquals(SchemaManager.getLatestVersion(), manager().migrate());
+        assertEquals(applied + 1, database.executed.size());   // Only the schema_version check again
+    }
+
+
+    @Test
+    public void testExistingIndexIsSkippedAndScansReported() throws Exception {
+        database.failures.put("CREATE INDEX idx_carrentals_vin", 1061);   // e.g. added by hand earlier
+        manager().migrate();
+        assertTrue(database.versions.contains(2));
+
+        database.scanned.add("Users");
+        List<String> scans = manager().verifyIndexes();
+        assertEquals(1, scans.size());
+        assertTrue(scans.get(0).startsWith("Users ALL scan"));
+
+        database.failures.put("CREATE TABLE IF NOT EXISTS schema_version", 1142);   // Not a "done already" error
+        try {
+            manager().migrate();
+            fail("expected the migration to fail");
+        } catch (StoreException e) {
+            assertTrue(e.getMessage().startsWith("Schema migration failed"));
+        }
+    }
+
+
+    @Test
+    public void testDuplicateUsernamesAreReportedBeforeTheUniqueIndex() throws Exception {
+        database.answers.put("GROUP BY username", List.of(FakeDatabase.row("1", "alice", "2", 2L), FakeDatabase.row("1", "bob", "2", 3L)));
+        try {
+            manager().migrate();
+            fail("expected the migration to stop");
+        } catch (StoreException e) {
+            assertTrue(e.getMessage().contains("alice (2 rows), bob (3 rows)"));
+        }
+        assertEquals(Set.of(1), database.versions);
+        assertFalse(database.executed.stream().anyMatch(sql -> sql.startsWith("CREATE UNIQUE INDEX")));
+
+        database.answers.clear();   // Duplicates resolved by hand
+        assertEquals(SchemaManager.getLatestVersion(), manager().migrate());
+    }
+
+
+    @Test
+    public void testRerunSkipsJobIdStepsAlreadyDone() throws Exception {
+        database.versions.add(1);
+        database.versions.add(2);
+        // The earlier run converted the column but stopped before recording version 3
+        database.answers.put("DATA_TYPE = 'binary'", List.of(FakeDatabase.row("1", 1L)));
+        database.answers.put("INDEX_NAME = 'PRIMARY'", List.of(FakeDatabase.row("1", 1L)));
+        assertEquals(3, manager().migrate());
+        assertFalse(database.executed.stream().anyMatch(sql -> sql.contains("JobRequests")));
+    }
+
+
+    @Test
+    public void testLegacyJobTableGetsPrimaryKeyBeforeConversion() throws Exception {
+        database.versions.add(1);
+        database.versions.add(2);
+        // JobRequests predates migration 1 and has no primary key, and two rows share a jobId
+        database.answers.put("GROUP BY jobId", List.of(FakeDatabase.row("1", "job-1", "2", 2L)));
+        try {
+            manager().migrate();
+            fail("expected the migration to stop");
+        } catch (StoreException e) {
+            assertTrue(e.getMessage().contains("job-1 (2 rows)"));
+        }
+        assertFalse(database.executed.stream().anyMatch(sql -> sql.startsWith("ALTER TABLE JobRequests")));
+
+        database.answers.clear();   // Duplicate removed by hand
+        assertEquals(3, manager().migrate());
+        int addKey = database.executed.indexOf("ALTER TABLE JobRequests ADD PRIMARY KEY (jobId)");
+        int dropKey = database.executed.size() - 1;
+        assertTrue(addKey >= 0);
+        assertTrue(database.executed.get(dropKey).contains("DROP PRIMARY KEY"));
+        assertTrue(addKey < dropKey);
+    }
+}
@@ -0,0 +1,150 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+
+public class VCControllerTest {
+    private final MemoryStorage storage = new MemoryStorage();
+    private final AtomicInteger ownerQueries = new AtomicInteger();
+    private final AtomicInteger inserts = new AtomicInteger();
+
+    // The memory store, counting the per-owner queries and inserts that reach it
+    private final VehicleStore vehicles = new VehicleStore() {
+        @Override
+        public void loadAll(Consumer<CarRentals> rows) throws StoreException {
+            storage.vehicles().loadAll(rows);
+        }
+
+        @Override
+        public List<String[]> findByOwner(String ownerId) throws StoreException {
+            ownerQueries.incrementAndGet();
+            return storage.vehicles().findByOwner(ownerId);
+        }
+
+        @Override
+        public void insert(CarRentals car) throws StoreException {
+            inserts.incrementAndGet();
+            storage.vehicles().insert(car);
+        }
+
+        @Override
+        public boolean delete(String ownerId, String vinNumber) throws StoreException {
+            return storage.vehicles().delete(ownerId, vinNumber);
+        }
+    };
+
+    private static CarRentals car(String ownerId, String vin) {
+        return new CarRentals(ownerId, "Civic", "Honda", "P-" + vin, "S-" + vin, vin, "2025-01-01");
+    }
+
+
+    @Test
+    public void testGetCarsIsServedFromTheOwnerIndex() throws Exception {
+        storage.vehicles().insert(car("o1", "VIN1"));
+        storage.vehicles().insert(car("o2", "VIN2"));
+        VCController controller = new VCController(storage.jobs(), vehicles);
+        assertEquals(1, controller.getVehiclesByOwnerId("o1").size());   // Not loaded yet: asks storage
+        assertEquals(1, ownerQueries.get());
+
+        controller.loadVehicles(new LongAdder());
+        controller.registerCar("o1", "Golf", "VW", "P3", "S3", "VIN3", "2025-02-01");
+        List<String[]> owned = controller.getVehiclesByOwnerId("o1");
+        assertEquals(2, owned.size());                                    // Sees its own write
+        assertEquals("3", owned.get(1)[0]);                               // With the carId storage gave it
+        assertEquals("VIN3", owned.get(1)[6]);
+        assertArrayEquals(storage.vehicles().findByOwner("o1").get(0), owned.get(0));
+
+        controller.removeVehicle("o1", "VIN1");
+        controller.handleVehicleCompletion("o2", "VIN2");
+        assertEquals(1, controller.getVehiclesByOwnerId("o1").size());
+        assertTrue(controller.getVehiclesByOwnerId("o2").isEmpty());
+        assertEquals(1, ownerQueries.get());                              // No further storage round trips
+    }
+
+
+    @Test
+    public void testReconcileCatchesExternalChanges() throws Exception {
+        storage.vehicles().insert(car("o1", "VIN1"));
+        VCController controller = new VCController(storage.jobs(), vehicles);
+        controller.loadVehicles(new LongAdder());
+        assertEquals(0, controller.reconcileVehicles());
+
+        storage.vehicles().insert(car("o3", "VIN9"));   // Behind the controller's back
+        storage.vehicles().delete("o1", "VIN1");
+        assertTrue(controller.getVehiclesByOwnerId("o3").isEmpty());
+
+        assertEquals(2, controller.reconcileVehicles());
+        assertEquals("VIN9", controller.getVehiclesByOwnerId("o3").get(0)[6]);
+        assertTrue(controller.getVehiclesByOwnerId("o1").isEmpty());
+        assertTrue(controller.isVinRegistered("VIN9"));
+    }
+
+
+    @Test
+    public void testJobTimesComeFromTheIndex() throws Exception {
+        VCController controller = new VCController(storage.jobs(), vehicles);
+        controller.submitJob("c1", "first", 3, 1, "2025-01-01");
+        controller.submitJob("c1", "second", 4, 1, "2025-01-01");
+        String all = controller.displayJobsAndCompletionTimes();
+        assertSame(all, controller.displayJobsAndCompletionTimes());   // Reused while the queue is unchanged
+
+        String secondId = controller.getJobsQueue().get(1).getJobId();
+        assertEquals(7, controller.getCompletionTime(secondId));
+        assertTrue(controller.displayJobCompletionTime(secondId).endsWith("Completion Time: 7 hours\n"));
+        assertTrue(all.endsWith(controller.displayJobTimes(1, 5).substring("All Assigned Jobs and Completion Times:\n".length())));
+
+        controller.completeJob(controller.getJobsQueue().get(0).getJobId());
+        assertEquals(4, controller.getCompletionTime(secondId));
+        assertNotSame(all, controller.displayJobsAndCompletionTimes());
+        assertEquals("Error: Job ID not found.", controller.displayJobCompletionTime("missing"));
+    }
+
+
+    @Test
+    public void testOffHeapQueueIsListedInPages() throws Exception {
+        System.setProperty("vcrts.jobs.offHeap", "true");
+        VCController controller;
+        try {
+            controller = new VCController(storage.jobs(), vehicles);
+        } finally {
+            System.clearProperty("vcrts.jobs.offHeap");
+        }
+        int jobs = 2500;   // Several listing pages
+        for (int i = 0; i < jobs; i++) {
+            controller.submitJob("c1", "job " + i, 1 + i % 3, 1, "2025-01-01");
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (JobRequest job : controller.getJobsQueue()) {
+            expected.add(job.getJobId());
+        }
+        assertEquals(expected, controller.readJobListings(ArrayList::new, (ids, listing) -> ids.add(listing.getJobId())));
+        String[] lines = controller.displayJobsAndCompletionTimes().split("\n");
+        assertEquals(jobs + 1, lines.length);
+        assertTrue(lines[jobs], lines[jobs].endsWith("Completion Time: " + (jobs / 3 * 6 + 1) + " hours"));
+    }
+
+
+    @Test
+    public void testDuplicateVinIsRejectedBeforeStorage() throws Exception {
+        storage.vehicles().insert(car("o1", "VIN1"));
+        VCController controller = new VCController(storage.jobs(), vehicles);
+        controller.loadVehicles(new LongAdder());
+
+        assertTrue(controller.registerCar("o2", "Golf", "VW", "P2", "S2", "VIN1", "2025-01-01").startsWith("Error"));
+        assertEquals(0, inserts.get());
+        assertEquals(1, storage.vehicles().loadAll().size());
+
+        controller.removeVehicle("o1", "VIN1");
+        assertFalse(controller.isVinRegistered("VIN1"));
+        assertEquals("Car ready notification logged successfully.",
+                controller.registerCar("o2", "Golf", "VW", "P2", "S2", "VIN1", "2025-01-01"));
+        assertEquals(1, inserts.get());
+        assertEquals("o2", controller.getVehiclesReady().get(0).getOwnerId());
+    }
+}
@@ -0,0 +1,43 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+
+public class VehicleRegistryTest {
+
+    private static CarRentals car(String ownerId, String vin) {
+        return new CarRentals(ownerId, "Civic", "Honda", "P-" + vin, "S-" + vin, vin, "2025-01-01");
+    }
+
+
+    @Test
+    public void testReservationAndLegacyDuplicateVins() {
+        VehicleRegistry registry = new VehicleRegistry();
+        assertTrue(registry.reserve("VIN1"));
+        assertFalse(registry.reserve("VIN1"));     // A second registration in flight
+        registry.release("VIN1");                   // The first one's write failed
+        assertTrue(registry.reserve("VIN1"));
+        registry.add(car("o1", "VIN1"));
+        assertFalse(registry.reserve("VIN1"));
+
+        registry.add(car("o2", "VIN1"));            // Loaded from data that predates the check
+        assertEquals(2, registry.size());
+        assertNotNull(registry.remove("o1", "VIN1"));
+        assertTrue(registry.containsVin("VIN1"));   // Still held by o2
+        assertNull(registry.remove("o1", "VIN1"));
+        assertNotNull(registry.remove("o2", "VIN1"));
+        assertFalse(registry.containsVin("VIN1"));
+
+        registry.add(car("o3", "A"));
+        registry.add(car("o3", "B"));
+        registry.add(car("o4", "C"));
+        List<CarRentals> owned = registry.findByOwner("o3");
+        assertEquals("A", owned.get(0).getVinNumber());
+        assertEquals("B", owned.get(1).getVinNumber());
+        assertSame(registry.snapshot(), registry.snapshot());
+        registry.replaceAll(List.of(car("o5", "D")));
+        assertTrue(registry.findByOwner("o3").isEmpty());
+        assertEquals(1, registry.snapshot().size());
+    }
+}
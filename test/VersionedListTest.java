@@ -0,0 +1,62 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+public class VersionedListTest {
+
+
+    @Test
+    public void testEveryPublishedListStaysAsItWas() {
+        VersionedList<Integer> list = VersionedList.empty();
+        List<Integer> expected = new ArrayList<>();
+        List<VersionedList<Integer>> published = new ArrayList<>();
+        List<List<Integer>> contents = new ArrayList<>();
+        Random random = new Random(3);
+        for (int key = 0; key < 5_000; key++) {
+            if (expected.isEmpty() || random.nextInt(3) > 0) {
+                list = list.with(key, key, list.version() + 1);
+                expected.add(key);
+            } else {
+                Integer removed = expected.remove(random.nextInt(expected.size()));
+                list = list.without(removed, list.version() + 1);
+            }
+            if (key % 250 == 0) {
+                published.add(list);
+                contents.add(new ArrayList<>(expected));
+            }
+        }
+        assertEquals(expected, list);
+        assertEquals(expected.get(expected.size() / 2), list.get(expected.size() / 2));
+        for (int i = 0; i < published.size(); i++) {
+            assertEquals(contents.get(i), published.get(i));   // Unchanged by the later writes
+        }
+        assertSame(list, list.without(-1, list.version() + 1));   // Nothing to remove: no new version
+        assertTrue(list.changedSince(published.get(0).version()));
+        assertFalse(list.changedSince(list.version()));
+    }
+
+
+    @Test
+    public void testRegistriesPublishOnEveryChange() {
+        JobRegistry jobs = new JobRegistry();
+        JobRequest job = new JobRequest("c1", "render", 1, 1, "2025-01-01");
+        jobs.add(job);
+        VersionedList<JobRequest> before = jobs.snapshot();
+        jobs.remove(job.getJobId());
+        assertEquals(1, before.size());
+        assertTrue(jobs.snapshot().isEmpty());
+        assertTrue(jobs.snapshot().version() > before.version());
+
+        VehicleRegistry vehicles = new VehicleRegistry();
+        vehicles.add(new CarRentals("o1", "Civic", "Honda", "P1", "S1", "VIN1", "2025-01-01"));
+        long version = vehicles.version();
+        vehicles.replaceAll(List.of(new CarRentals("o2", "Golf", "VW", "P2", "S2", "VIN2", "2025-01-01")));
+        assertTrue(vehicles.version() > version);
+        assertEquals("o2", vehicles.snapshot().get(0).getOwnerId());
+        assertEquals(1, vehicles.snapshot().size());
+    }
+}
@@ -0,0 +1,251 @@
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class WriteBehindQueueTest {
+
+    // Stand-in for a JDBC connection; any statement with a parameter equal to
+    // rejected fails, like a constraint violation would. While down every
+    // statement fails like a dropped connection.
+    private static class FakeDatabase {
+        final AtomicInteger batchesExecuted = new AtomicInteger();
+        final AtomicInteger commits = new AtomicInteger();
+        final AtomicInteger rollbacks = new AtomicInteger();
+        final List<Object> committedFirstParams = new ArrayList<>();
+        volatile Object rejected;
+        volatile boolean down;
+        private boolean autoCommit = true;
+
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (self, method, args) -> {
+                        switch (method.getName()) {
+                            case "prepareStatement":
+                                return statement();
+                            case "isValid":
+                                return true;
+                            case "setAutoCommit":
+                                autoCommit = (Boolean) args[0];
+                                return null;
+                            case "getAutoCommit":
+                                return autoCommit;
+                            case "commit":
+                                commits.incrementAndGet();
+                                return null;
+                            case "rollback":
+                                rollbacks.incrementAndGet();
+                                return null;
+                            case "isClosed":
+                                return false;
+                            default:
+                                return null;
+                        }
+                    });
+        }
+
+        private PreparedStatement statement() {
+            Map<Integer, Object> params = new HashMap<>();
+            List<Map<Integer, Object>> batch = new ArrayList<>();
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    (self, method, args) -> {
+                        switch (method.getName()) {
+                            case "setObject":
+                                params.put((Integer) args[0], args[1]);
+                                return null;
+                            case "clearParameters":
+                                params.clear();
+                                return null;
+                            case "addBatch":
+                                batch.add(new HashMap<>(params));
+                                return null;
+                            case "executeBatch":
+                                batchesExecuted.incrementAndGet();
+                                List<Map<Integer, Object>> rows = new ArrayList<>(batch);
+                                batch.clear();
+                                for (Map<Integer, Object> row : rows) {
+                                    check(row);
+                                }
+                                int[] counts = new int[rows.size()];
+                                for (int i = 0; i < rows.size(); i++) {
+                                    counts[i] = 1;
+                                    committedFirstParams.add(rows.get(i).get(1));
+                                }
+                                return counts;
+                            case "executeUpdate":
+                                check(params);
+                                committedFirstParams.add(params.get(1));
+                                return 1;
+                            case "isClosed":
+                                return false;
+                            default:
+                                return null;
+                        }
+                    });
+        }
+
+        private void check(Map<Integer, Object> row) throws SQLException {
+            if (down) {
+                throw new SQLException("Communications link failure", "08S01");
+            }
+            if (rejected != null && row.containsValue(rejected)) {
+                throw new SQLException("Duplicate entry '" + rejected + "'", "23000");
+            }
+        }
+    }
+
+    private final FakeDatabase database = new FakeDatabase();
+    private final List<String> log = new ArrayList<>();
+
+    private static Path retryFile() throws Exception {
+        Path directory = Files.createTempDirectory("write-behind");
+        directory.toFile().deleteOnExit();
+        return directory.resolve("retry.log");
+    }
+
+    private WriteBehindQueue queue(Path retryFile) {
+        ConnectionPool pool = new ConnectionPool(database::proxy, 2, 1000, 0, 8);
+        return new WriteBehindQueue(pool, 10, 10, 1000, retryFile, message -> {
+            synchronized (log) {
+                log.add(message);
+            }
+        });
+    }
+
+    // Submits the writes from their own threads and starts the writer once all are
+    // queued, so that they are committed together
+    private List<Future<Integer>> submitThenStart(WriteBehindQueue queue, ExecutorService callers,
+                                                  Object... firstParams) throws InterruptedException {
+        List<Future<Integer>> results = new ArrayList<>();
+        for (Object param : firstParams) {
+            results.add(callers.submit(() -> queue.execute("INSERT INTO T (a, b) VALUES (?, ?)", param, 7)));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queue.getQueued() < firstParams.length && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        queue.start();
+        return results;
+    }
+
+
+    @Test
+    public void testQueuedWritesShareOneCommit() throws Exception {
+        WriteBehindQueue queue = queue(retryFile());
+        ExecutorService callers = Executors.newFixedThreadPool(5);
+        try {
+            List<Future<Integer>> results = submitThenStart(queue, callers, "a", "b", "c", "d", "e");
+            for (Future<Integer> result : results) {
+                assertEquals(Integer.valueOf(1), result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertEquals(1, database.batchesExecuted.get());
+        assertEquals(1, database.commits.get());
+        assertEquals(1, queue.getCommits());
+        assertEquals(5, queue.getRowsCommitted());
+    }
+
+
+    @Test
+    public void testStopCommitsWritesStillQueued() throws Exception {
+        WriteBehindQueue queue = queue(retryFile());
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (String param : new String[]{"a", "b"}) {
+                results.add(callers.submit(() -> queue.execute("INSERT INTO T (a, b) VALUES (?, ?)", param, 7)));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (queue.getQueued() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            queue.stop();   // The writer never ran; stop() commits them itself
+            for (Future<Integer> result : results) {
+                assertEquals(Integer.valueOf(1), result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, database.commits.get());
+    }
+
+
+    @Test
+    public void testRejectedRowFailsAloneAndIsNotSaved() throws Exception {
+        Path retryFile = retryFile();
+        WriteBehindQueue queue = queue(retryFile);
+        database.rejected = "bad\tvalue";
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Integer>> results = submitThenStart(queue, callers, "a", "bad\tvalue", "c");
+            assertEquals(Integer.valueOf(1), results.get(0).get(5, TimeUnit.SECONDS));
+            assertEquals(Integer.valueOf(1), results.get(2).get(5, TimeUnit.SECONDS));
+            try {
+                results.get(1).get(5, TimeUnit.SECONDS);
+                fail("expected the rejected row to fail");
+            } catch (java.util.concurrent.ExecutionException e) {
+                assertTrue(e.getCause() instanceof WriteBehindQueue.WriteFailedException);
+                assertFalse(((WriteBehindQueue.WriteFailedException) e.getCause()).isSaved());
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(1, database.rollbacks.get());
+        assertFalse(Files.exists(retryFile));   // Its caller was told; nothing to replay
+        assertEquals(0, queue.getRowsFailed());
+        assertEquals(1, queue.getRowsRejected());
+    }
+
+
+    @Test
+    public void testUnreachableRowsAreSavedAsAcceptedAndReplayed() throws Exception {
+        Path retryFile = retryFile();
+        WriteBehindQueue queue = queue(retryFile);
+        database.down = true;
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Integer>> results = submitThenStart(queue, callers, "a", "b", "c");
+            for (Future<Integer> result : results) {
+                try {
+                    result.get(5, TimeUnit.SECONDS);
+                    fail("expected the write to be saved for retry");
+                } catch (java.util.concurrent.ExecutionException e) {
+                    assertTrue(((WriteBehindQueue.WriteFailedException) e.getCause()).isSaved());
+                }
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertEquals(3, Files.readAllLines(retryFile).size());
+        assertEquals(3, queue.getRowsFailed());
+
+        database.down = false;
+        database.rejected = "b";   // e.g. someone inserted a conflicting row meanwhile
+        assertEquals(2, queue.replayRetryFile());
+        assertFalse(Files.exists(retryFile));
+        assertEquals(0, queue.getRowsFailed());
+        assertEquals(List.of("a", "c"), database.committedFirstParams);
+        Path rejectedFile = retryFile.resolveSibling("retry.log.rejected");
+        assertEquals(1, Files.readAllLines(rejectedFile).size());   // Kept for the admin, never replayed
+        assertEquals(0, queue.replayRetryFile());
+    }
+}